@@ -19,26 +19,23 @@ package org.graylog.plugins.beats;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.io.ByteStreams;
 import com.google.common.primitives.Ints;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ReplayingDecoder;
+import org.graylog2.plugin.utilities.PooledInflater;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.zip.InflaterInputStream;
 
 /**
  * FrameDecoder for the Beats/Lumberjack protocol.
@@ -64,11 +61,22 @@ public class BeatsFrameDecoder extends ReplayingDecoder<BeatsFrameDecoder.Decodi
         FRAME_WINDOW_SIZE
     }
 
+    static final long DEFAULT_MAX_DECOMPRESSED_SIZE = 64 * 1024 * 1024;
+
+    private final long maxDecompressedSize;
     private long windowSize;
     private long sequenceNum;
 
     public BeatsFrameDecoder() {
+        this(DEFAULT_MAX_DECOMPRESSED_SIZE);
+    }
+
+    /**
+     * @param maxDecompressedSize the maximum number of bytes a compressed frame may decompress to
+     */
+    public BeatsFrameDecoder(long maxDecompressedSize) {
         super(DecodingState.PROTOCOL_VERSION);
+        this.maxDecompressedSize = maxDecompressedSize;
     }
 
     @Override
@@ -116,7 +124,7 @@ public class BeatsFrameDecoder extends ReplayingDecoder<BeatsFrameDecoder.Decodi
         checkpoint(DecodingState.PROTOCOL_VERSION);
     }
 
-    private Collection<ByteBuf> processUncompressedBuffer(Channel channel, ByteBuf buffer) throws Exception {
+    private Collection<ByteBuf> processUncompressedBuffer(Channel channel, ByteBuf buffer) throws IOException {
         checkVersion(buffer);
         byte frameType = buffer.readByte();
 
@@ -131,7 +139,7 @@ public class BeatsFrameDecoder extends ReplayingDecoder<BeatsFrameDecoder.Decodi
             case FRAME_JSON:
                 return parseJsonFrame(channel, buffer);
             default:
-                throw new Exception("Unknown frame type: " + frameType);
+                throw new IllegalStateException("Unknown frame type: " + frameType);
         }
     }
 
@@ -175,18 +183,20 @@ public class BeatsFrameDecoder extends ReplayingDecoder<BeatsFrameDecoder.Decodi
     /**
      * @see <a href="https://github.com/logstash-plugins/logstash-input-beats/blob/master/PROTOCOL.md#compressed-frame-type">'compressed' frame type</a>
      */
-    private Collection<ByteBuf> processCompressedFrame(Channel channel, ByteBuf channelBuffer) throws Exception {
+    private Collection<ByteBuf> processCompressedFrame(Channel channel, ByteBuf channelBuffer) throws IOException {
         final long payloadLength = channelBuffer.readUnsignedInt();
         final byte[] data = new byte[(int) payloadLength];
         channelBuffer.readBytes(data);
-        try (final ByteArrayInputStream dataStream = new ByteArrayInputStream(data);
-             final InputStream in = new InflaterInputStream(dataStream)) {
-            final ByteBuf buffer = Unpooled.wrappedBuffer(ByteStreams.toByteArray(in));
-            return processCompressedDataFrames(channel, buffer);
-        }
+        // The decompressed frames are copied into new buffers while parsing, so the pooled buffer can be wrapped
+        return PooledInflater.inflate(data, 0, data.length, PooledInflater.Format.ZLIB, maxDecompressedSize, (buffer, length, truncated) -> {
+            if (truncated) {
+                throw new IllegalStateException("Decompressed frame exceeds maximum size of " + maxDecompressedSize + " bytes");
+            }
+            return processCompressedDataFrames(channel, Unpooled.wrappedBuffer(buffer, 0, length));
+        });
     }
 
-    private Collection<ByteBuf> processCompressedDataFrames(Channel channel, ByteBuf channelBuffer) throws Exception {
+    private Collection<ByteBuf> processCompressedDataFrames(Channel channel, ByteBuf channelBuffer) throws IOException {
         final List<ByteBuf> events = new ArrayList<>();
         while (channelBuffer.isReadable()) {
             final Collection<ByteBuf> buffers = processUncompressedBuffer(channel, channelBuffer);
@@ -24,6 +24,8 @@ import org.graylog2.inputs.transports.netty.EventLoopGroupFactory;
 import org.graylog2.plugin.LocalMetricRegistry;
 import org.graylog2.plugin.configuration.Configuration;
 import org.graylog2.plugin.configuration.ConfigurationRequest;
+import org.graylog2.plugin.configuration.fields.ConfigurationField;
+import org.graylog2.plugin.configuration.fields.NumberField;
 import org.graylog2.plugin.inputs.MessageInput;
 import org.graylog2.plugin.inputs.annotations.ConfigClass;
 import org.graylog2.plugin.inputs.annotations.FactoryClass;
@@ -37,6 +39,9 @@ import java.util.LinkedHashMap;
 import java.util.concurrent.Callable;
 
 public class BeatsTransport extends AbstractTcpTransport {
+    private static final String CK_DECOMPRESS_SIZE_LIMIT = "decompress_size_limit";
+    private static final int DEFAULT_DECOMPRESS_SIZE_LIMIT = (int) BeatsFrameDecoder.DEFAULT_MAX_DECOMPRESSED_SIZE;
+
     @Inject
     public BeatsTransport(@Assisted Configuration configuration,
                           EventLoopGroup eventLoopGroup,
@@ -50,7 +55,8 @@ public class BeatsTransport extends AbstractTcpTransport {
     @Override
     protected LinkedHashMap<String, Callable<? extends ChannelHandler>> getCustomChildChannelHandlers(MessageInput input) {
         final LinkedHashMap<String, Callable<? extends ChannelHandler>> handlers = new LinkedHashMap<>(super.getCustomChildChannelHandlers(input));
-        handlers.put("beats", BeatsFrameDecoder::new);
+        final long decompressSizeLimit = configuration.getInt(CK_DECOMPRESS_SIZE_LIMIT, DEFAULT_DECOMPRESS_SIZE_LIMIT);
+        handlers.put("beats", () -> new BeatsFrameDecoder(decompressSizeLimit));
 
         return handlers;
     }
@@ -72,6 +78,12 @@ public class BeatsTransport extends AbstractTcpTransport {
             if (cr.containsField(NettyTransport.CK_PORT)) {
                 cr.getField(NettyTransport.CK_PORT).setDefaultValue(5044);
             }
+            cr.addField(new NumberField(
+                    CK_DECOMPRESS_SIZE_LIMIT,
+                    "Decompressed size limit",
+                    DEFAULT_DECOMPRESS_SIZE_LIMIT,
+                    "The maximum number of bytes a compressed frame may decompress to.",
+                    ConfigurationField.Optional.OPTIONAL));
             return cr;
         }
     }
@@ -22,11 +22,16 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nullable;
+import java.util.List;
 
 @JsonAutoDetect
 @JsonIgnoreProperties(ignoreUnknown = true)
 @AutoValue
 public abstract class GeoIpResolverConfig {
+    private static final int DEFAULT_CACHE_SIZE = 10000;
 
     @JsonProperty("enabled")
     public abstract boolean enabled();
@@ -37,14 +42,30 @@ public abstract class GeoIpResolverConfig {
     @JsonProperty("db_path")
     public abstract String dbPath();
 
+    /**
+     * Names of the message fields which are looked up. An empty list means that all fields are looked up.
+     */
+    @JsonProperty("fields")
+    public abstract List<String> fields();
+
+    /**
+     * Maximum number of IP addresses for which the lookup results are cached. {@code 0} disables the cache.
+     */
+    @JsonProperty("cache_size")
+    public abstract int cacheSize();
+
     @JsonCreator
     public static GeoIpResolverConfig create(@JsonProperty("enabled") boolean enabled,
                                              @JsonProperty("db_type") DatabaseType dbType,
-                                             @JsonProperty("db_path") String dbPath) {
+                                             @JsonProperty("db_path") String dbPath,
+                                             @JsonProperty("fields") @Nullable List<String> fields,
+                                             @JsonProperty("cache_size") @Nullable Integer cacheSize) {
         return builder()
                 .enabled(enabled)
                 .dbType(dbType)
                 .dbPath(dbPath)
+                .fields(fields == null ? ImmutableList.of() : fields)
+                .cacheSize(cacheSize == null ? DEFAULT_CACHE_SIZE : cacheSize)
                 .build();
     }
 
@@ -53,6 +74,8 @@ public abstract class GeoIpResolverConfig {
                .enabled(false)
                .dbType(DatabaseType.MAXMIND_CITY)
                .dbPath("/etc/graylog/server/GeoLite2-City.mmdb")
+               .fields(ImmutableList.of())
+               .cacheSize(DEFAULT_CACHE_SIZE)
                .build();
     }
 
@@ -67,6 +90,8 @@ public abstract class GeoIpResolverConfig {
         public abstract Builder enabled(boolean enabled);
         public abstract Builder dbType(DatabaseType dbType);
         public abstract Builder dbPath(String dbPath);
+        public abstract Builder fields(List<String> fields);
+        public abstract Builder cacheSize(int cacheSize);
 
         public abstract GeoIpResolverConfig build();
     }
@@ -16,11 +16,18 @@
  */
 package org.graylog.plugins.map.geoip;
 
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
 import com.codahale.metrics.Timer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.google.auto.value.AutoValue;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
 import com.google.common.net.InetAddresses;
+import com.maxmind.db.CHMCache;
 import com.maxmind.geoip2.DatabaseReader;
 import com.maxmind.geoip2.model.CityResponse;
 import com.maxmind.geoip2.record.City;
@@ -28,6 +35,7 @@ import com.maxmind.geoip2.record.Country;
 import com.maxmind.geoip2.record.Location;
 import org.graylog.plugins.map.config.GeoIpResolverConfig;
 import org.graylog2.plugin.Message;
+import org.graylog2.shared.metrics.MetricUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,6 +44,8 @@ import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -44,18 +54,37 @@ import static com.codahale.metrics.MetricRegistry.name;
 public class GeoIpResolverEngine {
     private static final Logger LOG = LoggerFactory.getLogger(GeoIpResolverEngine.class);
 
+    // The longest textual IP address is an IPv6 address with an embedded IPv4 address, e.g. "ffff:ffff:ffff:ffff:ffff:ffff:255.255.255.255"
+    private static final int MAX_IP_ADDRESS_LENGTH = 45;
+
     private final Timer resolveTime;
+    private final Meter cacheHits;
+    private final Meter cacheMisses;
+    private final List<String> fields;
+    @Nullable
+    private final Cache<InetAddress, Optional<GeoLocationInformation>> cache;
     private DatabaseReader databaseReader;
     private boolean enabled;
 
 
     public GeoIpResolverEngine(GeoIpResolverConfig config, MetricRegistry metricRegistry) {
         this.resolveTime = metricRegistry.timer(name(GeoIpResolverEngine.class, "resolveTime"));
+        this.cacheHits = metricRegistry.meter(name(GeoIpResolverEngine.class, "cacheHits"));
+        this.cacheMisses = metricRegistry.meter(name(GeoIpResolverEngine.class, "cacheMisses"));
+        MetricUtils.safelyRegister(metricRegistry, name(GeoIpResolverEngine.class, "cacheHitRatio"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(cacheHits.getOneMinuteRate(), cacheHits.getOneMinuteRate() + cacheMisses.getOneMinuteRate());
+            }
+        });
+        this.fields = ImmutableList.copyOf(config.fields());
+        this.cache = config.cacheSize() > 0 ? Caffeine.newBuilder().maximumSize(config.cacheSize()).build() : null;
 
         try {
             final File database = new File(config.dbPath());
             if (Files.exists(database.toPath())) {
-                this.databaseReader = new DatabaseReader.Builder(database).build();
+                // The node cache keeps decoded database records on the heap instead of decoding them for every lookup
+                this.databaseReader = new DatabaseReader.Builder(database).withCache(new CHMCache()).build();
                 this.enabled = config.enabled();
             } else {
                 LOG.warn("GeoIP database file does not exist: {}", config.dbPath());
@@ -72,24 +101,38 @@ public class GeoIpResolverEngine {
             return false;
         }
 
-        for (Map.Entry<String, Object> field : message.getFields().entrySet()) {
-            final String key = field.getKey();
-            if (!key.startsWith(Message.INTERNAL_FIELD_PREFIX)) {
-                final Optional<GeoLocationInformation> geoLocationInformation = extractGeoLocationInformation(field.getValue());
-                geoLocationInformation.ifPresent(locationInformation -> {
-                    // We will store the coordinates as a "lat,long" string
-                    message.addField(key + "_geolocation", locationInformation.latitude() + "," + locationInformation.longitude());
-                    message.addField(key + "_country_code", locationInformation.countryIsoCode());
-                    message.addField(key + "_city_name", locationInformation.cityName());
-                });
+        if (fields.isEmpty()) {
+            // Collect the results first, the fields of the message cannot be modified while iterating over them
+            final List<Map.Entry<String, GeoLocationInformation>> results = new ArrayList<>();
+            for (Map.Entry<String, Object> field : message.getFieldsEntries()) {
+                final String key = field.getKey();
+                if (!key.startsWith(Message.INTERNAL_FIELD_PREFIX)) {
+                    extractGeoLocationInformation(field.getValue())
+                            .ifPresent(locationInformation -> results.add(Maps.immutableEntry(key, locationInformation)));
+                }
+            }
+            for (Map.Entry<String, GeoLocationInformation> result : results) {
+                addGeoLocationFields(message, result.getKey(), result.getValue());
+            }
+        } else {
+            for (String key : fields) {
+                extractGeoLocationInformation(message.getField(key))
+                        .ifPresent(locationInformation -> addGeoLocationFields(message, key, locationInformation));
             }
         }
 
         return false;
     }
 
+    private static void addGeoLocationFields(Message message, String key, GeoLocationInformation locationInformation) {
+        // We will store the coordinates as a "lat,long" string
+        message.addField(key + "_geolocation", locationInformation.latitude() + "," + locationInformation.longitude());
+        message.addField(key + "_country_code", locationInformation.countryIsoCode());
+        message.addField(key + "_city_name", locationInformation.cityName());
+    }
+
     @VisibleForTesting
-    Optional<GeoLocationInformation> extractGeoLocationInformation(Object fieldValue) {
+    Optional<GeoLocationInformation> extractGeoLocationInformation(@Nullable Object fieldValue) {
         final InetAddress ipAddress;
         if (fieldValue instanceof InetAddress) {
             ipAddress = (InetAddress) fieldValue;
@@ -99,22 +142,42 @@ public class GeoIpResolverEngine {
             ipAddress = null;
         }
 
+        if (ipAddress == null) {
+            return Optional.empty();
+        }
+
+        if (cache == null) {
+            return lookup(ipAddress);
+        }
+
+        final Optional<GeoLocationInformation> cachedInformation = cache.getIfPresent(ipAddress);
+        if (cachedInformation != null) {
+            cacheHits.mark();
+            return cachedInformation;
+        }
+
+        // Addresses which are not in the database are cached as well, they are just as frequent as the others
+        cacheMisses.mark();
+        final Optional<GeoLocationInformation> geoLocationInformation = lookup(ipAddress);
+        cache.put(ipAddress, geoLocationInformation);
+        return geoLocationInformation;
+    }
+
+    private Optional<GeoLocationInformation> lookup(InetAddress ipAddress) {
         GeoLocationInformation geoLocationInformation = null;
-        if (ipAddress != null) {
-            try (Timer.Context ignored = resolveTime.time()) {
-                final CityResponse response = databaseReader.city(ipAddress);
-                final Location location = response.getLocation();
-                final Country country = response.getCountry();
-                final City city = response.getCity();
-
-                geoLocationInformation = GeoLocationInformation.create(
-                        location.getLatitude(), location.getLongitude(),
-                        country.getGeoNameId() != null ? country.getIsoCode() : "N/A",
-                        city.getGeoNameId() != null ? city.getName() : "N/A" // calling to .getName() may throw a NPE
-                );
-            } catch (Exception e) {
-                LOG.debug("Could not get location from IP {}", ipAddress.getHostAddress(), e);
-            }
+        try (Timer.Context ignored = resolveTime.time()) {
+            final CityResponse response = databaseReader.city(ipAddress);
+            final Location location = response.getLocation();
+            final Country country = response.getCountry();
+            final City city = response.getCity();
+
+            geoLocationInformation = GeoLocationInformation.create(
+                    location.getLatitude(), location.getLongitude(),
+                    country.getGeoNameId() != null ? country.getIsoCode() : "N/A",
+                    city.getGeoNameId() != null ? city.getName() : "N/A" // calling to .getName() may throw a NPE
+            );
+        } catch (Exception e) {
+            LOG.debug("Could not get location from IP {}", ipAddress.getHostAddress(), e);
         }
 
         return Optional.ofNullable(geoLocationInformation);
@@ -123,6 +186,11 @@ public class GeoIpResolverEngine {
     @Nullable
     @VisibleForTesting
     InetAddress getIpFromFieldValue(String fieldValue) {
+        // Most field values are obviously no IP addresses, avoid the more expensive parsing for them
+        if (!looksLikeIpAddress(fieldValue)) {
+            return null;
+        }
+
         try {
             return InetAddresses.forString(fieldValue.trim());
         } catch (IllegalArgumentException e) {
@@ -132,6 +200,38 @@ public class GeoIpResolverEngine {
         return null;
     }
 
+    /**
+     * Checks if the given string only consists of characters which can occur in an IPv4 or IPv6 address, ignoring
+     * leading and trailing whitespace.
+     */
+    @VisibleForTesting
+    static boolean looksLikeIpAddress(String value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        final int length = end - start;
+        if (length < 2 || length > MAX_IP_ADDRESS_LENGTH) {
+            return false;
+        }
+
+        boolean hasSeparator = false;
+        for (int i = start; i < end; i++) {
+            final char c = value.charAt(i);
+            if (c == '.' || c == ':') {
+                hasSeparator = true;
+            } else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+                return false;
+            }
+        }
+        return hasSeparator;
+    }
+
     @AutoValue
     static abstract class GeoLocationInformation {
         public abstract double latitude();
@@ -18,6 +18,8 @@ package org.graylog.plugins.netflow;
 
 import org.graylog.plugins.netflow.codecs.NetFlowCodec;
 import org.graylog.plugins.netflow.inputs.NetFlowUdpInput;
+import org.graylog.plugins.netflow.templates.MongoDBNetFlowV9TemplateStore;
+import org.graylog.plugins.netflow.templates.NetFlowV9TemplateStore;
 import org.graylog.plugins.netflow.transport.NetFlowUdpTransport;
 import org.graylog2.plugin.PluginConfigBean;
 import org.graylog2.plugin.PluginModule;
@@ -36,5 +38,7 @@ public class NetFlowPluginModule extends PluginModule {
         addMessageInput(NetFlowUdpInput.class);
         addCodec("netflow", NetFlowCodec.class);
         addTransport("netflow-udp", NetFlowUdpTransport.class);
+
+        bind(NetFlowV9TemplateStore.class).to(MongoDBNetFlowV9TemplateStore.class);
     }
 }
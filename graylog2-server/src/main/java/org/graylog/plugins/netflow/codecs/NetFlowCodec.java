@@ -17,17 +17,26 @@
 package org.graylog.plugins.netflow.codecs;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 import com.google.inject.assistedinject.Assisted;
 import com.google.protobuf.InvalidProtocolBufferException;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
+import org.graylog.plugins.netflow.flows.EmptyTemplateException;
 import org.graylog.plugins.netflow.flows.FlowException;
 import org.graylog.plugins.netflow.flows.NetFlowFormatter;
+import org.graylog.plugins.netflow.templates.NetFlowV9TemplateReference;
+import org.graylog.plugins.netflow.templates.NetFlowV9TemplateStore;
+import org.graylog.plugins.netflow.v5.NetFlowV5FlowMerger;
 import org.graylog.plugins.netflow.v5.NetFlowV5Packet;
 import org.graylog.plugins.netflow.v5.NetFlowV5Parser;
+import org.graylog.plugins.netflow.v5.NetFlowV5Record;
+import org.graylog.plugins.netflow.v9.NetFlowV9BaseRecord;
 import org.graylog.plugins.netflow.v9.NetFlowV9FieldTypeRegistry;
+import org.graylog.plugins.netflow.v9.NetFlowV9FlowMerger;
 import org.graylog.plugins.netflow.v9.NetFlowV9Journal;
 import org.graylog.plugins.netflow.v9.NetFlowV9OptionTemplate;
 import org.graylog.plugins.netflow.v9.NetFlowV9Packet;
@@ -38,7 +47,9 @@ import org.graylog2.plugin.Message;
 import org.graylog2.plugin.ResolvableInetSocketAddress;
 import org.graylog2.plugin.configuration.Configuration;
 import org.graylog2.plugin.configuration.ConfigurationRequest;
+import org.graylog2.plugin.configuration.fields.BooleanField;
 import org.graylog2.plugin.configuration.fields.ConfigurationField;
+import org.graylog2.plugin.configuration.fields.NumberField;
 import org.graylog2.plugin.configuration.fields.TextField;
 import org.graylog2.plugin.inputs.annotations.Codec;
 import org.graylog2.plugin.inputs.annotations.ConfigClass;
@@ -59,6 +70,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -75,16 +87,38 @@ public class NetFlowCodec extends AbstractCodec implements MultiMessageCodec {
      * It contains all necessary template flows before any data flows and can be completely parsed without a template cache.
      */
     public static final byte ORDERED_V9_MARKER = 0x01;
+    /**
+     * Marker byte which signals that the contained netflow v9 packets reference their templates in the
+     * {@link NetFlowV9TemplateStore}, see {@link NetFlowV9ReferenceEntry}.
+     */
+    public static final byte TEMPLATE_REFERENCE_V9_MARKER = 0x02;
     @VisibleForTesting
     static final String CK_NETFLOW9_DEFINITION_PATH = "netflow9_definitions_Path";
+    @VisibleForTesting
+    static final String CK_AGGREGATE_FLOWS = "aggregate_flows";
+    @VisibleForTesting
+    static final String CK_AGGREGATION_WINDOW = "aggregation_window";
+    private static final int DEFAULT_AGGREGATION_WINDOW = 1000;
     private static final Logger LOG = LoggerFactory.getLogger(NetFlowCodec.class);
     private final NetFlowV9FieldTypeRegistry typeRegistry;
     private final NetflowV9CodecAggregator netflowV9CodecAggregator;
+    private final NetFlowV9TemplateStore templateStore;
+    private final boolean aggregateFlows;
+    private final long aggregationWindow;
+    // parsed templates, the reference hash identifies the template contents independent of the exporter
+    private final Cache<NetFlowV9TemplateReference, Object> parsedTemplates = CacheBuilder.newBuilder()
+            .maximumSize(5000)
+            .build();
 
     @Inject
-    protected NetFlowCodec(@Assisted Configuration configuration, NetflowV9CodecAggregator netflowV9CodecAggregator) throws IOException {
+    protected NetFlowCodec(@Assisted Configuration configuration,
+                           NetflowV9CodecAggregator netflowV9CodecAggregator,
+                           NetFlowV9TemplateStore templateStore) throws IOException {
         super(configuration);
         this.netflowV9CodecAggregator = netflowV9CodecAggregator;
+        this.templateStore = templateStore;
+        this.aggregateFlows = configuration.getBoolean(CK_AGGREGATE_FLOWS, false);
+        this.aggregationWindow = configuration.getInt(CK_AGGREGATION_WINDOW, DEFAULT_AGGREGATION_WINDOW);
 
         final String netFlow9DefinitionsPath = configuration.getString(CK_NETFLOW9_DEFINITION_PATH);
         if (netFlow9DefinitionsPath == null || netFlow9DefinitionsPath.trim().isEmpty()) {
@@ -126,13 +160,19 @@ public class NetFlowCodec extends AbstractCodec implements MultiMessageCodec {
             switch (buffer.readByte()) {
                 case PASSTHROUGH_MARKER:
                     final NetFlowV5Packet netFlowV5Packet = NetFlowV5Parser.parsePacket(buffer);
+                    final List<NetFlowV5Record> records = aggregateFlows
+                            ? NetFlowV5FlowMerger.merge(netFlowV5Packet.records(), aggregationWindow)
+                            : netFlowV5Packet.records();
 
-                    return netFlowV5Packet.records().stream()
+                    return records.stream()
                             .map(record -> NetFlowFormatter.toMessage(netFlowV5Packet.header(), record, sender))
                             .collect(Collectors.toList());
                 case ORDERED_V9_MARKER:
                     // our "custom" netflow v9 that has all the templates in the same packet
                     return decodeV9(sender, buffer);
+                case TEMPLATE_REFERENCE_V9_MARKER:
+                    // netflow v9 packets which reference the templates in the template store
+                    return toMessages(sender, decodeV9ReferencePackets(sender, buffer));
                 default:
                     final List<RawMessage.SourceNode> sourceNodes = rawMessage.getSourceNodes();
                     final RawMessage.SourceNode sourceNode = sourceNodes.isEmpty() ? null : sourceNodes.get(sourceNodes.size() - 1);
@@ -154,9 +194,11 @@ public class NetFlowCodec extends AbstractCodec implements MultiMessageCodec {
 
     @VisibleForTesting
     Collection<Message> decodeV9(InetSocketAddress sender, ByteBuf buffer) throws InvalidProtocolBufferException {
-        final List<NetFlowV9Packet> netFlowV9Packets = decodeV9Packets(buffer);
+        return toMessages(sender, decodeV9Packets(buffer));
+    }
 
-        return netFlowV9Packets.stream().map(netFlowV9Packet -> netFlowV9Packet.records().stream()
+    private Collection<Message> toMessages(InetSocketAddress sender, List<NetFlowV9Packet> netFlowV9Packets) {
+        return netFlowV9Packets.stream().map(netFlowV9Packet -> records(netFlowV9Packet).stream()
                 .filter(record -> record instanceof NetFlowV9Record)
                 .map(record -> NetFlowFormatter.toMessage(netFlowV9Packet.header(), record, sender))
                 .collect(Collectors.toList())
@@ -164,6 +206,10 @@ public class NetFlowCodec extends AbstractCodec implements MultiMessageCodec {
          .collect(Collectors.toList());
     }
 
+    private List<NetFlowV9BaseRecord> records(NetFlowV9Packet packet) {
+        return aggregateFlows ? NetFlowV9FlowMerger.merge(packet.records(), aggregationWindow) : packet.records();
+    }
+
     @VisibleForTesting
     List<NetFlowV9Packet> decodeV9Packets(ByteBuf buffer) throws InvalidProtocolBufferException {
         byte[] v9JournalEntry = new byte[buffer.readableBytes()];
@@ -188,6 +234,54 @@ public class NetFlowCodec extends AbstractCodec implements MultiMessageCodec {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Decodes the packets of a journal entry written with the {@link #TEMPLATE_REFERENCE_V9_MARKER}.
+     *
+     * @param sender the exporter of the packets
+     * @param buffer the journal entry, positioned after the marker byte
+     * @throws EmptyTemplateException if a referenced template isn't available anymore
+     */
+    @VisibleForTesting
+    List<NetFlowV9Packet> decodeV9ReferencePackets(@Nullable InetSocketAddress sender, ByteBuf buffer) {
+        final NetFlowV9ReferenceEntry entry = NetFlowV9ReferenceEntry.read(buffer);
+        final String exporter = NetFlowV9TemplateStore.exporterId(sender);
+
+        final Map<Integer, NetFlowV9Template> templateMap = Maps.newHashMap();
+        NetFlowV9OptionTemplate optionTemplate = null;
+        for (NetFlowV9TemplateReference reference : entry.references()) {
+            final Object template = resolveTemplate(exporter, entry.sourceId(), reference);
+            if (template instanceof NetFlowV9OptionTemplate) {
+                optionTemplate = (NetFlowV9OptionTemplate) template;
+            } else {
+                templateMap.put(reference.templateId(), (NetFlowV9Template) template);
+            }
+        }
+
+        final List<NetFlowV9Packet> packets = new ArrayList<>(entry.packets().size());
+        for (ByteBuf packet : entry.packets()) {
+            packets.add(NetFlowV9Parser.parsePacket(packet, typeRegistry, templateMap, optionTemplate));
+        }
+        return packets;
+    }
+
+    private Object resolveTemplate(String exporter, long sourceId, NetFlowV9TemplateReference reference) {
+        final Object parsed = parsedTemplates.getIfPresent(reference);
+        if (parsed != null) {
+            return parsed;
+        }
+
+        final byte[] bytes = templateStore.load(exporter, sourceId, reference);
+        if (bytes == null) {
+            throw new EmptyTemplateException("Unknown NetFlow 9 template " + reference.templateId() + " of exporter "
+                    + exporter + "/" + sourceId + ". Discarding packet.");
+        }
+        final Object template = reference.optionTemplate()
+                ? NetFlowV9Parser.parseOptionTemplate(Unpooled.wrappedBuffer(bytes), typeRegistry)
+                : NetFlowV9Parser.parseTemplate(Unpooled.wrappedBuffer(bytes), typeRegistry);
+        parsedTemplates.put(reference, template);
+        return template;
+    }
+
     @FactoryClass
     public interface Factory extends AbstractCodec.Factory<NetFlowCodec> {
         @Override
@@ -210,6 +304,8 @@ public class NetFlowCodec extends AbstractCodec implements MultiMessageCodec {
         public ConfigurationRequest getRequestedConfiguration() {
             final ConfigurationRequest configuration = super.getRequestedConfiguration();
             configuration.addField(new TextField(CK_NETFLOW9_DEFINITION_PATH, "Netflow 9 field definitions", "", "Path to the YAML file containing Netflow 9 field definitions", ConfigurationField.Optional.OPTIONAL));
+            configuration.addField(new BooleanField(CK_AGGREGATE_FLOWS, "Aggregate flows", false, "Merge records of the same flow within a NetFlow packet into a single message"));
+            configuration.addField(new NumberField(CK_AGGREGATION_WINDOW, "Flow aggregation window (ms)", DEFAULT_AGGREGATION_WINDOW, "Maximum time between two records of the same flow which are merged", ConfigurationField.Optional.OPTIONAL));
             return configuration;
         }
     }
@@ -0,0 +1,108 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.netflow.codecs;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.graylog.plugins.netflow.flows.CorruptFlowPacketException;
+import org.graylog.plugins.netflow.templates.NetFlowV9TemplateReference;
+
+import java.util.Collection;
+
+/**
+ * A journal entry with NetFlow v9 packets of one exporter, which references the templates needed to parse the
+ * packets instead of containing them. The templates are resolved with a
+ * {@link org.graylog.plugins.netflow.templates.NetFlowV9TemplateStore} when decoding the entry.
+ * <p>
+ * Layout after the {@link NetFlowCodec#TEMPLATE_REFERENCE_V9_MARKER} byte (all values big-endian):
+ * <pre>
+ * source id           8 bytes
+ * reference count     2 bytes
+ *   template id       2 bytes
+ *   option template   1 byte
+ *   template hash     8 bytes
+ * packet count        4 bytes
+ *   packet length     4 bytes
+ *   packet            packet length bytes, as received from the exporter
+ * </pre>
+ */
+@AutoValue
+public abstract class NetFlowV9ReferenceEntry {
+    public abstract long sourceId();
+
+    public abstract ImmutableList<NetFlowV9TemplateReference> references();
+
+    public abstract ImmutableList<ByteBuf> packets();
+
+    public static NetFlowV9ReferenceEntry create(long sourceId, Collection<NetFlowV9TemplateReference> references, Collection<ByteBuf> packets) {
+        return new AutoValue_NetFlowV9ReferenceEntry(sourceId, ImmutableList.copyOf(references), ImmutableList.copyOf(packets));
+    }
+
+    /**
+     * Writes the entry including the marker byte.
+     */
+    public ByteBuf write() {
+        int size = 1 + 8 + 2 + references().size() * 11 + 4;
+        for (ByteBuf packet : packets()) {
+            size += 4 + packet.readableBytes();
+        }
+
+        final ByteBuf buffer = Unpooled.buffer(size)
+                .writeByte(NetFlowCodec.TEMPLATE_REFERENCE_V9_MARKER)
+                .writeLong(sourceId())
+                .writeShort(references().size());
+        for (NetFlowV9TemplateReference reference : references()) {
+            buffer.writeShort(reference.templateId())
+                    .writeBoolean(reference.optionTemplate())
+                    .writeLong(reference.hash());
+        }
+        buffer.writeInt(packets().size());
+        for (ByteBuf packet : packets()) {
+            buffer.writeInt(packet.readableBytes())
+                    .writeBytes(packet, packet.readerIndex(), packet.readableBytes());
+        }
+        return buffer;
+    }
+
+    /**
+     * Reads an entry from the buffer, which must be positioned after the marker byte. The packets are slices of the
+     * given buffer.
+     */
+    public static NetFlowV9ReferenceEntry read(ByteBuf buffer) {
+        try {
+            final long sourceId = buffer.readLong();
+            final int referenceCount = buffer.readUnsignedShort();
+            final ImmutableList.Builder<NetFlowV9TemplateReference> references = ImmutableList.builder();
+            for (int i = 0; i < referenceCount; i++) {
+                final int templateId = buffer.readUnsignedShort();
+                final boolean optionTemplate = buffer.readBoolean();
+                references.add(NetFlowV9TemplateReference.create(templateId, optionTemplate, buffer.readLong()));
+            }
+
+            final int packetCount = buffer.readInt();
+            final ImmutableList.Builder<ByteBuf> packets = ImmutableList.builder();
+            for (int i = 0; i < packetCount; i++) {
+                packets.add(buffer.readSlice(buffer.readInt()));
+            }
+            return new AutoValue_NetFlowV9ReferenceEntry(sourceId, references.build(), packets.build());
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new CorruptFlowPacketException("Invalid NetFlow v9 journal entry");
+        }
+    }
+}
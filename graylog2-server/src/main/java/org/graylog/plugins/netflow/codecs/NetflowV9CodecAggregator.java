@@ -20,11 +20,11 @@ import com.github.joschi.jadconfig.util.Size;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalListener;
-import com.google.protobuf.ByteString;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufUtil;
 import io.netty.buffer.Unpooled;
-import org.graylog.plugins.netflow.v9.NetFlowV9Journal;
+import org.graylog.plugins.netflow.templates.NetFlowV9TemplateReference;
+import org.graylog.plugins.netflow.templates.NetFlowV9TemplateStore;
 import org.graylog.plugins.netflow.v9.NetFlowV9Parser;
 import org.graylog.plugins.netflow.v9.RawNetFlowV9Packet;
 import org.graylog2.shared.utilities.ExceptionUtils;
@@ -45,20 +45,22 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
- * For Netflow v9 packets we want to prepend the corresponding flow template.
+ * For Netflow v9 packets we want to reference the corresponding flow templates.
  * If we don't have that template yet, we consider the flow packet to be incomplete and continue to wait for the template.
- * TODO consider sharing seen templates between nodes in the cluster to minimize wait time
+ * The templates themselves are kept in the {@link NetFlowV9TemplateStore}, which is shared between the nodes.
  */
 public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
     private static final Logger LOG = LoggerFactory.getLogger(NetflowV9CodecAggregator.class);
 
     private static final ByteBuf PASSTHROUGH_MARKER = Unpooled.wrappedBuffer(new byte[]{NetFlowCodec.PASSTHROUGH_MARKER});
 
-    private final Cache<TemplateKey, TemplateBytes> templateCache;
+    private final NetFlowV9TemplateStore templateStore;
+    private final Cache<TemplateKey, NetFlowV9TemplateReference> templateCache;
     private final Cache<TemplateKey, Queue<PacketBytes>> packetCache;
 
     @Inject
-    public NetflowV9CodecAggregator() {
+    public NetflowV9CodecAggregator(NetFlowV9TemplateStore templateStore) {
+        this.templateStore = templateStore;
         // TODO customize
         this.templateCache = CacheBuilder.newBuilder()
                 .maximumSize(5000)
@@ -96,11 +98,13 @@ public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
             // since we do not want to do that again in the codec, we will violate the RFC when putting together
             // the packets again:
             // the codec can, contrary to https://tools.ietf.org/html/rfc3954#section-9, assume that for each packet/RawMessage
-            // the packet contains all necessary templates. This greatly simplifies parsing at the expense of larger RawMessages.
+            // the template store contains all necessary templates. The RawMessage only references them by their hash,
+            // so the templates are only persisted once instead of being repeated in every journal entry.
 
             // The rest of the code works as follows:
             // We shallowly parse the incoming packet, extracting all flows into ByteBufs.
-            // We then cache the raw bytes for template flows, keyed by remote ip and source id. These are used to reassemble the packet for the journal later.
+            // We then store the raw bytes for template flows, keyed by remote ip, source id and hash, and remember the
+            // current template reference for each template id. These are written to the journal entry later.
             // For each netflow v9 packet that we do not have a matching template for yet, we put it into a queue.
             // Once the template flow arrives we go back through the queue and remove now matching packets for further processing.
             if (LOG.isTraceEnabled()) {
@@ -108,6 +112,7 @@ public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
             }
             final RawNetFlowV9Packet rawNetFlowV9Packet = NetFlowV9Parser.parsePacketShallow(buf);
             final long sourceId = rawNetFlowV9Packet.header().sourceId();
+            final String exporter = NetFlowV9TemplateStore.exporterId(remoteAddress);
 
             LOG.trace("Incoming NetFlow V9 packet contains: {}", rawNetFlowV9Packet);
 
@@ -117,8 +122,9 @@ public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
                 final byte[] bytes = template.getValue();
 
                 final TemplateKey templateKey = new TemplateKey(remoteAddress, sourceId, templateId);
-                final TemplateBytes templateBytes = new TemplateBytes(bytes, false);
-                templateCache.put(templateKey, templateBytes);
+                final NetFlowV9TemplateReference reference = NetFlowV9TemplateReference.forTemplate(templateId, false, bytes);
+                templateStore.save(exporter, sourceId, reference, bytes);
+                templateCache.put(templateKey, reference);
             }
 
             final Map.Entry<Integer, byte[]> optionTemplate = rawNetFlowV9Packet.optionTemplate();
@@ -127,9 +133,9 @@ public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
                 final byte[] bytes = optionTemplate.getValue();
 
                 final TemplateKey templateKey = new TemplateKey(remoteAddress, sourceId, templateId);
-                final TemplateBytes templateBytes = new TemplateBytes(bytes, true);
-
-                templateCache.put(templateKey, templateBytes);
+                final NetFlowV9TemplateReference reference = NetFlowV9TemplateReference.forTemplate(templateId, true, bytes);
+                templateStore.save(exporter, sourceId, reference, bytes);
+                templateCache.put(templateKey, reference);
             }
 
             // this list of flows to return in the result
@@ -179,7 +185,7 @@ public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
             bufferedTemplateIds.addAll(rawNetFlowV9Packet.usedTemplates());
             for (int templateId : bufferedTemplateIds) {
                 final TemplateKey templateKey = new TemplateKey(remoteAddress, sourceId, templateId);
-                final TemplateBytes template = templateCache.getIfPresent(templateKey);
+                final NetFlowV9TemplateReference template = templateCache.getIfPresent(templateKey);
 
                 if (template == null) {
                     // we don't have the template, this packet needs to be buffered until we receive the templates
@@ -196,7 +202,7 @@ public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
                     // include the template in our result
                     templates.add(templateKey);
 
-                    // .slice is enough here, because we convert it into a byte array when creating the result below
+                    // .slice is enough here, because we copy it into the result buffer below
                     // no need to copy or retain anything, the buffer only lives as long as this method's scope
                     final ByteBuf packet = buf.slice();
                     packetsToSend.add(packet);
@@ -213,34 +219,20 @@ public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
                 return new Result(null, true);
             }
 
-            // add the used templates and option template to the journal message builder
-            final NetFlowV9Journal.RawNetflowV9.Builder builder = NetFlowV9Journal.RawNetflowV9.newBuilder();
+            // reference the used templates and option template in the journal entry
+            final List<NetFlowV9TemplateReference> references = new ArrayList<>(templates.size());
             for (TemplateKey templateKey : templates) {
-                final TemplateBytes templateBytes = templateCache.getIfPresent(templateKey);
-                if (templateBytes == null) {
+                final NetFlowV9TemplateReference reference = templateCache.getIfPresent(templateKey);
+                if (reference == null) {
                     LOG.warn("Template {} expired while processing, discarding netflow packet", templateKey);
-                } else if (templateBytes.isOptionTemplate()) {
-                    LOG.debug("Writing options template flow {}", templateKey);
-                    final byte[] bytes = templateBytes.getBytes();
-                    builder.putOptionTemplate(1, ByteString.copyFrom(bytes));
                 } else {
-                    LOG.debug("Writing template {}", templateKey);
-                    final byte[] bytes = templateBytes.getBytes();
-                    builder.putTemplates(templateKey.getTemplateId(), ByteString.copyFrom(bytes));
+                    LOG.debug("Referencing template {} as {}", templateKey, reference);
+                    references.add(reference);
                 }
             }
 
             // finally write out all the packets we had buffered as well as the current one
-            for (ByteBuf packetBuffer : packetsToSend) {
-                final byte[] bytes = ByteBufUtil.getBytes(packetBuffer);
-                final ByteString value = ByteString.copyFrom(bytes);
-                builder.addPackets(value);
-            }
-
-            final byte[] bytes = builder.build().toByteArray();
-            final ByteBuf resultBuffer = Unpooled.buffer(bytes.length + 1)
-                    .writeByte(NetFlowCodec.ORDERED_V9_MARKER)
-                    .writeBytes(bytes);
+            final ByteBuf resultBuffer = NetFlowV9ReferenceEntry.create(sourceId, references, packetsToSend).write();
             return new Result(resultBuffer, true);
 
         } catch (Exception e) {
@@ -249,24 +241,6 @@ public class NetflowV9CodecAggregator implements RemoteAddressCodecAggregator {
         }
     }
 
-    private static class TemplateBytes {
-        private final byte[] bytes;
-        private final boolean optionTemplate;
-
-        public TemplateBytes(byte[] bytes, boolean optionTemplate) {
-            this.bytes = bytes;
-            this.optionTemplate = optionTemplate;
-        }
-
-        public byte[] getBytes() {
-            return bytes;
-        }
-
-        public boolean isOptionTemplate() {
-            return optionTemplate;
-        }
-    }
-
     public static class PacketBytes {
         private final byte[] bytes;
         private final Set<Integer> usedTemplates;
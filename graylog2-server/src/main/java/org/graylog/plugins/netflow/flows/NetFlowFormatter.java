@@ -58,6 +58,7 @@ public class NetFlowFormatter {
     private static final String MF_PKTS = "nf_pkts";
     private static final String MF_SNMP_INPUT = "nf_snmp_input";
     private static final String MF_SNMP_OUTPUT = "nf_snmp_output";
+    private static final String MF_FLOW_COUNT = "nf_flow_count";
 
     private static String toMessageString(NetFlowV5Record record) {
         return String.format(Locale.ROOT, "NetFlowV5 [%s]:%d <> [%s]:%d proto:%d pkts:%d bytes:%d",
@@ -127,6 +128,9 @@ public class NetFlowFormatter {
         message.addField(MF_PKTS, record.packetCount());
         message.addField(MF_SNMP_INPUT, record.inputIface());
         message.addField(MF_SNMP_OUTPUT, record.outputIface());
+        if (record.flowCount() > 1) {
+            message.addField(MF_FLOW_COUNT, record.flowCount());
+        }
 
         return message;
     }
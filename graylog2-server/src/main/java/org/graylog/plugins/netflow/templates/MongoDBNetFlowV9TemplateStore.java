@@ -0,0 +1,212 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.netflow.templates;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.DuplicateKeyException;
+import com.mongodb.MongoException;
+import org.graylog2.database.MongoConnection;
+import org.joda.time.DateTimeUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.util.Date;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Stores NetFlow v9 templates in MongoDB, so they are shared by all nodes and survive restarts with a filled journal.
+ * <p>
+ * Exporters resend their templates every few seconds, so templates are kept in a local cache and only written to
+ * the database if they are new or their last write is older than {@link #TOUCH_INTERVAL_MILLIS}. Templates which
+ * haven't been received for {@link #EXPIRE_AFTER_DAYS} days are removed by MongoDB.
+ * <p>
+ * Templates are saved on the network threads of the NetFlow inputs, so they are written by a separate thread and a
+ * failed write is only retried after {@link #RETRY_INTERVAL_MILLIS}.
+ */
+@Singleton
+public class MongoDBNetFlowV9TemplateStore implements NetFlowV9TemplateStore {
+    private static final Logger LOG = LoggerFactory.getLogger(MongoDBNetFlowV9TemplateStore.class);
+
+    @VisibleForTesting
+    static final String COLLECTION_NAME = "netflow_v9_templates";
+    static final String FIELD_EXPORTER = "exporter";
+    static final String FIELD_SOURCE_ID = "source_id";
+    static final String FIELD_TEMPLATE_ID = "template_id";
+    static final String FIELD_OPTION_TEMPLATE = "option_template";
+    static final String FIELD_HASH = "hash";
+    static final String FIELD_TEMPLATE = "template";
+    static final String FIELD_LAST_SEEN = "last_seen";
+
+    private static final long TOUCH_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long RETRY_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long EXPIRE_AFTER_DAYS = 7;
+
+    private final DBCollection collection;
+    private final Executor writeExecutor;
+    private final Cache<Key, Entry> cache = CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .build();
+
+    @Inject
+    public MongoDBNetFlowV9TemplateStore(MongoConnection mongoConnection) {
+        this(mongoConnection, Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("netflow-template-store-%d")
+                .setDaemon(true)
+                .build()));
+    }
+
+    @VisibleForTesting
+    MongoDBNetFlowV9TemplateStore(MongoConnection mongoConnection, Executor writeExecutor) {
+        this.collection = mongoConnection.getDatabase().getCollection(COLLECTION_NAME);
+        this.writeExecutor = writeExecutor;
+
+        final BasicDBObject keyIndex = new BasicDBObject(FIELD_EXPORTER, 1)
+                .append(FIELD_SOURCE_ID, 1)
+                .append(FIELD_TEMPLATE_ID, 1)
+                .append(FIELD_OPTION_TEMPLATE, 1)
+                .append(FIELD_HASH, 1);
+        collection.createIndex(keyIndex, new BasicDBObject("unique", true));
+        collection.createIndex(new BasicDBObject(FIELD_LAST_SEEN, 1),
+                new BasicDBObject("expireAfterSeconds", TimeUnit.DAYS.toSeconds(EXPIRE_AFTER_DAYS)));
+    }
+
+    @Override
+    public void save(String exporter, long sourceId, NetFlowV9TemplateReference reference, byte[] template) {
+        final Key key = new Key(exporter, sourceId, reference);
+        final long now = DateTimeUtils.currentTimeMillis();
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null) {
+            // Keep the template locally even if writing it fails, so this node can still decode its own journal
+            entry = new Entry(template, 0L);
+            cache.put(key, entry);
+        } else if (now - entry.persisted < TOUCH_INTERVAL_MILLIS || now - entry.failed < RETRY_INTERVAL_MILLIS) {
+            return;
+        }
+        if (!entry.writing.compareAndSet(false, true)) {
+            return;
+        }
+
+        final Entry writtenEntry = entry;
+        try {
+            writeExecutor.execute(() -> write(key, writtenEntry, now));
+        } catch (RejectedExecutionException e) {
+            writtenEntry.writing.set(false);
+            LOG.warn("Couldn't store NetFlow v9 template {} of exporter {}/{}: {}",
+                    reference.templateId(), exporter, sourceId, e.getMessage());
+        }
+    }
+
+    private void write(Key key, Entry entry, long now) {
+        try {
+            final DBObject update = new BasicDBObject("$set", new BasicDBObject(FIELD_TEMPLATE, entry.template)
+                    .append(FIELD_LAST_SEEN, new Date(now)));
+            collection.update(query(key), update, true, false);
+            entry.persisted = now;
+        } catch (DuplicateKeyException e) {
+            // Another node inserted the same template concurrently
+            entry.persisted = now;
+        } catch (MongoException e) {
+            entry.failed = DateTimeUtils.currentTimeMillis();
+            LOG.warn("Couldn't store NetFlow v9 template {} of exporter {}/{}, retrying in {} seconds: {}",
+                    key.reference.templateId(), key.exporter, key.sourceId,
+                    TimeUnit.MILLISECONDS.toSeconds(RETRY_INTERVAL_MILLIS), e.getMessage());
+            LOG.debug("Storing NetFlow v9 template failed", e);
+        } finally {
+            entry.writing.set(false);
+        }
+    }
+
+    @Nullable
+    @Override
+    public byte[] load(String exporter, long sourceId, NetFlowV9TemplateReference reference) {
+        final Key key = new Key(exporter, sourceId, reference);
+        final Entry entry = cache.getIfPresent(key);
+        if (entry != null) {
+            return entry.template;
+        }
+
+        final DBObject document = collection.findOne(query(key));
+        if (document == null) {
+            return null;
+        }
+        final byte[] template = (byte[]) document.get(FIELD_TEMPLATE);
+        final Date lastSeen = (Date) document.get(FIELD_LAST_SEEN);
+        cache.put(key, new Entry(template, lastSeen == null ? 0L : lastSeen.getTime()));
+        return template;
+    }
+
+    private static DBObject query(Key key) {
+        return new BasicDBObject(FIELD_EXPORTER, key.exporter)
+                .append(FIELD_SOURCE_ID, key.sourceId)
+                .append(FIELD_TEMPLATE_ID, key.reference.templateId())
+                .append(FIELD_OPTION_TEMPLATE, key.reference.optionTemplate())
+                .append(FIELD_HASH, key.reference.hash());
+    }
+
+    private static class Key {
+        private final String exporter;
+        private final long sourceId;
+        private final NetFlowV9TemplateReference reference;
+
+        Key(String exporter, long sourceId, NetFlowV9TemplateReference reference) {
+            this.exporter = exporter;
+            this.sourceId = sourceId;
+            this.reference = reference;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final Key that = (Key) o;
+            return sourceId == that.sourceId &&
+                    Objects.equals(exporter, that.exporter) &&
+                    Objects.equals(reference, that.reference);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(exporter, sourceId, reference);
+        }
+    }
+
+    private static class Entry {
+        private final byte[] template;
+        private final AtomicBoolean writing = new AtomicBoolean();
+        private volatile long persisted;
+        private volatile long failed;
+
+        Entry(byte[] template, long persisted) {
+            this.template = template;
+            this.persisted = persisted;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.netflow.templates;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.hash.Hashing;
+
+/**
+ * References a single template flow of an exporter by its template id and a hash of its contents.
+ * <p>
+ * Exporters may redefine a template id at any time, so the hash is needed to find the template definition which was
+ * valid when a data flow was received. Because the reference only depends on the template itself, every node of a
+ * cluster computes the same reference for the same template.
+ */
+@AutoValue
+public abstract class NetFlowV9TemplateReference {
+    public abstract int templateId();
+
+    public abstract boolean optionTemplate();
+
+    public abstract long hash();
+
+    public static NetFlowV9TemplateReference create(int templateId, boolean optionTemplate, long hash) {
+        return new AutoValue_NetFlowV9TemplateReference(templateId, optionTemplate, hash);
+    }
+
+    public static NetFlowV9TemplateReference forTemplate(int templateId, boolean optionTemplate, byte[] template) {
+        return create(templateId, optionTemplate, Hashing.murmur3_128().hashBytes(template).asLong());
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.netflow.templates;
+
+import com.google.common.net.InetAddresses;
+
+import javax.annotation.Nullable;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * Stores the raw template flows of NetFlow v9 exporters, so journal entries only need to contain a
+ * {@link NetFlowV9TemplateReference} instead of the templates themselves.
+ * <p>
+ * Exporters are identified by their IP address and the source id of their packets.
+ */
+public interface NetFlowV9TemplateStore {
+    /**
+     * Stores the template, if the store doesn't contain it yet.
+     *
+     * @param exporter  the exporter id, see {@link #exporterId(SocketAddress)}
+     * @param sourceId  the source id of the packet containing the template
+     * @param reference the reference of the template
+     * @param template  the raw template flow
+     */
+    void save(String exporter, long sourceId, NetFlowV9TemplateReference reference, byte[] template);
+
+    /**
+     * Returns the raw template flow for the given reference.
+     *
+     * @return the raw template flow or {@code null} if the store doesn't contain the template (anymore)
+     */
+    @Nullable
+    byte[] load(String exporter, long sourceId, NetFlowV9TemplateReference reference);
+
+    static String exporterId(SocketAddress remoteAddress) {
+        if (remoteAddress instanceof InetSocketAddress && ((InetSocketAddress) remoteAddress).getAddress() != null) {
+            return InetAddresses.toAddrString(((InetSocketAddress) remoteAddress).getAddress());
+        }
+        return String.valueOf(remoteAddress);
+    }
+}
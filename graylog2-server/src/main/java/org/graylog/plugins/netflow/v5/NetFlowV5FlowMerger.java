@@ -0,0 +1,127 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.netflow.v5;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the records of a packet which only differ in their counters, timestamps and TCP flags, like the records of
+ * a long-lived connection which the exporter reports in several parts.
+ */
+public final class NetFlowV5FlowMerger {
+    private NetFlowV5FlowMerger() {
+    }
+
+    /**
+     * Merges records of the same flow whose time ranges are at most {@code windowMillis} apart.
+     * The packet and byte counts of merged records are summed up and the TCP flags are combined.
+     *
+     * @param records      the records of a single packet
+     * @param windowMillis the maximum gap between two records of the same flow
+     * @return the merged records, in the order of their first record
+     */
+    public static List<NetFlowV5Record> merge(List<NetFlowV5Record> records, long windowMillis) {
+        if (records.size() < 2) {
+            return records;
+        }
+
+        final List<Flow> flows = new ArrayList<>(records.size());
+        final Map<NetFlowV5Record, List<Flow>> flowsByKey = new HashMap<>();
+        for (NetFlowV5Record record : records) {
+            // Records without timestamps can't be assigned to a time window
+            if (record.first() == 0 || record.last() == 0) {
+                flows.add(new Flow(record));
+                continue;
+            }
+
+            final List<Flow> candidates = flowsByKey.computeIfAbsent(key(record), k -> new ArrayList<>(1));
+            Flow flow = null;
+            for (Flow candidate : candidates) {
+                if (candidate.overlaps(record, windowMillis)) {
+                    flow = candidate;
+                    break;
+                }
+            }
+            if (flow == null) {
+                flow = new Flow(record);
+                candidates.add(flow);
+                flows.add(flow);
+            } else {
+                flow.add(record);
+            }
+        }
+
+        if (flows.size() == records.size()) {
+            return records;
+        }
+        final List<NetFlowV5Record> merged = new ArrayList<>(flows.size());
+        for (Flow flow : flows) {
+            merged.add(flow.toRecord());
+        }
+        return merged;
+    }
+
+    private static NetFlowV5Record key(NetFlowV5Record r) {
+        return NetFlowV5Record.create(r.srcAddr(), r.dstAddr(), r.nextHop(), r.inputIface(), r.outputIface(), 0L, 0L, 0L, 0L,
+                r.srcPort(), r.dstPort(), (short) 0, r.protocol(), r.tos(), r.srcAs(), r.dstAs(), r.srcMask(), r.dstMask());
+    }
+
+    private static class Flow {
+        private final NetFlowV5Record record;
+        private long packetCount;
+        private long octetCount;
+        private long first;
+        private long last;
+        private short tcpFlags;
+        private int flowCount;
+
+        Flow(NetFlowV5Record record) {
+            this.record = record;
+            this.packetCount = record.packetCount();
+            this.octetCount = record.octetCount();
+            this.first = record.first();
+            this.last = record.last();
+            this.tcpFlags = record.tcpFlags();
+            this.flowCount = record.flowCount();
+        }
+
+        boolean overlaps(NetFlowV5Record other, long windowMillis) {
+            return other.first() <= last + windowMillis && first <= other.last() + windowMillis;
+        }
+
+        void add(NetFlowV5Record other) {
+            packetCount += other.packetCount();
+            octetCount += other.octetCount();
+            first = Math.min(first, other.first());
+            last = Math.max(last, other.last());
+            tcpFlags |= other.tcpFlags();
+            flowCount += other.flowCount();
+        }
+
+        NetFlowV5Record toRecord() {
+            if (flowCount == record.flowCount()) {
+                return record;
+            }
+            return NetFlowV5Record.create(record.srcAddr(), record.dstAddr(), record.nextHop(), record.inputIface(), record.outputIface(),
+                    packetCount, octetCount, first, last, record.srcPort(), record.dstPort(), tcpFlags, record.protocol(), record.tos(),
+                    record.srcAs(), record.dstAs(), record.srcMask(), record.dstMask(), flowCount);
+        }
+    }
+}
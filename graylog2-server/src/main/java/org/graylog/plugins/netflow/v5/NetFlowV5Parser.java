@@ -40,7 +40,7 @@ public class NetFlowV5Parser {
         final ImmutableList.Builder<NetFlowV5Record> records = ImmutableList.builder();
         int offset = HEADER_LENGTH;
         for (int i = 0; i < header.count(); i++) {
-            records.add(parseRecord(bb.slice(offset + bb.readerIndex(), RECORD_LENGTH)));
+            records.add(parseRecord(bb, offset + bb.readerIndex()));
             offset += RECORD_LENGTH;
         }
 
@@ -118,26 +118,26 @@ public class NetFlowV5Parser {
      * | 46-47 | pad2      | Unused (zero) bytes                                                |
      * </pre>
      */
-    private static NetFlowV5Record parseRecord(ByteBuf bb) {
-        final InetAddress srcAddr = ByteBufUtils.readInetAddress(bb);
-        final InetAddress dstAddr = ByteBufUtils.readInetAddress(bb);
-        final InetAddress nextHop = ByteBufUtils.readInetAddress(bb);
-        final int inputIface = bb.readUnsignedShort();
-        final int outputIface = bb.readUnsignedShort();
-        final long packetCount = bb.readUnsignedInt();
-        final long octetCount = bb.readUnsignedInt();
-        final long first = bb.readUnsignedInt();
-        final long last = bb.readUnsignedInt();
-        final int srcPort = bb.readUnsignedShort();
-        final int dstPort = bb.readUnsignedShort();
-        bb.readByte(); // unused pad1
-        final short tcpFlags = bb.readUnsignedByte();
-        final short protocol = bb.readUnsignedByte();
-        final short tos = bb.readUnsignedByte();
-        final int srcAs = bb.readUnsignedShort();
-        final int dstAs = bb.readUnsignedShort();
-        final short srcMask = bb.readUnsignedByte();
-        final short dstMask = bb.readUnsignedByte();
+    private static NetFlowV5Record parseRecord(ByteBuf bb, int index) {
+        final InetAddress srcAddr = ByteBufUtils.getInetAddress(bb, index, 4);
+        final InetAddress dstAddr = ByteBufUtils.getInetAddress(bb, index + 4, 4);
+        final InetAddress nextHop = ByteBufUtils.getInetAddress(bb, index + 8, 4);
+        final int inputIface = bb.getUnsignedShort(index + 12);
+        final int outputIface = bb.getUnsignedShort(index + 14);
+        final long packetCount = bb.getUnsignedInt(index + 16);
+        final long octetCount = bb.getUnsignedInt(index + 20);
+        final long first = bb.getUnsignedInt(index + 24);
+        final long last = bb.getUnsignedInt(index + 28);
+        final int srcPort = bb.getUnsignedShort(index + 32);
+        final int dstPort = bb.getUnsignedShort(index + 34);
+        // byte 36 is the unused pad1
+        final short tcpFlags = bb.getUnsignedByte(index + 37);
+        final short protocol = bb.getUnsignedByte(index + 38);
+        final short tos = bb.getUnsignedByte(index + 39);
+        final int srcAs = bb.getUnsignedShort(index + 40);
+        final int dstAs = bb.getUnsignedShort(index + 42);
+        final short srcMask = bb.getUnsignedByte(index + 44);
+        final short dstMask = bb.getUnsignedByte(index + 45);
 
         return NetFlowV5Record.create(srcAddr, dstAddr, nextHop, inputIface, outputIface, packetCount, octetCount, first, last, srcPort, dstPort, tcpFlags, protocol, tos, srcAs, dstAs, srcMask, dstMask);
     }
@@ -77,6 +77,9 @@ public abstract class NetFlowV5Record {
     // bytes 45
     public abstract short dstMask();
 
+    // number of exported flows which were merged into this record
+    public abstract int flowCount();
+
     static NetFlowV5Record create(InetAddress srcAddr,
                                   InetAddress dstAddr,
                                   InetAddress nextHop,
@@ -95,7 +98,28 @@ public abstract class NetFlowV5Record {
                                   int dstAs,
                                   short srcMask,
                                   short dstMask) {
-        return new AutoValue_NetFlowV5Record(srcAddr, dstAddr, nextHop, inputIface, outputIface, packetCount, octetCount, first, last, srcPort, dstPort, tcpFlags, protocol, tos, srcAs, dstAs, srcMask, dstMask
-        );
+        return create(srcAddr, dstAddr, nextHop, inputIface, outputIface, packetCount, octetCount, first, last, srcPort, dstPort, tcpFlags, protocol, tos, srcAs, dstAs, srcMask, dstMask, 1);
+    }
+
+    static NetFlowV5Record create(InetAddress srcAddr,
+                                  InetAddress dstAddr,
+                                  InetAddress nextHop,
+                                  int inputIface,
+                                  int outputIface,
+                                  long packetCount,
+                                  long octetCount,
+                                  long first,
+                                  long last,
+                                  int srcPort,
+                                  int dstPort,
+                                  short tcpFlags,
+                                  short protocol,
+                                  short tos,
+                                  int srcAs,
+                                  int dstAs,
+                                  short srcMask,
+                                  short dstMask,
+                                  int flowCount) {
+        return new AutoValue_NetFlowV5Record(srcAddr, dstAddr, nextHop, inputIface, outputIface, packetCount, octetCount, first, last, srcPort, dstPort, tcpFlags, protocol, tos, srcAs, dstAs, srcMask, dstMask, flowCount);
     }
 }
@@ -0,0 +1,171 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.netflow.v9;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the data records of a packet which only differ in their counters, timestamps and TCP flags, like the records
+ * of a long-lived connection which the exporter reports in several parts. Merged records get a {@code flow_count}
+ * field with the number of records they replace.
+ */
+public final class NetFlowV9FlowMerger {
+    public static final String FLOW_COUNT = "flow_count";
+
+    private static final String FIRST_SWITCHED = "first_switched";
+    private static final String LAST_SWITCHED = "last_switched";
+    private static final String TCP_FLAGS = "tcp_flags";
+    private static final ImmutableSet<String> COUNTERS = ImmutableSet.of("in_bytes", "in_pkts", "out_bytes", "out_pkts");
+    private static final ImmutableSet<String> MERGED_FIELDS = ImmutableSet.<String>builder()
+            .addAll(COUNTERS)
+            .add(FIRST_SWITCHED, LAST_SWITCHED, TCP_FLAGS)
+            .build();
+    // replaces the values of the merged fields in the flow key, so only records with the same fields are merged
+    private static final Object PRESENT = new Object();
+
+    private NetFlowV9FlowMerger() {
+    }
+
+    /**
+     * Merges data records of the same flow whose time ranges are at most {@code windowMillis} apart.
+     * The packet and byte counters of merged records are summed up and the TCP flags are combined.
+     * Option records and records without a protocol or timestamps are passed on as they are.
+     *
+     * @param records      the records of a single packet
+     * @param windowMillis the maximum gap between two records of the same flow
+     * @return the merged records, in the order of their first record
+     */
+    public static List<NetFlowV9BaseRecord> merge(List<NetFlowV9BaseRecord> records, long windowMillis) {
+        if (records.size() < 2) {
+            return records;
+        }
+
+        final List<Flow> flows = new ArrayList<>(records.size());
+        final Map<Map<String, Object>, List<Flow>> flowsByKey = new HashMap<>();
+        for (NetFlowV9BaseRecord record : records) {
+            if (!isMergeable(record)) {
+                flows.add(new Flow(record));
+                continue;
+            }
+
+            final List<Flow> candidates = flowsByKey.computeIfAbsent(key(record.fields()), k -> new ArrayList<>(1));
+            Flow flow = null;
+            for (Flow candidate : candidates) {
+                if (candidate.overlaps(record.fields(), windowMillis)) {
+                    flow = candidate;
+                    break;
+                }
+            }
+            if (flow == null) {
+                flow = new Flow(record);
+                candidates.add(flow);
+                flows.add(flow);
+            } else {
+                flow.add(record.fields());
+            }
+        }
+
+        if (flows.size() == records.size()) {
+            return records;
+        }
+        final List<NetFlowV9BaseRecord> merged = new ArrayList<>(flows.size());
+        for (Flow flow : flows) {
+            merged.add(flow.toRecord());
+        }
+        return merged;
+    }
+
+    private static boolean isMergeable(NetFlowV9BaseRecord record) {
+        if (!(record instanceof NetFlowV9Record)) {
+            return false;
+        }
+        final Map<String, Object> fields = record.fields();
+        if (fields.get("protocol") == null || !isTimestamp(fields.get(FIRST_SWITCHED)) || !isTimestamp(fields.get(LAST_SWITCHED))) {
+            return false;
+        }
+        for (String counter : COUNTERS) {
+            final Object value = fields.get(counter);
+            if (value != null && !(value instanceof Long)) {
+                return false;
+            }
+        }
+        final Object tcpFlags = fields.get(TCP_FLAGS);
+        return (tcpFlags == null || tcpFlags instanceof Short) && !fields.containsKey(FLOW_COUNT);
+    }
+
+    private static boolean isTimestamp(Object value) {
+        return value instanceof Long && (Long) value > 0;
+    }
+
+    private static Map<String, Object> key(Map<String, Object> fields) {
+        final Map<String, Object> key = new HashMap<>(fields.size() * 2);
+        fields.forEach((name, value) -> key.put(name, MERGED_FIELDS.contains(name) ? PRESENT : value));
+        return key;
+    }
+
+    private static class Flow {
+        private final NetFlowV9BaseRecord record;
+        private final Map<String, Object> mergedFields = new HashMap<>();
+        private int flowCount = 1;
+
+        Flow(NetFlowV9BaseRecord record) {
+            this.record = record;
+        }
+
+        private Object get(String name) {
+            final Object merged = mergedFields.get(name);
+            return merged != null ? merged : record.fields().get(name);
+        }
+
+        boolean overlaps(Map<String, Object> fields, long windowMillis) {
+            return (long) fields.get(FIRST_SWITCHED) <= (long) get(LAST_SWITCHED) + windowMillis
+                    && (long) get(FIRST_SWITCHED) <= (long) fields.get(LAST_SWITCHED) + windowMillis;
+        }
+
+        void add(Map<String, Object> fields) {
+            for (String counter : COUNTERS) {
+                final Object value = fields.get(counter);
+                if (value != null) {
+                    mergedFields.put(counter, (long) get(counter) + (long) value);
+                }
+            }
+            mergedFields.put(FIRST_SWITCHED, Math.min((long) get(FIRST_SWITCHED), (long) fields.get(FIRST_SWITCHED)));
+            mergedFields.put(LAST_SWITCHED, Math.max((long) get(LAST_SWITCHED), (long) fields.get(LAST_SWITCHED)));
+            final Object tcpFlags = fields.get(TCP_FLAGS);
+            if (tcpFlags != null) {
+                mergedFields.put(TCP_FLAGS, (short) ((short) get(TCP_FLAGS) | (short) tcpFlags));
+            }
+            flowCount++;
+        }
+
+        NetFlowV9BaseRecord toRecord() {
+            if (flowCount == 1) {
+                return record;
+            }
+            final ImmutableMap.Builder<String, Object> fields = ImmutableMap.builderWithExpectedSize(record.fields().size() + 1);
+            record.fields().forEach((name, value) -> fields.put(name, mergedFields.getOrDefault(name, value)));
+            fields.put(FLOW_COUNT, flowCount);
+            return NetFlowV9Record.create(fields.build());
+        }
+    }
+}
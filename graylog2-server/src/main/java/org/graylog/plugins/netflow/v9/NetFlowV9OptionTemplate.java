@@ -17,6 +17,7 @@
 package org.graylog.plugins.netflow.v9;
 
 import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
 import com.google.common.collect.ImmutableList;
 
 import java.util.List;
@@ -34,4 +35,9 @@ public abstract class NetFlowV9OptionTemplate {
                                                  List<NetFlowV9FieldDef> optionDefs) {
         return new AutoValue_NetFlowV9OptionTemplate(templateId, ImmutableList.copyOf(scopeDefs), ImmutableList.copyOf(optionDefs));
     }
+
+    @Memoized
+    NetFlowV9RecordDecoder recordDecoder() {
+        return NetFlowV9RecordDecoder.forOptionTemplate(this);
+    }
 }
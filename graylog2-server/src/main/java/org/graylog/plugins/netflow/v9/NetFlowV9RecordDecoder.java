@@ -0,0 +1,266 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.netflow.v9;
+
+import com.google.common.collect.ImmutableMap;
+import io.netty.buffer.ByteBuf;
+
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import static com.google.common.base.Strings.emptyToNull;
+
+/**
+ * Decodes the data records of a single (option) template.
+ * <p>
+ * The field keys, value types and record offsets only depend on the template, so they are computed once when the
+ * template is parsed instead of for every field of every record. Fields are read with absolute {@link ByteBuf} reads
+ * from the precomputed offsets.
+ * <p>
+ * The decoded records are the same as those of {@link NetFlowV9FieldDef#parse(ByteBuf)}.
+ */
+final class NetFlowV9RecordDecoder {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final List<NetFlowV9FieldDef> defs;
+    private final List<NetFlowV9ScopeDef> scopeDefs;
+    private final boolean optionRecords;
+    private final String[] keys;
+    private final NetFlowV9FieldType.ValueType[] valueTypes;
+    private final int[] lengths;
+    private final int[] offsets;
+    private final int[] scopeTypes;
+    private final int[] scopeLengths;
+    private final int[] scopeOffsets;
+    // the size of a record according to the template, used to detect padding
+    private final int unitSize;
+    // the number of bytes actually read for a record, differs from the unit size for fields using the default length
+    private final int stride;
+
+    private NetFlowV9RecordDecoder(List<NetFlowV9FieldDef> defs, List<NetFlowV9ScopeDef> scopeDefs, boolean optionRecords) {
+        this.defs = defs;
+        this.scopeDefs = scopeDefs;
+        this.optionRecords = optionRecords;
+
+        final int fieldCount = defs.size();
+        this.keys = new String[fieldCount];
+        this.valueTypes = new NetFlowV9FieldType.ValueType[fieldCount];
+        this.lengths = new int[fieldCount];
+        this.offsets = new int[fieldCount];
+
+        int size = 0;
+        int offset = 0;
+        for (int i = 0; i < fieldCount; i++) {
+            final NetFlowV9FieldDef def = defs.get(i);
+            final NetFlowV9FieldType.ValueType valueType = def.type().valueType();
+            keys[i] = def.type().name().toLowerCase(Locale.ROOT);
+            valueTypes[i] = valueType;
+            lengths[i] = def.length() != 0 ? def.length() : valueType.getDefaultLength();
+            offsets[i] = offset;
+            size += def.length();
+            offset += consumedBytes(valueType, lengths[i]);
+        }
+
+        final int scopeCount = scopeDefs.size();
+        this.scopeTypes = new int[scopeCount];
+        this.scopeLengths = new int[scopeCount];
+        this.scopeOffsets = new int[scopeCount];
+        for (int i = 0; i < scopeCount; i++) {
+            final NetFlowV9ScopeDef def = scopeDefs.get(i);
+            scopeTypes[i] = def.type();
+            scopeLengths[i] = def.length();
+            scopeOffsets[i] = offset;
+            offset += def.length();
+        }
+
+        this.unitSize = size;
+        this.stride = offset;
+    }
+
+    static NetFlowV9RecordDecoder forTemplate(NetFlowV9Template template) {
+        return new NetFlowV9RecordDecoder(template.definitions(), Collections.emptyList(), false);
+    }
+
+    static NetFlowV9RecordDecoder forOptionTemplate(NetFlowV9OptionTemplate optionTemplate) {
+        return new NetFlowV9RecordDecoder(optionTemplate.optionDefs(), optionTemplate.scopeDefs(), true);
+    }
+
+    /**
+     * Decodes the records of a data flowset, starting at the reader index of the buffer.
+     *
+     * @param bb  the buffer, positioned at the first record of the flowset
+     * @param end the end of the flowset
+     * @return the decoded records
+     */
+    List<NetFlowV9BaseRecord> decode(ByteBuf bb, int end) {
+        final List<NetFlowV9BaseRecord> records = new ArrayList<>();
+        while (bb.readerIndex() < end && bb.readableBytes() >= unitSize) {
+            final int index = bb.readerIndex();
+            if (bb.readableBytes() >= stride) {
+                records.add(decodeRecord(bb, index));
+                bb.readerIndex(index + stride);
+            } else {
+                // Reads past the readable bytes, fail like the sequential reads would
+                records.add(readRecord(bb));
+            }
+            // This flowset cannot contain another record, treat as padding
+            if (end - bb.readerIndex() < unitSize || stride == 0) {
+                break;
+            }
+        }
+        return records;
+    }
+
+    private NetFlowV9BaseRecord decodeRecord(ByteBuf bb, int index) {
+        final ImmutableMap.Builder<String, Object> fields = ImmutableMap.builderWithExpectedSize(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            final Object value = getValue(bb, index + offsets[i], valueTypes[i], lengths[i]);
+            if (value != null) {
+                fields.put(keys[i], value);
+            }
+        }
+
+        if (!optionRecords) {
+            return NetFlowV9Record.create(fields.build());
+        }
+
+        final ImmutableMap.Builder<Integer, Object> scopes = ImmutableMap.builderWithExpectedSize(scopeTypes.length);
+        for (int i = 0; i < scopeTypes.length; i++) {
+            long l = 0;
+            for (int j = 0; j < scopeLengths[i]; j++) {
+                l <<= 8;
+                l |= bb.getUnsignedByte(index + scopeOffsets[i] + j);
+            }
+            scopes.put(scopeTypes[i], l);
+        }
+        return NetFlowV9OptionRecord.create(fields.build(), scopes.build());
+    }
+
+    private NetFlowV9BaseRecord readRecord(ByteBuf bb) {
+        final ImmutableMap.Builder<String, Object> fields = ImmutableMap.builder();
+        for (int i = 0; i < keys.length; i++) {
+            final Optional<Object> optValue = defs.get(i).parse(bb);
+            final String key = keys[i];
+            optValue.ifPresent(value -> fields.put(key, value));
+        }
+
+        if (!optionRecords) {
+            return NetFlowV9Record.create(fields.build());
+        }
+
+        final ImmutableMap.Builder<Integer, Object> scopes = ImmutableMap.builder();
+        for (NetFlowV9ScopeDef def : scopeDefs) {
+            long l = 0;
+            for (int i = 0; i < def.length(); i++) {
+                l <<= 8;
+                l |= bb.readUnsignedByte();
+            }
+            scopes.put(def.type(), l);
+        }
+        return NetFlowV9OptionRecord.create(fields.build(), scopes.build());
+    }
+
+    private static int consumedBytes(NetFlowV9FieldType.ValueType valueType, int length) {
+        switch (valueType) {
+            case UINT8:
+            case UINT16:
+            case UINT24:
+            case UINT32:
+            case UINT64:
+            case STRING:
+            case SKIP:
+                return length;
+            default:
+                return valueType.getDefaultLength();
+        }
+    }
+
+    private static Object getValue(ByteBuf bb, int index, NetFlowV9FieldType.ValueType valueType, int length) {
+        switch (valueType) {
+            case UINT8:
+            case UINT16:
+            case UINT24:
+            case UINT32:
+            case UINT64:
+                return getUnsignedNumber(bb, index, length);
+            case INT8:
+                return bb.getByte(index);
+            case INT16:
+                return bb.getShort(index);
+            case INT24:
+                return bb.getMedium(index);
+            case INT32:
+                return bb.getInt(index);
+            case INT64:
+                return bb.getLong(index);
+            case IPV4:
+                return bb.getUnsignedByte(index) + "." + bb.getUnsignedByte(index + 1) + "."
+                        + bb.getUnsignedByte(index + 2) + "." + bb.getUnsignedByte(index + 3);
+            case IPV6:
+                final byte[] address = new byte[16];
+                bb.getBytes(index, address);
+                try {
+                    return InetAddress.getByAddress(address).getHostAddress();
+                } catch (UnknownHostException e) {
+                    return null;
+                }
+            case MAC:
+                final char[] mac = new char[17];
+                for (int i = 0; i < 6; i++) {
+                    final int b = bb.getUnsignedByte(index + i);
+                    if (i > 0) {
+                        mac[i * 3 - 1] = ':';
+                    }
+                    mac[i * 3] = HEX[b >> 4];
+                    mac[i * 3 + 1] = HEX[b & 0x0f];
+                }
+                return new String(mac);
+            case STRING:
+                final byte[] string = new byte[length];
+                bb.getBytes(index, string);
+                return emptyToNull(new String(string, StandardCharsets.UTF_8).trim());
+            default:
+                return null;
+        }
+    }
+
+    private static Object getUnsignedNumber(ByteBuf bb, int index, int length) {
+        switch (length) {
+            case 1:
+                return bb.getUnsignedByte(index);
+            case 2:
+                return bb.getUnsignedShort(index);
+            case 3:
+                return bb.getUnsignedMedium(index);
+            case 4:
+                return bb.getUnsignedInt(index);
+            case 8:
+                return bb.getLong(index);
+            default:
+                final byte[] bytes = new byte[length];
+                bb.getBytes(index, bytes);
+                return new BigInteger(bytes);
+        }
+    }
+}
@@ -20,6 +20,7 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.auto.value.AutoValue;
+import com.google.auto.value.extension.memoized.Memoized;
 import com.google.common.collect.ImmutableList;
 
 import java.util.List;
@@ -43,4 +44,8 @@ public abstract class NetFlowV9Template {
         return new AutoValue_NetFlowV9Template(templateId, fieldCount, ImmutableList.copyOf(definitions));
     }
 
+    @Memoized
+    NetFlowV9RecordDecoder recordDecoder() {
+        return NetFlowV9RecordDecoder.forTemplate(this);
+    }
 }
@@ -17,15 +17,13 @@
 package org.graylog.plugins.pipelineprocessor.functions.dates;
 
 import com.google.common.collect.ImmutableList;
-import com.joestelmach.natty.DateGroup;
-import com.joestelmach.natty.Parser;
 import org.graylog.plugins.pipelineprocessor.EvaluationContext;
 import org.graylog.plugins.pipelineprocessor.ast.functions.FunctionArgs;
 import org.graylog.plugins.pipelineprocessor.ast.functions.ParameterDescriptor;
+import org.graylog2.plugin.utilities.date.FlexibleDateParser;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 
-import java.util.List;
 import java.util.Optional;
 
 public class FlexParseDate extends TimezoneAwareFunction {
@@ -35,6 +33,7 @@ public class FlexParseDate extends TimezoneAwareFunction {
     public static final String DEFAULT = "default";
     private final ParameterDescriptor<String, String> valueParam;
     private final ParameterDescriptor<DateTime, DateTime> defaultParam;
+    private final FlexibleDateParser parser = new FlexibleDateParser();
 
     public FlexParseDate() {
         valueParam = ParameterDescriptor.string(VALUE).description("Date string to parse").build();
@@ -45,8 +44,8 @@ public class FlexParseDate extends TimezoneAwareFunction {
     protected DateTime evaluate(FunctionArgs args, EvaluationContext context, DateTimeZone timezone) {
         final String time = valueParam.required(args, context);
 
-        final List<DateGroup> dates = new Parser(timezone.toTimeZone()).parse(time);
-        if (dates.size() == 0) {
+        final DateTime date = parser.parse(time, timezone);
+        if (date == null) {
             final Optional<DateTime> defaultTime = defaultParam.optional(args, context);
             if (defaultTime.isPresent()) {
                 return defaultTime.get();
@@ -54,7 +53,7 @@ public class FlexParseDate extends TimezoneAwareFunction {
             // TODO really? this should probably throw an exception of some sort to be handled in the interpreter
             return null;
         }
-        return new DateTime(dates.get(0).getDates().get(0), timezone);
+        return date;
     }
 
     @Override
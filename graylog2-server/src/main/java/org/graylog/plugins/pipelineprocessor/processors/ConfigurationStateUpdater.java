@@ -27,8 +27,10 @@ import com.google.common.eventbus.Subscribe;
 import org.graylog.plugins.pipelineprocessor.ast.Pipeline;
 import org.graylog.plugins.pipelineprocessor.ast.Rule;
 import org.graylog.plugins.pipelineprocessor.codegen.PipelineClassloader;
+import org.graylog.plugins.pipelineprocessor.db.PipelineDao;
 import org.graylog.plugins.pipelineprocessor.db.PipelineService;
 import org.graylog.plugins.pipelineprocessor.db.PipelineStreamConnectionsService;
+import org.graylog.plugins.pipelineprocessor.db.RuleDao;
 import org.graylog.plugins.pipelineprocessor.db.RuleService;
 import org.graylog.plugins.pipelineprocessor.events.PipelineConnectionsChangedEvent;
 import org.graylog.plugins.pipelineprocessor.events.PipelinesChangedEvent;
@@ -45,6 +47,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.tools.ToolProvider;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -120,12 +123,34 @@ public class ConfigurationStateUpdater {
     // only the singleton instance should mutate itself, others are welcome to reload a new state, but we don't
     // currently allow direct global state updates from external sources (if you need to, send an event on the bus instead)
     private synchronized PipelineInterpreter.State reloadAndSave() {
+        final PipelineInterpreter.State newState = buildState(ruleService.loadAll(),
+                pipelineService.loadAll(),
+                pipelineStreamConnectionsService.loadAll(),
+                metricRegistry,
+                stateFactory);
+        latestState.set(newState);
+        return newState;
+    }
+
+    /**
+     * Parses the given rules and pipelines and resolves them into a new interpreter state, without changing the
+     * currently active state. Rules are resolved by name, a later rule replaces an earlier rule with the same name.
+     *
+     * @param metricRegistry the registry for the rule, stage and pipeline metrics
+     * @param stateFactory   creates the state from the resolved pipelines and their stream connections
+     * @return the new state
+     */
+    public PipelineInterpreter.State buildState(Collection<RuleDao> ruleDaos,
+                                                Collection<PipelineDao> pipelineDaos,
+                                                Collection<PipelineConnections> pipelineConnections,
+                                                MetricRegistry metricRegistry,
+                                                PipelineInterpreter.State.Factory stateFactory) {
         // this classloader will hold all generated rule classes
         PipelineClassloader commonClassLoader = allowCodeGeneration ? new PipelineClassloader() : null;
 
         // read all rules and parse them
         Map<String, Rule> ruleNameMap = Maps.newHashMap();
-        ruleService.loadAll().forEach(ruleDao -> {
+        ruleDaos.forEach(ruleDao -> {
             Rule rule;
             try {
                 rule = pipelineRuleParser.parseRule(ruleDao.id(), ruleDao.source(), false, commonClassLoader);
@@ -137,7 +162,7 @@ public class ConfigurationStateUpdater {
 
         // read all pipelines and parse them
         ImmutableMap.Builder<String, Pipeline> pipelineIdMap = ImmutableMap.builder();
-        pipelineService.loadAll().forEach(pipelineDao -> {
+        pipelineDaos.forEach(pipelineDao -> {
             Pipeline pipeline;
             try {
                 pipeline = pipelineRuleParser.parsePipeline(pipelineDao.id(), pipelineDao.source());
@@ -145,14 +170,14 @@ public class ConfigurationStateUpdater {
                 pipeline = Pipeline.empty("Failed to parse pipeline" + pipelineDao.id());
             }
             //noinspection ConstantConditions
-            pipelineIdMap.put(pipelineDao.id(), resolvePipeline(pipeline, ruleNameMap));
+            pipelineIdMap.put(pipelineDao.id(), resolvePipeline(pipeline, ruleNameMap, metricRegistry));
         });
 
         final ImmutableMap<String, Pipeline> currentPipelines = pipelineIdMap.build();
 
         // read all stream connections of those pipelines to allow processing messages through them
         final HashMultimap<String, Pipeline> connections = HashMultimap.create();
-        for (PipelineConnections streamConnection : pipelineStreamConnectionsService.loadAll()) {
+        for (PipelineConnections streamConnection : pipelineConnections) {
             streamConnection.pipelineIds().stream()
                     .map(currentPipelines::get)
                     .filter(Objects::nonNull)
@@ -160,9 +185,7 @@ public class ConfigurationStateUpdater {
         }
         ImmutableSetMultimap<String, Pipeline> streamPipelineConnections = ImmutableSetMultimap.copyOf(connections);
 
-        final PipelineInterpreter.State newState = stateFactory.newState(currentPipelines, streamPipelineConnections);
-        latestState.set(newState);
-        return newState;
+        return stateFactory.newState(currentPipelines, streamPipelineConnections);
     }
 
 
@@ -176,7 +199,7 @@ public class ConfigurationStateUpdater {
     }
 
     @Nonnull
-    private Pipeline resolvePipeline(Pipeline pipeline, Map<String, Rule> ruleNameMap) {
+    private Pipeline resolvePipeline(Pipeline pipeline, Map<String, Rule> ruleNameMap, MetricRegistry metricRegistry) {
         log.debug("Resolving pipeline {}", pipeline.name());
 
         pipeline.stages().forEach(stage -> {
@@ -0,0 +1,117 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.pipelineprocessor.rest;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableList;
+import org.graylog.plugins.pipelineprocessor.simulator.CandidatePipeline;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays messages through a candidate pipeline configuration. The messages are either given directly (e.g. the
+ * contents of a file with exported messages), or loaded from the search index with a query or a saved search.
+ */
+@AutoValue
+@JsonAutoDetect
+public abstract class ReplayRequest {
+    private static final int DEFAULT_RANGE = 3600;
+    private static final int DEFAULT_LIMIT = 1000;
+
+    /**
+     * The stream the replayed messages are routed into, this selects the pipelines which process them.
+     */
+    @JsonProperty
+    public abstract String streamId();
+
+    @JsonProperty
+    @Nullable
+    public abstract String inputId();
+
+    @JsonProperty
+    @Nullable
+    public abstract List<Map<String, Object>> messages();
+
+    @JsonProperty
+    @Nullable
+    public abstract String query();
+
+    @JsonProperty
+    @Nullable
+    public abstract String savedSearchId();
+
+    /**
+     * Limits the search to the messages of this stream.
+     */
+    @JsonProperty
+    @Nullable
+    public abstract String sourceStreamId();
+
+    /**
+     * The relative time range of the search in seconds.
+     */
+    @JsonProperty
+    public abstract int range();
+
+    @JsonProperty
+    public abstract int limit();
+
+    @JsonProperty
+    public abstract List<String> rules();
+
+    @JsonProperty
+    public abstract List<CandidatePipeline> pipelines();
+
+    @JsonProperty
+    @Nullable
+    public abstract Integer concurrency();
+
+    @JsonProperty
+    public abstract boolean compareWithCurrent();
+
+    @JsonCreator
+    public static ReplayRequest create(@JsonProperty("stream_id") String streamId,
+                                       @JsonProperty("input_id") @Nullable String inputId,
+                                       @JsonProperty("messages") @Nullable List<Map<String, Object>> messages,
+                                       @JsonProperty("query") @Nullable String query,
+                                       @JsonProperty("saved_search_id") @Nullable String savedSearchId,
+                                       @JsonProperty("source_stream_id") @Nullable String sourceStreamId,
+                                       @JsonProperty("range") @Nullable Integer range,
+                                       @JsonProperty("limit") @Nullable Integer limit,
+                                       @JsonProperty("rules") @Nullable List<String> rules,
+                                       @JsonProperty("pipelines") @Nullable List<CandidatePipeline> pipelines,
+                                       @JsonProperty("concurrency") @Nullable Integer concurrency,
+                                       @JsonProperty("compare_with_current") @Nullable Boolean compareWithCurrent) {
+        return new AutoValue_ReplayRequest(streamId,
+                inputId,
+                messages,
+                query,
+                savedSearchId,
+                sourceStreamId,
+                range == null ? DEFAULT_RANGE : range,
+                limit == null ? DEFAULT_LIMIT : limit,
+                rules == null ? ImmutableList.of() : rules,
+                pipelines == null ? ImmutableList.of() : pipelines,
+                concurrency,
+                compareWithCurrent == null || compareWithCurrent);
+    }
+}
@@ -25,18 +25,28 @@ import org.apache.shiro.authz.annotation.RequiresPermissions;
 import org.graylog.plugins.pipelineprocessor.processors.ConfigurationStateUpdater;
 import org.graylog.plugins.pipelineprocessor.processors.PipelineInterpreter;
 import org.graylog.plugins.pipelineprocessor.simulator.PipelineInterpreterTracer;
+import org.graylog.plugins.pipelineprocessor.simulator.PipelineReplayer;
+import org.graylog.plugins.pipelineprocessor.simulator.ReplayResult;
 import org.graylog2.audit.jersey.NoAuditEvent;
 import org.graylog2.database.NotFoundException;
+import org.graylog2.indexer.results.ResultMessage;
+import org.graylog2.indexer.results.SearchResult;
+import org.graylog2.indexer.searches.Searches;
+import org.graylog2.indexer.searches.Sorting;
 import org.graylog2.plugin.Message;
+import org.graylog2.plugin.indexer.searches.timeranges.InvalidRangeParametersException;
+import org.graylog2.plugin.indexer.searches.timeranges.RelativeRange;
 import org.graylog2.plugin.rest.PluginRestResource;
 import org.graylog2.plugin.streams.Stream;
 import org.graylog2.rest.models.messages.responses.ResultMessageSummary;
+import org.graylog2.savedsearches.SavedSearchService;
 import org.graylog2.shared.rest.resources.RestResource;
 import org.graylog2.shared.security.RestPermissions;
 import org.graylog2.streams.StreamService;
 
 import javax.inject.Inject;
 import javax.validation.constraints.NotNull;
+import javax.ws.rs.BadRequestException;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -44,6 +54,8 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Api(value = "Pipelines/Simulator", description = "Simulate pipeline message processor")
 @Path("/system/pipelines/simulate")
@@ -54,14 +66,23 @@ public class SimulatorResource extends RestResource implements PluginRestResourc
     private final ConfigurationStateUpdater pipelineStateUpdater;
     private final StreamService streamService;
     private final PipelineInterpreter pipelineInterpreter;
+    private final PipelineReplayer pipelineReplayer;
+    private final Searches searches;
+    private final SavedSearchService savedSearchService;
 
     @Inject
     public SimulatorResource(PipelineInterpreter pipelineInterpreter,
                              ConfigurationStateUpdater pipelineStateUpdater,
-                             StreamService streamService) {
+                             StreamService streamService,
+                             PipelineReplayer pipelineReplayer,
+                             Searches searches,
+                             SavedSearchService savedSearchService) {
         this.pipelineInterpreter = pipelineInterpreter;
         this.pipelineStateUpdater = pipelineStateUpdater;
         this.streamService = streamService;
+        this.pipelineReplayer = pipelineReplayer;
+        this.searches = searches;
+        this.savedSearchService = savedSearchService;
     }
 
     @ApiOperation(value = "Simulate the execution of the pipeline message processor")
@@ -93,4 +114,71 @@ public class SimulatorResource extends RestResource implements PluginRestResourc
                                          pipelineInterpreterTracer.getExecutionTrace(),
                                          pipelineInterpreterTracer.took());
     }
+
+    @ApiOperation(value = "Replay messages through a candidate pipeline configuration",
+                  notes = "Measures throughput, allocated memory and rule costs of the candidate configuration and " +
+                          "compares its output with the current configuration. Nothing is stored or changed.")
+    @POST
+    @Path("/replay")
+    @RequiresPermissions(PipelineRestPermissions.PIPELINE_RULE_READ)
+    @NoAuditEvent("only used to test pipelines, no changes made in the system")
+    public ReplayResult replay(@ApiParam(name = "replay", required = true) @NotNull ReplayRequest request) throws NotFoundException {
+        checkPermission(RestPermissions.STREAMS_READ, request.streamId());
+
+        final Stream stream = streamService.load(request.streamId());
+        final List<Map<String, Object>> messages = loadReplayMessages(request);
+        final int concurrency = request.concurrency() == null ? pipelineReplayer.defaultConcurrency() : request.concurrency();
+
+        return pipelineReplayer.replay(messages,
+                                       stream,
+                                       request.inputId(),
+                                       request.rules(),
+                                       request.pipelines(),
+                                       concurrency,
+                                       request.compareWithCurrent());
+    }
+
+    private List<Map<String, Object>> loadReplayMessages(ReplayRequest request) throws NotFoundException {
+        if (request.messages() != null) {
+            return request.messages();
+        }
+
+        final String query;
+        if (!Strings.isNullOrEmpty(request.savedSearchId())) {
+            checkPermission(RestPermissions.SAVEDSEARCHES_READ, request.savedSearchId());
+            final Object savedQuery = savedSearchService.load(request.savedSearchId()).asMap().get("query");
+            if (!(savedQuery instanceof Map) || !(((Map<?, ?>) savedQuery).get("query") instanceof String)) {
+                throw new BadRequestException("Saved search " + request.savedSearchId() + " has no query");
+            }
+            query = (String) ((Map<?, ?>) savedQuery).get("query");
+        } else if (request.query() != null) {
+            query = request.query();
+        } else {
+            throw new BadRequestException("Either messages, a query or a saved search is required");
+        }
+
+        final String filter;
+        if (Strings.isNullOrEmpty(request.sourceStreamId())) {
+            checkPermission(RestPermissions.SEARCHES_RELATIVE);
+            filter = null;
+        } else {
+            checkPermission(RestPermissions.STREAMS_READ, request.sourceStreamId());
+            filter = "streams:" + request.sourceStreamId();
+        }
+
+        final RelativeRange range;
+        try {
+            range = RelativeRange.create(request.range());
+        } catch (InvalidRangeParametersException e) {
+            throw new BadRequestException("Invalid time range " + request.range(), e);
+        }
+
+        final int limit = Math.max(1, Math.min(request.limit(), PipelineReplayer.MAX_MESSAGES));
+        final SearchResult searchResult = searches.search(Strings.isNullOrEmpty(query) ? "*" : query, filter, range, limit, 0, Sorting.DEFAULT);
+
+        return searchResult.getResults().stream()
+                .map(ResultMessage::getMessage)
+                .map(Message::getFields)
+                .collect(Collectors.toList());
+    }
 }
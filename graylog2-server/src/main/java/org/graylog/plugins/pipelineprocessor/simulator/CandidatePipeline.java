@@ -0,0 +1,54 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.pipelineprocessor.simulator;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+import javax.annotation.Nullable;
+import java.util.Set;
+
+/**
+ * A pipeline which is only used for a replay. It replaces the stored pipeline with the same ID, or is added to the
+ * configuration if the ID is missing.
+ */
+@AutoValue
+@JsonAutoDetect
+public abstract class CandidatePipeline {
+    @JsonProperty
+    @Nullable
+    public abstract String id();
+
+    @JsonProperty
+    public abstract String source();
+
+    /**
+     * The streams the pipeline is connected to. If missing, a replaced pipeline keeps its stream connections.
+     */
+    @JsonProperty
+    @Nullable
+    public abstract Set<String> streamIds();
+
+    @JsonCreator
+    public static CandidatePipeline create(@JsonProperty("id") @Nullable String id,
+                                           @JsonProperty("source") String source,
+                                           @JsonProperty("stream_ids") @Nullable Set<String> streamIds) {
+        return new AutoValue_CandidatePipeline(id, source, streamIds);
+    }
+}
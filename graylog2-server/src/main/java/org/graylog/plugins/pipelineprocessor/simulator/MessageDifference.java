@@ -0,0 +1,61 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.pipelineprocessor.simulator;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+import java.util.Set;
+
+/**
+ * Describes how the output of the candidate pipeline configuration differs from the current configuration for one
+ * replayed message.
+ */
+@AutoValue
+@JsonAutoDetect
+public abstract class MessageDifference {
+    @JsonProperty
+    public abstract String messageId();
+
+    @JsonProperty
+    public abstract int currentOutputMessages();
+
+    @JsonProperty
+    public abstract int candidateOutputMessages();
+
+    @JsonProperty
+    public abstract Set<String> addedFields();
+
+    @JsonProperty
+    public abstract Set<String> removedFields();
+
+    @JsonProperty
+    public abstract Set<String> changedFields();
+
+    @JsonCreator
+    public static MessageDifference create(@JsonProperty("message_id") String messageId,
+                                           @JsonProperty("current_output_messages") int currentOutputMessages,
+                                           @JsonProperty("candidate_output_messages") int candidateOutputMessages,
+                                           @JsonProperty("added_fields") Set<String> addedFields,
+                                           @JsonProperty("removed_fields") Set<String> removedFields,
+                                           @JsonProperty("changed_fields") Set<String> changedFields) {
+        return new AutoValue_MessageDifference(messageId, currentOutputMessages, candidateOutputMessages,
+                addedFields, removedFields, changedFields);
+    }
+}
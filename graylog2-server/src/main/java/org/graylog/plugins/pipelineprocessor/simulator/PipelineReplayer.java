@@ -0,0 +1,376 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.pipelineprocessor.simulator;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.graylog.plugins.pipelineprocessor.db.PipelineDao;
+import org.graylog.plugins.pipelineprocessor.db.PipelineService;
+import org.graylog.plugins.pipelineprocessor.db.PipelineStreamConnectionsService;
+import org.graylog.plugins.pipelineprocessor.db.RuleDao;
+import org.graylog.plugins.pipelineprocessor.db.RuleService;
+import org.graylog.plugins.pipelineprocessor.processors.ConfigurationStateUpdater;
+import org.graylog.plugins.pipelineprocessor.processors.PipelineInterpreter;
+import org.graylog.plugins.pipelineprocessor.processors.listeners.InterpreterListener;
+import org.graylog.plugins.pipelineprocessor.processors.listeners.NoopInterpreterListener;
+import org.graylog.plugins.pipelineprocessor.rest.PipelineConnections;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageCollection;
+import org.graylog2.plugin.streams.Stream;
+import org.graylog2.shared.journal.NoopJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Replays a batch of messages through a candidate pipeline configuration without touching the active configuration,
+ * the journal or the metrics of the running pipeline processor.
+ * <p>
+ * Messages are processed in parallel on a pool which is created for each replay, so a replay doesn't take threads
+ * away from the process buffer. The candidate configuration is measured first (throughput, allocated memory and
+ * the cost of every rule), then the same messages are optionally run through the currently stored configuration and
+ * the outputs of both runs are compared.
+ */
+@Singleton
+public class PipelineReplayer {
+    private static final Logger LOG = LoggerFactory.getLogger(PipelineReplayer.class);
+
+    public static final int MAX_MESSAGES = 10000;
+    public static final int MAX_CONCURRENCY = 64;
+    @VisibleForTesting
+    static final int MAX_DIFFERENCES = 20;
+
+    private static final String CANDIDATE_RULE_ID_PREFIX = "candidate-rule-";
+    private static final String CANDIDATE_PIPELINE_ID_PREFIX = "candidate-pipeline-";
+
+    private final ConfigurationStateUpdater stateUpdater;
+    private final RuleService ruleService;
+    private final PipelineService pipelineService;
+    private final PipelineStreamConnectionsService connectionsService;
+    private final int processorCount;
+    private final boolean cachedIterators;
+
+    @Inject
+    public PipelineReplayer(ConfigurationStateUpdater stateUpdater,
+                            RuleService ruleService,
+                            PipelineService pipelineService,
+                            PipelineStreamConnectionsService connectionsService,
+                            @Named("processbuffer_processors") int processorCount,
+                            @Named("cached_stageiterators") boolean cachedIterators) {
+        this.stateUpdater = stateUpdater;
+        this.ruleService = ruleService;
+        this.pipelineService = pipelineService;
+        this.connectionsService = connectionsService;
+        this.processorCount = processorCount;
+        this.cachedIterators = cachedIterators;
+    }
+
+    public int defaultConcurrency() {
+        return Math.min(processorCount, MAX_CONCURRENCY);
+    }
+
+    /**
+     * @param messages           the fields of the messages to replay, messages without an ID get a random ID
+     * @param stream             the stream every replayed message is routed into
+     * @param inputId            the input ID to set on every replayed message, may be {@code null}
+     * @param candidateRules     sources of rules which are added to the stored rules, replacing stored rules with the
+     *                           same name
+     * @param candidatePipelines pipelines which are added to or replace the stored pipelines
+     * @param concurrency        the number of threads to replay the messages with
+     * @param compareWithCurrent whether to also run the messages through the stored configuration and compare
+     *                           the outputs
+     */
+    public ReplayResult replay(List<Map<String, Object>> messages,
+                               Stream stream,
+                               @Nullable String inputId,
+                               List<String> candidateRules,
+                               List<CandidatePipeline> candidatePipelines,
+                               int concurrency,
+                               boolean compareWithCurrent) {
+        final int threads = Math.max(1, Math.min(Math.min(concurrency, MAX_CONCURRENCY), Math.max(1, messages.size())));
+        final List<Map<String, Object>> replayMessages = messages.stream()
+                .limit(MAX_MESSAGES)
+                .map(this::withId)
+                .collect(Collectors.toList());
+
+        final Collection<RuleDao> storedRules = ruleService.loadAll();
+        final Collection<PipelineDao> storedPipelines = pipelineService.loadAll();
+        final Collection<PipelineConnections> storedConnections = connectionsService.loadAll();
+
+        final PipelineInterpreter.State candidateState = buildState(
+                candidateRules(storedRules, candidateRules),
+                candidatePipelines(storedPipelines, candidatePipelines),
+                candidateConnections(storedConnections, candidatePipelines));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("pipeline-replay-%d")
+                .setDaemon(true)
+                .build());
+        try {
+            final ConcurrentMap<String, RuleCostAccumulator> costs = new ConcurrentHashMap<>();
+            final AtomicReferenceArray<List<Map<String, Object>>> candidateOutputs = new AtomicReferenceArray<>(replayMessages.size());
+            final ReplayPhaseResult candidatePhase = runPhase(executor, threads, replayMessages, stream, inputId,
+                    candidateState, () -> new RuleCostListener(costs), candidateOutputs);
+
+            final List<RuleCost> ruleCosts = costs.entrySet().stream()
+                    .map(entry -> entry.getValue().toRuleCost(entry.getKey()))
+                    .sorted(Comparator.comparingLong(RuleCost::totalMicroseconds).reversed())
+                    .collect(Collectors.toList());
+
+            if (!compareWithCurrent) {
+                return ReplayResult.create(replayMessages.size(), threads, candidatePhase, null, ruleCosts, 0, ImmutableList.of());
+            }
+
+            final PipelineInterpreter.State currentState = buildState(storedRules, storedPipelines, storedConnections);
+            final AtomicReferenceArray<List<Map<String, Object>>> currentOutputs = new AtomicReferenceArray<>(replayMessages.size());
+            final ReplayPhaseResult currentPhase = runPhase(executor, threads, replayMessages, stream, inputId,
+                    currentState, NoopInterpreterListener::new, currentOutputs);
+
+            int changedMessages = 0;
+            final List<MessageDifference> differences = new ArrayList<>();
+            for (int i = 0; i < replayMessages.size(); i++) {
+                final String messageId = (String) replayMessages.get(i).get(Message.FIELD_ID);
+                final MessageDifference difference = difference(messageId, currentOutputs.get(i), candidateOutputs.get(i));
+                if (difference != null) {
+                    changedMessages++;
+                    if (differences.size() < MAX_DIFFERENCES) {
+                        differences.add(difference);
+                    }
+                }
+            }
+
+            return ReplayResult.create(replayMessages.size(), threads, candidatePhase, currentPhase, ruleCosts, changedMessages, differences);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<String, Object> withId(Map<String, Object> fields) {
+        if (fields.get(Message.FIELD_ID) instanceof String) {
+            return fields;
+        }
+        final Map<String, Object> copy = new LinkedHashMap<>(fields);
+        copy.put(Message.FIELD_ID, UUID.randomUUID().toString());
+        return copy;
+    }
+
+    private PipelineInterpreter.State buildState(Collection<RuleDao> rules,
+                                                 Collection<PipelineDao> pipelines,
+                                                 Collection<PipelineConnections> connections) {
+        // A private registry keeps the rule metrics and the stage cache gauges of the replay away from the live ones
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        return stateUpdater.buildState(rules, pipelines, connections, metricRegistry,
+                (currentPipelines, streamPipelineConnections) -> new PipelineInterpreter.State(
+                        currentPipelines, streamPipelineConnections, metricRegistry, processorCount, cachedIterators));
+    }
+
+    @VisibleForTesting
+    static List<RuleDao> candidateRules(Collection<RuleDao> storedRules, List<String> candidateRules) {
+        // The state updater resolves rules by name, so the candidate rules have to come last to replace stored rules
+        final List<RuleDao> rules = new ArrayList<>(storedRules);
+        for (int i = 0; i < candidateRules.size(); i++) {
+            final String id = CANDIDATE_RULE_ID_PREFIX + i;
+            rules.add(RuleDao.create(id, id, null, candidateRules.get(i), null, null));
+        }
+        return rules;
+    }
+
+    @VisibleForTesting
+    static List<PipelineDao> candidatePipelines(Collection<PipelineDao> storedPipelines, List<CandidatePipeline> candidatePipelines) {
+        final Map<String, PipelineDao> pipelines = new LinkedHashMap<>();
+        storedPipelines.forEach(pipeline -> pipelines.put(pipeline.id(), pipeline));
+        for (int i = 0; i < candidatePipelines.size(); i++) {
+            final String id = candidatePipelineId(candidatePipelines.get(i), i);
+            pipelines.put(id, PipelineDao.create(id, id, null, candidatePipelines.get(i).source(), null, null));
+        }
+        return new ArrayList<>(pipelines.values());
+    }
+
+    @VisibleForTesting
+    static List<PipelineConnections> candidateConnections(Collection<PipelineConnections> storedConnections,
+                                                          List<CandidatePipeline> candidatePipelines) {
+        final Map<String, Set<String>> pipelinesByStream = new LinkedHashMap<>();
+        storedConnections.forEach(connections ->
+                pipelinesByStream.put(connections.streamId(), new HashSet<>(connections.pipelineIds())));
+
+        for (int i = 0; i < candidatePipelines.size(); i++) {
+            final CandidatePipeline pipeline = candidatePipelines.get(i);
+            if (pipeline.streamIds() == null) {
+                continue;
+            }
+            final String id = candidatePipelineId(pipeline, i);
+            pipelinesByStream.values().forEach(pipelineIds -> pipelineIds.remove(id));
+            pipeline.streamIds().forEach(streamId -> pipelinesByStream.computeIfAbsent(streamId, s -> new HashSet<>()).add(id));
+        }
+
+        return pipelinesByStream.entrySet().stream()
+                .map(entry -> PipelineConnections.create(null, entry.getKey(), ImmutableSet.copyOf(entry.getValue())))
+                .collect(Collectors.toList());
+    }
+
+    private static String candidatePipelineId(CandidatePipeline pipeline, int index) {
+        return Strings.isNullOrEmpty(pipeline.id()) ? CANDIDATE_PIPELINE_ID_PREFIX + index : pipeline.id();
+    }
+
+    private ReplayPhaseResult runPhase(ExecutorService executor,
+                                       int threads,
+                                       List<Map<String, Object>> messages,
+                                       Stream stream,
+                                       @Nullable String inputId,
+                                       PipelineInterpreter.State state,
+                                       Supplier<InterpreterListener> listenerSupplier,
+                                       AtomicReferenceArray<List<Map<String, Object>>> outputs) {
+        // The interpreter only uses the journal to acknowledge dropped messages, which must not happen for replays
+        final PipelineInterpreter interpreter = new PipelineInterpreter(new NoopJournal(), new MetricRegistry(), stateUpdater);
+
+        final List<Callable<Long>> tasks = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            final int first = t;
+            tasks.add(() -> {
+                final long allocatedBefore = allocatedBytes();
+                final InterpreterListener listener = listenerSupplier.get();
+                for (int i = first; i < messages.size(); i += threads) {
+                    final Message message = new Message(messages.get(i));
+                    message.addStream(stream);
+                    if (!Strings.isNullOrEmpty(inputId)) {
+                        message.setSourceInputId(inputId);
+                    }
+                    final List<Map<String, Object>> processed = new ArrayList<>();
+                    for (Message output : interpreter.process(new MessageCollection(ImmutableList.of(message)), listener, state)) {
+                        processed.add(output.getFields());
+                    }
+                    outputs.set(i, processed);
+                }
+                final long allocatedAfter = allocatedBytes();
+                return allocatedBefore < 0 || allocatedAfter < 0 ? -1L : allocatedAfter - allocatedBefore;
+            });
+        }
+
+        final long start = System.nanoTime();
+        long allocated = 0L;
+        try {
+            for (Future<Long> future : executor.invokeAll(tasks)) {
+                final long taskAllocated = future.get();
+                allocated = allocated < 0 || taskAllocated < 0 ? -1L : allocated + taskAllocated;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while replaying messages", e);
+        } catch (ExecutionException e) {
+            LOG.debug("Unable to replay messages", e);
+            throw new IllegalStateException("Unable to replay messages: " + e.getCause().getMessage(), e.getCause());
+        }
+        final long tookNanos = Math.max(1L, System.nanoTime() - start);
+
+        long outputMessages = 0L;
+        for (int i = 0; i < outputs.length(); i++) {
+            outputMessages += outputs.get(i).size();
+        }
+
+        return ReplayPhaseResult.create(tookNanos / 1_000_000L,
+                messages.size() * 1_000_000_000.0d / tookNanos,
+                outputMessages,
+                allocated);
+    }
+
+    private static long allocatedBytes() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (sunThreadMXBean.isThreadAllocatedMemorySupported() && sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+                return sunThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * Compares the outputs of one replayed message. Fields are compared on the output message which kept the ID of
+     * the replayed message, messages created by rules only count towards the number of output messages.
+     *
+     * @return the difference or {@code null} if both configurations produced the same output
+     */
+    @VisibleForTesting
+    @Nullable
+    static MessageDifference difference(String messageId,
+                                        List<Map<String, Object>> currentOutputs,
+                                        List<Map<String, Object>> candidateOutputs) {
+        final Map<String, Object> current = findById(messageId, currentOutputs);
+        final Map<String, Object> candidate = findById(messageId, candidateOutputs);
+
+        final Set<String> added;
+        final Set<String> removed;
+        final Set<String> changed;
+        if (current == null || candidate == null) {
+            added = candidate == null ? ImmutableSet.of() : ImmutableSet.copyOf(candidate.keySet());
+            removed = current == null ? ImmutableSet.of() : ImmutableSet.copyOf(current.keySet());
+            changed = ImmutableSet.of();
+        } else {
+            added = ImmutableSet.copyOf(Sets.difference(candidate.keySet(), current.keySet()));
+            removed = ImmutableSet.copyOf(Sets.difference(current.keySet(), candidate.keySet()));
+            changed = Sets.intersection(current.keySet(), candidate.keySet()).stream()
+                    .filter(field -> !Objects.equals(current.get(field), candidate.get(field)))
+                    .collect(ImmutableSet.toImmutableSet());
+        }
+
+        if (added.isEmpty() && removed.isEmpty() && changed.isEmpty() && currentOutputs.size() == candidateOutputs.size()) {
+            return null;
+        }
+        return MessageDifference.create(messageId, currentOutputs.size(), candidateOutputs.size(), added, removed, changed);
+    }
+
+    @Nullable
+    private static Map<String, Object> findById(String messageId, List<Map<String, Object>> outputs) {
+        for (Map<String, Object> output : outputs) {
+            if (messageId.equals(output.get(Message.FIELD_ID))) {
+                return output;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.pipelineprocessor.simulator;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+/**
+ * Statistics of running all replayed messages through one pipeline configuration.
+ */
+@AutoValue
+@JsonAutoDetect
+public abstract class ReplayPhaseResult {
+    @JsonProperty
+    public abstract long tookMilliseconds();
+
+    @JsonProperty
+    public abstract double messagesPerSecond();
+
+    @JsonProperty
+    public abstract long outputMessages();
+
+    /**
+     * Heap memory allocated by the replay threads, {@code -1} if the JVM cannot measure it.
+     */
+    @JsonProperty
+    public abstract long allocatedBytes();
+
+    @JsonCreator
+    public static ReplayPhaseResult create(@JsonProperty("took_milliseconds") long tookMilliseconds,
+                                           @JsonProperty("messages_per_second") double messagesPerSecond,
+                                           @JsonProperty("output_messages") long outputMessages,
+                                           @JsonProperty("allocated_bytes") long allocatedBytes) {
+        return new AutoValue_ReplayPhaseResult(tookMilliseconds, messagesPerSecond, outputMessages, allocatedBytes);
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.pipelineprocessor.simulator;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+@AutoValue
+@JsonAutoDetect
+public abstract class ReplayResult {
+    @JsonProperty
+    public abstract int messages();
+
+    @JsonProperty
+    public abstract int concurrency();
+
+    @JsonProperty
+    public abstract ReplayPhaseResult candidate();
+
+    /**
+     * The statistics of the currently active pipeline configuration, {@code null} if it wasn't compared.
+     */
+    @JsonProperty
+    @Nullable
+    public abstract ReplayPhaseResult current();
+
+    /**
+     * The cost of the rules in the candidate configuration, most expensive rule first.
+     */
+    @JsonProperty
+    public abstract List<RuleCost> ruleCosts();
+
+    @JsonProperty
+    public abstract int changedMessages();
+
+    /**
+     * The differences of the first changed messages, the list is limited to keep the response small.
+     */
+    @JsonProperty
+    public abstract List<MessageDifference> differences();
+
+    @JsonCreator
+    public static ReplayResult create(@JsonProperty("messages") int messages,
+                                      @JsonProperty("concurrency") int concurrency,
+                                      @JsonProperty("candidate") ReplayPhaseResult candidate,
+                                      @JsonProperty("current") @Nullable ReplayPhaseResult current,
+                                      @JsonProperty("rule_costs") List<RuleCost> ruleCosts,
+                                      @JsonProperty("changed_messages") int changedMessages,
+                                      @JsonProperty("differences") List<MessageDifference> differences) {
+        return new AutoValue_ReplayResult(messages, concurrency, candidate, current, ruleCosts, changedMessages, differences);
+    }
+}
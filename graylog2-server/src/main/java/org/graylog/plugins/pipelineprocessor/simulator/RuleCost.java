@@ -0,0 +1,55 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.pipelineprocessor.simulator;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+
+@AutoValue
+@JsonAutoDetect
+public abstract class RuleCost {
+    @JsonProperty
+    public abstract String ruleName();
+
+    @JsonProperty
+    public abstract long evaluations();
+
+    @JsonProperty
+    public abstract long conditionMicroseconds();
+
+    @JsonProperty
+    public abstract long executions();
+
+    @JsonProperty
+    public abstract long actionMicroseconds();
+
+    @JsonProperty
+    public long totalMicroseconds() {
+        return conditionMicroseconds() + actionMicroseconds();
+    }
+
+    @JsonCreator
+    public static RuleCost create(@JsonProperty("rule_name") String ruleName,
+                                  @JsonProperty("evaluations") long evaluations,
+                                  @JsonProperty("condition_microseconds") long conditionMicroseconds,
+                                  @JsonProperty("executions") long executions,
+                                  @JsonProperty("action_microseconds") long actionMicroseconds) {
+        return new AutoValue_RuleCost(ruleName, evaluations, conditionMicroseconds, executions, actionMicroseconds);
+    }
+}
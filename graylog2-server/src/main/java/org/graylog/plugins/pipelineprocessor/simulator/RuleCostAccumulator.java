@@ -0,0 +1,44 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.pipelineprocessor.simulator;
+
+import java.util.concurrent.atomic.LongAdder;
+
+class RuleCostAccumulator {
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder conditionNanos = new LongAdder();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder actionNanos = new LongAdder();
+
+    void add(boolean action, long nanos) {
+        if (action) {
+            executions.increment();
+            actionNanos.add(nanos);
+        } else {
+            evaluations.increment();
+            conditionNanos.add(nanos);
+        }
+    }
+
+    RuleCost toRuleCost(String ruleName) {
+        return RuleCost.create(ruleName,
+                evaluations.sum(),
+                conditionNanos.sum() / 1000L,
+                executions.sum(),
+                actionNanos.sum() / 1000L);
+    }
+}
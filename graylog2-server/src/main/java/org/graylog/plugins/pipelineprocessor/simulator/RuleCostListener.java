@@ -0,0 +1,125 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.pipelineprocessor.simulator;
+
+import org.graylog.plugins.pipelineprocessor.ast.Pipeline;
+import org.graylog.plugins.pipelineprocessor.ast.Rule;
+import org.graylog.plugins.pipelineprocessor.ast.Stage;
+import org.graylog.plugins.pipelineprocessor.processors.listeners.InterpreterListener;
+import org.graylog2.plugin.Message;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Measures how long the conditions and actions of each rule take.
+ * <p>
+ * The interpreter calls {@link #evaluateRule(Rule, Pipeline)} before a rule condition and
+ * {@link #executeRule(Rule, Pipeline)} before the rule actions, but there is no callback once the actions are done.
+ * Every callback therefore ends the currently measured interval. Instances are not thread-safe, every thread needs
+ * its own listener, but they can share the map of costs.
+ */
+class RuleCostListener implements InterpreterListener {
+    private final ConcurrentMap<String, RuleCostAccumulator> costs;
+
+    private RuleCostAccumulator current;
+    private boolean currentIsAction;
+    private long currentStart;
+
+    RuleCostListener(ConcurrentMap<String, RuleCostAccumulator> costs) {
+        this.costs = costs;
+    }
+
+    private void stop() {
+        if (current != null) {
+            current.add(currentIsAction, System.nanoTime() - currentStart);
+            current = null;
+        }
+    }
+
+    private void start(Rule rule, boolean action) {
+        stop();
+        current = costs.computeIfAbsent(rule.name(), name -> new RuleCostAccumulator());
+        currentIsAction = action;
+        currentStart = System.nanoTime();
+    }
+
+    @Override
+    public void startProcessing() {
+        stop();
+    }
+
+    @Override
+    public void finishProcessing() {
+        stop();
+    }
+
+    @Override
+    public void processStreams(Message message, Set<Pipeline> pipelines, Set<String> streams) {
+        stop();
+    }
+
+    @Override
+    public void enterStage(Stage stage) {
+        stop();
+    }
+
+    @Override
+    public void exitStage(Stage stage) {
+        stop();
+    }
+
+    @Override
+    public void evaluateRule(Rule rule, Pipeline pipeline) {
+        start(rule, false);
+    }
+
+    @Override
+    public void failEvaluateRule(Rule rule, Pipeline pipeline) {
+        stop();
+    }
+
+    @Override
+    public void satisfyRule(Rule rule, Pipeline pipeline) {
+        stop();
+    }
+
+    @Override
+    public void dissatisfyRule(Rule rule, Pipeline pipeline) {
+        stop();
+    }
+
+    @Override
+    public void executeRule(Rule rule, Pipeline pipeline) {
+        start(rule, true);
+    }
+
+    @Override
+    public void failExecuteRule(Rule rule, Pipeline pipeline) {
+        stop();
+    }
+
+    @Override
+    public void continuePipelineExecution(Pipeline pipeline, Stage stage) {
+        stop();
+    }
+
+    @Override
+    public void stopPipelineExecution(Pipeline pipeline, Stage stage) {
+        stop();
+    }
+}
@@ -21,6 +21,7 @@ import com.github.joschi.jadconfig.ValidationException;
 import com.github.joschi.jadconfig.Validator;
 import com.github.joschi.jadconfig.ValidatorMethod;
 import com.github.joschi.jadconfig.util.Duration;
+import com.github.joschi.jadconfig.util.Size;
 import com.github.joschi.jadconfig.validators.PositiveDurationValidator;
 import com.github.joschi.jadconfig.validators.PositiveIntegerValidator;
 import com.github.joschi.jadconfig.validators.PositiveLongValidator;
@@ -31,6 +32,7 @@ import org.graylog2.utilities.IpSubnet;
 import org.joda.time.DateTimeZone;
 
 import java.io.File;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.Set;
@@ -64,6 +66,9 @@ public class Configuration extends BaseConfiguration {
     @Parameter(value = "outputbuffer_processor_keep_alive_time", validator = PositiveIntegerValidator.class)
     private int outputBufferProcessorKeepAliveTime = 5000;
 
+    @Parameter(value = "outputbuffer_processor_batch_size")
+    private int outputBufferProcessorBatchSize = 0;
+
     @Parameter(value = "node_id_file", validator = NodeIdFileValidator.class)
     private String nodeIdFile = "/etc/graylog/server/node-id";
 
@@ -100,6 +105,30 @@ public class Configuration extends BaseConfiguration {
     @Parameter(value = "output_module_timeout", validator = PositiveLongValidator.class)
     private long outputModuleTimeout = 10000;
 
+    @Parameter(value = "output_queue_size")
+    private int outputQueueSize = 0;
+
+    @Parameter(value = "output_spill_max_size")
+    private Size outputSpillMaxSize = Size.gigabytes(1L);
+
+    @Parameter(value = "output_spill_dir")
+    private Path outputSpillDir = getDataDir().resolve("output-spill");
+
+    @Parameter(value = "dead_letter_journal_enabled")
+    private boolean deadLetterJournalEnabled = false;
+
+    @Parameter(value = "dead_letter_journal_dir")
+    private Path deadLetterJournalDir = getDataDir().resolve("dead-letters");
+
+    @Parameter(value = "dead_letter_journal_max_size")
+    private Size deadLetterJournalMaxSize = Size.gigabytes(1L);
+
+    @Parameter(value = "dead_letter_journal_max_age", validator = PositiveDurationValidator.class)
+    private Duration deadLetterJournalMaxAge = Duration.days(7L);
+
+    @Parameter(value = "dead_letter_replay_rate", validator = PositiveIntegerValidator.class)
+    private int deadLetterReplayRate = 1000;
+
     @Parameter(value = "output_fault_count_threshold", validator = PositiveLongValidator.class)
     private long outputFaultCountThreshold = 5;
 
@@ -177,6 +206,10 @@ public class Configuration extends BaseConfiguration {
         return outputBufferProcessorKeepAliveTime;
     }
 
+    public int getOutputBufferProcessorBatchSize() {
+        return outputBufferProcessorBatchSize;
+    }
+
     @Override
     public String getNodeIdFile() {
         return nodeIdFile;
@@ -222,6 +255,38 @@ public class Configuration extends BaseConfiguration {
         return outputModuleTimeout;
     }
 
+    public int getOutputQueueSize() {
+        return outputQueueSize;
+    }
+
+    public Size getOutputSpillMaxSize() {
+        return outputSpillMaxSize;
+    }
+
+    public Path getOutputSpillDir() {
+        return outputSpillDir;
+    }
+
+    public boolean isDeadLetterJournalEnabled() {
+        return deadLetterJournalEnabled;
+    }
+
+    public Path getDeadLetterJournalDir() {
+        return deadLetterJournalDir;
+    }
+
+    public Size getDeadLetterJournalMaxSize() {
+        return deadLetterJournalMaxSize;
+    }
+
+    public Duration getDeadLetterJournalMaxAge() {
+        return deadLetterJournalMaxAge;
+    }
+
+    public int getDeadLetterReplayRate() {
+        return deadLetterReplayRate;
+    }
+
     public long getOutputFaultCountThreshold() {
         return outputFaultCountThreshold;
     }
@@ -56,6 +56,7 @@ public class AuditEventTypes implements PluginAuditEventTypes {
     public static final String ES_INDEX_RANGE_CREATE = PREFIX + "es_index_range:create";
     public static final String ES_INDEX_RANGE_DELETE = PREFIX + "es_index_range:delete";
     public static final String ES_INDEX_RANGE_UPDATE_JOB = PREFIX + "es_index_range_update_job:start";
+    public static final String ES_DEAD_LETTER_REPLAY_JOB = PREFIX + "es_dead_letter_replay_job:start";
     public static final String ES_INDEX_RETENTION_CLOSE = PREFIX + "es_index_retention:close";
     public static final String ES_INDEX_RETENTION_DELETE = PREFIX + "es_index_retention:delete";
     public static final String ES_INDEX_RETENTION_STRATEGY_UPDATE = PREFIX + "es_index_retention_strategy:update";
@@ -181,6 +182,7 @@ public class AuditEventTypes implements PluginAuditEventTypes {
             .add(ES_INDEX_RANGE_CREATE)
             .add(ES_INDEX_RANGE_DELETE)
             .add(ES_INDEX_RANGE_UPDATE_JOB)
+            .add(ES_DEAD_LETTER_REPLAY_JOB)
             .add(ES_INDEX_RETENTION_CLOSE)
             .add(ES_INDEX_RETENTION_DELETE)
             .add(ES_INDEX_RETENTION_STRATEGY_UPDATE)
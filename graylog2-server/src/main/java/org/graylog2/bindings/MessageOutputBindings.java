@@ -51,8 +51,10 @@ public class MessageOutputBindings extends Graylog2Module {
         bind(MessageOutput.class).annotatedWith(DefaultMessageOutput.class).to(defaultMessageOutputClass).in(Scopes.SINGLETON);
 
         final MapBinder<String, MessageOutput.Factory<? extends MessageOutput>> outputMapBinder = outputsMapBinder();
-        installOutput(outputMapBinder, GelfOutput.class, GelfOutput.Factory.class);
         installOutput(outputMapBinder, LoggingOutput.class, LoggingOutput.Factory.class);
+
+        final MapBinder<String, MessageOutput.Factory2<? extends MessageOutput>> outputMapBinder2 = outputsMapBinder2();
+        installOutput2(outputMapBinder2, GelfOutput.class, GelfOutput.Factory.class);
     }
 
     private Class<? extends MessageOutput> getDefaultMessageOutputClass(Class<? extends MessageOutput> fallbackClass) {
@@ -32,6 +32,7 @@ import org.graylog2.bindings.providers.DefaultStreamProvider;
 import org.graylog2.bindings.providers.MongoConnectionProvider;
 import org.graylog2.bindings.providers.SystemJobFactoryProvider;
 import org.graylog2.bindings.providers.SystemJobManagerProvider;
+import org.graylog2.buffers.processors.BatchedOutputBufferProcessor;
 import org.graylog2.cluster.ClusterConfigServiceImpl;
 import org.graylog2.dashboards.widgets.WidgetCacheTime;
 import org.graylog2.dashboards.widgets.WidgetEventsListener;
@@ -46,6 +47,10 @@ import org.graylog2.indexer.healing.FixDeflectorByMoveJob;
 import org.graylog2.indexer.indices.jobs.IndexSetCleanupJob;
 import org.graylog2.indexer.indices.jobs.OptimizeIndexJob;
 import org.graylog2.indexer.indices.jobs.SetIndexReadOnlyAndCalculateRangeJob;
+import org.graylog2.indexer.messages.DeadLetterJournal;
+import org.graylog2.indexer.messages.DeadLetterReplayJob;
+import org.graylog2.indexer.messages.KafkaDeadLetterJournal;
+import org.graylog2.indexer.messages.NoopDeadLetterJournal;
 import org.graylog2.indexer.ranges.CreateNewSingleIndexRangeJob;
 import org.graylog2.indexer.ranges.RebuildIndexRangesJob;
 import org.graylog2.inputs.InputEventListener;
@@ -136,6 +141,7 @@ public class ServerBindings extends Graylog2Module {
         install(new FactoryModuleBuilder().build(FixDeflectorByDeleteJob.Factory.class));
         install(new FactoryModuleBuilder().build(FixDeflectorByMoveJob.Factory.class));
         install(new FactoryModuleBuilder().build(SetIndexReadOnlyAndCalculateRangeJob.Factory.class));
+        install(new FactoryModuleBuilder().build(DeadLetterReplayJob.Factory.class));
 
         install(new FactoryModuleBuilder().build(LdapSettingsImpl.Factory.class));
         install(new FactoryModuleBuilder().build(WidgetCacheTime.Factory.class));
@@ -144,6 +150,7 @@ public class ServerBindings extends Graylog2Module {
         install(new FactoryModuleBuilder().build(EmailRecipients.Factory.class));
 
         install(new FactoryModuleBuilder().build(ProcessBufferProcessor.Factory.class));
+        install(new FactoryModuleBuilder().build(BatchedOutputBufferProcessor.Factory.class));
         bind(Stream.class).annotatedWith(DefaultStream.class).toProvider(DefaultStreamProvider.class);
         bind(DefaultStreamChangeHandler.class).asEagerSingleton();
     }
@@ -158,6 +165,13 @@ public class ServerBindings extends Graylog2Module {
             install(new NoopJournalModule());
         }
 
+        if (configuration.isDeadLetterJournalEnabled()) {
+            bind(DeadLetterJournal.class).to(KafkaDeadLetterJournal.class);
+            serviceBinder().addBinding().to(KafkaDeadLetterJournal.class);
+        } else {
+            bind(DeadLetterJournal.class).to(NoopDeadLetterJournal.class).in(Scopes.SINGLETON);
+        }
+
         bind(SystemJobManager.class).toProvider(SystemJobManagerProvider.class);
         bind(LdapConnector.class).in(Scopes.SINGLETON);
         bind(LdapUserAuthenticator.class).in(Scopes.SINGLETON);
@@ -24,12 +24,15 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.lmax.disruptor.WaitStrategy;
 import com.lmax.disruptor.dsl.Disruptor;
 import com.lmax.disruptor.dsl.ProducerType;
+import org.graylog2.buffers.processors.BatchedOutputBufferProcessor;
 import org.graylog2.buffers.processors.OutputBufferProcessor;
 import org.graylog2.plugin.GlobalMetricNames;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.buffers.Buffer;
 import org.graylog2.plugin.buffers.MessageEvent;
+import org.graylog2.shared.buffers.InstrumentedWaitStrategy;
 import org.graylog2.shared.buffers.LoggingExceptionHandler;
+import org.graylog2.shared.system.affinity.ThreadAffinity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,9 +55,12 @@ public class OutputBuffer extends Buffer {
     @Inject
     public OutputBuffer(MetricRegistry metricRegistry,
                         Provider<OutputBufferProcessor> processorProvider,
+                        BatchedOutputBufferProcessor.Factory batchedProcessorFactory,
                         @Named("outputbuffer_processors") int processorCount,
+                        @Named("outputbuffer_processor_batch_size") int batchSize,
                         @Named("ring_size") int ringSize,
-                        @Named("processor_wait_strategy") String waitStrategyName) {
+                        @Named("processor_wait_strategy") String waitStrategyName,
+                        ThreadAffinity threadAffinity) {
         this.ringBufferSize = ringSize;
         this.incomingMessages = metricRegistry.meter(name(OutputBuffer.class, "incomingMessages"));
 
@@ -66,33 +72,44 @@ public class OutputBuffer extends Buffer {
         });
         safelyRegister(metricRegistry, GlobalMetricNames.OUTPUT_BUFFER_SIZE, constantGauge(ringBufferSize));
 
-        final ThreadFactory threadFactory = threadFactory(metricRegistry);
+        final ThreadFactory threadFactory = threadFactory(metricRegistry, threadAffinity);
         final WaitStrategy waitStrategy = getWaitStrategy(waitStrategyName, "processor_wait_strategy");
         final Disruptor<MessageEvent> disruptor = new Disruptor<>(
                 MessageEvent.EVENT_FACTORY,
                 this.ringBufferSize,
                 threadFactory,
                 ProducerType.MULTI,
-                waitStrategy
+                new InstrumentedWaitStrategy(waitStrategy, metricRegistry, name(OutputBuffer.class, "waitStrategy"))
         );
         disruptor.setDefaultExceptionHandler(new LoggingExceptionHandler(LOG));
 
-        LOG.info("Initialized OutputBuffer with ring size <{}> and wait strategy <{}>.",
-                ringBufferSize, waitStrategy.getClass().getSimpleName());
+        LOG.info("Initialized OutputBuffer with ring size <{}>, wait strategy <{}> and batch size <{}>.",
+                ringBufferSize, waitStrategy.getClass().getSimpleName(), batchSize);
 
-        final OutputBufferProcessor[] processors = new OutputBufferProcessor[processorCount];
+        if (batchSize > 0) {
+            // Every batched processor sees all events, but only handles its share of them
+            final BatchedOutputBufferProcessor[] processors = new BatchedOutputBufferProcessor[processorCount];
+            for (int i = 0; i < processorCount; i++) {
+                processors[i] = batchedProcessorFactory.create(i, processorCount);
+            }
 
-        for (int i = 0; i < processorCount; i++) {
-            processors[i] = processorProvider.get();
-        }
+            disruptor.handleEventsWith(processors);
+        } else {
+            final OutputBufferProcessor[] processors = new OutputBufferProcessor[processorCount];
 
-        disruptor.handleEventsWithWorkerPool(processors);
+            for (int i = 0; i < processorCount; i++) {
+                processors[i] = processorProvider.get();
+            }
+
+            disruptor.handleEventsWithWorkerPool(processors);
+        }
 
         ringBuffer = disruptor.start();
     }
 
-    private ThreadFactory threadFactory(final MetricRegistry metricRegistry) {
-        final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("outputbufferprocessor-%d").build();
+    private ThreadFactory threadFactory(final MetricRegistry metricRegistry, final ThreadAffinity threadAffinity) {
+        final ThreadFactory threadFactory = threadAffinity.threadFactory(
+                new ThreadFactoryBuilder().setNameFormat("outputbufferprocessor-%d").build());
         return new InstrumentedThreadFactory(threadFactory, metricRegistry, name(this.getClass(), "thread-factory"));
     }
 
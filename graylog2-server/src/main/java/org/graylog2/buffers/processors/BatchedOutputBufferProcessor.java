@@ -0,0 +1,244 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.buffers.processors;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.InstrumentedExecutorService;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.assistedinject.Assisted;
+import com.google.inject.assistedinject.AssistedInject;
+import com.lmax.disruptor.EventHandler;
+import org.graylog2.Configuration;
+import org.graylog2.outputs.DefaultMessageOutput;
+import org.graylog2.outputs.OutputRouter;
+import org.graylog2.plugin.GlobalMetricNames;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageTrace;
+import org.graylog2.plugin.ServerStatus;
+import org.graylog2.plugin.buffers.MessageEvent;
+import org.graylog2.plugin.outputs.MessageOutput;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Writes messages to the outputs in batches instead of one by one like the {@link OutputBufferProcessor}.
+ * <p>
+ * Every processor handles the events whose sequence modulo the number of processors equals its ordinal and collects
+ * them until the end of a batch of the ring buffer is reached or the maximum batch size is exceeded. The collected
+ * messages are grouped by stream output and every output is called once per batch with
+ * {@link MessageOutput#write(List)}.
+ * <p>
+ * Like in the {@link OutputBufferProcessor}, the default output is not time limited to exert back pressure on the
+ * processing pipeline. It is written by the processor thread itself, while the stream outputs are written by the
+ * executor and are time limited per batch.
+ */
+public class BatchedOutputBufferProcessor implements EventHandler<MessageEvent> {
+    private static final Logger LOG = LoggerFactory.getLogger(BatchedOutputBufferProcessor.class);
+
+    private static final String INCOMING_MESSAGES_METRICNAME = name(OutputBufferProcessor.class, "incomingMessages");
+    private static final String PROCESS_TIME_METRICNAME = name(BatchedOutputBufferProcessor.class, "processTime");
+    private static final String BATCH_SIZE_METRICNAME = name(BatchedOutputBufferProcessor.class, "batchSize");
+
+    public interface Factory {
+        BatchedOutputBufferProcessor create(@Assisted("ordinal") int ordinal,
+                                            @Assisted("numberOfProcessors") int numberOfProcessors);
+    }
+
+    private final ExecutorService executor;
+
+    private final Configuration configuration;
+    private final ServerStatus serverStatus;
+
+    private final Meter incomingMessages;
+    private final Counter outputThroughput;
+    private final Timer processTime;
+    private final Histogram batchSize;
+
+    private final OutputRouter outputRouter;
+    private final MessageOutput defaultMessageOutput;
+    private final int ordinal;
+    private final int numberOfProcessors;
+    private final int maxBatchSize;
+
+    private List<Message> batch;
+
+    @AssistedInject
+    public BatchedOutputBufferProcessor(Configuration configuration,
+                                        MetricRegistry metricRegistry,
+                                        ServerStatus serverStatus,
+                                        OutputRouter outputRouter,
+                                        @DefaultMessageOutput MessageOutput defaultMessageOutput,
+                                        @Assisted("ordinal") int ordinal,
+                                        @Assisted("numberOfProcessors") int numberOfProcessors) {
+        this.configuration = configuration;
+        this.serverStatus = serverStatus;
+        this.outputRouter = outputRouter;
+        this.defaultMessageOutput = defaultMessageOutput;
+        this.ordinal = ordinal;
+        this.numberOfProcessors = numberOfProcessors;
+        this.maxBatchSize = configuration.getOutputBufferProcessorBatchSize();
+        this.batch = new ArrayList<>(maxBatchSize);
+
+        final String nameFormat = "outputbuffer-processor-executor-%d";
+        final int corePoolSize = configuration.getOutputBufferProcessorThreadsCorePoolSize();
+        final int maxPoolSize = configuration.getOutputBufferProcessorThreadsMaxPoolSize();
+        final int keepAliveTime = configuration.getOutputBufferProcessorKeepAliveTime();
+        this.executor = executorService(metricRegistry, nameFormat, corePoolSize, maxPoolSize, keepAliveTime);
+
+        this.incomingMessages = metricRegistry.meter(INCOMING_MESSAGES_METRICNAME);
+        this.outputThroughput = metricRegistry.counter(GlobalMetricNames.OUTPUT_THROUGHPUT);
+        this.processTime = metricRegistry.timer(PROCESS_TIME_METRICNAME);
+        this.batchSize = metricRegistry.histogram(BATCH_SIZE_METRICNAME);
+    }
+
+    private ExecutorService executorService(final MetricRegistry metricRegistry, final String nameFormat,
+                                            final int corePoolSize, final int maxPoolSize, final int keepAliveTime) {
+        final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat(nameFormat).build();
+        return new InstrumentedExecutorService(
+                new ThreadPoolExecutor(corePoolSize, maxPoolSize, keepAliveTime, TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<Runnable>(), threadFactory),
+                metricRegistry,
+                name(this.getClass(), "executor-service"));
+    }
+
+    @Override
+    public void onEvent(MessageEvent event, long sequence, boolean endOfBatch) throws Exception {
+        if (sequence % numberOfProcessors == ordinal) {
+            incomingMessages.mark();
+
+            final Message msg = event.getMessage();
+            if (msg == null) {
+                LOG.debug("Skipping null message.");
+            } else {
+                msg.markTraceStage(MessageTrace.Stage.OUTPUT_BUFFER);
+                batch.add(msg);
+            }
+            event.clearMessages();
+        }
+
+        if (batch.size() >= maxBatchSize || endOfBatch && !batch.isEmpty()) {
+            // Outputs might keep a reference to the list, so it is never reused
+            final List<Message> messages = batch;
+            batch = new ArrayList<>(maxBatchSize);
+            writeBatch(messages);
+        }
+    }
+
+    private void writeBatch(List<Message> messages) throws InterruptedException {
+        LOG.debug("Processing batch of {} messages from OutputBuffer.", messages.size());
+        batchSize.update(messages.size());
+
+        final Map<MessageOutput, List<Message>> streamOutputBatches = new HashMap<>();
+        for (final Message msg : messages) {
+            final Set<MessageOutput> messageOutputs = outputRouter.getStreamOutputsForMessage(msg);
+            msg.recordCounter(serverStatus, "matched-outputs", messageOutputs.size());
+            for (final MessageOutput output : messageOutputs) {
+                streamOutputBatches.computeIfAbsent(output, k -> new ArrayList<>()).add(msg);
+            }
+        }
+
+        final CountDownLatch streamOutputsDoneSignal = new CountDownLatch(streamOutputBatches.size());
+        for (final Map.Entry<MessageOutput, List<Message>> entry : streamOutputBatches.entrySet()) {
+            submit(entry.getKey(), entry.getValue(), streamOutputsDoneSignal);
+        }
+
+        // The default output may block while flushing, this exerts the back pressure to the system
+        write(defaultMessageOutput, messages);
+
+        // Wait until all writer threads for stream outputs have finished or timeout is reached.
+        if (!streamOutputsDoneSignal.await(configuration.getOutputModuleTimeout(), TimeUnit.MILLISECONDS)) {
+            LOG.warn("Timeout reached. Not waiting any longer for stream output writer threads to complete.");
+        }
+
+        if (LOG.isDebugEnabled()) {
+            for (final Message msg : messages) {
+                if (msg.hasRecordings()) {
+                    LOG.debug("Message event trace: {}", msg.recordingsAsString());
+                }
+            }
+        }
+
+        outputThroughput.inc(messages.size());
+
+        LOG.debug("Wrote batch of {} messages to all outputs. Finished handling.", messages.size());
+    }
+
+    private void submit(final MessageOutput output, final List<Message> messages, final CountDownLatch doneSignal) {
+        try {
+            executor.submit(() -> {
+                try {
+                    write(output, messages);
+                } finally {
+                    doneSignal.countDown();
+                }
+            });
+        } catch (Exception e) {
+            LOG.error("Could not write message batch to output [" + output.getClass() + "].", e);
+            doneSignal.countDown();
+        }
+    }
+
+    private void write(final MessageOutput output, final List<Message> messages) {
+        if (output == null) {
+            LOG.error("Output was null!");
+            return;
+        }
+        if (!output.isRunning()) {
+            LOG.debug("Skipping stopped output {}", output.getClass().getName());
+            return;
+        }
+
+        LOG.debug("Writing {} messages to [{}].", messages.size(), output.getClass());
+        try (Timer.Context ignored = processTime.time()) {
+            output.write(messages);
+        } catch (UnsupportedOperationException e) {
+            // Some outputs only support writing single messages
+            LOG.debug("Output [{}] doesn't support writing batches, writing messages one by one.", output.getClass());
+            writeSingleMessages(output, messages);
+        } catch (Exception e) {
+            LOG.error("Error in output [" + output.getClass() + "].", e);
+        }
+    }
+
+    private void writeSingleMessages(final MessageOutput output, final List<Message> messages) {
+        for (final Message msg : messages) {
+            try {
+                output.write(msg);
+            } catch (Exception e) {
+                LOG.error("Error in output [" + output.getClass() + "].", e);
+            }
+        }
+    }
+}
@@ -30,6 +30,7 @@ import org.graylog2.outputs.DefaultMessageOutput;
 import org.graylog2.outputs.OutputRouter;
 import org.graylog2.plugin.GlobalMetricNames;
 import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageTrace;
 import org.graylog2.plugin.ServerStatus;
 import org.graylog2.plugin.buffers.MessageEvent;
 import org.graylog2.plugin.outputs.MessageOutput;
@@ -108,7 +109,9 @@ public class OutputBufferProcessor implements WorkHandler<MessageEvent> {
      * <p>
      * The stream outputs are time limited so one bad output does not impact throughput too much. Essentially this means
      * that the work of writing to the outputs is performed, but the writer threads will not wait forever for stream
-     * outputs to finish their work. <b>This might lead to increased memory usage!</b>
+     * outputs to finish their work. <b>This might lead to increased memory usage!</b> If {@code output_queue_size} is
+     * set, stream outputs are wrapped in a {@link org.graylog2.outputs.SpillingMessageOutput} which only enqueues the
+     * message and returns immediately.
      * </p>
      * <p>
      * The default output, however, is allowed to block and is not subject to time limiting. This is important because it
@@ -128,6 +131,7 @@ public class OutputBufferProcessor implements WorkHandler<MessageEvent> {
             return;
         }
         LOG.debug("Processing message <{}> from OutputBuffer.", msg.getId());
+        msg.markTraceStage(MessageTrace.Stage.OUTPUT_BUFFER);
 
         final Set<MessageOutput> messageOutputs = outputRouter.getStreamOutputsForMessage(msg);
         msg.recordCounter(serverStatus, "matched-outputs", messageOutputs.size());
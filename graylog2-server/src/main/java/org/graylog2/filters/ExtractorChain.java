@@ -0,0 +1,162 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.filters;
+
+import com.google.common.collect.ImmutableList;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.inputs.Extractor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The extractors of an input, compiled into an execution plan which shares condition checks between extractors.
+ * <p>
+ * Extractors with the same condition on the same source field share a single condition check per message. All
+ * string conditions on the same source field are checked together with one pass over the field value. Extractors
+ * may change their source field, so a shared result is only reused as long as the field value is unchanged.
+ */
+final class ExtractorChain {
+    private static final Logger LOG = LoggerFactory.getLogger(ExtractorChain.class);
+
+    static final ExtractorChain EMPTY = compile(ImmutableList.of());
+
+    private final ImmutableList<Extractor> extractors;
+    // the shared condition of every extractor, -1 if it has no condition
+    private final int[] conditionSlots;
+    // the index of the condition value in the matcher of the condition slot
+    private final int[] patternIndexes;
+    // the matchers of grouped string conditions, null for conditions which are checked by the extractor itself
+    private final MultiStringMatcher[] matchers;
+
+    private ExtractorChain(ImmutableList<Extractor> extractors, int[] conditionSlots, int[] patternIndexes, MultiStringMatcher[] matchers) {
+        this.extractors = extractors;
+        this.conditionSlots = conditionSlots;
+        this.patternIndexes = patternIndexes;
+        this.matchers = matchers;
+    }
+
+    /**
+     * Compiles the given extractors.
+     *
+     * @param extractors the extractors in the order in which they run
+     */
+    static ExtractorChain compile(List<Extractor> extractors) {
+        final int[] conditionSlots = new int[extractors.size()];
+        final int[] patternIndexes = new int[extractors.size()];
+        Arrays.fill(conditionSlots, -1);
+
+        // distinct string conditions per source field
+        final Map<String, List<String>> stringConditions = new LinkedHashMap<>();
+        for (Extractor extractor : extractors) {
+            if (extractor.getConditionType() == Extractor.ConditionType.STRING) {
+                final List<String> values = stringConditions.computeIfAbsent(extractor.getSourceField(), field -> new ArrayList<>());
+                if (!values.contains(extractor.getConditionValue())) {
+                    values.add(extractor.getConditionValue());
+                }
+            }
+        }
+
+        final List<MultiStringMatcher> matchers = new ArrayList<>();
+        final Map<String, Integer> stringSlots = new HashMap<>();
+        final Map<List<Object>, Integer> conditionSlotsByKey = new HashMap<>();
+        for (int i = 0; i < extractors.size(); i++) {
+            final Extractor extractor = extractors.get(i);
+            final Extractor.ConditionType conditionType = extractor.getConditionType();
+            final String sourceField = extractor.getSourceField();
+            if (conditionType == Extractor.ConditionType.NONE) {
+                continue;
+            }
+
+            final List<String> values = stringConditions.get(sourceField);
+            if (conditionType == Extractor.ConditionType.STRING && values.size() > 1) {
+                conditionSlots[i] = stringSlots.computeIfAbsent(sourceField, field -> {
+                    matchers.add(new MultiStringMatcher(values));
+                    return matchers.size() - 1;
+                });
+                patternIndexes[i] = values.indexOf(extractor.getConditionValue());
+            } else {
+                // Extractors with the same condition share the result of the first one
+                conditionSlots[i] = conditionSlotsByKey.computeIfAbsent(Arrays.asList(sourceField, conditionType, extractor.getConditionValue()), key -> {
+                    matchers.add(null);
+                    return matchers.size() - 1;
+                });
+            }
+        }
+
+        return new ExtractorChain(ImmutableList.copyOf(extractors), conditionSlots, patternIndexes,
+                matchers.toArray(new MultiStringMatcher[0]));
+    }
+
+    /**
+     * Runs all extractors on the given message.
+     */
+    void run(Message msg) {
+        final SharedConditions conditions = new SharedConditions();
+        for (int i = 0; i < extractors.size(); i++) {
+            final Extractor extractor = extractors.get(i);
+            try {
+                conditions.position = i;
+                extractor.runExtractor(msg, conditions);
+            } catch (Exception e) {
+                extractor.incrementExceptions();
+                LOG.error("Could not apply extractor \"" + extractor.getTitle() + "\" (id=" + extractor.getId() + ") "
+                        + "to message " + msg.getId(), e);
+            }
+        }
+    }
+
+    List<Extractor> getExtractors() {
+        return extractors;
+    }
+
+    /**
+     * The condition results of a single message. Not thread-safe, every message gets its own instance.
+     */
+    private class SharedConditions implements Extractor.ConditionMatcher {
+        private final String[] values = new String[matchers.length];
+        private final Object[] results = new Object[matchers.length];
+        // the index of the running extractor
+        private int position;
+
+        @Override
+        public boolean matches(Extractor extractor, String value) {
+            final int index = extractors.get(position) == extractor ? position : extractors.indexOf(extractor);
+            final int slot = index < 0 ? -1 : conditionSlots[index];
+            if (slot < 0) {
+                return extractor.conditionMatches(value);
+            }
+
+            // Identity check on purpose: extractors never change a field without replacing its value
+            if (values[slot] != value) {
+                final MultiStringMatcher matcher = matchers[slot];
+                results[slot] = matcher != null ? matcher.match(value) : extractor.conditionMatches(value);
+                values[slot] = value;
+            }
+
+            final Object result = results[slot];
+            return result instanceof BitSet ? ((BitSet) result).get(patternIndexes[index]) : (Boolean) result;
+        }
+    }
+}
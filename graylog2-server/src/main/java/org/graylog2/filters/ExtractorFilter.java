@@ -16,7 +16,6 @@
  */
 package org.graylog2.filters;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import org.graylog2.database.NotFoundException;
@@ -36,7 +35,6 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import javax.inject.Named;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
@@ -48,7 +46,7 @@ public class ExtractorFilter implements MessageFilter {
     private static final Logger LOG = LoggerFactory.getLogger(ExtractorFilter.class);
     private static final String NAME = "Extractor";
 
-    private final ConcurrentMap<String, List<Extractor>> extractors = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ExtractorChain> extractors = new ConcurrentHashMap<>();
 
     private final InputService inputService;
     private final ScheduledExecutorService scheduler;
@@ -72,15 +70,7 @@ public class ExtractorFilter implements MessageFilter {
             return false;
         }
 
-        for (final Extractor extractor : extractors.getOrDefault(msg.getSourceInputId(), Collections.emptyList())) {
-            try {
-                extractor.runExtractor(msg);
-            } catch (Exception e) {
-                extractor.incrementExceptions();
-                LOG.error("Could not apply extractor \"" + extractor.getTitle() + "\" (id=" + extractor.getId() + ") "
-                        + "to message " + msg.getId(), e);
-            }
-        }
+        extractors.getOrDefault(msg.getSourceInputId(), ExtractorChain.EMPTY).run(msg);
 
         return false;
     }
@@ -144,7 +134,7 @@ public class ExtractorFilter implements MessageFilter {
                     .sorted(Comparator.comparingLong(Extractor::getOrder))
                     .collect(Collectors.toList());
 
-            extractors.put(inputId, ImmutableList.copyOf(sortedExtractors));
+            extractors.put(inputId, ExtractorChain.compile(sortedExtractors));
         } catch (NotFoundException e) {
             LOG.warn("Unable to load input <{}>: {}", inputId, e.getMessage());
         }
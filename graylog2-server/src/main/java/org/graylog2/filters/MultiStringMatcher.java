@@ -0,0 +1,148 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.filters;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Finds which of several strings occur in a text with a single pass over the text (Aho-Corasick).
+ */
+final class MultiStringMatcher {
+    private final int patternCount;
+    // sorted transition characters and their target states per state
+    private final char[][] keys;
+    private final int[][] targets;
+    private final int[] fail;
+    // patterns ending in a state
+    private final int[][] outputs;
+    // the next state on the fail chain which has outputs, -1 if there is none
+    private final int[] outputLinks;
+
+    MultiStringMatcher(List<String> patterns) {
+        this.patternCount = patterns.size();
+
+        final List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        final List<List<Integer>> patternsByState = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        patternsByState.add(new ArrayList<>());
+        for (int i = 0; i < patterns.size(); i++) {
+            final String pattern = patterns.get(i);
+            int state = 0;
+            for (int j = 0; j < pattern.length(); j++) {
+                final Integer next = trie.get(state).get(pattern.charAt(j));
+                if (next == null) {
+                    trie.add(new TreeMap<>());
+                    patternsByState.add(new ArrayList<>());
+                    trie.get(state).put(pattern.charAt(j), trie.size() - 1);
+                    state = trie.size() - 1;
+                } else {
+                    state = next;
+                }
+            }
+            patternsByState.get(state).add(i);
+        }
+
+        final int stateCount = trie.size();
+        this.keys = new char[stateCount][];
+        this.targets = new int[stateCount][];
+        this.outputs = new int[stateCount][];
+        for (int state = 0; state < stateCount; state++) {
+            final TreeMap<Character, Integer> transitions = trie.get(state);
+            keys[state] = new char[transitions.size()];
+            targets[state] = new int[transitions.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+                keys[state][i] = transition.getKey();
+                targets[state][i] = transition.getValue();
+                i++;
+            }
+            outputs[state] = patternsByState.get(state).stream().mapToInt(Integer::intValue).toArray();
+        }
+
+        this.fail = new int[stateCount];
+        this.outputLinks = new int[stateCount];
+        outputLinks[0] = -1;
+        final Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(0);
+        while (!queue.isEmpty()) {
+            final int state = queue.remove();
+            for (int i = 0; i < keys[state].length; i++) {
+                final char c = keys[state][i];
+                final int target = targets[state][i];
+                if (state != 0) {
+                    int f = fail[state];
+                    while (f != 0 && next(f, c) < 0) {
+                        f = fail[f];
+                    }
+                    final int failTarget = next(f, c);
+                    fail[target] = failTarget < 0 ? 0 : failTarget;
+                }
+                // Patterns of the root state are empty and match anyway
+                final int failState = fail[target];
+                outputLinks[target] = failState != 0 && outputs[failState].length > 0 ? failState : outputLinks[failState];
+                queue.add(target);
+            }
+        }
+    }
+
+    /**
+     * @param text the text to search
+     * @return the indexes of the patterns which occur in the text
+     */
+    BitSet match(String text) {
+        final BitSet found = new BitSet(patternCount);
+        int foundCount = add(found, 0, 0);
+        int state = 0;
+        for (int i = 0; i < text.length() && foundCount < patternCount; i++) {
+            final char c = text.charAt(i);
+            int next = next(state, c);
+            while (next < 0 && state != 0) {
+                state = fail[state];
+                next = next(state, c);
+            }
+            state = next < 0 ? 0 : next;
+
+            for (int output = state; output > 0; output = outputLinks[output]) {
+                foundCount = add(found, output, foundCount);
+            }
+        }
+        return found;
+    }
+
+    private int add(BitSet found, int state, int foundCount) {
+        int count = foundCount;
+        for (int pattern : outputs[state]) {
+            if (!found.get(pattern)) {
+                found.set(pattern);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int next(int state, char c) {
+        final int i = Arrays.binarySearch(keys[state], c);
+        return i < 0 ? -1 : targets[state][i];
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.grok;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.ImmutableList;
+import io.krakens.grok.api.Grok;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * A compiled grok pattern which rejects values before running the regular expression if they don't contain the
+ * literal parts of the pattern.
+ * <p>
+ * Most patterns don't match most values, and a regular expression often only fails after a lot of backtracking,
+ * while a value missing a required literal is rejected with a plain substring search.
+ */
+public class GrokMatcher {
+    // scanning the value for more literals rarely rejects more values
+    private static final int MAX_REQUIRED_LITERALS = 4;
+
+    private final Grok grok;
+    private final ImmutableList<String> requiredLiterals;
+    private final Timer matchTimer;
+    private final Timer missTimer;
+    private final Counter prefilterMissesCounter;
+
+    GrokMatcher(Grok grok, MetricRegistry metricRegistry, String metricsPrefix) {
+        this.grok = grok;
+        this.requiredLiterals = RequiredLiterals.of(grok.getNamedRegex(), MAX_REQUIRED_LITERALS);
+        this.matchTimer = metricRegistry.timer(name(metricsPrefix, "matchTime"));
+        this.missTimer = metricRegistry.timer(name(metricsPrefix, "missTime"));
+        this.prefilterMissesCounter = metricRegistry.counter(name(metricsPrefix, "prefilterMisses"));
+    }
+
+    /**
+     * Matches the value against the pattern.
+     *
+     * @param value the value to match
+     * @return the flattened captures of the pattern, an empty map if the pattern doesn't match
+     * @see io.krakens.grok.api.Match#captureFlattened()
+     */
+    public Map<String, Object> captureFlattened(String value) {
+        for (String literal : requiredLiterals) {
+            if (!value.contains(literal)) {
+                prefilterMissesCounter.inc();
+                return Collections.emptyMap();
+            }
+        }
+
+        final long start = System.nanoTime();
+        final Map<String, Object> captures = grok.match(value).captureFlattened();
+        final Timer timer = captures.isEmpty() ? missTimer : matchTimer;
+        timer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return captures;
+    }
+
+    /**
+     * Removes the metrics of this matcher from the given registry. Metrics which have been registered by another
+     * matcher for the same pattern in the meantime are kept.
+     */
+    void removeMetrics(MetricRegistry metricRegistry) {
+        metricRegistry.removeMatching((name, metric) -> metric == matchTimer || metric == missTimer || metric == prefilterMissesCounter);
+    }
+
+    public Grok getGrok() {
+        return grok;
+    }
+
+    List<String> getRequiredLiterals() {
+        return requiredLiterals;
+    }
+}
@@ -16,12 +16,15 @@
  */
 package org.graylog2.grok;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Throwables;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListener;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 import io.krakens.grok.api.Grok;
 import io.krakens.grok.api.GrokCompiler;
@@ -32,6 +35,7 @@ import javax.annotation.Nonnull;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
@@ -39,6 +43,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static com.codahale.metrics.MetricRegistry.name;
 import static com.google.common.cache.CacheLoader.asyncReloading;
 
 @Singleton
@@ -46,23 +51,37 @@ public class GrokPatternRegistry {
     private static final Logger log = LoggerFactory.getLogger(GrokPatternRegistry.class);
 
     private final GrokPatternService grokPatternService;
+    private final MetricRegistry metricRegistry;
 
     private final AtomicReference<Set<GrokPattern>> patterns = new AtomicReference<>(Collections.emptySet());
-    private final LoadingCache<String, Grok> grokCache;
-    private final LoadingCache<String, Grok> grokCacheNamedOnly;
+    private final LoadingCache<String, GrokMatcher> grokCache;
+    private final LoadingCache<String, GrokMatcher> grokCacheNamedOnly;
 
     @Inject
     public GrokPatternRegistry(EventBus serverEventBus,
                                GrokPatternService grokPatternService,
-                               @Named("daemonScheduler") ScheduledExecutorService daemonExecutor) {
+                               @Named("daemonScheduler") ScheduledExecutorService daemonExecutor,
+                               MetricRegistry metricRegistry) {
         this.grokPatternService = grokPatternService;
+        this.metricRegistry = metricRegistry;
+
+        // The metrics of a pattern are registered by its matcher, so they have to go once the matcher has been evicted
+        // or the patterns have changed
+        final RemovalListener<String, GrokMatcher> removalListener = notification -> {
+            final GrokMatcher grokMatcher = notification.getValue();
+            if (grokMatcher != null) {
+                grokMatcher.removeMetrics(metricRegistry);
+            }
+        };
 
         grokCache = CacheBuilder.newBuilder()
                 .expireAfterAccess(1, TimeUnit.MINUTES) // prevent from hanging on to memory forever
+                .removalListener(removalListener)
                 .build(asyncReloading(new GrokReloader(false), daemonExecutor));
 
         grokCacheNamedOnly = CacheBuilder.newBuilder()
                 .expireAfterAccess(1, TimeUnit.MINUTES) // prevent from hanging on to memory forever
+                .removalListener(removalListener)
                 .build(asyncReloading(new GrokReloader(true), daemonExecutor));
 
         // trigger initial loading
@@ -92,6 +111,15 @@ public class GrokPatternRegistry {
     }
 
     public Grok cachedGrokForPattern(String pattern, boolean namedCapturesOnly) {
+        return cachedGrokMatcherForPattern(pattern, namedCapturesOnly).getGrok();
+    }
+
+    /**
+     * Returns the compiled matcher for the given grok pattern. Prefer this over {@link #cachedGrokForPattern(String, boolean)}
+     * for matching values, it rejects most non-matching values without running the regular expression and records
+     * match and miss metrics for the pattern.
+     */
+    public GrokMatcher cachedGrokMatcherForPattern(String pattern, boolean namedCapturesOnly) {
         try {
             if (namedCapturesOnly) {
                 return grokCacheNamedOnly.get(pattern);
@@ -116,7 +144,19 @@ public class GrokPatternRegistry {
         return patterns.get();
     }
 
-    private class GrokReloader extends CacheLoader<String, Grok> {
+    /**
+     * The metric names of a pattern contain a hash of the pattern, the pattern itself isn't usable in a metric name.
+     */
+    private static String metricsPrefix(String pattern, boolean namedCapturesOnly) {
+        final String patternId = Hashing.murmur3_32().newHasher()
+                .putBoolean(namedCapturesOnly)
+                .putString(pattern, StandardCharsets.UTF_8)
+                .hash()
+                .toString();
+        return name(GrokPatternRegistry.class, "patterns", patternId);
+    }
+
+    private class GrokReloader extends CacheLoader<String, GrokMatcher> {
         private final boolean namedCapturesOnly;
 
         GrokReloader(boolean namedCapturesOnly) {
@@ -124,12 +164,13 @@ public class GrokPatternRegistry {
         }
 
         @Override
-        public Grok load(@Nonnull String pattern) throws Exception {
+        public GrokMatcher load(@Nonnull String pattern) throws Exception {
             final GrokCompiler grokCompiler = GrokCompiler.newInstance();
             for (GrokPattern grokPattern : patterns()) {
                 grokCompiler.register(grokPattern.name(), grokPattern.pattern());
             }
-            return grokCompiler.compile(pattern, namedCapturesOnly);
+            final Grok grok = grokCompiler.compile(pattern, namedCapturesOnly);
+            return new GrokMatcher(grok, metricRegistry, metricsPrefix(pattern, namedCapturesOnly));
         }
     }
 }
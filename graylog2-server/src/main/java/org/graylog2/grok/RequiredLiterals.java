@@ -0,0 +1,317 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.grok;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Extracts literal strings which every match of a regular expression contains.
+ * <p>
+ * The analysis is conservative: constructs it doesn't understand, like alternations or inline flags, contribute no
+ * literals, and an expression it can't parse has no required literals at all.
+ */
+final class RequiredLiterals {
+    private static final int NO_QUANTIFIER = -1;
+
+    private RequiredLiterals() {
+    }
+
+    /**
+     * @param regex        the regular expression
+     * @param maxLiterals  the maximum number of literals to return, the longest literals are preferred
+     * @return the required literals of the expression, longest first
+     */
+    static ImmutableList<String> of(String regex, int maxLiterals) {
+        final List<String> literals;
+        try {
+            final Parser parser = new Parser(regex);
+            literals = parser.alternation();
+            if (parser.pos != regex.length()) {
+                return ImmutableList.of();
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            return ImmutableList.of();
+        }
+
+        return literals.stream()
+                .distinct()
+                .sorted(Comparator.comparingInt(String::length).reversed())
+                .limit(maxLiterals)
+                .collect(ImmutableList.toImmutableList());
+    }
+
+    private static class Parser {
+        private final String regex;
+        private int pos = 0;
+
+        Parser(String regex) {
+            this.regex = regex;
+        }
+
+        List<String> alternation() {
+            final List<String> literals = sequence();
+            boolean alternatives = false;
+            while (pos < regex.length() && regex.charAt(pos) == '|') {
+                pos++;
+                sequence();
+                alternatives = true;
+            }
+            return alternatives ? new ArrayList<>() : literals;
+        }
+
+        private List<String> sequence() {
+            final List<String> literals = new ArrayList<>();
+            final StringBuilder run = new StringBuilder();
+            while (pos < regex.length()) {
+                final char c = regex.charAt(pos);
+                if (c == '|' || c == ')') {
+                    break;
+                }
+
+                String literal = null;
+                List<String> atomLiterals = null;
+                switch (c) {
+                    case '(':
+                        pos++;
+                        atomLiterals = group();
+                        break;
+                    case '[':
+                        skipCharacterClass();
+                        break;
+                    case '\\':
+                        literal = escape();
+                        break;
+                    case '.':
+                    case '^':
+                    case '$':
+                        pos++;
+                        break;
+                    case '*':
+                    case '+':
+                    case '?':
+                    case '{':
+                        throw new IllegalArgumentException("Dangling quantifier at index " + pos);
+                    default:
+                        pos++;
+                        literal = String.valueOf(c);
+                }
+
+                final int min = quantifier();
+                if (literal != null) {
+                    if (min == NO_QUANTIFIER) {
+                        run.append(literal);
+                    } else {
+                        // A quantifier only applies to the last character of a quoted literal
+                        run.append(literal, 0, literal.length() - 1);
+                        if (min > 0) {
+                            run.append(literal.charAt(literal.length() - 1));
+                        }
+                        flush(run, literals);
+                    }
+                } else {
+                    flush(run, literals);
+                    if (atomLiterals != null && min != 0) {
+                        literals.addAll(atomLiterals);
+                    }
+                }
+            }
+            flush(run, literals);
+            return literals;
+        }
+
+        private static void flush(StringBuilder run, List<String> literals) {
+            if (run.length() > 0) {
+                literals.add(run.toString());
+                run.setLength(0);
+            }
+        }
+
+        private List<String> group() {
+            boolean lookaround = false;
+            if (regex.charAt(pos) == '?') {
+                final char type = regex.charAt(pos + 1);
+                if (type == ':' || type == '>') {
+                    pos += 2;
+                } else if (type == '=' || type == '!') {
+                    pos += 2;
+                    lookaround = true;
+                } else if (type == '<' && (regex.charAt(pos + 2) == '=' || regex.charAt(pos + 2) == '!')) {
+                    pos += 3;
+                    lookaround = true;
+                } else if (type == '<') {
+                    final int end = regex.indexOf('>', pos);
+                    if (end < 0) {
+                        throw new IllegalArgumentException("Unterminated group name");
+                    }
+                    pos = end + 1;
+                } else {
+                    // Inline flags like (?i) change what a literal matches
+                    throw new IllegalArgumentException("Unsupported group construct at index " + pos);
+                }
+            }
+
+            final List<String> literals = alternation();
+            if (pos >= regex.length() || regex.charAt(pos) != ')') {
+                throw new IllegalArgumentException("Unclosed group");
+            }
+            pos++;
+            return lookaround ? new ArrayList<>() : literals;
+        }
+
+        private void skipCharacterClass() {
+            skipClassStart();
+            int depth = 1;
+            while (depth > 0) {
+                final char c = regex.charAt(pos);
+                if (c == '\\') {
+                    if (regex.charAt(pos + 1) == 'Q') {
+                        final int end = regex.indexOf("\\E", pos + 2);
+                        pos = end < 0 ? regex.length() : end + 2;
+                        continue;
+                    }
+                    pos += 2;
+                    continue;
+                }
+                if (c == '[') {
+                    skipClassStart();
+                    depth++;
+                    continue;
+                } else if (c == ']') {
+                    depth--;
+                }
+                pos++;
+            }
+        }
+
+        /**
+         * Skips the opening bracket, a negation and a leading {@code ]}, which is a member of the class, not its end.
+         */
+        private void skipClassStart() {
+            pos++;
+            if (regex.charAt(pos) == '^') {
+                pos++;
+            }
+            if (regex.charAt(pos) == ']') {
+                pos++;
+            }
+        }
+
+        /**
+         * @return the literal string of the escape sequence or {@code null} if it doesn't match a fixed string
+         */
+        private String escape() {
+            final char c = regex.charAt(pos + 1);
+            pos += 2;
+            if (c == 'Q') {
+                final int end = regex.indexOf("\\E", pos);
+                final String quoted = end < 0 ? regex.substring(pos) : regex.substring(pos, end);
+                pos = end < 0 ? regex.length() : end + 2;
+                return quoted.isEmpty() ? null : quoted;
+            }
+            if (!Character.isLetterOrDigit(c)) {
+                return String.valueOf(c);
+            }
+
+            switch (c) {
+                case 'p':
+                case 'P':
+                case 'N':
+                case 'x':
+                    if (regex.charAt(pos) == '{') {
+                        skipPast('}');
+                    } else if (c == 'x') {
+                        pos += 2;
+                    } else if (c != 'N') {
+                        pos++;
+                    }
+                    break;
+                case 'k':
+                    skipPast('>');
+                    break;
+                case 'u':
+                    pos += 4;
+                    break;
+                case 'c':
+                    pos++;
+                    break;
+                case '0':
+                    while (pos < regex.length() && regex.charAt(pos) >= '0' && regex.charAt(pos) <= '7') {
+                        pos++;
+                    }
+                    break;
+                default:
+                    if (Character.isDigit(c)) {
+                        // back references
+                        while (pos < regex.length() && Character.isDigit(regex.charAt(pos))) {
+                            pos++;
+                        }
+                    }
+            }
+            return null;
+        }
+
+        private void skipPast(char terminator) {
+            final int end = regex.indexOf(terminator, pos);
+            if (end < 0) {
+                throw new IllegalArgumentException("Unterminated escape sequence");
+            }
+            pos = end + 1;
+        }
+
+        /**
+         * @return the minimum number of repetitions or {@link #NO_QUANTIFIER}
+         */
+        private int quantifier() {
+            if (pos >= regex.length()) {
+                return NO_QUANTIFIER;
+            }
+            final int min;
+            switch (regex.charAt(pos)) {
+                case '*':
+                case '?':
+                    min = 0;
+                    pos++;
+                    break;
+                case '+':
+                    min = 1;
+                    pos++;
+                    break;
+                case '{':
+                    final int end = regex.indexOf('}', pos);
+                    if (end < 0) {
+                        throw new IllegalArgumentException("Unterminated quantifier");
+                    }
+                    final String bounds = regex.substring(pos + 1, end);
+                    final int comma = bounds.indexOf(',');
+                    min = Integer.parseInt(comma < 0 ? bounds : bounds.substring(0, comma));
+                    pos = end + 1;
+                    break;
+                default:
+                    return NO_QUANTIFIER;
+            }
+            // lazy and possessive quantifiers
+            if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) {
+                pos++;
+            }
+            return min;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.messages;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import org.graylog.autovalue.WithBeanGetter;
+import org.joda.time.DateTime;
+
+import java.util.Map;
+
+/**
+ * A document which couldn't be indexed, together with the reason and the index set it belongs to.
+ */
+@AutoValue
+@WithBeanGetter
+@JsonAutoDetect
+public abstract class DeadLetter {
+    private static final String FIELD_ID = "id";
+    private static final String FIELD_INDEX_SET_ID = "index_set_id";
+    private static final String FIELD_INDEX = "index";
+    private static final String FIELD_ERROR = "error";
+    private static final String FIELD_FAILED_AT = "failed_at";
+    private static final String FIELD_DOCUMENT = "document";
+
+    @JsonProperty(FIELD_ID)
+    public abstract String id();
+
+    @JsonProperty(FIELD_INDEX_SET_ID)
+    public abstract String indexSetId();
+
+    @JsonProperty(FIELD_INDEX)
+    public abstract String index();
+
+    @JsonProperty(FIELD_ERROR)
+    public abstract String error();
+
+    @JsonProperty(FIELD_FAILED_AT)
+    public abstract DateTime failedAt();
+
+    /**
+     * @return the Elasticsearch document, without the message ID
+     */
+    @JsonProperty(FIELD_DOCUMENT)
+    public abstract Map<String, Object> document();
+
+    public DeadLetter withError(String index, String error, DateTime failedAt) {
+        return create(id(), indexSetId(), index, error, failedAt, document());
+    }
+
+    @JsonCreator
+    public static DeadLetter create(@JsonProperty(FIELD_ID) String id,
+                                    @JsonProperty(FIELD_INDEX_SET_ID) String indexSetId,
+                                    @JsonProperty(FIELD_INDEX) String index,
+                                    @JsonProperty(FIELD_ERROR) String error,
+                                    @JsonProperty(FIELD_FAILED_AT) DateTime failedAt,
+                                    @JsonProperty(FIELD_DOCUMENT) Map<String, Object> document) {
+        return new AutoValue_DeadLetter(id, indexSetId, index, error, failedAt, document);
+    }
+}
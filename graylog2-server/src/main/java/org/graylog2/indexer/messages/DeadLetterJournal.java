@@ -0,0 +1,75 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.messages;
+
+import com.google.auto.value.AutoValue;
+
+import java.util.List;
+
+/**
+ * Keeps the documents which couldn't be indexed, so they can be indexed again later.
+ */
+public interface DeadLetterJournal {
+    boolean isEnabled();
+
+    void write(List<DeadLetter> deadLetters);
+
+    /**
+     * Reads dead letters starting at the given offset. Entries which can't be read are skipped.
+     *
+     * @param offset       the offset of the first dead letter to read
+     * @param maximumCount the maximum number of dead letters to read
+     * @return the dead letters and their offsets
+     */
+    List<Entry> read(long offset, int maximumCount);
+
+    /**
+     * Marks all dead letters up to and including the given offset as done.
+     */
+    void markCommitted(long offset);
+
+    /**
+     * @return the offset of the first dead letter which hasn't been marked as done yet
+     */
+    long getStartOffset();
+
+    /**
+     * @return the offset the next written dead letter will get
+     */
+    long getEndOffset();
+
+    /**
+     * @return the number of dead letters which haven't been marked as done yet
+     */
+    long getUncommittedCount();
+
+    /**
+     * @return the size of the journal in bytes
+     */
+    long getSize();
+
+    @AutoValue
+    abstract class Entry {
+        public abstract long offset();
+
+        public abstract DeadLetter deadLetter();
+
+        public static Entry create(long offset, DeadLetter deadLetter) {
+            return new AutoValue_DeadLetterJournal_Entry(offset, deadLetter);
+        }
+    }
+}
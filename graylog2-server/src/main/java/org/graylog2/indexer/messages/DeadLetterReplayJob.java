@@ -0,0 +1,180 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.messages;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.RateLimiter;
+import org.graylog2.indexer.IndexSet;
+import org.graylog2.indexer.IndexSetRegistry;
+import org.graylog2.shared.system.activities.Activity;
+import org.graylog2.shared.system.activities.ActivityWriter;
+import org.graylog2.system.jobs.SystemJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Indexes the documents in the {@link DeadLetterJournal} again, at most {@code dead_letter_replay_rate} per second.
+ * <p>
+ * Only the dead letters which existed when the job was started are replayed. Documents which fail again are
+ * appended to the journal with the new error, so they can be replayed once more after fixing the cause.
+ */
+public class DeadLetterReplayJob extends SystemJob {
+    public interface Factory {
+        DeadLetterReplayJob create();
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(DeadLetterReplayJob.class);
+    private static final int MAX_CONCURRENCY = 1;
+    private static final int BATCH_SIZE = 500;
+
+    private volatile boolean cancelRequested = false;
+    private volatile long toReplay = 0L;
+    private volatile long replayed = 0L;
+
+    private final DeadLetterJournal deadLetterJournal;
+    private final Messages messages;
+    private final IndexSetRegistry indexSetRegistry;
+    private final ActivityWriter activityWriter;
+    private final int replayRate;
+
+    @Inject
+    public DeadLetterReplayJob(DeadLetterJournal deadLetterJournal,
+                               Messages messages,
+                               IndexSetRegistry indexSetRegistry,
+                               ActivityWriter activityWriter,
+                               @Named("dead_letter_replay_rate") int replayRate) {
+        this.deadLetterJournal = deadLetterJournal;
+        this.messages = messages;
+        this.indexSetRegistry = indexSetRegistry;
+        this.activityWriter = activityWriter;
+        this.replayRate = replayRate;
+    }
+
+    @Override
+    public void execute() {
+        final long endOffset = deadLetterJournal.getEndOffset();
+        long offset = deadLetterJournal.getStartOffset();
+        toReplay = Math.max(0L, endOffset - offset);
+        if (toReplay == 0L) {
+            info("No dead letters, nothing to replay.");
+            return;
+        }
+
+        info("Replaying " + toReplay + " dead letters.");
+        final RateLimiter rateLimiter = RateLimiter.create(replayRate);
+        final Stopwatch sw = Stopwatch.createStarted();
+        long failed = 0L;
+        while (offset < endOffset) {
+            if (cancelRequested) {
+                info("Stop requested. Replayed " + replayed + " of " + toReplay + " dead letters.");
+                return;
+            }
+
+            final int count = (int) Math.min(BATCH_SIZE, endOffset - offset);
+            final List<DeadLetterJournal.Entry> entries = deadLetterJournal.read(offset, count);
+            if (!entries.isEmpty()) {
+                rateLimiter.acquire(entries.size());
+                failed += replay(entries);
+            }
+
+            final long lastOffset = entries.isEmpty() ? offset + count - 1 : entries.get(entries.size() - 1).offset();
+            deadLetterJournal.markCommitted(lastOffset);
+            replayed += lastOffset + 1 - offset;
+            offset = lastOffset + 1;
+        }
+
+        info("Done replaying " + toReplay + " dead letters, " + failed + " failed again. Took "
+                + sw.stop().elapsed(TimeUnit.MILLISECONDS) + "ms.");
+    }
+
+    private int replay(List<DeadLetterJournal.Entry> entries) {
+        final List<Map.Entry<IndexSet, DeadLetter>> deadLetters = new ArrayList<>(entries.size());
+        for (DeadLetterJournal.Entry entry : entries) {
+            final DeadLetter deadLetter = entry.deadLetter();
+            final IndexSet indexSet = indexSetRegistry.get(deadLetter.indexSetId()).orElseGet(indexSetRegistry::getDefault);
+            deadLetters.add(new AbstractMap.SimpleEntry<>(indexSet, deadLetter));
+        }
+
+        List<DeadLetter> failed;
+        try {
+            failed = messages.bulkIndexDeadLetters(deadLetters);
+        } catch (Exception e) {
+            LOG.error("Couldn't replay {} dead letters, keeping them in the journal.", entries.size(), e);
+            failed = new ArrayList<>(entries.size());
+            for (DeadLetterJournal.Entry entry : entries) {
+                failed.add(entry.deadLetter());
+            }
+        }
+
+        if (!failed.isEmpty()) {
+            deadLetterJournal.write(failed);
+        }
+        return failed.size();
+    }
+
+    private void info(String what) {
+        LOG.info(what);
+        activityWriter.write(new Activity(what, DeadLetterReplayJob.class));
+    }
+
+    @Override
+    public void requestCancel() {
+        this.cancelRequested = true;
+    }
+
+    @Override
+    public int getProgress() {
+        if (toReplay <= 0L) {
+            return 0;
+        }
+
+        return (int) Math.floor(((double) replayed / (double) toReplay) * 100);
+    }
+
+    @Override
+    public int maxConcurrency() {
+        return MAX_CONCURRENCY;
+    }
+
+    @Override
+    public boolean providesProgress() {
+        return true;
+    }
+
+    @Override
+    public boolean isCancelable() {
+        return true;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Indexes the documents in the dead letter journal again.";
+    }
+
+    @Override
+    public String getClassName() {
+        return this.getClass().getCanonicalName();
+    }
+}
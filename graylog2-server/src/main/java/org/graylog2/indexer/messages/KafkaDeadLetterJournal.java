@@ -0,0 +1,152 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.messages;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.joschi.jadconfig.util.Size;
+import com.google.common.util.concurrent.AbstractIdleService;
+import org.graylog2.plugin.ServerStatus;
+import org.graylog2.shared.journal.Journal;
+import org.graylog2.shared.journal.KafkaJournal;
+import org.joda.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * A {@link DeadLetterJournal} which stores the dead letters as JSON in a separate {@link KafkaJournal}, using the
+ * segment and flush settings of the message journal.
+ */
+@Singleton
+public class KafkaDeadLetterJournal extends AbstractIdleService implements DeadLetterJournal {
+    private static final Logger LOG = LoggerFactory.getLogger(KafkaDeadLetterJournal.class);
+
+    private final KafkaJournal journal;
+    private final ObjectMapper objectMapper;
+
+    @Inject
+    public KafkaDeadLetterJournal(@Named("dead_letter_journal_dir") Path journalDirectory,
+                                  @Named("dead_letter_journal_max_size") Size retentionSize,
+                                  @Named("dead_letter_journal_max_age") com.github.joschi.jadconfig.util.Duration retentionAge,
+                                  @Named("message_journal_segment_size") Size segmentSize,
+                                  @Named("message_journal_segment_age") Duration segmentAge,
+                                  @Named("message_journal_flush_interval") long flushInterval,
+                                  @Named("message_journal_flush_age") Duration flushAge,
+                                  @Named("scheduler") ScheduledExecutorService scheduler,
+                                  MetricRegistry metricRegistry,
+                                  ServerStatus serverStatus,
+                                  ObjectMapper objectMapper) {
+        this(new KafkaJournal(journalDirectory, scheduler, segmentSize, segmentAge, retentionSize,
+                Duration.millis(retentionAge.toMilliseconds()),
+                flushInterval, flushAge, KafkaJournal.THRESHOLD_THROTTLING_DISABLED, metricRegistry, serverStatus,
+                name(KafkaDeadLetterJournal.class)), objectMapper);
+    }
+
+    KafkaDeadLetterJournal(KafkaJournal journal, ObjectMapper objectMapper) {
+        this.journal = journal;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void startUp() throws Exception {
+        journal.startAsync().awaitRunning();
+    }
+
+    @Override
+    protected void shutDown() throws Exception {
+        journal.stopAsync().awaitTerminated();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void write(List<DeadLetter> deadLetters) {
+        if (deadLetters.isEmpty()) {
+            return;
+        }
+
+        final List<Journal.Entry> entries = new ArrayList<>(deadLetters.size());
+        for (DeadLetter deadLetter : deadLetters) {
+            try {
+                entries.add(journal.createEntry(deadLetter.id().getBytes(StandardCharsets.UTF_8),
+                        objectMapper.writeValueAsBytes(deadLetter)));
+            } catch (JsonProcessingException e) {
+                LOG.error("Couldn't serialize dead letter for message <{}>, dropping it.", deadLetter.id(), e);
+            }
+        }
+        journal.write(entries);
+    }
+
+    @Override
+    public List<Entry> read(long offset, int maximumCount) {
+        final List<Journal.JournalReadEntry> readEntries = journal.read(offset, maximumCount);
+        final List<Entry> entries = new ArrayList<>(readEntries.size());
+        for (Journal.JournalReadEntry readEntry : readEntries) {
+            try {
+                entries.add(Entry.create(readEntry.getOffset(), objectMapper.readValue(readEntry.getPayload(), DeadLetter.class)));
+            } catch (IOException e) {
+                LOG.error("Couldn't deserialize dead letter at offset <{}>, skipping it.", readEntry.getOffset(), e);
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public void markCommitted(long offset) {
+        journal.markJournalOffsetCommitted(offset);
+    }
+
+    @Override
+    public long getStartOffset() {
+        final long committedOffset = journal.getCommittedOffset();
+        if (committedOffset == KafkaJournal.DEFAULT_COMMITTED_OFFSET) {
+            return journal.getLogStartOffset();
+        }
+        return Math.max(committedOffset + 1, journal.getLogStartOffset());
+    }
+
+    @Override
+    public long getEndOffset() {
+        return journal.getLogEndOffset();
+    }
+
+    @Override
+    public long getUncommittedCount() {
+        return Math.max(0L, getEndOffset() - getStartOffset());
+    }
+
+    @Override
+    public long getSize() {
+        return journal.size();
+    }
+}
@@ -26,6 +26,7 @@ import com.github.rholder.retry.RetryListener;
 import com.github.rholder.retry.Retryer;
 import com.github.rholder.retry.RetryerBuilder;
 import com.github.rholder.retry.WaitStrategies;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 import io.searchbox.client.JestClient;
 import io.searchbox.client.JestResult;
@@ -42,7 +43,10 @@ import org.graylog2.indexer.IndexSet;
 import org.graylog2.indexer.results.ResultMessage;
 import org.graylog2.plugin.GlobalMetricNames;
 import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageTrace;
+import org.graylog2.plugin.Tools;
 import org.graylog2.system.processing.ProcessingStatusRecorder;
+import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -87,16 +91,25 @@ public class Messages {
     private final LinkedBlockingQueue<List<IndexFailure>> indexFailureQueue;
     private final Counter outputByteCounter;
     private final Counter systemTrafficCounter;
+    private final DeadLetterJournal deadLetterJournal;
 
-    @Inject
     public Messages(MetricRegistry metricRegistry,
                     JestClient client,
                     ProcessingStatusRecorder processingStatusRecorder) {
+        this(metricRegistry, client, processingStatusRecorder, new NoopDeadLetterJournal());
+    }
+
+    @Inject
+    public Messages(MetricRegistry metricRegistry,
+                    JestClient client,
+                    ProcessingStatusRecorder processingStatusRecorder,
+                    DeadLetterJournal deadLetterJournal) {
         invalidTimestampMeter = metricRegistry.meter(name(Messages.class, "invalid-timestamps"));
         outputByteCounter = metricRegistry.counter(GlobalMetricNames.OUTPUT_TRAFFIC);
         systemTrafficCounter = metricRegistry.counter(GlobalMetricNames.SYSTEM_OUTPUT_TRAFFIC);
         this.client = client;
         this.processingStatusRecorder = processingStatusRecorder;
+        this.deadLetterJournal = deadLetterJournal;
 
         // TODO: Magic number
         this.indexFailureQueue =  new LinkedBlockingQueue<>(1000);
@@ -180,6 +193,7 @@ public class Messages {
             }
 
             processingStatusRecorder.updatePostIndexingReceiveTime(message.getReceiveTime());
+            message.markTraceStage(MessageTrace.Stage.INDEX);
         }
     }
 
@@ -203,6 +217,8 @@ public class Messages {
             .collect(Collectors.toMap(Message::getId, Function.identity()));
         final List<String> failedMessageIds = new ArrayList<>(items.size());
         final List<IndexFailure> indexFailures = new ArrayList<>(items.size());
+        final List<DeadLetter> deadLetters = new ArrayList<>(deadLetterJournal.isEnabled() ? items.size() : 0);
+        final DateTime failedAt = Tools.nowUTC();
         for (BulkResult.BulkResultItem item : items) {
             LOG.warn("Failed to index message: index=<{}> id=<{}> error=<{}>", item.index, item.id, item.error);
 
@@ -218,9 +234,24 @@ public class Messages {
 
             indexFailures.add(new IndexFailureImpl(doc));
 
+            if (deadLetterJournal.isEnabled()) {
+                final Map<String, Object> document = messageEntry.toElasticSearchObject(invalidTimestampMeter);
+                document.remove(Message.FIELD_ID);
+                deadLetters.add(DeadLetter.create(item.id, findIndexSet(messageList, item).getConfig().id(),
+                        item.index, Strings.nullToEmpty(item.error), failedAt, document));
+            }
+
             failedMessageIds.add(item.id);
         }
 
+        if (!deadLetters.isEmpty()) {
+            try {
+                deadLetterJournal.write(deadLetters);
+            } catch (Exception e) {
+                LOG.error("Couldn't write {} failed messages to the dead letter journal.", deadLetters.size(), e);
+            }
+        }
+
         LOG.error("Failed to index [{}] messages. Please check the index error log in your web interface for the reason. Error: {}",
                 indexFailures.size(), errorMessage);
 
@@ -234,6 +265,65 @@ public class Messages {
         return failedMessageIds;
     }
 
+    private IndexSet findIndexSet(List<Map.Entry<IndexSet, Message>> messageList, BulkResult.BulkResultItem item) {
+        IndexSet fallback = null;
+        for (Map.Entry<IndexSet, Message> entry : messageList) {
+            if (!item.id.equals(entry.getValue().getId())) {
+                continue;
+            }
+            // A message routed into several index sets has been indexed several times, only one of them failed
+            if (entry.getKey().isManagedIndex(item.index)) {
+                return entry.getKey();
+            }
+            if (fallback == null) {
+                fallback = entry.getKey();
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * Indexes dead letters into the current write index of their index sets again.
+     *
+     * @param deadLetters the dead letters and their index sets
+     * @return the dead letters which failed again, with the new error
+     */
+    public List<DeadLetter> bulkIndexDeadLetters(final List<Map.Entry<IndexSet, DeadLetter>> deadLetters) {
+        if (deadLetters.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final Bulk.Builder bulk = new Bulk.Builder();
+        for (Map.Entry<IndexSet, DeadLetter> entry : deadLetters) {
+            final DeadLetter deadLetter = entry.getValue();
+            bulk.addAction(new Index.Builder(deadLetter.document())
+                    .index(entry.getKey().getWriteIndexAlias())
+                    .type(IndexMapping.TYPE_MESSAGE)
+                    .id(deadLetter.id())
+                    .build());
+        }
+
+        final BulkResult result = runBulkRequest(bulk.build(), deadLetters.size());
+        final List<BulkResult.BulkResultItem> failedItems = result.getFailedItems();
+        if (failedItems.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final Map<String, DeadLetter> deadLetterMap = deadLetters.stream()
+                .map(Map.Entry::getValue)
+                .collect(Collectors.toMap(DeadLetter::id, Function.identity(), (first, second) -> first));
+        final DateTime failedAt = Tools.nowUTC();
+        final List<DeadLetter> failed = new ArrayList<>(failedItems.size());
+        for (BulkResult.BulkResultItem item : failedItems) {
+            LOG.warn("Failed to index dead letter: index=<{}> id=<{}> error=<{}>", item.index, item.id, item.error);
+            final DeadLetter deadLetter = deadLetterMap.get(item.id);
+            if (deadLetter != null) {
+                failed.add(deadLetter.withError(item.index, Strings.nullToEmpty(item.error), failedAt));
+            }
+        }
+        return failed;
+    }
+
     public Index prepareIndexRequest(String index, Map<String, Object> source, String id) {
         source.remove(Message.FIELD_ID);
 
@@ -0,0 +1,63 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.messages;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Used if the dead letter journal is disabled, documents which couldn't be indexed are dropped.
+ */
+public class NoopDeadLetterJournal implements DeadLetterJournal {
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void write(List<DeadLetter> deadLetters) {
+    }
+
+    @Override
+    public List<Entry> read(long offset, int maximumCount) {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void markCommitted(long offset) {
+    }
+
+    @Override
+    public long getStartOffset() {
+        return 0L;
+    }
+
+    @Override
+    public long getEndOffset() {
+        return 0L;
+    }
+
+    @Override
+    public long getUncommittedCount() {
+        return 0L;
+    }
+
+    @Override
+    public long getSize() {
+        return 0L;
+    }
+}
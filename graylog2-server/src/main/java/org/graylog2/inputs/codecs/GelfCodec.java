@@ -18,6 +18,8 @@ package org.graylog2.inputs.codecs;
 
 import com.eaio.uuid.UUID;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.NumberInput;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.assistedinject.Assisted;
@@ -47,6 +49,7 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @Codec(name = "gelf", displayName = "GELF")
@@ -69,46 +72,79 @@ public class GelfCodec extends AbstractCodec {
         this.decompressSizeLimit = configuration.getInt(CK_DECOMPRESS_SIZE_LIMIT, DEFAULT_DECOMPRESS_SIZE_LIMIT);
     }
 
-    private static String stringValue(final JsonNode json, final String fieldName) {
-        if (json != null) {
-            final JsonNode value = json.get(fieldName);
+    /**
+     * Marks fields with a JSON {@code null} value, {@code null} is used for missing fields.
+     */
+    private static final Object NULL_VALUE = new Object();
 
-            if (value != null) {
-                return value.asText();
-            }
+    /**
+     * A JSON object or array, these are stored as JSON strings.
+     */
+    private static final class JsonContainer {
+        private final String json;
+
+        private JsonContainer(String json) {
+            this.json = json;
+        }
+
+        @Override
+        public String toString() {
+            return json;
         }
-        return null;
     }
 
-    private static long longValue(final JsonNode json, final String fieldName) {
-        if (json != null) {
-            final JsonNode value = json.get(fieldName);
+    // The following methods mirror the conversions of JsonNode#asText(), JsonNode#asLong(long), ... for the
+    // field values read by readFields() and treeFields()
 
-            if (value != null) {
-                return value.asLong(-1L);
-            }
+    private static String asText(final Object value) {
+        if (value instanceof JsonContainer) {
+            return "";
+        } else if (value == NULL_VALUE) {
+            return "null";
         }
-        return -1L;
+        return value.toString();
     }
 
-    private static int intValue(final JsonNode json, final String fieldName) {
-        if (json != null) {
-            final JsonNode value = json.get(fieldName);
+    private static String stringValue(final Map<String, Object> fields, final String fieldName) {
+        final Object value = fields.get(fieldName);
+        return value == null ? null : asText(value);
+    }
 
-            if (value != null) {
-                return value.asInt(-1);
-            }
+    private static long longValue(final Map<String, Object> fields, final String fieldName) {
+        final Object value = fields.get(fieldName);
+        if (value == null || value instanceof JsonContainer) {
+            return -1L;
+        } else if (value instanceof String) {
+            return NumberInput.parseAsLong((String) value, -1L);
+        } else if (value instanceof Number) {
+            return ((Number) value).longValue();
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1L : 0L;
         }
-        return -1;
+        return 0L;
     }
 
-    private static double timestampValue(final JsonNode json) {
-        final JsonNode value = json.path(Message.FIELD_TIMESTAMP);
-        if (value.isNumber()) {
-            return value.asDouble(-1.0);
-        } else if (value.isTextual()) {
+    private static int intValue(final Map<String, Object> fields, final String fieldName) {
+        final Object value = fields.get(fieldName);
+        if (value == null || value instanceof JsonContainer) {
+            return -1;
+        } else if (value instanceof String) {
+            return NumberInput.parseAsInt((String) value, -1);
+        } else if (value instanceof Number) {
+            return ((Number) value).intValue();
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        }
+        return 0;
+    }
+
+    private static double timestampValue(final Map<String, Object> fields) {
+        final Object value = fields.get(Message.FIELD_TIMESTAMP);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof String) {
             try {
-                return Double.parseDouble(value.asText());
+                return Double.parseDouble((String) value);
             } catch (NumberFormatException e) {
                 log.debug("Unable to parse timestamp", e);
                 return -1.0;
@@ -122,25 +158,18 @@ public class GelfCodec extends AbstractCodec {
     @Override
     public Message decode(@Nonnull final RawMessage rawMessage) {
         final GELFMessage gelfMessage = new GELFMessage(rawMessage.getPayload(), rawMessage.getRemoteAddress());
-        final String json = gelfMessage.getJSON(decompressSizeLimit);
 
-        final JsonNode node;
-
-        try {
-            node = objectMapper.readTree(json);
-            if (node == null) {
-                throw new IOException("null result");
-            }
-        } catch (final Exception e) {
-            log.error("Could not parse JSON, first 400 characters: " +
-                              StringUtils.abbreviate(json, 403), e);
-            throw new IllegalStateException("JSON is null/could not be parsed (invalid JSON)", e);
+        // Payloads which can't be streamed (invalid JSON or UTF-8, broken compression, ...) take the slow path which
+        // behaves exactly like before, including its error handling
+        Map<String, Object> fields = readFields(gelfMessage);
+        if (fields == null) {
+            fields = treeFields(gelfMessage);
         }
 
-        validateGELFMessage(node, rawMessage.getId(), rawMessage.getRemoteAddress());
+        validateGELFMessage(fields, rawMessage.getId(), rawMessage.getRemoteAddress());
 
         // Timestamp.
-        final double messageTimestamp = timestampValue(node);
+        final double messageTimestamp = timestampValue(fields);
         final DateTime timestamp;
         if (messageTimestamp <= 0) {
             timestamp = rawMessage.getTimestamp();
@@ -150,42 +179,38 @@ public class GelfCodec extends AbstractCodec {
         }
 
         final Message message = new Message(
-                stringValue(node, "short_message"),
-                stringValue(node, "host"),
+                stringValue(fields, "short_message"),
+                stringValue(fields, "host"),
                 timestamp
         );
 
-        message.addField(Message.FIELD_FULL_MESSAGE, stringValue(node, "full_message"));
+        message.addField(Message.FIELD_FULL_MESSAGE, stringValue(fields, "full_message"));
 
-        final String file = stringValue(node, "file");
+        final String file = stringValue(fields, "file");
 
         if (file != null && !file.isEmpty()) {
             message.addField("file", file);
         }
 
-        final long line = longValue(node, "line");
+        final long line = longValue(fields, "line");
         if (line > -1) {
             message.addField("line", line);
         }
 
         // Level is set by server if not specified by client.
-        final int level = intValue(node, "level");
+        final int level = intValue(fields, "level");
         if (level > -1) {
             message.addField("level", level);
         }
 
         // Facility is set by server if not specified by client.
-        final String facility = stringValue(node, "facility");
+        final String facility = stringValue(fields, "facility");
         if (facility != null && !facility.isEmpty()) {
             message.addField("facility", facility);
         }
 
         // Add additional data if there is some.
-        final Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
-
-        while (fields.hasNext()) {
-            final Map.Entry<String, JsonNode> entry = fields.next();
-
+        for (Map.Entry<String, Object> entry : fields.entrySet()) {
             String key = entry.getKey();
             // Do not index useless GELF "version" field.
             if ("version".equals(key)) {
@@ -208,20 +233,20 @@ public class GelfCodec extends AbstractCodec {
             }
 
             // Convert JSON containers to Strings, and pick a suitable number representation.
-            final JsonNode value = entry.getValue();
+            final Object value = entry.getValue();
 
             final Object fieldValue;
-            if (value.isContainerNode()) {
+            if (value instanceof JsonContainer) {
                 fieldValue = value.toString();
-            } else if (value.isFloatingPointNumber()) {
-                fieldValue = value.asDouble();
-            } else if (value.isIntegralNumber()) {
-                fieldValue = value.asLong();
-            } else if (value.isNull()) {
+            } else if (value instanceof Double) {
+                fieldValue = value;
+            } else if (value instanceof Number) {
+                fieldValue = ((Number) value).longValue();
+            } else if (value == NULL_VALUE) {
                 log.debug("Field [{}] is NULL. Skipping.", key);
                 continue;
-            } else if (value.isTextual()) {
-                fieldValue = value.asText();
+            } else if (value instanceof String) {
+                fieldValue = value;
             } else {
                 log.debug("Field [{}] has unknown value type. Skipping.", key);
                 continue;
@@ -233,44 +258,153 @@ public class GelfCodec extends AbstractCodec {
         return message;
     }
 
-    private void validateGELFMessage(JsonNode jsonNode, UUID id, ResolvableInetSocketAddress remoteAddress) {
+    /**
+     * Reads the top-level fields of the GELF message with a streaming parser, directly from the payload or the pooled
+     * decompression buffer. This avoids creating a string of the whole payload and a JSON tree.
+     *
+     * @return the fields in document order or {@code null} if the payload couldn't be read
+     */
+    @Nullable
+    private Map<String, Object> readFields(GELFMessage gelfMessage) {
+        final GELFMessage.Type type = gelfMessage.getGELFType();
+        if (type == GELFMessage.Type.CHUNKED || type == GELFMessage.Type.UNSUPPORTED) {
+            return null;
+        }
+
+        try {
+            return gelfMessage.readJSON(decompressSizeLimit, this::readFields);
+        } catch (IOException e) {
+            log.debug("Unable to stream GELF message, falling back to tree parser", e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private Map<String, Object> readFields(byte[] json, int length, boolean truncated) throws IOException {
+        if (truncated) {
+            // Let the tree parser report the incomplete payload
+            return null;
+        }
+
+        try (final JsonParser parser = objectMapper.getFactory().createParser(json, 0, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+
+            final Map<String, Object> fields = new LinkedHashMap<>();
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                final String key = parser.getCurrentName();
+                parser.nextToken();
+                // Like in a JSON tree, the last value of duplicate keys wins
+                fields.put(key, currentValue(parser));
+            }
+            return token == JsonToken.END_OBJECT ? fields : null;
+        }
+    }
+
+    private static Object currentValue(JsonParser parser) throws IOException {
+        switch (parser.getCurrentToken()) {
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                return parser.getNumberValue();
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            case VALUE_NULL:
+                return NULL_VALUE;
+            case START_OBJECT:
+            case START_ARRAY:
+                // Nested values are rare in GELF, a tree keeps the JSON string identical to the tree parser
+                return new JsonContainer(parser.readValueAsTree().toString());
+            default:
+                throw new IOException("Unexpected token " + parser.getCurrentToken());
+        }
+    }
+
+    private Map<String, Object> treeFields(GELFMessage gelfMessage) {
+        final String json = gelfMessage.getJSON(decompressSizeLimit);
+
+        final JsonNode node;
+
+        try {
+            node = objectMapper.readTree(json);
+            if (node == null) {
+                throw new IOException("null result");
+            }
+        } catch (final Exception e) {
+            log.error("Could not parse JSON, first 400 characters: " +
+                              StringUtils.abbreviate(json, 403), e);
+            throw new IllegalStateException("JSON is null/could not be parsed (invalid JSON)", e);
+        }
+
+        final Map<String, Object> fields = new LinkedHashMap<>();
+        final Iterator<Map.Entry<String, JsonNode>> iterator = node.fields();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, JsonNode> entry = iterator.next();
+            final JsonNode value = entry.getValue();
+            final Object fieldValue;
+            if (value.isContainerNode()) {
+                fieldValue = new JsonContainer(value.toString());
+            } else if (value.isFloatingPointNumber()) {
+                fieldValue = value.asDouble();
+            } else if (value.isNumber()) {
+                fieldValue = value.numberValue();
+            } else if (value.isBoolean()) {
+                fieldValue = value.booleanValue();
+            } else if (value.isTextual()) {
+                fieldValue = value.textValue();
+            } else {
+                fieldValue = NULL_VALUE;
+            }
+            fields.put(entry.getKey(), fieldValue);
+        }
+        return fields;
+    }
+
+    private void validateGELFMessage(Map<String, Object> fields, UUID id, ResolvableInetSocketAddress remoteAddress) {
         final String prefix = "GELF message <" + id + "> " + (remoteAddress == null ? "" : "(received from <" + remoteAddress + ">) ");
 
-        final JsonNode hostNode = jsonNode.path("host");
-        if (hostNode.isMissingNode()) {
+        final Object host = fields.get("host");
+        if (host == null) {
             log.warn(prefix + "is missing mandatory \"host\" field.");
         } else {
-            if (!hostNode.isTextual()) {
-                throw new IllegalArgumentException(prefix + "has invalid \"host\": " + hostNode.asText());
+            if (!(host instanceof String)) {
+                throw new IllegalArgumentException(prefix + "has invalid \"host\": " + asText(host));
             }
-            if (StringUtils.isBlank(hostNode.asText())) {
+            if (StringUtils.isBlank((String) host)) {
                 throw new IllegalArgumentException(prefix + "has empty mandatory \"host\" field.");
             }
         }
 
-        final JsonNode shortMessageNode = jsonNode.path("short_message");
-        final JsonNode messageNode = jsonNode.path("message");
-        if (!shortMessageNode.isMissingNode()) {
-            if (!shortMessageNode.isTextual()) {
-                throw new IllegalArgumentException(prefix + "has invalid \"short_message\": " + shortMessageNode.asText());
+        final Object shortMessage = fields.get("short_message");
+        final Object message = fields.get("message");
+        if (shortMessage != null) {
+            if (!(shortMessage instanceof String)) {
+                throw new IllegalArgumentException(prefix + "has invalid \"short_message\": " + asText(shortMessage));
             }
-            if (StringUtils.isBlank(shortMessageNode.asText()) && StringUtils.isBlank(messageNode.asText())) {
+            if (StringUtils.isBlank((String) shortMessage) && (message == null || StringUtils.isBlank(asText(message)))) {
                 throw new IllegalArgumentException(prefix + "has empty mandatory \"short_message\" field.");
             }
-        } else if (!messageNode.isMissingNode()) {
-            if (!messageNode.isTextual()) {
-                throw new IllegalArgumentException(prefix + "has invalid \"message\": " + messageNode.asText());
+        } else if (message != null) {
+            if (!(message instanceof String)) {
+                throw new IllegalArgumentException(prefix + "has invalid \"message\": " + asText(message));
             }
-            if (StringUtils.isBlank(messageNode.asText())) {
+            if (StringUtils.isBlank((String) message)) {
                 throw new IllegalArgumentException(prefix + "has empty mandatory \"message\" field.");
             }
         } else {
             throw new IllegalArgumentException(prefix + "is missing mandatory \"short_message\" or \"message\" field.");
         }
 
-        final JsonNode timestampNode = jsonNode.path("timestamp");
-        if (timestampNode.isValueNode() && !timestampNode.isNumber()) {
-            log.warn(prefix + "has invalid \"timestamp\": {}  (type: {})", timestampNode.asText(), timestampNode.getNodeType().name());
+        final Object timestamp = fields.get("timestamp");
+        if (timestamp != null && !(timestamp instanceof JsonContainer) && !(timestamp instanceof Number)) {
+            final String type = timestamp instanceof String ? "STRING" : timestamp instanceof Boolean ? "BOOLEAN" : "NULL";
+            log.warn(prefix + "has invalid \"timestamp\": {}  (type: {})", asText(timestamp), type);
         }
     }
 
@@ -70,13 +70,16 @@ public class SyslogCodec extends AbstractCodec {
     static final String CK_ALLOW_OVERRIDE_DATE = "allow_override_date";
     static final String CK_EXPAND_STRUCTURED_DATA = "expand_structured_data";
     static final String CK_STORE_FULL_MESSAGE = "store_full_message";
+    static final String CK_USE_LEGACY_PARSER = "use_legacy_parser";
 
     private final Timer resolveTime;
     private final Timer decodeTime;
+    private final boolean useLegacyParser;
 
     @AssistedInject
     public SyslogCodec(@Assisted Configuration configuration, MetricRegistry metricRegistry) {
         super(configuration);
+        this.useLegacyParser = configuration.getBoolean(CK_USE_LEGACY_PARSER);
         this.resolveTime = metricRegistry.timer(name(SyslogCodec.class, "resolveTime"));
         this.decodeTime = metricRegistry.timer(name(SyslogCodec.class, "decodeTime"));
     }
@@ -84,7 +87,6 @@ public class SyslogCodec extends AbstractCodec {
     @Nullable
     @Override
     public Message decode(@Nonnull RawMessage rawMessage) {
-        final String msg = new String(rawMessage.getPayload(), StandardCharsets.UTF_8);
         try (Timer.Context ignored = this.decodeTime.time()) {
             final ResolvableInetSocketAddress address = rawMessage.getRemoteAddress();
             final InetSocketAddress remoteAddress;
@@ -93,10 +95,46 @@ public class SyslogCodec extends AbstractCodec {
             } else {
                 remoteAddress = address.getInetSocketAddress();
             }
-            return parse(msg, remoteAddress == null ? null : remoteAddress.getAddress(), rawMessage.getTimestamp());
+            final InetAddress remoteInetAddress = remoteAddress == null ? null : remoteAddress.getAddress();
+
+            // The single-pass parser only handles the common cases, everything else is parsed by syslog4j
+            if (!useLegacyParser) {
+                final SyslogMessageParser.ParsedSyslogMessage parsed = SyslogMessageParser.parse(rawMessage.getPayload());
+                if (parsed != null) {
+                    return buildMessage(parsed, rawMessage.getPayload(), remoteInetAddress);
+                }
+            }
+
+            final String msg = new String(rawMessage.getPayload(), StandardCharsets.UTF_8);
+            return parse(msg, remoteInetAddress, rawMessage.getTimestamp());
         }
     }
 
+    private Message buildMessage(SyslogMessageParser.ParsedSyslogMessage parsed, byte[] payload, InetAddress remoteAddress) {
+        // Fields are added in the same order as in parse(), so structured data overrides fields in the same way
+        final Message m = new Message(parsed.message, parseHost(parsed.host, remoteAddress), new DateTime(parsed.timestamp));
+        m.addField("facility", Tools.syslogFacilityToReadable(parsed.facility));
+        m.addField("level", parsed.level);
+
+        if (configuration.getBoolean(CK_STORE_FULL_MESSAGE)) {
+            m.addField("full_message", new String(payload, StandardCharsets.UTF_8));
+        }
+
+        if (!parsed.structuredData.isEmpty() || parsed.applicationName != null || parsed.processId != null) {
+            final Map<String, Object> additionalData = new HashMap<>(
+                    structuredDataFields(parsed.structuredData, configuration.getBoolean(CK_EXPAND_STRUCTURED_DATA)));
+            if (!isNullOrEmpty(parsed.applicationName)) {
+                additionalData.put("application_name", parsed.applicationName);
+            }
+            if (!isNullOrEmpty(parsed.processId)) {
+                additionalData.put("process_id", parsed.processId);
+            }
+            m.addFields(additionalData);
+        }
+
+        return m;
+    }
+
     private Message parse(String msg, InetAddress remoteAddress, DateTime receivedTimestamp) {
         /*
          * ZOMG funny 80s neckbeard protocols. We are now deciding if to parse
@@ -142,7 +180,7 @@ public class SyslogCodec extends AbstractCodec {
             syslogMessage = e.getMessage();
         }
 
-        final Message m = new Message(syslogMessage, parseHost(e, remoteAddress), parseDate(e, receivedTimestamp));
+        final Message m = new Message(syslogMessage, parseHost(e.getHost(), remoteAddress), parseDate(e, receivedTimestamp));
         m.addField("facility", Tools.syslogFacilityToReadable(e.getFacility()));
         m.addField("level", e.getLevel());
 
@@ -190,7 +228,7 @@ public class SyslogCodec extends AbstractCodec {
         }
     }
 
-    private String parseHost(SyslogServerEventIF msg, InetAddress remoteAddress) {
+    private String parseHost(String host, InetAddress remoteAddress) {
         if (remoteAddress != null && configuration.getBoolean(CK_FORCE_RDNS)) {
             try (Timer.Context ignored = this.resolveTime.time()) {
                 return Tools.rdnsLookup(remoteAddress);
@@ -199,7 +237,6 @@ public class SyslogCodec extends AbstractCodec {
             }
         }
 
-        final String host = msg.getHost();
         return isNullOrEmpty(host) && remoteAddress != null ? InetAddresses.toAddrString(remoteAddress) : host;
     }
 
@@ -280,6 +317,15 @@ public class SyslogCodec extends AbstractCodec {
                     )
             );
 
+            r.addField(
+                    new BooleanField(
+                            CK_USE_LEGACY_PARSER,
+                            "Use legacy parser?",
+                            false,
+                            "Parse every message with the slower syslog4j based parser instead of only the messages the fast parser doesn't support?"
+                    )
+            );
+
             return r;
         }
 
@@ -305,15 +351,7 @@ public class SyslogCodec extends AbstractCodec {
             final Map<String, Map<String, String>> raw = msg.getStructuredMessage().getStructuredData();
 
             if (raw != null && !raw.isEmpty()) {
-                final Map<String, Object> fields = new HashMap<>();
-                for (Map.Entry<String, Map<String, String>> entry : raw.entrySet()) {
-                    if (expand) {
-                        fields.putAll(prefixElements(entry.getKey(), entry.getValue()));
-                    } else {
-                        fields.putAll(entry.getValue());
-                    }
-                }
-                return fields;
+                return structuredDataFields(raw, expand);
             }
         } catch (Exception e) {
             LOG.debug("Could not extract structured syslog", e);
@@ -321,6 +359,18 @@ public class SyslogCodec extends AbstractCodec {
         return Collections.emptyMap();
     }
 
+    private Map<String, Object> structuredDataFields(final Map<String, Map<String, String>> structuredData, final boolean expand) {
+        final Map<String, Object> fields = new HashMap<>();
+        for (Map.Entry<String, Map<String, String>> entry : structuredData.entrySet()) {
+            if (expand) {
+                fields.putAll(prefixElements(entry.getKey(), entry.getValue()));
+            } else {
+                fields.putAll(entry.getValue());
+            }
+        }
+        return fields;
+    }
+
     private Map<String, String> prefixElements(final String prefix, final Map<String, String> elements) {
         if (elements == null || elements.isEmpty()) {
             return Collections.emptyMap();
@@ -0,0 +1,438 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.inputs.codecs;
+
+import org.joda.time.Chronology;
+import org.joda.time.chrono.ISOChronology;
+
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Single-pass parser for RFC 5424 and RFC 3164 syslog messages which works directly on the payload bytes.
+ * <p>
+ * The dialect is detected from the first byte after the PRI field: a version number starts an RFC 5424 message,
+ * an uppercase month name an RFC 3164 message. Everything else (Cisco sequence numbers, FortiGate key/value
+ * messages, ISO 8601 dates in RFC 3164 messages, ...) is left to the syslog4j based parser.
+ * <p>
+ * The parser has to produce exactly the same messages as syslog4j, so it deliberately only accepts the strict
+ * subset of both formats where the behavior of syslog4j is well-defined and returns {@code null} for anything else,
+ * e.g. NILVALUE timestamps, escaped characters in structured data, duplicate parameter names or trailing whitespace.
+ */
+final class SyslogMessageParser {
+    private static final long INVALID_TIMESTAMP = Long.MIN_VALUE;
+    private static final String[] MONTHS = {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+    private SyslogMessageParser() {
+    }
+
+    static final class ParsedSyslogMessage {
+        final int facility;
+        final int level;
+        final long timestamp;
+        final String host;
+        final String message;
+        @Nullable
+        final String applicationName;
+        @Nullable
+        final String processId;
+        final Map<String, Map<String, String>> structuredData;
+
+        private ParsedSyslogMessage(int facility,
+                                    int level,
+                                    long timestamp,
+                                    String host,
+                                    String message,
+                                    @Nullable String applicationName,
+                                    @Nullable String processId,
+                                    Map<String, Map<String, String>> structuredData) {
+            this.facility = facility;
+            this.level = level;
+            this.timestamp = timestamp;
+            this.host = host;
+            this.message = message;
+            this.applicationName = applicationName;
+            this.processId = processId;
+            this.structuredData = structuredData;
+        }
+    }
+
+    /**
+     * @return the parsed message or {@code null} if the message has to be parsed by syslog4j
+     */
+    @Nullable
+    static ParsedSyslogMessage parse(byte[] payload) {
+        final int length = payload.length;
+        if (length < 4 || payload[0] != '<' || isWhitespaceOrControl(payload[length - 1])) {
+            return null;
+        }
+
+        int pos = 1;
+        int priority = 0;
+        while (pos < length && pos <= 3 && isDigit(payload[pos])) {
+            priority = priority * 10 + (payload[pos] - '0');
+            pos++;
+        }
+        if (pos == 1 || pos >= length - 1 || payload[pos] != '>') {
+            return null;
+        }
+        pos++;
+
+        final int facility = priority >> 3;
+        final int level = priority - (facility << 3);
+        final byte first = payload[pos];
+        if (isDigit(first)) {
+            return parseRfc5424(payload, pos, facility, level);
+        } else if (first >= 'A' && first <= 'Z') {
+            return parseRfc3164(payload, pos, facility, level);
+        }
+        return null;
+    }
+
+    /**
+     * {@code VERSION SP TIMESTAMP SP HOSTNAME SP APP-NAME SP PROCID SP MSGID SP STRUCTURED-DATA [SP MSG]}
+     */
+    @Nullable
+    private static ParsedSyslogMessage parseRfc5424(byte[] b, int start, int facility, int level) {
+        final int length = b.length;
+        int pos = start;
+        while (pos < length && pos - start < 3 && isDigit(b[pos])) {
+            pos++;
+        }
+        if (pos >= length || b[pos] != ' ') {
+            return null;
+        }
+        pos++;
+
+        final int timestampEnd = indexOfSpace(b, pos);
+        if (timestampEnd <= pos) {
+            return null;
+        }
+        final long timestamp = parseRfc3339Timestamp(b, pos, timestampEnd);
+        if (timestamp == INVALID_TIMESTAMP) {
+            return null;
+        }
+        pos = timestampEnd + 1;
+
+        final int hostEnd = indexOfSpace(b, pos);
+        if (hostEnd <= pos || isNilValue(b, pos, hostEnd)) {
+            return null;
+        }
+        final String host = decode(b, pos, hostEnd);
+        pos = hostEnd + 1;
+
+        final int applicationNameEnd = indexOfSpace(b, pos);
+        if (applicationNameEnd <= pos) {
+            return null;
+        }
+        final String applicationName = isNilValue(b, pos, applicationNameEnd) ? null : decode(b, pos, applicationNameEnd);
+        pos = applicationNameEnd + 1;
+
+        final int processIdEnd = indexOfSpace(b, pos);
+        if (processIdEnd <= pos) {
+            return null;
+        }
+        final String processId = isNilValue(b, pos, processIdEnd) ? null : decode(b, pos, processIdEnd);
+        pos = processIdEnd + 1;
+
+        final int messageIdStart = pos;
+        final int messageIdEnd = indexOfSpace(b, pos);
+        if (messageIdEnd <= pos || messageIdEnd + 1 >= length || containsBracket(b, messageIdStart, messageIdEnd)) {
+            return null;
+        }
+        final boolean nilMessageId = isNilValue(b, messageIdStart, messageIdEnd);
+        pos = messageIdEnd + 1;
+
+        if (b[pos] == '-') {
+            // No structured data, syslog4j keeps a message ID in the message but drops the NILVALUEs
+            if (pos + 2 >= length || b[pos + 1] != ' ') {
+                return null;
+            }
+            int messageStart = nilMessageId ? pos + 2 : messageIdStart;
+            while (messageStart < length && b[messageStart] == ' ') {
+                messageStart++;
+            }
+            if (messageStart >= length || containsBracket(b, messageIdStart, length)) {
+                return null;
+            }
+            return new ParsedSyslogMessage(facility, level, timestamp, host, decode(b, messageStart, length),
+                    applicationName, processId, Collections.emptyMap());
+        } else if (b[pos] == '[') {
+            final Map<String, Map<String, String>> structuredData = new LinkedHashMap<>();
+            pos = parseStructuredData(b, pos, structuredData);
+            if (pos < 0) {
+                return null;
+            }
+            final String message;
+            if (pos == length) {
+                // Without MSG syslog4j uses the message ID and the structured data as message
+                message = decode(b, messageIdStart, length);
+            } else if (b[pos] == ' ' && pos + 1 < length && b[pos + 1] != ' ' && !containsBracket(b, pos + 1, length)) {
+                message = decode(b, pos + 1, length);
+            } else {
+                return null;
+            }
+            return new ParsedSyslogMessage(facility, level, timestamp, host, message,
+                    applicationName, processId, structuredData);
+        }
+        return null;
+    }
+
+    /**
+     * Parses consecutive {@code [SD-ID PARAM-NAME="PARAM-VALUE" ...]} elements.
+     *
+     * @return the position after the last element or {@code -1} if the structured data isn't supported
+     */
+    private static int parseStructuredData(byte[] b, int start, Map<String, Map<String, String>> structuredData) {
+        final int length = b.length;
+        final Set<String> parameterNames = new HashSet<>();
+        int pos = start;
+        while (pos < length && b[pos] == '[') {
+            pos++;
+            final int idStart = pos;
+            while (pos < length && b[pos] != ' ' && b[pos] != ']') {
+                if (b[pos] == '=' || b[pos] == '"' || b[pos] == '[') {
+                    return -1;
+                }
+                pos++;
+            }
+            if (pos >= length || pos == idStart) {
+                return -1;
+            }
+            final String id = decode(b, idStart, pos);
+            if (structuredData.containsKey(id)) {
+                return -1;
+            }
+
+            final Map<String, String> parameters = new HashMap<>();
+            while (b[pos] == ' ') {
+                pos++;
+                final int nameStart = pos;
+                while (pos < length && b[pos] != '=') {
+                    if (b[pos] == ' ' || b[pos] == ']' || b[pos] == '"' || b[pos] == '[') {
+                        return -1;
+                    }
+                    pos++;
+                }
+                if (pos + 1 >= length || pos == nameStart || b[pos + 1] != '"') {
+                    return -1;
+                }
+                final String name = decode(b, nameStart, pos);
+                pos += 2;
+
+                final int valueStart = pos;
+                while (pos < length && b[pos] != '"') {
+                    // syslog4j doesn't handle escaped characters consistently
+                    if (b[pos] == '\\' || b[pos] == ']' || b[pos] == '[' || b[pos] == '=') {
+                        return -1;
+                    }
+                    pos++;
+                }
+                // The order of duplicate parameters is undefined in syslog4j
+                if (pos + 1 >= length || pos == valueStart || !parameterNames.add(name)) {
+                    return -1;
+                }
+                parameters.put(name, decode(b, valueStart, pos));
+                pos++;
+            }
+            if (b[pos] != ']') {
+                return -1;
+            }
+            pos++;
+            structuredData.put(id, parameters);
+        }
+        return pos;
+    }
+
+    /**
+     * {@code Mmm dd hh:mm:ss HOSTNAME MSG}, the message keeps the hostname like in syslog4j.
+     */
+    @Nullable
+    private static ParsedSyslogMessage parseRfc3164(byte[] b, int start, int facility, int level) {
+        final int length = b.length;
+        // The shortest supported message is "Mmm d hh:mm:ss h m"
+        if (length - start < 18 || b[start + 3] != ' ') {
+            return null;
+        }
+        final int month = parseMonth(b, start);
+        if (month < 0) {
+            return null;
+        }
+
+        final int day;
+        final int timeStart;
+        if (b[start + 4] == ' ' && isDigit(b[start + 5]) && b[start + 6] == ' ') {
+            day = b[start + 5] - '0';
+            timeStart = start + 7;
+        } else if (isDigit(b[start + 4]) && isDigit(b[start + 5]) && b[start + 6] == ' ') {
+            day = (b[start + 4] - '0') * 10 + (b[start + 5] - '0');
+            timeStart = start + 7;
+        } else if (isDigit(b[start + 4]) && b[start + 5] == ' ') {
+            day = b[start + 4] - '0';
+            timeStart = start + 6;
+        } else {
+            return null;
+        }
+
+        if (timeStart + 9 >= length || b[timeStart + 2] != ':' || b[timeStart + 5] != ':' || b[timeStart + 8] != ' ') {
+            return null;
+        }
+        final int hour = parseTwoDigits(b, timeStart);
+        final int minute = parseTwoDigits(b, timeStart + 3);
+        final int second = parseTwoDigits(b, timeStart + 6);
+        if (hour < 0 || minute < 0 || second < 0) {
+            return null;
+        }
+
+        final int hostStart = timeStart + 9;
+        final int hostEnd = indexOfSpace(b, hostStart);
+        if (hostEnd <= hostStart) {
+            return null;
+        }
+
+        // syslog4j parses the date in the default time zone of the JVM and assumes the current year
+        final Chronology chronology = ISOChronology.getInstance();
+        final long timestamp;
+        try {
+            final int year = chronology.year().get(System.currentTimeMillis());
+            timestamp = chronology.getDateTimeMillis(year, month, day, hour, minute, second, 0);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        return new ParsedSyslogMessage(facility, level, timestamp, decode(b, hostStart, hostEnd),
+                decode(b, hostStart, length), null, null, Collections.emptyMap());
+    }
+
+    /**
+     * Parses {@code YYYY-MM-DDThh:mm:ss[.fraction](Z|+hh:mm|-hh:mm)}, fractions are truncated to milliseconds.
+     */
+    private static long parseRfc3339Timestamp(byte[] b, int start, int end) {
+        if (end - start < 20 || b[start + 4] != '-' || b[start + 7] != '-' || b[start + 10] != 'T'
+                || b[start + 13] != ':' || b[start + 16] != ':') {
+            return INVALID_TIMESTAMP;
+        }
+        final int century = parseTwoDigits(b, start);
+        final int yearOfCentury = parseTwoDigits(b, start + 2);
+        final int month = parseTwoDigits(b, start + 5);
+        final int day = parseTwoDigits(b, start + 8);
+        final int hour = parseTwoDigits(b, start + 11);
+        final int minute = parseTwoDigits(b, start + 14);
+        final int second = parseTwoDigits(b, start + 17);
+        if (century < 0 || yearOfCentury < 0 || month < 0 || day < 0 || hour < 0 || minute < 0 || second < 0) {
+            return INVALID_TIMESTAMP;
+        }
+
+        int pos = start + 19;
+        int millis = 0;
+        if (b[pos] == '.') {
+            pos++;
+            final int fractionStart = pos;
+            while (pos < end && isDigit(b[pos])) {
+                if (pos - fractionStart < 3) {
+                    millis = millis * 10 + (b[pos] - '0');
+                }
+                pos++;
+            }
+            final int digits = pos - fractionStart;
+            if (digits == 0 || digits > 9) {
+                return INVALID_TIMESTAMP;
+            }
+            for (int i = digits; i < 3; i++) {
+                millis *= 10;
+            }
+        }
+
+        final int offsetMillis;
+        if (pos == end - 1 && b[pos] == 'Z') {
+            offsetMillis = 0;
+        } else if (pos == end - 6 && (b[pos] == '+' || b[pos] == '-') && b[pos + 3] == ':') {
+            final int offsetHours = parseTwoDigits(b, pos + 1);
+            final int offsetMinutes = parseTwoDigits(b, pos + 4);
+            if (offsetHours < 0 || offsetHours > 23 || offsetMinutes < 0 || offsetMinutes > 59) {
+                return INVALID_TIMESTAMP;
+            }
+            final int offset = (offsetHours * 60 + offsetMinutes) * 60_000;
+            offsetMillis = b[pos] == '-' ? -offset : offset;
+        } else {
+            return INVALID_TIMESTAMP;
+        }
+
+        try {
+            return ISOChronology.getInstanceUTC().getDateTimeMillis(century * 100 + yearOfCentury, month, day, hour, minute, second, millis) - offsetMillis;
+        } catch (IllegalArgumentException e) {
+            return INVALID_TIMESTAMP;
+        }
+    }
+
+    private static int parseMonth(byte[] b, int start) {
+        for (int i = 0; i < MONTHS.length; i++) {
+            final String month = MONTHS[i];
+            if (b[start] == month.charAt(0) && b[start + 1] == month.charAt(1) && b[start + 2] == month.charAt(2)) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int parseTwoDigits(byte[] b, int pos) {
+        if (!isDigit(b[pos]) || !isDigit(b[pos + 1])) {
+            return -1;
+        }
+        return (b[pos] - '0') * 10 + (b[pos + 1] - '0');
+    }
+
+    private static int indexOfSpace(byte[] b, int start) {
+        for (int i = start; i < b.length; i++) {
+            if (b[i] == ' ') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean containsBracket(byte[] b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (b[i] == '[' || b[i] == ']') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isNilValue(byte[] b, int start, int end) {
+        return end - start == 1 && b[start] == '-';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isWhitespaceOrControl(byte b) {
+        return (b & 0xff) <= ' ';
+    }
+
+    private static String decode(byte[] b, int start, int end) {
+        return new String(b, start, end - start, StandardCharsets.UTF_8);
+    }
+}
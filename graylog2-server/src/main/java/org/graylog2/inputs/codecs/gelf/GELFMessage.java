@@ -18,6 +18,7 @@ package org.graylog2.inputs.codecs.gelf;
 
 import org.graylog2.plugin.ResolvableInetSocketAddress;
 import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.utilities.PooledInflater;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
@@ -88,6 +89,29 @@ public class GELFMessage {
         return null;
     }
 
+    /**
+     * Pass the JSON payload of the GELF message to the given handler. Compressed payloads are decompressed into a
+     * pooled buffer, so the handler must not keep a reference to the buffer.
+     *
+     * @param maxBytes The maximum number of bytes to read from a compressed GELF payload.
+     * @param handler  The handler receiving the UTF-8 encoded JSON payload of the GELF message.
+     * @return The result of the handler.
+     * @throws IOException if a compressed payload is invalid or the handler failed
+     * @see #getJSON(long)
+     */
+    public <T> T readJSON(long maxBytes, PooledInflater.Handler<T> handler) throws IOException {
+        switch (getGELFType()) {
+            case ZLIB:
+                return PooledInflater.inflate(payload, 0, payload.length, PooledInflater.Format.ZLIB, maxBytes, handler);
+            case GZIP:
+                return PooledInflater.inflate(payload, 0, payload.length, PooledInflater.Format.GZIP, maxBytes, handler);
+            case UNCOMPRESSED:
+                return handler.handle(payload, payload.length, false);
+            default:
+                throw new IllegalStateException("Unknown GELF type. Not supported.");
+        }
+    }
+
     public byte[] getPayload() {
         return payload;
     }
@@ -18,9 +18,8 @@ package org.graylog2.inputs.extractors;
 
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Strings;
-import io.krakens.grok.api.Grok;
-import io.krakens.grok.api.Match;
 import org.graylog2.ConfigurationException;
+import org.graylog2.grok.GrokMatcher;
 import org.graylog2.grok.GrokPatternRegistry;
 import org.graylog2.plugin.inputs.Converter;
 import org.graylog2.plugin.inputs.Extractor;
@@ -73,11 +72,10 @@ public class GrokExtractor extends Extractor {
 
     @Override
     protected Result[] run(String value) {
-        final Grok grok = grokPatternRegistry.cachedGrokForPattern(this.pattern, this.namedCapturesOnly);
+        final GrokMatcher grokMatcher = grokPatternRegistry.cachedGrokMatcherForPattern(this.pattern, this.namedCapturesOnly);
 
         // the extractor instance is rebuilt every second anyway
-        final Match match = grok.match(value);
-        final Map<String, Object> matches = match.captureFlattened();
+        final Map<String, Object> matches = grokMatcher.captureFlattened(value);
         final List<Result> results = new ArrayList<>(matches.size());
 
         for (final Map.Entry<String, Object> entry : matches.entrySet()) {
@@ -17,11 +17,14 @@
 package org.graylog2.inputs.extractors;
 
 import com.codahale.metrics.MetricRegistry;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Predicate;
+import com.google.common.base.Splitter;
 import com.google.common.collect.Maps;
 import org.graylog.autovalue.WithBeanGetter;
 import org.graylog2.ConfigurationException;
@@ -53,6 +56,9 @@ public class JsonExtractor extends Extractor {
     private static final String CK_REPLACE_KEY_WHITESPACE = "replace_key_whitespace";
     private static final String CK_KEY_WHITESPACE_REPLACEMENT = "key_whitespace_replacement";
     private static final String CK_KEY_PREFIX = "key_prefix";
+    private static final String CK_INCLUDE_KEYS = "include_keys";
+    private static final String CK_EXCLUDE_KEYS = "exclude_keys";
+    private static final String CK_MAX_DEPTH = "max_depth";
     private static final Pattern WHITE_SPACE_PATTERN = Pattern.compile("\\s");
     private static final RemoveNullPredicate REMOVE_NULL_PREDICATE = new RemoveNullPredicate();
 
@@ -64,6 +70,11 @@ public class JsonExtractor extends Extractor {
     private final boolean replaceKeyWhitespace;
     private final String keyWhitespaceReplacement;
     private final String keyPrefix;
+    @Nullable
+    private final KeyPaths includeKeys;
+    @Nullable
+    private final KeyPaths excludeKeys;
+    private final int maxDepth;
 
     public JsonExtractor(final MetricRegistry metricRegistry,
                          final String id,
@@ -90,6 +101,9 @@ public class JsonExtractor extends Extractor {
         this.replaceKeyWhitespace = firstNonNull((Boolean) extractorConfig.get(CK_REPLACE_KEY_WHITESPACE), false);
         this.keyWhitespaceReplacement = firstNonNull((String) extractorConfig.get(CK_KEY_WHITESPACE_REPLACEMENT), "_");
         this.keyPrefix = firstNonNull((String) extractorConfig.get(CK_KEY_PREFIX), "");
+        this.includeKeys = KeyPaths.parse(extractorConfig.get(CK_INCLUDE_KEYS));
+        this.excludeKeys = KeyPaths.parse(extractorConfig.get(CK_EXCLUDE_KEYS));
+        this.maxDepth = firstNonNull((Number) extractorConfig.get(CK_MAX_DEPTH), 0).intValue();
     }
 
     @Override
@@ -107,6 +121,9 @@ public class JsonExtractor extends Extractor {
         if (isNullOrEmpty(value)) {
             return Collections.emptyMap();
         }
+        if (includeKeys != null || excludeKeys != null || maxDepth > 0) {
+            return extractSelectedJson(value);
+        }
 
         final Map<String, Object> json;
         try {
@@ -125,6 +142,80 @@ public class JsonExtractor extends Extractor {
         return results;
     }
 
+    /**
+     * Walks the JSON document with a token parser and only reads the values of selected keys. Subtrees which are
+     * not selected or nested deeper than the maximum depth are skipped without being materialized.
+     */
+    private Map<String, Object> extractSelectedJson(String value) {
+        final Map<String, Object> results = new HashMap<>();
+        try (JsonParser parser = mapper.getFactory().createParser(value)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return Collections.emptyMap();
+            }
+            readObject(parser, null, includeKeys, excludeKeys, 1, results);
+        } catch (IOException e) {
+            return Collections.emptyMap();
+        }
+
+        return results;
+    }
+
+    private void readObject(JsonParser parser,
+                            @Nullable String parentKey,
+                            @Nullable KeyPaths include,
+                            @Nullable KeyPaths exclude,
+                            int depth,
+                            Map<String, Object> results) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String name = parser.getCurrentName();
+            final JsonToken token = parser.nextToken();
+
+            // A null child means that everything below this key is included (or that nothing is excluded)
+            final KeyPaths childInclude = include == null || include.selectsAll(name) ? null : include.child(name);
+            final KeyPaths childExclude = exclude == null ? null : exclude.child(name);
+            final boolean included = include == null || include.selectsAll(name)
+                    || childInclude != null && token == JsonToken.START_OBJECT && !flatten;
+            if (!included || exclude != null && exclude.selectsAll(name)) {
+                parser.skipChildren();
+                continue;
+            }
+
+            final String key = parseKey(parentKey == null ? keyPrefix + name : parentKey + keySeparator + name);
+            switch (token) {
+                case VALUE_STRING:
+                    results.put(key, parser.getText());
+                    break;
+                case VALUE_NUMBER_INT:
+                    results.put(key, parser.getNumberValue());
+                    break;
+                case VALUE_NUMBER_FLOAT:
+                    results.put(key, parser.getDoubleValue());
+                    break;
+                case VALUE_TRUE:
+                case VALUE_FALSE:
+                    results.put(key, parser.getBooleanValue());
+                    break;
+                case START_ARRAY:
+                    results.put(key, Joiner.on(listSeparator).skipNulls().join(mapper.readValue(parser, List.class)));
+                    break;
+                case START_OBJECT:
+                    if (flatten) {
+                        final Map<String, Object> map = mapper.readValue(parser, TypeReferences.MAP_STRING_OBJECT);
+                        final Joiner.MapJoiner joiner = Joiner.on(listSeparator).withKeyValueSeparator(kvSeparator);
+                        results.put(key, joiner.join(Maps.filterEntries(map, REMOVE_NULL_PREDICATE)));
+                    } else if (maxDepth > 0 && depth >= maxDepth) {
+                        parser.skipChildren();
+                    } else {
+                        readObject(parser, key, childInclude, childExclude, depth + 1, results);
+                    }
+                    break;
+                default:
+                    // Ignore null values so we don't try to create fields for that in the message.
+                    break;
+            }
+        }
+    }
+
     private String parseKey(String key) {
         if (replaceKeyWhitespace && key.contains(" ")) {
             return WHITE_SPACE_PATTERN.matcher(key).replaceAll(keyWhitespaceReplacement);
@@ -186,6 +277,67 @@ public class JsonExtractor extends Extractor {
         }
     }
 
+    /**
+     * A tree of key paths like "user.name", with every path segment being the key of a nested JSON object.
+     */
+    @VisibleForTesting
+    static final class KeyPaths {
+        private static final Splitter LIST_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+        private static final Splitter PATH_SPLITTER = Splitter.on('.');
+
+        private final Map<String, KeyPaths> children = new HashMap<>();
+        private boolean terminal = false;
+
+        /**
+         * Parses a comma separated string or a list of key paths.
+         *
+         * @return the tree of key paths or {@code null} if there are no key paths
+         */
+        @Nullable
+        static KeyPaths parse(@Nullable Object value) {
+            final Iterable<String> paths;
+            if (value instanceof String) {
+                paths = LIST_SPLITTER.split((String) value);
+            } else if (value instanceof Collection) {
+                final List<String> list = new ArrayList<>();
+                for (Object path : (Collection<?>) value) {
+                    if (path != null && !path.toString().trim().isEmpty()) {
+                        list.add(path.toString().trim());
+                    }
+                }
+                paths = list;
+            } else {
+                return null;
+            }
+
+            final KeyPaths root = new KeyPaths();
+            for (String path : paths) {
+                KeyPaths node = root;
+                for (String segment : PATH_SPLITTER.split(path)) {
+                    node = node.children.computeIfAbsent(segment, k -> new KeyPaths());
+                }
+                node.terminal = true;
+            }
+            return root.children.isEmpty() ? null : root;
+        }
+
+        /**
+         * @return {@code true} if the given key and everything below it is selected
+         */
+        boolean selectsAll(String key) {
+            final KeyPaths child = children.get(key);
+            return child != null && child.terminal;
+        }
+
+        /**
+         * @return the key paths below the given key or {@code null} if no key below it is selected
+         */
+        @Nullable
+        KeyPaths child(String key) {
+            return children.get(key);
+        }
+    }
+
     protected final static class RemoveNullPredicate implements Predicate<Map.Entry> {
         @Override
         public boolean apply(@Nullable Map.Entry input) {
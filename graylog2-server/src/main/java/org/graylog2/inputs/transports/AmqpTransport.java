@@ -75,7 +75,7 @@ public class AmqpTransport extends ThrottleableTransport {
                          EventBus eventBus,
                          LocalMetricRegistry localRegistry,
                          @Named("daemonScheduler") ScheduledExecutorService scheduler) {
-        super(eventBus, configuration);
+        super(eventBus, configuration, localRegistry);
         this.configuration = configuration;
         this.eventBus = eventBus;
         this.localRegistry = localRegistry;
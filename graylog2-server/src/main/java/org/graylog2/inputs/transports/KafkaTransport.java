@@ -116,7 +116,7 @@ public class KafkaTransport extends ThrottleableTransport {
                           EventBus serverEventBus,
                           ServerStatus serverStatus,
                           @Named("daemonScheduler") ScheduledExecutorService scheduler) {
-        super(serverEventBus, configuration);
+        super(serverEventBus, configuration, localRegistry);
         this.configuration = configuration;
         this.localRegistry = localRegistry;
         this.nodeId = nodeId;
@@ -26,6 +26,7 @@ import io.netty.channel.kqueue.KQueueEventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import org.graylog2.inputs.transports.NettyTransportConfiguration;
 import org.graylog2.plugin.LocalMetricRegistry;
+import org.graylog2.shared.system.affinity.ThreadAffinity;
 
 import javax.inject.Inject;
 import java.util.concurrent.Executor;
@@ -35,10 +36,16 @@ import java.util.concurrent.ThreadFactory;
 
 public class EventLoopGroupFactory {
     private final NettyTransportConfiguration configuration;
+    private final ThreadAffinity threadAffinity;
 
-    @Inject
     public EventLoopGroupFactory(NettyTransportConfiguration configuration) {
+        this(configuration, ThreadAffinity.disabled());
+    }
+
+    @Inject
+    public EventLoopGroupFactory(NettyTransportConfiguration configuration, ThreadAffinity threadAffinity) {
         this.configuration = configuration;
+        this.threadAffinity = threadAffinity;
     }
 
     public EventLoopGroup create(int numThreads, MetricRegistry metricRegistry, String metricPrefix) {
@@ -59,7 +66,8 @@ public class EventLoopGroupFactory {
 
     private ThreadFactory threadFactory(String name, MetricRegistry metricRegistry) {
         final String threadFactoryMetricName = MetricRegistry.name(name, "thread-factory");
-        final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("netty-transport-%d").build();
+        final ThreadFactory threadFactory = threadAffinity.threadFactory(
+                new ThreadFactoryBuilder().setNameFormat("netty-transport-%d").build());
         return new InstrumentedThreadFactory(threadFactory, metricRegistry, threadFactoryMetricName);
 
     }
@@ -22,6 +22,8 @@ import org.graylog2.lookup.adapters.CSVFileDataAdapter;
 import org.graylog2.lookup.adapters.DSVHTTPDataAdapter;
 import org.graylog2.lookup.adapters.DnsLookupDataAdapter;
 import org.graylog2.lookup.adapters.HTTPJSONPathDataAdapter;
+import org.graylog2.lookup.adapters.MappedCSVFileDataAdapter;
+import org.graylog2.lookup.caches.CaffeineLookupCache;
 import org.graylog2.lookup.caches.GuavaLookupCache;
 import org.graylog2.lookup.caches.NullCache;
 import org.graylog2.plugin.inject.Graylog2Module;
@@ -42,11 +44,21 @@ public class LookupModule extends Graylog2Module {
                 GuavaLookupCache.Factory.class,
                 GuavaLookupCache.Config.class);
 
+        installLookupCache(CaffeineLookupCache.NAME,
+                CaffeineLookupCache.class,
+                CaffeineLookupCache.Factory.class,
+                CaffeineLookupCache.Config.class);
+
         installLookupDataAdapter(CSVFileDataAdapter.NAME,
                 CSVFileDataAdapter.class,
                 CSVFileDataAdapter.Factory.class,
                 CSVFileDataAdapter.Config.class);
 
+        installLookupDataAdapter(MappedCSVFileDataAdapter.NAME,
+                MappedCSVFileDataAdapter.class,
+                MappedCSVFileDataAdapter.Factory.class,
+                MappedCSVFileDataAdapter.Config.class);
+
         installLookupDataAdapter(DnsLookupDataAdapter.NAME,
                                  DnsLookupDataAdapter.class,
                                  DnsLookupDataAdapter.Factory.class,
@@ -26,6 +26,13 @@ import org.graylog2.plugin.lookup.LookupResult;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static com.google.common.collect.Streams.stream;
@@ -78,6 +85,37 @@ public abstract class LookupTable {
         return result;
     }
 
+    /**
+     * Looks up all given keys at once. Only the keys which aren't cached are passed to the data adapter, in a single
+     * batch. The returned map contains a result for every key in the iteration order of the given keys.
+     */
+    public Map<Object, LookupResult> lookupAll(@Nonnull Collection<?> keys) {
+        final Map<Object, LookupResult> cachedResults = new HashMap<>(keys.size());
+        final List<Object> missingKeys = new ArrayList<>();
+        for (Object key : keys) {
+            final LookupResult cachedResult = cache().getIfPresent(LookupCacheKey.create(dataAdapter(), key));
+            if (cachedResult == null || cachedResult.isEmpty()) {
+                missingKeys.add(key);
+            } else {
+                cachedResults.put(key, cachedResult);
+            }
+        }
+        final Map<Object, LookupResult> loadedResults = missingKeys.isEmpty() ? Collections.emptyMap() : dataAdapter().getAll(missingKeys);
+
+        final Map<Object, LookupResult> results = new LinkedHashMap<>(keys.size());
+        for (Object key : keys) {
+            LookupResult result = cachedResults.get(key);
+            if (result == null) {
+                // Loading the result through the cache stores it just like a single lookup would
+                final LookupResult loadedResult = loadedResults.getOrDefault(key, LookupResult.empty());
+                result = cache().get(LookupCacheKey.create(dataAdapter(), key), () -> loadedResult);
+            }
+            // The default value will only be used if both single and multi value are empty
+            results.put(key, result.isEmpty() ? LookupResult.withDefaults(defaultSingleValue(), defaultMultiValue()) : result);
+        }
+        return results;
+    }
+
     @AutoValue.Builder
     public abstract static class Builder {
         public abstract Builder id(String id);
@@ -47,6 +47,7 @@ import javax.inject.Named;
 import javax.inject.Singleton;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
@@ -472,6 +473,13 @@ public class LookupTableService extends AbstractIdleService {
         }
     }
 
+    /**
+     * @return the running data adapter with the given id, the new instance once an updated adapter has been started
+     */
+    public Optional<LookupDataAdapter> getDataAdapterById(String id) {
+        return Optional.ofNullable(idToAdapter.get(id));
+    }
+
     public Collection<LookupDataAdapter> getDataAdapters(Set<String> adapterNames) {
         if (adapterNames == null) {
             return Collections.emptySet();
@@ -540,6 +548,21 @@ public class LookupTableService extends AbstractIdleService {
             return result;
         }
 
+        /**
+         * Looks up all given keys with a single batch request to the data adapter, see {@link LookupTable#lookupAll(Collection)}.
+         */
+        public Map<Object, LookupResult> lookupAll(@Nonnull Collection<?> keys) {
+            final LookupTable lookupTable = lookupTableService.getTable(lookupTableName);
+            final Map<Object, LookupResult> results = new LinkedHashMap<>(keys.size());
+            if (lookupTable == null) {
+                keys.forEach(key -> results.put(key, LookupResult.empty()));
+                return results;
+            }
+
+            lookupTable.lookupAll(keys).forEach((key, result) -> results.put(key, result == null || result.isEmpty() ? LookupResult.empty() : result));
+            return results;
+        }
+
         public LookupTable getTable() {
             return lookupTableService.getTable(lookupTableName);
         }
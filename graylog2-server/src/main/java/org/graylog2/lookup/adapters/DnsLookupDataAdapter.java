@@ -18,6 +18,8 @@ package org.graylog2.lookup.adapters;
 
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
@@ -25,10 +27,16 @@ import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeName;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
 import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.math.LongMath;
 import com.google.inject.assistedinject.Assisted;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -43,15 +51,18 @@ import org.graylog2.plugin.lookup.LookupCachePurge;
 import org.graylog2.plugin.lookup.LookupDataAdapter;
 import org.graylog2.plugin.lookup.LookupDataAdapterConfiguration;
 import org.graylog2.plugin.lookup.LookupResult;
+import org.graylog2.shared.metrics.MetricUtils;
 import org.graylog2.shared.utilities.ExceptionUtils;
 import org.joda.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
@@ -59,7 +70,16 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 public class DnsLookupDataAdapter extends LookupDataAdapter {
 
@@ -76,6 +96,11 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
     private static final String TIMER_RESOLVE_DOMAIN_NAME = "resolveDomainNameTime";
     private static final String TIMER_REVERSE_LOOKUP = "reverseLookupTime";
     private static final String TIMER_TEXT_LOOKUP = "textLookupTime";
+    private static final String METER_CACHE_HITS = "cacheHits";
+    private static final String METER_CACHE_MISSES = "cacheMisses";
+    private static final String METER_STALE_HITS = "staleHits";
+    private static final String METER_REJECTED = "rejectedRequests";
+    private static final String GAUGE_PENDING_REQUESTS = "pendingRequests";
     private DnsClient dnsClient;
     private final Config config;
 
@@ -86,22 +111,60 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
     private final Timer reverseLookupTimer;
     private final Timer textLookupTimer;
 
+    // Pending queries by key, so that concurrent lookups of the same key share a single DNS query
+    private final ConcurrentMap<String, CompletableFuture<LookupResult>> pendingRequests = new ConcurrentHashMap<>();
+    private final Ticker ticker;
+    private final Meter cacheHitMeter;
+    private final Meter cacheMissMeter;
+    private final Meter staleHitMeter;
+    private final Meter rejectedMeter;
+
+    private Semaphore requestPermits;
+    @Nullable
+    private Cache<String, CachedResult> resultCache;
+
     @Inject
     public DnsLookupDataAdapter(@Assisted("id") String id,
                                 @Assisted("name") String name,
                                 @Assisted LookupDataAdapterConfiguration config,
                                 MetricRegistry metricRegistry) {
+        this(id, name, config, metricRegistry, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    DnsLookupDataAdapter(String id,
+                         String name,
+                         LookupDataAdapterConfiguration config,
+                         MetricRegistry metricRegistry,
+                         Ticker ticker) {
         super(id, name, config, metricRegistry);
         this.config = (Config) config;
+        this.ticker = ticker;
         this.errorCounter = metricRegistry.counter(MetricRegistry.name(getClass(), id, ERROR_COUNTER));
         this.resolveDomainNameTimer = metricRegistry.timer(MetricRegistry.name(getClass(), id, TIMER_RESOLVE_DOMAIN_NAME));
         this.reverseLookupTimer = metricRegistry.timer(MetricRegistry.name(getClass(), id, TIMER_REVERSE_LOOKUP));
         this.textLookupTimer = metricRegistry.timer(MetricRegistry.name(getClass(), id, TIMER_TEXT_LOOKUP));
+        this.cacheHitMeter = metricRegistry.meter(MetricRegistry.name(getClass(), id, METER_CACHE_HITS));
+        this.cacheMissMeter = metricRegistry.meter(MetricRegistry.name(getClass(), id, METER_CACHE_MISSES));
+        this.staleHitMeter = metricRegistry.meter(MetricRegistry.name(getClass(), id, METER_STALE_HITS));
+        this.rejectedMeter = metricRegistry.meter(MetricRegistry.name(getClass(), id, METER_REJECTED));
+        MetricUtils.safelyRegister(metricRegistry, MetricRegistry.name(getClass(), id, GAUGE_PENDING_REQUESTS),
+                (Gauge<Integer>) pendingRequests::size);
     }
 
     @Override
     protected void doStart() {
 
+        requestPermits = new Semaphore(config.maxConcurrentRequests());
+        if (config.cacheSize() > 0) {
+            final long staleNanos = TimeUnit.SECONDS.toNanos(config.staleTTL());
+            resultCache = Caffeine.newBuilder()
+                                  .maximumSize(config.cacheSize())
+                                  .ticker(ticker)
+                                  .expireAfter(new CachedResultExpiry(staleNanos))
+                                  .build();
+        }
+
         dnsClient = new DnsClient();
         dnsClient.start(config.serverIps(), config.requestTimeout());
     }
@@ -110,6 +173,9 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
     protected void doStop() {
 
         dnsClient.stop();
+        if (resultCache != null) {
+            resultCache.invalidateAll();
+        }
     }
 
     /**
@@ -139,70 +205,185 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
 
         LOG.debug("Beginning [{}] DNS resolution for key [{}]", config.lookupType(), trimmedKey);
 
-        LookupResult lookupResult;
-        switch (config.lookupType()) {
-            case A:
-                try (final Timer.Context ignored = resolveDomainNameTimer.time()) {
-                    lookupResult = resolveIPv4AddressForHostname(trimmedKey);
-                }
-                break;
-            case AAAA: {
-                try (final Timer.Context ignored = resolveDomainNameTimer.time()) {
-                    lookupResult = resolveIPv6AddressForHostname(trimmedKey);
+        // Waiting for a request permit and for the response share the request timeout
+        final long deadline = requestDeadline();
+        final LookupResult lookupResult = awaitResult(trimmedKey, lookup(trimmedKey, deadline), deadline);
+
+        LOG.debug("[{}] DNS resolution complete for key [{}]. Response [{}]", config.lookupType(), trimmedKey, lookupResult);
+
+        return lookupResult;
+    }
+
+    /**
+     * Sends the queries for all keys before waiting for the first response, so a batch takes roughly as long as its
+     * slowest query instead of the sum of all queries. The whole batch shares one request timeout.
+     */
+    @Override
+    protected Map<Object, LookupResult> doGetAll(Collection<?> keys) {
+
+        final long deadline = requestDeadline();
+        final Map<Object, CompletableFuture<LookupResult>> requests = new LinkedHashMap<>(keys.size());
+        for (Object key : keys) {
+            final String trimmedKey = StringUtils.trimToNull(String.valueOf(key));
+            requests.put(key, trimmedKey == null ? CompletableFuture.completedFuture(LookupResult.empty()) : lookup(trimmedKey, deadline));
+        }
+
+        final Map<Object, LookupResult> results = new LinkedHashMap<>(keys.size());
+        for (Map.Entry<Object, CompletableFuture<LookupResult>> request : requests.entrySet()) {
+            results.put(request.getKey(), awaitResult(request.getKey(), request.getValue(), deadline));
+        }
+        return results;
+    }
+
+    private long requestDeadline() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.requestTimeout());
+    }
+
+    /**
+     * Returns the cached result for the key or starts a DNS query for it. Expired results are still served during the
+     * configured stale period while a query refreshes them in the background.
+     *
+     * @param deadline the {@link System#nanoTime()} until which the caller waits for a request permit
+     */
+    private CompletableFuture<LookupResult> lookup(String key, long deadline) {
+
+        if (resultCache != null) {
+            final CachedResult cachedResult = resultCache.getIfPresent(key);
+            if (cachedResult != null) {
+                if (cachedResult.isExpired(ticker.read())) {
+                    staleHitMeter.mark();
+                    // Background refreshes never wait for a permit, they are just retried on the next lookup
+                    request(key, System.nanoTime());
+                } else {
+                    cacheHitMeter.mark();
                 }
-                break;
+                return CompletableFuture.completedFuture(cachedResult.result());
             }
-            case A_AAAA: {
-                try (final Timer.Context ignored = resolveDomainNameTimer.time()) {
-                    lookupResult = resolveAllAddressesForHostname(trimmedKey);
-                }
-                break;
+            cacheMissMeter.mark();
+        }
+
+        return request(key, deadline);
+    }
+
+    private CompletableFuture<LookupResult> request(String key, long deadline) {
+
+        final CompletableFuture<LookupResult> pendingRequest = pendingRequests.get(key);
+        if (pendingRequest != null) {
+            return pendingRequest;
+        }
+
+        final CompletableFuture<LookupResult> request = new CompletableFuture<>();
+        final CompletableFuture<LookupResult> concurrentRequest = pendingRequests.putIfAbsent(key, request);
+        if (concurrentRequest != null) {
+            return concurrentRequest;
+        }
+
+        if (!acquirePermit(deadline)) {
+            rejectedMeter.mark();
+            pendingRequests.remove(key, request);
+            request.completeExceptionally(new RejectedExecutionException(String.format(Locale.ENGLISH,
+                    "Too many concurrent DNS requests (max_concurrent_requests: %d)", config.maxConcurrentRequests())));
+            return request;
+        }
+
+        resolve(key).whenComplete((result, error) -> {
+            requestPermits.release();
+            if (error == null) {
+                cacheResult(key, result);
             }
-            case PTR: {
-                try (final Timer.Context ignored = reverseLookupTimer.time()) {
-                    lookupResult = performReverseLookup(trimmedKey);
-                }
-                break;
+            // Remove the pending request before completing it, so that later lookups are answered from the cache
+            pendingRequests.remove(key, request);
+            if (error == null) {
+                request.complete(result);
+            } else {
+                request.completeExceptionally(error);
             }
-            case TXT: {
-                try (final Timer.Context ignored = textLookupTimer.time()) {
-                    lookupResult = performTextLookup(trimmedKey);
-                }
-                break;
+        });
+
+        return request;
+    }
+
+    private boolean acquirePermit(long deadline) {
+
+        try {
+            return requestPermits.tryAcquire(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private LookupResult awaitResult(Object key, CompletableFuture<LookupResult> request, long deadline) {
+
+        try {
+            return request.get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return LookupResult.empty();
+        } catch (TimeoutException e) {
+            // The query itself is logged and counted as an error once it runs into the DNS client timeout
+            LOG.debug("Gave up waiting for [{}] DNS resolution of key [{}] after [{}] ms", config.lookupType(), key, config.requestTimeout());
+            return LookupResult.empty();
+        } catch (ExecutionException e) {
+            // Resolution errors have already been logged and counted
+            if (e.getCause() instanceof RejectedExecutionException) {
+                LOG.debug("Could not perform [{}] DNS resolution for key [{}]: {}", config.lookupType(), key, e.getCause().getMessage());
             }
-            default:
-                throw new IllegalArgumentException(String.format(Locale.ENGLISH, "DnsLookupType [%s] is not supported", config.lookupType()));
+            return LookupResult.empty();
         }
+    }
 
-        LOG.debug("[{}] DNS resolution complete for key [{}]. Response [{}]", config.lookupType(), trimmedKey, lookupResult);
+    private CompletableFuture<LookupResult> resolve(String key) {
 
-        return lookupResult;
+        try {
+            switch (config.lookupType()) {
+                case A:
+                    return timed(resolveDomainNameTimer, () -> resolveIPv4AddressForHostname(key));
+                case AAAA:
+                    return timed(resolveDomainNameTimer, () -> resolveIPv6AddressForHostname(key));
+                case A_AAAA:
+                    return timed(resolveDomainNameTimer, () -> resolveAllAddressesForHostname(key));
+                case PTR:
+                    return timed(reverseLookupTimer, () -> performReverseLookup(key));
+                case TXT:
+                    return timed(textLookupTimer, () -> performTextLookup(key));
+                default:
+                    throw new IllegalArgumentException(String.format(Locale.ENGLISH, "DnsLookupType [%s] is not supported", config.lookupType()));
+            }
+        } catch (Exception e) {
+            final CompletableFuture<LookupResult> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    private static CompletableFuture<LookupResult> timed(Timer timer, Supplier<CompletableFuture<LookupResult>> request) {
+
+        final Timer.Context context = timer.time();
+        return request.get().whenComplete((result, error) -> context.stop());
     }
 
     /**
-     * Provides both single and multiple addresses in LookupResult. This is because the purpose of a hostname
-     * resolution request is to resolve to a single IP address (so that communication can be initiated with it).
-     * We also resolve all addresses in case they are needed.
+     * Caches successful results for their DNS TTL (or the TTL override) and empty results for the negative cache
+     * TTL. Failed queries are not cached at all.
      */
-    private LookupResult resolveIPv4AddressForHostname(Object key) {
+    private void cacheResult(String key, LookupResult result) {
 
-        final List<ADnsAnswer> aDnsAnswers;
-        try {
-            aDnsAnswers = dnsClient.resolveIPv4AddressForHostname(key.toString(), false);
-        } catch (UnknownHostException e) {
-            return LookupResult.empty(); // UnknownHostException is a valid case when the DNS record does not exist. Do not log an error.
-        } catch (Exception e) {
-            LOG.error("Could not resolve [{}] records for hostname [{}]. Cause [{}]", A_RECORD_LABEL, key, ExceptionUtils.getRootCauseMessage(e));
-            errorCounter.inc();
-            return LookupResult.empty();
+        if (resultCache == null) {
+            return;
         }
 
-        if (CollectionUtils.isNotEmpty(aDnsAnswers)) {
-            return buildLookupResult(aDnsAnswers);
+        final long ttlNanos;
+        if (result.isEmpty()) {
+            ttlNanos = TimeUnit.SECONDS.toNanos(config.negativeCacheTTL());
+        } else {
+            ttlNanos = TimeUnit.MILLISECONDS.toNanos(result.cacheTTL());
+        }
+        if (ttlNanos <= 0) {
+            return;
         }
 
-        LOG.debug("Could not resolve [{}] records for hostname [{}].", A_RECORD_LABEL, key);
-        return LookupResult.empty();
+        resultCache.put(key, CachedResult.create(result, ttlNanos, ticker.read()));
     }
 
     /**
@@ -210,24 +391,40 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
      * resolution request is to resolve to a single IP address (so that communication can be initiated with it).
      * We also resolve all addresses in case they are needed.
      */
-    private LookupResult resolveIPv6AddressForHostname(Object key) {
+    private CompletableFuture<LookupResult> resolveIPv4AddressForHostname(String key) {
 
-        final List<ADnsAnswer> aDnsAnswers;
-        try {
-            aDnsAnswers = dnsClient.resolveIPv6AddressForHostname(key.toString(), false);
-        } catch (UnknownHostException e) {
-            return LookupResult.empty(); // UnknownHostException is a valid case when the DNS record does not exist. Do not log an error.
-        } catch (Exception e) {
-            LOG.error("Could not resolve [{}] records for hostname [{}]. Cause [{}]", AAAA_RECORD_LABEL, key, ExceptionUtils.getRootCauseMessage(e));
+        return dnsClient.resolveIPv4AddressForHostnameAsync(key, false)
+                        .handle((aDnsAnswers, error) -> buildAddressLookupResult(key, A_RECORD_LABEL, aDnsAnswers, error));
+    }
+
+    /**
+     * Provides both single and multiple addresses in LookupResult. This is because the purpose of a hostname
+     * resolution request is to resolve to a single IP address (so that communication can be initiated with it).
+     * We also resolve all addresses in case they are needed.
+     */
+    private CompletableFuture<LookupResult> resolveIPv6AddressForHostname(String key) {
+
+        return dnsClient.resolveIPv6AddressForHostnameAsync(key, false)
+                        .handle((aDnsAnswers, error) -> buildAddressLookupResult(key, AAAA_RECORD_LABEL, aDnsAnswers, error));
+    }
+
+    private LookupResult buildAddressLookupResult(String key, String recordLabel, List<ADnsAnswer> aDnsAnswers, Throwable error) {
+
+        if (error != null) {
+            final Throwable cause = unwrap(error);
+            if (cause instanceof UnknownHostException) {
+                return LookupResult.empty(); // UnknownHostException is a valid case when the DNS record does not exist. Do not log an error.
+            }
+            LOG.error("Could not resolve [{}] records for hostname [{}]. Cause [{}]", recordLabel, key, ExceptionUtils.getRootCauseMessage(cause));
             errorCounter.inc();
-            return LookupResult.empty();
+            throw new CompletionException(cause);
         }
 
         if (CollectionUtils.isNotEmpty(aDnsAnswers)) {
             return buildLookupResult(aDnsAnswers);
         }
 
-        LOG.debug("Could not resolve [{}] records for hostname [{}].", AAAA_RECORD_LABEL, key);
+        LOG.debug("Could not resolve [{}] records for hostname [{}].", recordLabel, key);
         return LookupResult.empty();
     }
 
@@ -248,27 +445,19 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
     /**
      * Resolves all IPv4 and IPv6 addresses for the hostname. A single IP address will be returned in the singleValue
      * field (IPv4 address will be returned if present). All IPv4 and IPv6 addresses will be included in the multiValue
-     * field.
+     * field. Both queries are sent at the same time.
      *
      * @param key a hostname
      */
-    private LookupResult resolveAllAddressesForHostname(Object key) {
-
-        try {
-            List<ADnsAnswer> ip4Answers = new ArrayList<>();
-            List<ADnsAnswer> ip6Answers = new ArrayList<>();
-
-            // UnknownHostException is a valid case when the DNS record does not exist. Silently ignore and do not log an error.
-            try {
-                ip4Answers = dnsClient.resolveIPv4AddressForHostname(key.toString(), true); // Include IP version
-            } catch (UnknownHostException e) {
-            }
+    private CompletableFuture<LookupResult> resolveAllAddressesForHostname(String key) {
 
-            try {
-                ip6Answers = dnsClient.resolveIPv6AddressForHostname(key.toString(), true); // Include IP version
-            } catch (UnknownHostException e) {
-            }
+        // UnknownHostException is a valid case when the DNS record does not exist. Silently ignore and do not log an error.
+        final CompletableFuture<List<ADnsAnswer>> ip4Request = dnsClient.resolveIPv4AddressForHostnameAsync(key, true) // Include IP version
+                                                                        .exceptionally(DnsLookupDataAdapter::emptyIfUnknownHost);
+        final CompletableFuture<List<ADnsAnswer>> ip6Request = dnsClient.resolveIPv6AddressForHostnameAsync(key, true) // Include IP version
+                                                                        .exceptionally(DnsLookupDataAdapter::emptyIfUnknownHost);
 
+        return ip4Request.thenCombine(ip6Request, (ip4Answers, ip6Answers) -> {
             // Select answer for single value. Prefer use of IPv4 address. Only return IPv6 address if no IPv6 address found.
             final String singleValue;
             if (CollectionUtils.isNotEmpty(ip4Answers)) {
@@ -296,74 +485,90 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
             assignMinimumTTL(allAnswers, builder);
 
             return builder.build();
-        } catch (Exception e) {
-            LOG.error("Could not resolve [A/AAAA] records for hostname [{}]. Cause [{}]", key, ExceptionUtils.getRootCauseMessage(e));
-            errorCounter.inc();
-            return LookupResult.empty();
-        }
+        }).whenComplete((result, error) -> {
+            if (error != null) {
+                LOG.error("Could not resolve [A/AAAA] records for hostname [{}]. Cause [{}]", key, ExceptionUtils.getRootCauseMessage(unwrap(error)));
+                errorCounter.inc();
+            }
+        });
     }
 
-    private LookupResult performReverseLookup(Object key) {
+    private static List<ADnsAnswer> emptyIfUnknownHost(Throwable error) {
 
-        final PtrDnsAnswer dnsResponse;
-        try {
-            dnsResponse = dnsClient.reverseLookup(key.toString());
-        } catch (Exception e) {
-            LOG.error("Could not perform reverse DNS lookup for [{}]. Cause [{}]", key, ExceptionUtils.getRootCauseMessage(e));
-            errorCounter.inc();
-            return LookupResult.empty();
+        final Throwable cause = unwrap(error);
+        if (cause instanceof UnknownHostException) {
+            return Collections.emptyList();
         }
+        throw new CompletionException(cause);
+    }
 
-        if (dnsResponse != null) {
-            if (!Strings.isNullOrEmpty(dnsResponse.fullDomain())) {
+    private CompletableFuture<LookupResult> performReverseLookup(String key) {
 
-                // Include answer in both single and multiValue fields.
-                final Map<Object, Object> multiValueResults = new LinkedHashMap<>();
-                multiValueResults.put(PtrDnsAnswer.FIELD_DOMAIN, dnsResponse.domain());
-                multiValueResults.put(PtrDnsAnswer.FIELD_FULL_DOMAIN, dnsResponse.fullDomain());
-                multiValueResults.put(PtrDnsAnswer.FIELD_DNS_TTL, dnsResponse.dnsTTL());
+        return dnsClient.reverseLookupAsync(key).handle((dnsResponse, error) -> {
+            if (error != null) {
+                LOG.error("Could not perform reverse DNS lookup for [{}]. Cause [{}]", key, ExceptionUtils.getRootCauseMessage(unwrap(error)));
+                errorCounter.inc();
+                throw new CompletionException(unwrap(error));
+            }
 
-                final LookupResult.Builder builder = LookupResult.builder()
-                                                                 .single(dnsResponse.fullDomain())
-                                                                 .multiValue(multiValueResults);
+            if (dnsResponse != null) {
+                if (!Strings.isNullOrEmpty(dnsResponse.fullDomain())) {
 
-                if (config.hasOverrideTTL()) {
-                    builder.cacheTTL(config.getCacheTTLOverrideMillis());
-                } else {
-                    builder.cacheTTL(dnsResponse.dnsTTL() * 1000);
-                }
+                    // Include answer in both single and multiValue fields.
+                    final Map<Object, Object> multiValueResults = new LinkedHashMap<>();
+                    multiValueResults.put(PtrDnsAnswer.FIELD_DOMAIN, dnsResponse.domain());
+                    multiValueResults.put(PtrDnsAnswer.FIELD_FULL_DOMAIN, dnsResponse.fullDomain());
+                    multiValueResults.put(PtrDnsAnswer.FIELD_DNS_TTL, dnsResponse.dnsTTL());
 
-                return builder.build();
+                    final LookupResult.Builder builder = LookupResult.builder()
+                                                                     .single(dnsResponse.fullDomain())
+                                                                     .multiValue(multiValueResults);
+
+                    if (config.hasOverrideTTL()) {
+                        builder.cacheTTL(config.getCacheTTLOverrideMillis());
+                    } else {
+                        builder.cacheTTL(dnsResponse.dnsTTL() * 1000);
+                    }
+
+                    return builder.build();
+                }
             }
-        }
 
-        LOG.debug("Could not perform reverse lookup on IP address [{}]. No PTR record was found.", key);
-        return LookupResult.empty();
+            LOG.debug("Could not perform reverse lookup on IP address [{}]. No PTR record was found.", key);
+            return LookupResult.empty();
+        });
     }
 
-    private LookupResult performTextLookup(Object key) {
+    private CompletableFuture<LookupResult> performTextLookup(String key) {
 
         /* Query all TXT records for hostname and provide them in the multiValue field as an array.
          * Do not attempt to attempt to choose a single value for the user (all are valid). */
-        final List<TxtDnsAnswer> txtDnsAnswers;
-        try {
-            txtDnsAnswers = dnsClient.txtLookup(key.toString());
-        } catch (Exception e) {
-            LOG.error("Could not perform TXT DNS lookup for [{}]. Cause [{}]", key, ExceptionUtils.getRootCauseMessage(e));
-            errorCounter.inc();
+        return dnsClient.txtLookupAsync(key).handle((txtDnsAnswers, error) -> {
+            if (error != null) {
+                LOG.error("Could not perform TXT DNS lookup for [{}]. Cause [{}]", key, ExceptionUtils.getRootCauseMessage(unwrap(error)));
+                errorCounter.inc();
+                throw new CompletionException(unwrap(error));
+            }
+
+            if (CollectionUtils.isNotEmpty(txtDnsAnswers)) {
+                final LookupResult.Builder builder = LookupResult.builder();
+                builder.multiValue(Collections.singletonMap(RAW_RESULTS_FIELD, txtDnsAnswers));
+                assignMinimumTTL(txtDnsAnswers, builder);
+
+                return builder.build();
+            }
+
+            LOG.debug("Could not perform Text lookup on IP address [{}]. No TXT records were found.", key);
             return LookupResult.empty();
-        }
+        });
+    }
 
-        if (CollectionUtils.isNotEmpty(txtDnsAnswers)) {
-            final LookupResult.Builder builder = LookupResult.builder();
-            builder.multiValue(Collections.singletonMap(RAW_RESULTS_FIELD, txtDnsAnswers));
-            assignMinimumTTL(txtDnsAnswers, builder);
+    private static Throwable unwrap(Throwable throwable) {
 
-            return builder.build();
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            return throwable.getCause();
         }
-
-        LOG.debug("Could not perform Text lookup on IP address [{}]. No TXT records were found.", key);
-        return LookupResult.empty();
+        return throwable;
     }
 
     /**
@@ -387,6 +592,49 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
         throw new UnsupportedOperationException();
     }
 
+    @AutoValue
+    static abstract class CachedResult {
+        abstract LookupResult result();
+
+        abstract long ttlNanos();
+
+        abstract long expiresAtNanos();
+
+        static CachedResult create(LookupResult result, long ttlNanos, long nowNanos) {
+            return new AutoValue_DnsLookupDataAdapter_CachedResult(result, ttlNanos, LongMath.saturatedAdd(nowNanos, ttlNanos));
+        }
+
+        boolean isExpired(long nowNanos) {
+            return nowNanos - expiresAtNanos() >= 0;
+        }
+    }
+
+    /**
+     * Keeps every result for its TTL plus the stale period, during which it is served while being refreshed.
+     */
+    private static class CachedResultExpiry implements Expiry<String, CachedResult> {
+        private final long staleNanos;
+
+        CachedResultExpiry(long staleNanos) {
+            this.staleNanos = staleNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(@Nonnull String key, @Nonnull CachedResult value, long currentTime) {
+            return LongMath.saturatedAdd(value.ttlNanos(), staleNanos);
+        }
+
+        @Override
+        public long expireAfterUpdate(@Nonnull String key, @Nonnull CachedResult value, long currentTime, long currentDuration) {
+            return LongMath.saturatedAdd(value.ttlNanos(), staleNanos);
+        }
+
+        @Override
+        public long expireAfterRead(@Nonnull String key, @Nonnull CachedResult value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
     public interface Factory extends LookupDataAdapter.Factory<DnsLookupDataAdapter> {
         @Override
         DnsLookupDataAdapter create(@Assisted("id") String id,
@@ -410,6 +658,10 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
                                               .serverIps(Config.DEFAULT_SERVER_IP)
                                               .cacheTTLOverrideEnabled(Config.DEFAULT_CACHE_TTL_OVERRIDE)
                                               .requestTimeout(Config.DEFAULT_TIMEOUT_MILLIS)
+                                              .maxConcurrentRequests(Config.DEFAULT_MAX_CONCURRENT_REQUESTS)
+                                              .cacheSize(Config.DEFAULT_CACHE_SIZE)
+                                              .negativeCacheTTL(Config.DEFAULT_NEGATIVE_CACHE_TTL_SECONDS)
+                                              .staleTTL(Config.DEFAULT_STALE_TTL_SECONDS)
                                               .build();
         }
     }
@@ -428,12 +680,20 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
         private static final String FIELD_LOOKUP_TYPE = "lookup_type";
         private static final String FIELD_REQUEST_TIMEOUT = "request_timeout";
         private static final String FIELD_SERVER_IPS = "server_ips";
+        private static final String FIELD_MAX_CONCURRENT_REQUESTS = "max_concurrent_requests";
+        private static final String FIELD_CACHE_SIZE = "cache_size";
+        private static final String FIELD_NEGATIVE_CACHE_TTL = "negative_cache_ttl";
+        private static final String FIELD_STALE_TTL = "stale_ttl";
 
         // Default values
         private static final boolean DEFAULT_CACHE_TTL_OVERRIDE = false;
         private static final DnsLookupType DEFAULT_LOOKUP_TYPE = DnsLookupType.A;
         private static final int DEFAULT_TIMEOUT_MILLIS = 10000;
         private static final String DEFAULT_SERVER_IP = ""; // Intentionally blank
+        private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 100;
+        private static final long DEFAULT_CACHE_SIZE = 10000L;
+        private static final long DEFAULT_NEGATIVE_CACHE_TTL_SECONDS = 60L;
+        private static final long DEFAULT_STALE_TTL_SECONDS = 60L;
 
         @Override
         @JsonProperty(TYPE_FIELD)
@@ -459,6 +719,27 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
         @JsonProperty(FIELD_CACHE_TTL_OVERRIDE_UNIT)
         public abstract TimeUnit cacheTTLOverrideUnit();
 
+        @JsonProperty(FIELD_MAX_CONCURRENT_REQUESTS)
+        public abstract int maxConcurrentRequests();
+
+        /**
+         * Maximum number of results kept in the adapter's own TTL cache. {@code 0} disables the cache.
+         */
+        @JsonProperty(FIELD_CACHE_SIZE)
+        public abstract long cacheSize();
+
+        /**
+         * Number of seconds a lookup without result is cached.
+         */
+        @JsonProperty(FIELD_NEGATIVE_CACHE_TTL)
+        public abstract long negativeCacheTTL();
+
+        /**
+         * Number of seconds an expired result is still served while it is being refreshed.
+         */
+        @JsonProperty(FIELD_STALE_TTL)
+        public abstract long staleTTL();
+
         public static Builder builder() {
             return new AutoValue_DnsLookupDataAdapter_Config.Builder();
         }
@@ -476,6 +757,22 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
                 errors.put(FIELD_REQUEST_TIMEOUT, "Value cannot be smaller than 1");
             }
 
+            if (maxConcurrentRequests() < 1) {
+                errors.put(FIELD_MAX_CONCURRENT_REQUESTS, "Value cannot be smaller than 1");
+            }
+
+            if (cacheSize() < 0) {
+                errors.put(FIELD_CACHE_SIZE, "Value cannot be negative");
+            }
+
+            if (negativeCacheTTL() < 0) {
+                errors.put(FIELD_NEGATIVE_CACHE_TTL, "Value cannot be negative");
+            }
+
+            if (staleTTL() < 0) {
+                errors.put(FIELD_STALE_TTL, "Value cannot be negative");
+            }
+
             return errors.isEmpty() ? Optional.empty() : Optional.of(errors);
         }
 
@@ -503,7 +800,11 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
                              .serverIps(DEFAULT_SERVER_IP)
                              .lookupType(DnsLookupType.A)
                              .cacheTTLOverrideEnabled(DEFAULT_CACHE_TTL_OVERRIDE)
-                             .requestTimeout(DEFAULT_TIMEOUT_MILLIS);
+                             .requestTimeout(DEFAULT_TIMEOUT_MILLIS)
+                             .maxConcurrentRequests(DEFAULT_MAX_CONCURRENT_REQUESTS)
+                             .cacheSize(DEFAULT_CACHE_SIZE)
+                             .negativeCacheTTL(DEFAULT_NEGATIVE_CACHE_TTL_SECONDS)
+                             .staleTTL(DEFAULT_STALE_TTL_SECONDS);
             }
 
             @JsonProperty(TYPE_FIELD)
@@ -527,6 +828,18 @@ public class DnsLookupDataAdapter extends LookupDataAdapter {
             @JsonProperty(FIELD_CACHE_TTL_OVERRIDE_UNIT)
             public abstract Builder cacheTTLOverrideUnit(@Nullable TimeUnit cacheTTLOverrideUnit);
 
+            @JsonProperty(FIELD_MAX_CONCURRENT_REQUESTS)
+            public abstract Builder maxConcurrentRequests(int maxConcurrentRequests);
+
+            @JsonProperty(FIELD_CACHE_SIZE)
+            public abstract Builder cacheSize(long cacheSize);
+
+            @JsonProperty(FIELD_NEGATIVE_CACHE_TTL)
+            public abstract Builder negativeCacheTTL(long negativeCacheTTL);
+
+            @JsonProperty(FIELD_STALE_TTL)
+            public abstract Builder staleTTL(long staleTTL);
+
             abstract Config autoBuild();
 
             public Config build() {
@@ -0,0 +1,463 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.lookup.adapters;
+
+import au.com.bytecode.opencsv.CSVReader;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.net.InetAddresses;
+import com.google.common.primitives.Ints;
+import com.google.inject.assistedinject.Assisted;
+import org.graylog.autovalue.WithBeanGetter;
+import org.graylog2.lookup.adapters.mappedindex.MappedIndex;
+import org.graylog2.lookup.adapters.mappedindex.MappedIndexBuilder;
+import org.graylog2.plugin.lookup.LookupCachePurge;
+import org.graylog2.plugin.lookup.LookupDataAdapter;
+import org.graylog2.plugin.lookup.LookupDataAdapterConfiguration;
+import org.graylog2.plugin.lookup.LookupResult;
+import org.graylog2.plugin.utilities.FileInfo;
+import org.graylog2.shared.metrics.MetricUtils;
+import org.joda.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.Size;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.Strings.isNullOrEmpty;
+
+/**
+ * A data adapter for large, static CSV or DSV files.
+ * <p>
+ * Instead of keeping the file contents on the heap like the {@link CSVFileDataAdapter}, the file is compiled into an
+ * immutable on-disk hash index in the Graylog data directory which is memory-mapped. On refresh, a new index file is
+ * built and atomically swapped in, so lookups are never blocked and reloading the file doesn't put pressure on the
+ * garbage collector. Every adapter instance uses its own index directory, so a replacement instance can build its
+ * index while the instance it replaces is still serving lookups from the old one.
+ * <p>
+ * Optionally the keys can be CIDR ranges (e. g. {@code 10.0.0.0/8}), the lookup key is then an IP address and the
+ * value of the most specific range containing the address is returned.
+ */
+public class MappedCSVFileDataAdapter extends LookupDataAdapter {
+    private static final Logger LOG = LoggerFactory.getLogger(MappedCSVFileDataAdapter.class);
+
+    public static final String NAME = "mapped_csvfile";
+
+    private static final String INDEX_FILE_SUFFIX = ".idx";
+
+    // The index directories of all running instances, any other directory is a left-over and can be deleted
+    private static final Set<Path> ACTIVE_INDEX_DIRECTORIES = ConcurrentHashMap.newKeySet();
+
+    private final Config config;
+    private final Path adapterDirectory;
+    private final AtomicReference<MappedIndex> indexRef = new AtomicReference<>(MappedIndex.empty());
+
+    private FileInfo fileInfo = FileInfo.empty();
+    private Path indexDirectory = null;
+    private Path indexFile = null;
+
+    @Inject
+    public MappedCSVFileDataAdapter(@Assisted("id") String id,
+                                    @Assisted("name") String name,
+                                    @Assisted LookupDataAdapterConfiguration config,
+                                    @Named("data_dir") Path dataDir,
+                                    MetricRegistry metricRegistry) {
+        super(id, name, config, metricRegistry);
+        this.config = (Config) config;
+        this.adapterDirectory = dataDir.resolve("lookup-indexes").resolve(id == null ? name : id);
+
+        final Gauge<Integer> entriesGauge = () -> indexRef.get().size();
+        MetricUtils.safelyRegister(metricRegistry, MetricRegistry.name("org.graylog2.lookup.adapters", id, "entries"), entriesGauge);
+    }
+
+    @Override
+    public void doStart() throws Exception {
+        LOG.debug("Starting memory-mapped CSV data adapter for file: {}", config.path());
+        if (isNullOrEmpty(config.path())) {
+            throw new IllegalStateException("File path needs to be set");
+        }
+        if (config.checkInterval() < 1) {
+            throw new IllegalStateException("Check interval setting cannot be smaller than 1");
+        }
+
+        indexDirectory = createIndexDirectory();
+        try {
+            // Set file info before parsing the data for the first time
+            fileInfo = FileInfo.forPath(Paths.get(config.path()));
+            swapIndex(buildIndex());
+        } catch (Exception e) {
+            // A failed adapter is never stopped, so it has to clean up right away
+            releaseIndexDirectory();
+            throw e;
+        }
+    }
+
+    @Override
+    public Duration refreshInterval() {
+        return Duration.standardSeconds(Ints.saturatedCast(config.checkInterval()));
+    }
+
+    @Override
+    protected void doRefresh(LookupCachePurge cachePurge) throws Exception {
+        try {
+            final FileInfo.Change fileChanged = fileInfo.checkForChange();
+            if (!fileChanged.isChanged() && !getError().isPresent()) {
+                // Nothing to do, file did not change
+                return;
+            }
+
+            LOG.debug("CSV file {} has changed, rebuilding index", config.path());
+            swapIndex(buildIndex());
+            cachePurge.purgeAll();
+            fileInfo = fileChanged.fileInfo();
+            clearError();
+        } catch (IOException e) {
+            LOG.error("Couldn't check data adapter <{}> CSV file {} for updates: {} {}", name(), config.path(), e.getClass().getCanonicalName(), e.getMessage());
+            setError(e);
+        }
+    }
+
+    private Path buildIndex() throws IOException {
+        final Path newIndexFile = indexDirectory.resolve("index-" + System.currentTimeMillis() + INDEX_FILE_SUFFIX);
+        final InputStream inputStream = Files.newInputStream(Paths.get(config.path()));
+        final InputStreamReader fileReader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+
+        try (final CSVReader csvReader = new CSVReader(fileReader, config.separatorAsChar(), config.quotecharAsChar());
+             final MappedIndexBuilder indexBuilder = new MappedIndexBuilder(newIndexFile, config.cidrLookup())) {
+            int line = 0;
+            int keyColumn = -1;
+            int valueColumn = -1;
+            long invalidKeys = 0;
+
+            while (true) {
+                final String[] next = csvReader.readNext();
+                if (next == null) {
+                    break;
+                }
+                line++;
+
+                if (line == 1) {
+                    // The first line in the CSV file provides the column names
+                    int col = 0;
+                    for (final String column : next) {
+                        if (!isNullOrEmpty(column)) {
+                            if (config.keyColumn().equals(column)) {
+                                keyColumn = col;
+                            }
+                            if (config.valueColumn().equals(column)) {
+                                valueColumn = col;
+                            }
+                        }
+                        col++;
+                    }
+                    if (keyColumn < 0 || valueColumn < 0) {
+                        throw new IllegalStateException("Couldn't detect column number for key or value - check CSV file format");
+                    }
+                } else {
+                    // The other lines are supposed to be data entries
+                    final String key = config.caseInsensitiveLookup() ? next[keyColumn].toLowerCase(Locale.ENGLISH) : next[keyColumn];
+                    try {
+                        indexBuilder.add(key, next[valueColumn]);
+                    } catch (IllegalArgumentException e) {
+                        invalidKeys++;
+                        LOG.debug("Skipping invalid CIDR range <{}> in line {} of CSV file {}", key, line, config.path());
+                    }
+                }
+            }
+
+            if (invalidKeys > 0) {
+                LOG.warn("Skipped {} lines with invalid CIDR ranges in CSV file {}", invalidKeys, config.path());
+            }
+
+            final int entries = indexBuilder.build();
+            LOG.debug("Built index {} with {} entries for CSV file {}", newIndexFile, entries, config.path());
+            return newIndexFile;
+        } catch (Exception e) {
+            LOG.error("Couldn't parse CSV file {} (settings separator=<{}> quotechar=<{}> key_column=<{}> value_column=<{}>)", config.path(),
+                    config.separator(), config.quotechar(), config.keyColumn(), config.valueColumn(), e);
+            throw new IOException("Couldn't build index for CSV file " + config.path(), e);
+        }
+    }
+
+    private void swapIndex(Path newIndexFile) throws IOException {
+        indexRef.set(MappedIndex.open(newIndexFile));
+
+        // Lookups still using the old index keep their mapping even if the file is deleted
+        final Path oldIndexFile = indexFile;
+        indexFile = newIndexFile;
+        if (oldIndexFile != null && !oldIndexFile.equals(newIndexFile)) {
+            deleteIndexFile(oldIndexFile);
+        }
+    }
+
+    /**
+     * Creates a new index directory for this instance and deletes the directories of instances which are gone, e. g.
+     * because the server has been stopped before they could clean up.
+     */
+    private Path createIndexDirectory() throws IOException {
+        synchronized (ACTIVE_INDEX_DIRECTORIES) {
+            Files.createDirectories(adapterDirectory);
+            try (final DirectoryStream<Path> files = Files.newDirectoryStream(adapterDirectory)) {
+                for (Path file : files) {
+                    if (!ACTIVE_INDEX_DIRECTORIES.contains(file)) {
+                        deleteIndexDirectory(file);
+                    }
+                }
+            }
+
+            final Path directory = Files.createTempDirectory(adapterDirectory, "instance-" + System.currentTimeMillis() + "-");
+            ACTIVE_INDEX_DIRECTORIES.add(directory);
+            return directory;
+        }
+    }
+
+    private void deleteIndexDirectory(Path directory) {
+        if (Files.isDirectory(directory)) {
+            try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    deleteIndexFile(file);
+                }
+            } catch (IOException e) {
+                LOG.warn("Couldn't delete old index directory {}", directory, e);
+            }
+        }
+        deleteIndexFile(directory);
+    }
+
+    private void deleteIndexFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Couldn't delete old index file {}", file, e);
+        }
+    }
+
+    @Override
+    public void doStop() throws Exception {
+        LOG.debug("Stopping memory-mapped CSV data adapter for file: {}", config.path());
+        indexRef.set(MappedIndex.empty());
+        indexFile = null;
+        releaseIndexDirectory();
+    }
+
+    private void releaseIndexDirectory() {
+        if (indexDirectory != null) {
+            synchronized (ACTIVE_INDEX_DIRECTORIES) {
+                deleteIndexDirectory(indexDirectory);
+                ACTIVE_INDEX_DIRECTORIES.remove(indexDirectory);
+            }
+            indexDirectory = null;
+        }
+    }
+
+    @Override
+    public LookupResult doGet(Object key) {
+        final MappedIndex index = indexRef.get();
+        final String stringKey = String.valueOf(key);
+        final String value;
+
+        if (config.cidrLookup()) {
+            final InetAddress address;
+            try {
+                address = InetAddresses.forString(stringKey);
+            } catch (IllegalArgumentException e) {
+                return LookupResult.empty();
+            }
+            value = index.getForAddress(address);
+        } else {
+            value = index.get(config.caseInsensitiveLookup() ? stringKey.toLowerCase(Locale.ENGLISH) : stringKey);
+        }
+
+        if (value == null) {
+            return LookupResult.empty();
+        }
+
+        return LookupResult.single(value);
+    }
+
+    @Override
+    public void set(Object key, Object value) {
+
+    }
+
+    public interface Factory extends LookupDataAdapter.Factory<MappedCSVFileDataAdapter> {
+        @Override
+        MappedCSVFileDataAdapter create(@Assisted("id") String id,
+                                        @Assisted("name") String name,
+                                        LookupDataAdapterConfiguration configuration);
+
+        @Override
+        Descriptor getDescriptor();
+    }
+
+    public static class Descriptor extends LookupDataAdapter.Descriptor<Config> {
+        public Descriptor() {
+            super(NAME, Config.class);
+        }
+
+        @Override
+        public Config defaultConfiguration() {
+            return Config.builder()
+                    .type(NAME)
+                    .path("/etc/graylog/lookup-table.csv")
+                    .separator(",")
+                    .quotechar("\"")
+                    .keyColumn("key")
+                    .valueColumn("value")
+                    .checkInterval(60)
+                    .caseInsensitiveLookup(false)
+                    .cidrLookup(false)
+                    .build();
+        }
+    }
+
+    @AutoValue
+    @WithBeanGetter
+    @JsonAutoDetect
+    @JsonDeserialize(builder = AutoValue_MappedCSVFileDataAdapter_Config.Builder.class)
+    @JsonTypeName(NAME)
+    public static abstract class Config implements LookupDataAdapterConfiguration {
+
+        @Override
+        @JsonProperty(TYPE_FIELD)
+        public abstract String type();
+
+        @JsonProperty("path")
+        @NotEmpty
+        public abstract String path();
+
+        // Using String here instead of char to allow deserialization of a longer (invalid) string to get proper
+        // validation error messages
+        @JsonProperty("separator")
+        @Size(min = 1, max = 1)
+        @NotEmpty
+        public abstract String separator();
+
+        @JsonIgnore
+        public char separatorAsChar() {
+            return separator().charAt(0);
+        }
+
+        // Using String here instead of char to allow deserialization of a longer (invalid) string to get proper
+        // validation error messages
+        @JsonProperty("quotechar")
+        @Size(min = 1, max = 1)
+        @NotEmpty
+        public abstract String quotechar();
+
+        @JsonIgnore
+        public char quotecharAsChar() {
+            return quotechar().charAt(0);
+        }
+
+        @JsonProperty("key_column")
+        @NotEmpty
+        public abstract String keyColumn();
+
+        @JsonProperty("value_column")
+        @NotEmpty
+        public abstract String valueColumn();
+
+        @JsonProperty("check_interval")
+        @Min(1)
+        public abstract long checkInterval();
+
+        @JsonProperty("case_insensitive_lookup")
+        public abstract boolean caseInsensitiveLookup();
+
+        /**
+         * If enabled, the keys are CIDR ranges or IP addresses and lookups return the most specific range.
+         */
+        @JsonProperty("cidr_lookup")
+        public abstract boolean cidrLookup();
+
+        public static Builder builder() {
+            return new AutoValue_MappedCSVFileDataAdapter_Config.Builder();
+        }
+
+        @Override
+        public Optional<Multimap<String, String>> validate() {
+            final ArrayListMultimap<String, String> errors = ArrayListMultimap.create();
+
+            final Path path = Paths.get(path());
+            if (!Files.exists(path)) {
+                errors.put("path", "The file does not exist.");
+            } else if (!Files.isReadable(path)) {
+                errors.put("path", "The file cannot be read.");
+            }
+
+            return errors.isEmpty() ? Optional.empty() : Optional.of(errors);
+        }
+
+        @AutoValue.Builder
+        public abstract static class Builder {
+            @JsonProperty(TYPE_FIELD)
+            public abstract Builder type(String type);
+
+            @JsonProperty("path")
+            public abstract Builder path(String path);
+
+            @JsonProperty("separator")
+            public abstract Builder separator(String separator);
+
+            @JsonProperty("quotechar")
+            public abstract Builder quotechar(String quotechar);
+
+            @JsonProperty("key_column")
+            public abstract Builder keyColumn(String keyColumn);
+
+            @JsonProperty("value_column")
+            public abstract Builder valueColumn(String valueColumn);
+
+            @JsonProperty("check_interval")
+            public abstract Builder checkInterval(long checkInterval);
+
+            @JsonProperty("case_insensitive_lookup")
+            public abstract Builder caseInsensitiveLookup(boolean caseInsensitiveLookup);
+
+            @JsonProperty("cidr_lookup")
+            public abstract Builder cidrLookup(boolean cidrLookup);
+
+            public abstract Config build();
+        }
+    }
+}
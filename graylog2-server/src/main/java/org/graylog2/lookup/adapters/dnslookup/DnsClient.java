@@ -39,6 +39,7 @@ import io.netty.resolver.dns.DnsNameResolverBuilder;
 import io.netty.resolver.dns.DnsServerAddressStreamProvider;
 import io.netty.resolver.dns.SequentialDnsServerAddressStreamProvider;
 import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.graylog2.shared.utilities.ExceptionUtils;
@@ -54,6 +55,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -167,6 +169,68 @@ public class DnsClient {
                        .collect(Collectors.toList());
     }
 
+    /**
+     * Non-blocking variant of {@link #resolveIPv4AddressForHostname(String, boolean)}. The returned future completes
+     * exceptionally with an {@link UnknownHostException} if the hostname does not exist.
+     */
+    public CompletableFuture<List<ADnsAnswer>> resolveIPv4AddressForHostnameAsync(String hostName, boolean includeIpVersion) {
+
+        return resolveIpAddressesAsync(hostName, DnsRecordType.A, includeIpVersion);
+    }
+
+    /**
+     * Non-blocking variant of {@link #resolveIPv6AddressForHostname(String, boolean)}. The returned future completes
+     * exceptionally with an {@link UnknownHostException} if the hostname does not exist.
+     */
+    public CompletableFuture<List<ADnsAnswer>> resolveIPv6AddressForHostnameAsync(String hostName, boolean includeIpVersion) {
+
+        return resolveIpAddressesAsync(hostName, DnsRecordType.AAAA, includeIpVersion);
+    }
+
+    private CompletableFuture<List<ADnsAnswer>> resolveIpAddressesAsync(String hostName, DnsRecordType dnsRecordType, boolean includeIpVersion) {
+
+        LOG.debug("Attempting to asynchronously resolve [{}] records for [{}]", dnsRecordType, hostName);
+
+        try {
+            if (isShutdown()) {
+                throw new DnsClientNotRunningException();
+            }
+            validateHostName(hostName);
+        } catch (RuntimeException e) {
+            return failedFuture(e);
+        }
+
+        return toCompletableFuture(resolver.resolveAll(new DefaultDnsQuestion(hostName, dnsRecordType)))
+                .thenApply(dnsRecords -> dnsRecords.stream()
+                                                   .map(dnsRecord -> decodeDnsRecord(dnsRecord, includeIpVersion))
+                                                   .filter(Objects::nonNull)
+                                                   .collect(Collectors.toList()));
+    }
+
+    /**
+     * Bridges a Netty future to a {@link CompletableFuture}. Dependent stages run on the Netty event loop, so they
+     * must not block.
+     */
+    private static <T> CompletableFuture<T> toCompletableFuture(Future<T> future) {
+
+        final CompletableFuture<T> completableFuture = new CompletableFuture<>();
+        future.addListener((FutureListener<T>) f -> {
+            if (f.isSuccess()) {
+                completableFuture.complete(f.getNow());
+            } else {
+                completableFuture.completeExceptionally(f.cause());
+            }
+        });
+        return completableFuture;
+    }
+
+    private static <T> CompletableFuture<T> failedFuture(Throwable throwable) {
+
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
     /**
      * Picks out the IP address and TTL from the answer response for each record.
      */
@@ -233,36 +297,72 @@ public class DnsClient {
         DnsResponse content = null;
         try {
             content = resolver.query(new DefaultDnsQuestion(inverseAddressFormat, DnsRecordType.PTR)).sync().get().content();
-            for (int i = 0; i < content.count(DnsSection.ANSWER); i++) {
+            return decodePtrResponse(ipAddress, content);
+        } finally {
+            if (content != null) {
+                // Must manually release references on content object since the DnsResponse class extends ReferenceCounted
+                content.release();
+            }
+        }
+    }
 
-                // Return the first PTR record, because there should be only one as per
-                // http://tools.ietf.org/html/rfc1035#section-3.5
-                final DnsRecord dnsRecord = content.recordAt(DnsSection.ANSWER, i);
-                if (dnsRecord instanceof DefaultDnsPtrRecord) {
+    /**
+     * Non-blocking variant of {@link #reverseLookup(String)}. The returned future completes with {@code null} if no
+     * PTR record exists for the IP address.
+     */
+    public CompletableFuture<PtrDnsAnswer> reverseLookupAsync(String ipAddress) {
 
-                    final DefaultDnsPtrRecord ptrRecord = (DefaultDnsPtrRecord) dnsRecord;
-                    final PtrDnsAnswer.Builder dnsAnswerBuilder = PtrDnsAnswer.builder();
+        LOG.debug("Attempting to perform asynchronous reverse lookup for IP address [{}]", ipAddress);
 
-                    final String hostname = ptrRecord.hostname();
-                    LOG.trace("PTR record retrieved with hostname [{}]", hostname);
+        final String inverseAddressFormat;
+        try {
+            if (isShutdown()) {
+                throw new DnsClientNotRunningException();
+            }
+            validateIpAddress(ipAddress);
+            inverseAddressFormat = getInverseAddressFormat(ipAddress);
+        } catch (RuntimeException e) {
+            return failedFuture(e);
+        }
 
+        return toCompletableFuture(resolver.query(new DefaultDnsQuestion(inverseAddressFormat, DnsRecordType.PTR)))
+                .thenApply(envelope -> {
+                    final DnsResponse content = envelope.content();
                     try {
-                        parseReverseLookupDomain(dnsAnswerBuilder, hostname);
-                    } catch (IllegalArgumentException e) {
-                        LOG.debug("Reverse lookup of [{}] was partially successful. The DNS server returned [{}], " +
-                                  "which is an invalid host name. The \"domain\" field will be left blank.",
-                                  ipAddress, hostname);
-                        dnsAnswerBuilder.domain("");
+                        return decodePtrResponse(ipAddress, content);
+                    } finally {
+                        // Must manually release references on content object since the DnsResponse class extends ReferenceCounted
+                        content.release();
                     }
+                });
+    }
+
+    private static PtrDnsAnswer decodePtrResponse(String ipAddress, DnsResponse content) {
+
+        for (int i = 0; i < content.count(DnsSection.ANSWER); i++) {
+
+            // Return the first PTR record, because there should be only one as per
+            // http://tools.ietf.org/html/rfc1035#section-3.5
+            final DnsRecord dnsRecord = content.recordAt(DnsSection.ANSWER, i);
+            if (dnsRecord instanceof DefaultDnsPtrRecord) {
+
+                final DefaultDnsPtrRecord ptrRecord = (DefaultDnsPtrRecord) dnsRecord;
+                final PtrDnsAnswer.Builder dnsAnswerBuilder = PtrDnsAnswer.builder();
 
-                    return dnsAnswerBuilder.dnsTTL(ptrRecord.timeToLive())
-                                           .build();
+                final String hostname = ptrRecord.hostname();
+                LOG.trace("PTR record retrieved with hostname [{}]", hostname);
+
+                try {
+                    parseReverseLookupDomain(dnsAnswerBuilder, hostname);
+                } catch (IllegalArgumentException e) {
+                    LOG.debug("Reverse lookup of [{}] was partially successful. The DNS server returned [{}], " +
+                              "which is an invalid host name. The \"domain\" field will be left blank.",
+                              ipAddress, hostname);
+                    dnsAnswerBuilder.domain("");
                 }
-            }
-        } finally {
-            if (content != null) {
-                // Must manually release references on content object since the DnsResponse class extends ReferenceCounted
-                content.release();
+
+                return dnsAnswerBuilder.dnsTTL(ptrRecord.timeToLive())
+                                       .build();
             }
         }
 
@@ -317,35 +417,67 @@ public class DnsClient {
         DnsResponse content = null;
         try {
             content = resolver.query(new DefaultDnsQuestion(hostName, DnsRecordType.TXT)).sync().get().content();
-            int count = content.count(DnsSection.ANSWER);
-            final ArrayList<TxtDnsAnswer> txtRecords = new ArrayList<>(count);
-            for (int i = 0; i < count; i++) {
+            return decodeTxtResponse(content);
+        } finally {
+            if (content != null) {
+                // Must manually release references on content object since the DnsResponse class extends ReferenceCounted
+                content.release();
+            }
+        }
+    }
 
-                final DnsRecord dnsRecord = content.recordAt(DnsSection.ANSWER, i);
-                LOG.trace("TXT record [{}] retrieved with content [{}].", i, dnsRecord);
+    /**
+     * Non-blocking variant of {@link #txtLookup(String)}.
+     */
+    public CompletableFuture<List<TxtDnsAnswer>> txtLookupAsync(String hostName) {
 
-                if (dnsRecord instanceof DefaultDnsRawRecord) {
-                    final DefaultDnsRawRecord txtRecord = (DefaultDnsRawRecord) dnsRecord;
+        LOG.debug("Attempting to perform asynchronous TXT lookup for hostname [{}]", hostName);
 
-                    final TxtDnsAnswer.Builder dnsAnswerBuilder = TxtDnsAnswer.builder();
-                    final String decodeTxtRecord = decodeTxtRecord(txtRecord);
-                    LOG.trace("The decoded TXT record is [{}]", decodeTxtRecord);
+        try {
+            if (isShutdown()) {
+                throw new DnsClientNotRunningException();
+            }
+            validateHostName(hostName);
+        } catch (RuntimeException e) {
+            return failedFuture(e);
+        }
 
-                    dnsAnswerBuilder.value(decodeTxtRecord)
-                                    .dnsTTL(txtRecord.timeToLive())
-                                    .build();
+        return toCompletableFuture(resolver.query(new DefaultDnsQuestion(hostName, DnsRecordType.TXT)))
+                .thenApply(envelope -> {
+                    final DnsResponse content = envelope.content();
+                    try {
+                        return decodeTxtResponse(content);
+                    } finally {
+                        // Must manually release references on content object since the DnsResponse class extends ReferenceCounted
+                        content.release();
+                    }
+                });
+    }
 
-                    txtRecords.add(dnsAnswerBuilder.build());
-                }
-            }
+    private static List<TxtDnsAnswer> decodeTxtResponse(DnsResponse content) {
 
-            return txtRecords;
-        } finally {
-            if (content != null) {
-                // Must manually release references on content object since the DnsResponse class extends ReferenceCounted
-                content.release();
+        final int count = content.count(DnsSection.ANSWER);
+        final ArrayList<TxtDnsAnswer> txtRecords = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+
+            final DnsRecord dnsRecord = content.recordAt(DnsSection.ANSWER, i);
+            LOG.trace("TXT record [{}] retrieved with content [{}].", i, dnsRecord);
+
+            if (dnsRecord instanceof DefaultDnsRawRecord) {
+                final DefaultDnsRawRecord txtRecord = (DefaultDnsRawRecord) dnsRecord;
+
+                final TxtDnsAnswer.Builder dnsAnswerBuilder = TxtDnsAnswer.builder();
+                final String decodeTxtRecord = decodeTxtRecord(txtRecord);
+                LOG.trace("The decoded TXT record is [{}]", decodeTxtRecord);
+
+                dnsAnswerBuilder.value(decodeTxtRecord)
+                                .dnsTTL(txtRecord.timeToLive());
+
+                txtRecords.add(dnsAnswerBuilder.build());
             }
         }
+
+        return txtRecords;
     }
 
     private boolean isShutdown() {
@@ -0,0 +1,132 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.lookup.adapters.mappedindex;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A memory-mapped region of a file which can be larger than 2 GB.
+ * <p>
+ * A single {@link MappedByteBuffer} can only address {@link Integer#MAX_VALUE} bytes, so the region is mapped in
+ * chunks of 1 GB. All values are stored in big-endian byte order and may span chunk boundaries.
+ */
+class MappedFileRegion {
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final MappedByteBuffer[] chunks;
+    private final long position;
+    private final long size;
+
+    private MappedFileRegion(MappedByteBuffer[] chunks, long position, long size) {
+        this.chunks = chunks;
+        this.position = position;
+        this.size = size;
+    }
+
+    /**
+     * Maps the given part of the file. Positions passed to the accessor methods are absolute file positions.
+     */
+    static MappedFileRegion map(FileChannel channel, FileChannel.MapMode mode, long position, long size) throws IOException {
+        final int chunkCount = (int) ((size + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+        final MappedByteBuffer[] chunks = new MappedByteBuffer[chunkCount];
+        for (int i = 0; i < chunkCount; i++) {
+            final long chunkStart = (long) i << CHUNK_BITS;
+            chunks[i] = channel.map(mode, position + chunkStart, Math.min(CHUNK_SIZE, size - chunkStart));
+        }
+        return new MappedFileRegion(chunks, position, size);
+    }
+
+    long size() {
+        return size;
+    }
+
+    byte get(long pos) {
+        final long relative = pos - position;
+        return chunks[(int) (relative >>> CHUNK_BITS)].get((int) (relative & CHUNK_MASK));
+    }
+
+    int getInt(long pos) {
+        final long relative = pos - position;
+        final int offset = (int) (relative & CHUNK_MASK);
+        if (offset <= CHUNK_SIZE - Integer.BYTES) {
+            return chunks[(int) (relative >>> CHUNK_BITS)].getInt(offset);
+        }
+        int value = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            value = (value << 8) | (get(pos + i) & 0xff);
+        }
+        return value;
+    }
+
+    long getLong(long pos) {
+        final long relative = pos - position;
+        final int offset = (int) (relative & CHUNK_MASK);
+        if (offset <= CHUNK_SIZE - Long.BYTES) {
+            return chunks[(int) (relative >>> CHUNK_BITS)].getLong(offset);
+        }
+        long value = 0;
+        for (int i = 0; i < Long.BYTES; i++) {
+            value = (value << 8) | (get(pos + i) & 0xff);
+        }
+        return value;
+    }
+
+    void get(long pos, byte[] dst) {
+        for (int i = 0; i < dst.length; i++) {
+            dst[i] = get(pos + i);
+        }
+    }
+
+    void put(long pos, byte value) {
+        final long relative = pos - position;
+        chunks[(int) (relative >>> CHUNK_BITS)].put((int) (relative & CHUNK_MASK), value);
+    }
+
+    void putInt(long pos, int value) {
+        final long relative = pos - position;
+        final int offset = (int) (relative & CHUNK_MASK);
+        if (offset <= CHUNK_SIZE - Integer.BYTES) {
+            chunks[(int) (relative >>> CHUNK_BITS)].putInt(offset, value);
+            return;
+        }
+        for (int i = 0; i < Integer.BYTES; i++) {
+            put(pos + i, (byte) (value >>> (8 * (Integer.BYTES - 1 - i))));
+        }
+    }
+
+    void putLong(long pos, long value) {
+        final long relative = pos - position;
+        final int offset = (int) (relative & CHUNK_MASK);
+        if (offset <= CHUNK_SIZE - Long.BYTES) {
+            chunks[(int) (relative >>> CHUNK_BITS)].putLong(offset, value);
+            return;
+        }
+        for (int i = 0; i < Long.BYTES; i++) {
+            put(pos + i, (byte) (value >>> (8 * (Long.BYTES - 1 - i))));
+        }
+    }
+
+    void force() {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+}
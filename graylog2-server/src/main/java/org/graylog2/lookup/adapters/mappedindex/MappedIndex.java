@@ -0,0 +1,266 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.lookup.adapters.mappedindex;
+
+import com.google.common.net.InetAddresses;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An immutable, memory-mapped key/value index created by {@link MappedIndexBuilder}.
+ * <p>
+ * Keys are located with a minimal perfect hash function (hash and displace): a key is hashed into a bucket, the
+ * displacement stored for that bucket selects the slot and the slot contains the position of the record with the key
+ * and value in the data section of the file. Looking up a key therefore touches at most three pages of the file and
+ * doesn't need any heap besides the returned value.
+ * <p>
+ * File layout (all values big-endian):
+ * <pre>
+ * header         {@value #HEADER_SIZE} bytes, see {@link MappedIndexBuilder}
+ * data           records: int key length, key bytes, int value length, value bytes
+ * displacements  one int per bucket
+ * slots          one long (record position) per distinct key
+ * </pre>
+ * Indexes for CIDR ranges store the masked network address and the prefix length as binary keys, see
+ * {@link #cidrKey(byte[], int, byte[])}. Lookups try every prefix length present in the index, longest first.
+ */
+public class MappedIndex {
+    static final int MAGIC = 0x474c4d49; // "GLMI"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 128;
+
+    static final int FLAG_CIDR = 1;
+
+    static final int CIDR_KEY_LENGTH = 17;
+    static final int MAX_PREFIX_LENGTH = 128;
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private static final MappedIndex EMPTY = new MappedIndex(null, 0L, 0, 0, 0L, 0L, new long[3], 0);
+
+    @Nullable
+    private final MappedFileRegion region;
+    private final long seed;
+    private final int entryCount;
+    private final int bucketCount;
+    private final long displacementsOffset;
+    private final long slotsOffset;
+    private final long[] prefixLengths;
+    private final int flags;
+
+    private MappedIndex(@Nullable MappedFileRegion region,
+                        long seed,
+                        int entryCount,
+                        int bucketCount,
+                        long displacementsOffset,
+                        long slotsOffset,
+                        long[] prefixLengths,
+                        int flags) {
+        this.region = region;
+        this.seed = seed;
+        this.entryCount = entryCount;
+        this.bucketCount = bucketCount;
+        this.displacementsOffset = displacementsOffset;
+        this.slotsOffset = slotsOffset;
+        this.prefixLengths = prefixLengths;
+        this.flags = flags;
+    }
+
+    public static MappedIndex empty() {
+        return EMPTY;
+    }
+
+    public static MappedIndex open(Path path) throws IOException {
+        // The mapping stays valid after the channel has been closed
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new IOException("Unexpected end of file while reading index header of " + path);
+                }
+            }
+            header.flip();
+
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Invalid index file " + path);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported index file version " + header.getInt(4) + " in " + path);
+            }
+            final long seed = header.getLong(8);
+            final int entryCount = header.getInt(16);
+            final int bucketCount = header.getInt(20);
+            final long displacementsOffset = header.getLong(24);
+            final long slotsOffset = header.getLong(32);
+            final long[] prefixLengths = {header.getLong(40), header.getLong(48), header.getLong(56)};
+            final int flags = header.getInt(64);
+
+            final MappedFileRegion region = MappedFileRegion.map(channel, FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+            return new MappedIndex(region, seed, entryCount, bucketCount, displacementsOffset, slotsOffset, prefixLengths, flags);
+        }
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    public boolean isCidrIndex() {
+        return (flags & FLAG_CIDR) != 0;
+    }
+
+    /**
+     * Returns the value for the given key or {@code null} if the index doesn't contain the key.
+     */
+    @Nullable
+    public String get(String key) {
+        return get(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the value of the most specific CIDR range containing the given IP address or {@code null} if no range
+     * in the index contains it.
+     */
+    @Nullable
+    public String getForAddress(InetAddress address) {
+        final byte[] addressBytes = toIPv6Bytes(address);
+        final byte[] key = new byte[CIDR_KEY_LENGTH];
+        for (int prefixLength = MAX_PREFIX_LENGTH; prefixLength >= 0; prefixLength--) {
+            if (hasPrefixLength(prefixLengths, prefixLength)) {
+                final String value = get(cidrKey(addressBytes, prefixLength, key));
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private String get(byte[] key) {
+        if (region == null || entryCount == 0) {
+            return null;
+        }
+        final long hash = hash(key, seed);
+        final int bucket = bucket(hash, bucketCount);
+        final int displacement = region.getInt(displacementsOffset + 4L * bucket);
+        final int slot = displacement < 0 ? -(displacement + 1) : slot(hash, displacement, entryCount);
+        final long recordOffset = region.getLong(slotsOffset + 8L * slot);
+
+        // The perfect hash function maps unknown keys to arbitrary slots, so the key has to be verified
+        final int keyLength = region.getInt(recordOffset);
+        if (keyLength != key.length) {
+            return null;
+        }
+        final long keyOffset = recordOffset + Integer.BYTES;
+        for (int i = 0; i < keyLength; i++) {
+            if (region.get(keyOffset + i) != key[i]) {
+                return null;
+            }
+        }
+        final long valueLengthOffset = keyOffset + keyLength;
+        final byte[] value = new byte[region.getInt(valueLengthOffset)];
+        region.get(valueLengthOffset + Integer.BYTES, value);
+
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    static long hash(byte[] bytes, long seed) {
+        // FNV-1a with a strong finalizer to spread the bits over the whole 64 bit range
+        long hash = 0xcbf29ce484222325L ^ seed;
+        for (byte b : bytes) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    static int bucket(long hash, int bucketCount) {
+        return (int) Long.remainderUnsigned(hash, bucketCount);
+    }
+
+    static int slot(long hash, int displacement, int entryCount) {
+        return (int) Long.remainderUnsigned(mix(hash + displacement * GOLDEN_GAMMA), entryCount);
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+
+    static boolean hasPrefixLength(long[] prefixLengths, int prefixLength) {
+        return (prefixLengths[prefixLength >>> 6] & (1L << (prefixLength & 63))) != 0;
+    }
+
+    static void addPrefixLength(long[] prefixLengths, int prefixLength) {
+        prefixLengths[prefixLength >>> 6] |= 1L << (prefixLength & 63);
+    }
+
+    /**
+     * IPv4 addresses are stored as IPv4-mapped IPv6 addresses, so both address families share one key space.
+     */
+    static byte[] toIPv6Bytes(InetAddress address) {
+        final byte[] bytes = address.getAddress();
+        if (address instanceof Inet4Address) {
+            final byte[] mapped = new byte[16];
+            mapped[10] = (byte) 0xff;
+            mapped[11] = (byte) 0xff;
+            System.arraycopy(bytes, 0, mapped, 12, 4);
+            return mapped;
+        }
+        return bytes;
+    }
+
+    /**
+     * Builds the binary key of a CIDR range: the prefix length followed by the network address masked to the prefix
+     * length.
+     */
+    static byte[] cidrKey(byte[] ipv6Bytes, int prefixLength, byte[] key) {
+        key[0] = (byte) prefixLength;
+        for (int i = 0; i < 16; i++) {
+            final int bits = Math.min(8, Math.max(0, prefixLength - 8 * i));
+            final int mask = bits == 0 ? 0 : (0xff << (8 - bits)) & 0xff;
+            key[i + 1] = (byte) (ipv6Bytes[i] & mask);
+        }
+        return key;
+    }
+
+    /**
+     * Parses a CIDR range like {@code 192.168.0.0/16} or a single IP address into its binary key.
+     *
+     * @throws IllegalArgumentException if the string is not a valid CIDR range or IP address
+     */
+    static byte[] parseCidrKey(String cidr) {
+        final int slash = cidr.indexOf('/');
+        final InetAddress address = InetAddresses.forString(slash < 0 ? cidr.trim() : cidr.substring(0, slash).trim());
+        final int maxPrefixLength = address instanceof Inet4Address ? 32 : MAX_PREFIX_LENGTH;
+        final int prefixLength = slash < 0 ? maxPrefixLength : Integer.parseInt(cidr.substring(slash + 1).trim());
+        if (prefixLength < 0 || prefixLength > maxPrefixLength) {
+            throw new IllegalArgumentException("Invalid prefix length in CIDR range " + cidr);
+        }
+        final int mappedPrefixLength = prefixLength + (MAX_PREFIX_LENGTH - maxPrefixLength);
+        return cidrKey(toIPv6Bytes(address), mappedPrefixLength, new byte[CIDR_KEY_LENGTH]);
+    }
+}
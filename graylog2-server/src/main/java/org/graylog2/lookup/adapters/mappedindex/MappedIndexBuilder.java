@@ -0,0 +1,310 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.lookup.adapters.mappedindex;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Writes a {@link MappedIndex} file.
+ * <p>
+ * Records are streamed to a temporary file while they are added, only their positions are kept on the heap. When
+ * {@link #build()} is called, the minimal perfect hash function is computed from the keys in the file, the hash
+ * tables are appended and the temporary file is atomically moved to the target path.
+ * <p>
+ * If a key is added more than once, the last value wins.
+ */
+public class MappedIndexBuilder implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(MappedIndexBuilder.class);
+
+    // The average number of keys per bucket, smaller buckets make the construction faster but need more space
+    private static final int KEYS_PER_BUCKET = 2;
+    private static final int MAX_DISPLACEMENT = 1 << 20;
+    private static final int MAX_ATTEMPTS = 8;
+
+    private final Path target;
+    private final Path tempFile;
+    private final boolean cidr;
+    private final DataOutputStream output;
+    private final long[] prefixLengths = new long[3];
+
+    private long[] recordOffsets = new long[1024];
+    private int recordCount = 0;
+    private long position = MappedIndex.HEADER_SIZE;
+    private boolean closed = false;
+
+    public MappedIndexBuilder(Path target, boolean cidr) throws IOException {
+        this.target = target;
+        this.tempFile = target.resolveSibling(target.getFileName() + ".tmp");
+        this.cidr = cidr;
+        this.output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile), 1 << 16));
+        // The header is written once the index has been built
+        output.write(new byte[MappedIndex.HEADER_SIZE]);
+    }
+
+    /**
+     * Adds a key/value pair to the index. For CIDR indexes, the key must be a CIDR range or a single IP address.
+     *
+     * @throws IllegalArgumentException if the key of a CIDR index is not a valid CIDR range or IP address
+     */
+    public void add(String key, String value) throws IOException {
+        checkState(!closed, "Index builder has already been closed");
+        final byte[] keyBytes;
+        if (cidr) {
+            keyBytes = MappedIndex.parseCidrKey(key);
+            MappedIndex.addPrefixLength(prefixLengths, keyBytes[0] & 0xff);
+        } else {
+            keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        }
+        final byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+
+        if (recordCount == recordOffsets.length) {
+            checkState(recordCount < Integer.MAX_VALUE - 8, "Too many entries for index");
+            recordOffsets = Arrays.copyOf(recordOffsets, (int) Math.min(Integer.MAX_VALUE - 8L, 2L * recordCount));
+        }
+        recordOffsets[recordCount++] = position;
+
+        output.writeInt(keyBytes.length);
+        output.write(keyBytes);
+        output.writeInt(valueBytes.length);
+        output.write(valueBytes);
+        position += 2 * Integer.BYTES + keyBytes.length + valueBytes.length;
+    }
+
+    /**
+     * Builds the hash tables and moves the finished index file to the target path.
+     *
+     * @return the number of distinct keys in the index
+     */
+    public int build() throws IOException {
+        checkState(!closed, "Index builder has already been closed");
+        output.close();
+        closed = true;
+
+        final long dataEnd = position;
+        final int bucketCount = Math.max(1, recordCount / KEYS_PER_BUCKET);
+
+        try (final FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final MappedFileRegion data = MappedFileRegion.map(channel, FileChannel.MapMode.READ_ONLY, 0L, dataEnd);
+
+            for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                final long seed = 0x5deece66dL * (attempt + 1);
+                final int entryCount = tryBuild(channel, data, dataEnd, bucketCount, seed);
+                if (entryCount < 0) {
+                    LOG.debug("Couldn't build perfect hash function for {} with seed {}, retrying", target, seed);
+                    continue;
+                }
+
+                writeHeader(channel, seed, entryCount, bucketCount, dataEnd, dataEnd + 4L * bucketCount);
+                channel.force(true);
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                return entryCount;
+            }
+        }
+        throw new IOException("Couldn't build perfect hash function for " + target + " after " + MAX_ATTEMPTS + " attempts");
+    }
+
+    /**
+     * Computes the hash tables with the given seed and writes them after the data section.
+     *
+     * @return the number of distinct keys or {@code -1} if no perfect hash function could be found for the seed
+     */
+    private int tryBuild(FileChannel channel, MappedFileRegion data, long dataEnd, int bucketCount, long seed) throws IOException {
+        final long[] hashes = new long[recordCount];
+        for (int i = 0; i < recordCount; i++) {
+            hashes[i] = MappedIndex.hash(readKey(data, recordOffsets[i]), seed);
+        }
+
+        // Group the records by bucket, the order of the records within a bucket is preserved
+        final int[] bucketStart = new int[bucketCount + 1];
+        for (int i = 0; i < recordCount; i++) {
+            bucketStart[MappedIndex.bucket(hashes[i], bucketCount) + 1]++;
+        }
+        for (int b = 0; b < bucketCount; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        final int[] records = new int[recordCount];
+        final int[] cursor = Arrays.copyOf(bucketStart, bucketCount);
+        for (int i = 0; i < recordCount; i++) {
+            records[cursor[MappedIndex.bucket(hashes[i], bucketCount)]++] = i;
+        }
+
+        // Remove duplicate keys (the last one wins) and detect hash collisions of different keys
+        final BitSet duplicates = new BitSet(recordCount);
+        int maxBucketSize = 0;
+        for (int b = 0; b < bucketCount; b++) {
+            int bucketSize = 0;
+            for (int i = bucketStart[b]; i < bucketStart[b + 1]; i++) {
+                for (int j = i + 1; j < bucketStart[b + 1]; j++) {
+                    if (hashes[records[i]] == hashes[records[j]]) {
+                        if (!Arrays.equals(readKey(data, recordOffsets[records[i]]), readKey(data, recordOffsets[records[j]]))) {
+                            return -1;
+                        }
+                        duplicates.set(records[i]);
+                    }
+                }
+                if (!duplicates.get(records[i])) {
+                    bucketSize++;
+                }
+            }
+            maxBucketSize = Math.max(maxBucketSize, bucketSize);
+        }
+        final int entryCount = recordCount - duplicates.cardinality();
+
+        // Place the largest buckets first, while most slots are still free
+        final int[] bucketsBySizeStart = new int[maxBucketSize + 2];
+        for (int b = 0; b < bucketCount; b++) {
+            bucketsBySizeStart[maxBucketSize - bucketSize(b, bucketStart, records, duplicates) + 1]++;
+        }
+        for (int s = 0; s <= maxBucketSize; s++) {
+            bucketsBySizeStart[s + 1] += bucketsBySizeStart[s];
+        }
+        final int[] bucketsBySize = new int[bucketCount];
+        final int[] sizeCursor = Arrays.copyOf(bucketsBySizeStart, maxBucketSize + 1);
+        for (int b = 0; b < bucketCount; b++) {
+            bucketsBySize[sizeCursor[maxBucketSize - bucketSize(b, bucketStart, records, duplicates)]++] = b;
+        }
+
+        final long displacementsOffset = dataEnd;
+        final long slotsOffset = displacementsOffset + 4L * bucketCount;
+        final long fileSize = slotsOffset + 8L * entryCount;
+        channel.write(ByteBuffer.allocate(1), fileSize - 1);
+        final MappedFileRegion tables = MappedFileRegion.map(channel, FileChannel.MapMode.READ_WRITE, displacementsOffset, fileSize - displacementsOffset);
+
+        final BitSet usedSlots = new BitSet(entryCount);
+        final int[] bucketRecords = new int[maxBucketSize];
+        final int[] bucketSlots = new int[maxBucketSize];
+        int nextFreeSlot = 0;
+
+        for (int b : bucketsBySize) {
+            int size = 0;
+            for (int i = bucketStart[b]; i < bucketStart[b + 1]; i++) {
+                if (!duplicates.get(records[i])) {
+                    bucketRecords[size++] = records[i];
+                }
+            }
+
+            if (size == 0) {
+                tables.putInt(displacementsOffset + 4L * b, 0);
+            } else if (size == 1) {
+                // Buckets with a single key don't need a search, they are placed directly into any free slot
+                nextFreeSlot = usedSlots.nextClearBit(nextFreeSlot);
+                usedSlots.set(nextFreeSlot);
+                tables.putInt(displacementsOffset + 4L * b, -(nextFreeSlot + 1));
+                tables.putLong(slotsOffset + 8L * nextFreeSlot, recordOffsets[bucketRecords[0]]);
+            } else {
+                final int displacement = findDisplacement(hashes, bucketRecords, bucketSlots, size, usedSlots, entryCount);
+                if (displacement < 0) {
+                    return -1;
+                }
+                tables.putInt(displacementsOffset + 4L * b, displacement);
+                for (int i = 0; i < size; i++) {
+                    usedSlots.set(bucketSlots[i]);
+                    tables.putLong(slotsOffset + 8L * bucketSlots[i], recordOffsets[bucketRecords[i]]);
+                }
+            }
+        }
+        tables.force();
+
+        return entryCount;
+    }
+
+    private static int findDisplacement(long[] hashes, int[] bucketRecords, int[] bucketSlots, int size, BitSet usedSlots, int entryCount) {
+        for (int displacement = 0; displacement < MAX_DISPLACEMENT; displacement++) {
+            boolean placed = true;
+            for (int i = 0; i < size && placed; i++) {
+                final int slot = MappedIndex.slot(hashes[bucketRecords[i]], displacement, entryCount);
+                if (usedSlots.get(slot)) {
+                    placed = false;
+                }
+                for (int j = 0; j < i && placed; j++) {
+                    if (bucketSlots[j] == slot) {
+                        placed = false;
+                    }
+                }
+                bucketSlots[i] = slot;
+            }
+            if (placed) {
+                return displacement;
+            }
+        }
+        return -1;
+    }
+
+    private static int bucketSize(int bucket, int[] bucketStart, int[] records, BitSet duplicates) {
+        int size = 0;
+        for (int i = bucketStart[bucket]; i < bucketStart[bucket + 1]; i++) {
+            if (!duplicates.get(records[i])) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private static byte[] readKey(MappedFileRegion data, long recordOffset) {
+        final byte[] key = new byte[data.getInt(recordOffset)];
+        data.get(recordOffset + Integer.BYTES, key);
+        return key;
+    }
+
+    private void writeHeader(FileChannel channel, long seed, int entryCount, int bucketCount, long displacementsOffset, long slotsOffset) throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(MappedIndex.HEADER_SIZE);
+        header.putInt(0, MappedIndex.MAGIC);
+        header.putInt(4, MappedIndex.VERSION);
+        header.putLong(8, seed);
+        header.putInt(16, entryCount);
+        header.putInt(20, bucketCount);
+        header.putLong(24, displacementsOffset);
+        header.putLong(32, slotsOffset);
+        header.putLong(40, prefixLengths[0]);
+        header.putLong(48, prefixLengths[1]);
+        header.putLong(56, prefixLengths[2]);
+        header.putInt(64, cidr ? MappedIndex.FLAG_CIDR : 0);
+
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    /**
+     * Discards the index if it hasn't been built.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            output.close();
+            closed = true;
+        }
+        Files.deleteIfExists(tempFile);
+    }
+}
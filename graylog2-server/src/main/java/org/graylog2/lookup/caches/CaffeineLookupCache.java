@@ -0,0 +1,424 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.lookup.caches;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonTypeName;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.CacheWriter;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Inject;
+import com.google.inject.assistedinject.Assisted;
+import org.graylog.autovalue.WithBeanGetter;
+import org.graylog2.lookup.LookupTableService;
+import org.graylog2.plugin.lookup.LookupCache;
+import org.graylog2.plugin.lookup.LookupCacheConfiguration;
+import org.graylog2.plugin.lookup.LookupCacheKey;
+import org.graylog2.plugin.lookup.LookupDataAdapter;
+import org.graylog2.plugin.lookup.LookupResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import javax.inject.Provider;
+import javax.validation.constraints.Min;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A node-local, in-memory lookup cache based on Caffeine.
+ * <p>
+ * Compared to {@link GuavaLookupCache} it uses W-TinyLFU admission, can bound the cache by the estimated size of the
+ * cached {@link LookupResult} values instead of the number of entries and supports refresh-after-write: once an entry
+ * is older than the refresh interval, the next read returns the current value and reloads it asynchronously from the
+ * data adapter, so hot keys never block the processing threads on an adapter lookup. Reloads always use the data
+ * adapter which is currently running for the key prefix, so entries keep being refreshed after the adapter has been
+ * updated.
+ * <p>
+ * Keys are additionally indexed by their {@link LookupCacheKey#prefix() prefix} so purging all keys of a data adapter
+ * doesn't have to scan the whole key set.
+ */
+public class CaffeineLookupCache extends LookupCache {
+    private static final Logger LOG = LoggerFactory.getLogger(CaffeineLookupCache.class);
+
+    public static final String NAME = "caffeine_cache";
+
+    private final LoadingCache<LookupCacheKey, CachedValue> cache;
+    private final ConcurrentMap<String, Set<LookupCacheKey>> keysByPrefix = new ConcurrentHashMap<>();
+    private final LookupCacheRefreshExecutor executor;
+    private final Function<String, Optional<LookupDataAdapter>> dataAdapters;
+
+    @Inject
+    public CaffeineLookupCache(@Assisted("id") String id,
+                               @Assisted("name") String name,
+                               @Assisted LookupCacheConfiguration c,
+                               MetricRegistry metricRegistry,
+                               LookupCacheRefreshExecutor executor,
+                               Provider<LookupTableService> lookupTableService) {
+        this(id, name, c, metricRegistry, executor, adapterId -> lookupTableService.get().getDataAdapterById(adapterId),
+                Ticker.systemTicker());
+    }
+
+    /**
+     * @param dataAdapters returns the running data adapter with the given id, it's used to reload cached values
+     */
+    @VisibleForTesting
+    CaffeineLookupCache(String id,
+                        String name,
+                        LookupCacheConfiguration c,
+                        MetricRegistry metricRegistry,
+                        LookupCacheRefreshExecutor executor,
+                        Function<String, Optional<LookupDataAdapter>> dataAdapters,
+                        Ticker ticker) {
+        super(id, name, c, metricRegistry);
+        final Config config = (Config) c;
+        this.executor = executor;
+        this.dataAdapters = dataAdapters;
+
+        // The executor runs the asynchronous reloads and the cache maintenance (eviction) tasks
+        final Caffeine<LookupCacheKey, CachedValue> builder = Caffeine.newBuilder()
+                .executor(executor)
+                .ticker(ticker)
+                .writer(new PrefixIndexWriter());
+
+        if (config.maxWeight() > 0) {
+            builder.maximumWeight(config.maxWeight())
+                    .weigher((LookupCacheKey key, CachedValue value) -> value.weight());
+        } else {
+            builder.maximumSize(config.maxSize());
+        }
+        if (config.expireAfterAccess() > 0 && config.expireAfterAccessUnit() != null) {
+            //noinspection ConstantConditions
+            builder.expireAfterAccess(config.expireAfterAccess(), config.expireAfterAccessUnit());
+        }
+        if (config.expireAfterWrite() > 0 && config.expireAfterWriteUnit() != null) {
+            //noinspection ConstantConditions
+            builder.expireAfterWrite(config.expireAfterWrite(), config.expireAfterWriteUnit());
+        }
+        if (config.refreshAfterWrite() > 0 && config.refreshAfterWriteUnit() != null) {
+            //noinspection ConstantConditions
+            builder.refreshAfterWrite(config.refreshAfterWrite(), config.refreshAfterWriteUnit());
+        }
+
+        cache = builder.build(new DataAdapterLoader());
+    }
+
+    @Override
+    public long entryCount() {
+        if (cache != null) {
+            return cache.estimatedSize();
+        } else {
+            return 0L;
+        }
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        executor.acquire();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        executor.release();
+    }
+
+    @Override
+    public LookupResult get(LookupCacheKey key, Callable<LookupResult> loader) {
+        final boolean[] loaded = {false};
+        try (final Timer.Context ignored = lookupTimer()) {
+            final CachedValue value = cache.get(key, k -> {
+                loaded[0] = true;
+                final LookupResult result = callLoader(loader);
+                return result == null ? null : new CachedValue(result, estimateWeight(k, result));
+            });
+
+            if (loaded[0]) {
+                incrMissCount();
+            } else {
+                incrHitCount();
+            }
+            incrTotalCount();
+
+            return value == null ? LookupResult.empty() : value.result();
+        } catch (LoaderException e) {
+            LOG.warn("Loading value from data adapter failed for key {}, returning empty result", key, e.getCause());
+            return LookupResult.empty();
+        }
+    }
+
+    @Override
+    public LookupResult getIfPresent(LookupCacheKey key) {
+        final CachedValue cacheEntry = cache.getIfPresent(key);
+        if (cacheEntry == null) {
+            return LookupResult.empty();
+        }
+        return cacheEntry.result();
+    }
+
+    @Override
+    public void purge() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void purge(LookupCacheKey purgeKey) {
+        if (purgeKey.isPrefixOnly()) {
+            // If the key to purge only contains a prefix, invalidate all keys with that prefix
+            final Set<LookupCacheKey> keys = keysByPrefix.get(purgeKey.prefix());
+            if (keys != null) {
+                cache.invalidateAll(ImmutableSet.copyOf(keys));
+            }
+        } else {
+            cache.invalidate(purgeKey);
+        }
+    }
+
+    private static LookupResult callLoader(Callable<LookupResult> loader) {
+        try {
+            return loader.call();
+        } catch (Exception e) {
+            throw new LoaderException(e);
+        }
+    }
+
+    /**
+     * Roughly estimates the number of bytes a cache entry occupies on the heap. The value is only used to weigh
+     * entries against each other, it doesn't have to be exact.
+     */
+    @VisibleForTesting
+    static int estimateWeight(LookupCacheKey key, LookupResult result) {
+        long weight = 64L; // entry, key and value wrapper objects
+        weight += estimateObjectSize(key.prefix(), 0);
+        weight += estimateObjectSize(key.key(), 0);
+        weight += estimateObjectSize(result.singleValue(), 0);
+        weight += estimateObjectSize(result.multiValue(), 0);
+        return (int) Math.min(weight, Integer.MAX_VALUE);
+    }
+
+    private static long estimateObjectSize(@Nullable Object object, int depth) {
+        if (object == null) {
+            return 0L;
+        }
+        if (object instanceof CharSequence) {
+            return 40L + 2L * ((CharSequence) object).length();
+        }
+        if (depth > 8) {
+            // Don't follow deeply nested structures, they are rare and this is just an estimate
+            return 16L;
+        }
+        if (object instanceof Map) {
+            long size = 48L;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                size += 32L + estimateObjectSize(entry.getKey(), depth + 1) + estimateObjectSize(entry.getValue(), depth + 1);
+            }
+            return size;
+        }
+        if (object instanceof Collection) {
+            long size = 24L;
+            for (Object element : (Collection<?>) object) {
+                size += 8L + estimateObjectSize(element, depth + 1);
+            }
+            return size;
+        }
+        return 16L;
+    }
+
+    /**
+     * Keeps the prefix index in sync with the cache contents. The writer is called atomically with every write to
+     * and every removal from the cache (including evictions), so it must not do any expensive work.
+     */
+    private class PrefixIndexWriter implements CacheWriter<LookupCacheKey, CachedValue> {
+        @Override
+        public void write(@Nonnull LookupCacheKey key, @Nonnull CachedValue value) {
+            // Prefix sets are never removed from the index, there is only one prefix per data adapter
+            keysByPrefix.computeIfAbsent(key.prefix(), prefix -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+
+        @Override
+        public void delete(@Nonnull LookupCacheKey key, @Nullable CachedValue value, @Nonnull RemovalCause cause) {
+            final Set<LookupCacheKey> keys = keysByPrefix.get(key.prefix());
+            if (keys != null) {
+                keys.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Loads values with the data adapter which is currently running for the prefix of the key. Lookups load missing
+     * values with the loader of their lookup table instead, so this is mostly used to refresh existing entries.
+     */
+    private class DataAdapterLoader implements CacheLoader<LookupCacheKey, CachedValue> {
+        @Override
+        public CachedValue load(@Nonnull LookupCacheKey key) {
+            final LookupDataAdapter dataAdapter = dataAdapters.apply(key.prefix()).orElse(null);
+            if (dataAdapter == null) {
+                // The data adapter has been deleted, returning null removes the entry from the cache
+                return null;
+            }
+            final LookupResult result = dataAdapter.get(key.key());
+            return result == null ? null : new CachedValue(result, estimateWeight(key, result));
+        }
+    }
+
+    private static class CachedValue {
+        private final LookupResult result;
+        private final int weight;
+
+        CachedValue(LookupResult result, int weight) {
+            this.result = result;
+            this.weight = weight;
+        }
+
+        LookupResult result() {
+            return result;
+        }
+
+        int weight() {
+            return weight;
+        }
+    }
+
+    private static class LoaderException extends RuntimeException {
+        LoaderException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    public interface Factory extends LookupCache.Factory {
+        @Override
+        CaffeineLookupCache create(@Assisted("id") String id, @Assisted("name") String name, LookupCacheConfiguration configuration);
+
+        @Override
+        Descriptor getDescriptor();
+    }
+
+    public static class Descriptor extends LookupCache.Descriptor<CaffeineLookupCache.Config> {
+        public Descriptor() {
+            super(NAME, CaffeineLookupCache.Config.class);
+        }
+
+        @Override
+        public Config defaultConfiguration() {
+            return Config.builder()
+                    .type(NAME)
+                    .maxSize(1000)
+                    .maxWeight(0)
+                    .expireAfterAccess(60)
+                    .expireAfterAccessUnit(TimeUnit.SECONDS)
+                    .expireAfterWrite(0)
+                    .refreshAfterWrite(0)
+                    .build();
+        }
+    }
+
+    @JsonAutoDetect
+    @AutoValue
+    @WithBeanGetter
+    @JsonDeserialize(builder = AutoValue_CaffeineLookupCache_Config.Builder.class)
+    @JsonTypeName(NAME)
+    public abstract static class Config implements LookupCacheConfiguration {
+
+        @Min(0)
+        @JsonProperty("max_size")
+        public abstract int maxSize();
+
+        /**
+         * The maximum estimated size of all cache entries in bytes. Takes precedence over {@link #maxSize()} if set.
+         */
+        @Min(0)
+        @JsonProperty("max_weight")
+        public abstract long maxWeight();
+
+        @Min(0)
+        @JsonProperty("expire_after_access")
+        public abstract long expireAfterAccess();
+
+        @Nullable
+        @JsonProperty("expire_after_access_unit")
+        public abstract TimeUnit expireAfterAccessUnit();
+
+        @Min(0)
+        @JsonProperty("expire_after_write")
+        public abstract long expireAfterWrite();
+
+        @Nullable
+        @JsonProperty("expire_after_write_unit")
+        public abstract TimeUnit expireAfterWriteUnit();
+
+        @Min(0)
+        @JsonProperty("refresh_after_write")
+        public abstract long refreshAfterWrite();
+
+        @Nullable
+        @JsonProperty("refresh_after_write_unit")
+        public abstract TimeUnit refreshAfterWriteUnit();
+
+        public static Builder builder() {
+            return new AutoValue_CaffeineLookupCache_Config.Builder();
+        }
+
+        @AutoValue.Builder
+        public abstract static class Builder {
+            @JsonProperty("type")
+            public abstract Builder type(String type);
+
+            @JsonProperty("max_size")
+            public abstract Builder maxSize(int maxSize);
+
+            @JsonProperty("max_weight")
+            public abstract Builder maxWeight(long maxWeight);
+
+            @JsonProperty("expire_after_access")
+            public abstract Builder expireAfterAccess(long expireAfterAccess);
+
+            @JsonProperty("expire_after_access_unit")
+            public abstract Builder expireAfterAccessUnit(@Nullable TimeUnit expireAfterAccessUnit);
+
+            @JsonProperty("expire_after_write")
+            public abstract Builder expireAfterWrite(long expireAfterWrite);
+
+            @JsonProperty("expire_after_write_unit")
+            public abstract Builder expireAfterWriteUnit(@Nullable TimeUnit expireAfterWriteUnit);
+
+            @JsonProperty("refresh_after_write")
+            public abstract Builder refreshAfterWrite(long refreshAfterWrite);
+
+            @JsonProperty("refresh_after_write_unit")
+            public abstract Builder refreshAfterWriteUnit(@Nullable TimeUnit refreshAfterWriteUnit);
+
+            public abstract Config build();
+        }
+    }
+}
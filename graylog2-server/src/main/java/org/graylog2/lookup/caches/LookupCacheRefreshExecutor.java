@@ -0,0 +1,97 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.lookup.caches;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The executor which runs the background refreshes and maintenance tasks of all {@link CaffeineLookupCache} instances.
+ * <p>
+ * Every running cache holds a reference to the executor, the thread pool is started with the first and shut down
+ * with the last running cache. The pool and its queue are bounded, if the queue is full the task runs on the calling
+ * thread instead.
+ */
+@Singleton
+public class LookupCacheRefreshExecutor implements Executor {
+    private static final int QUEUE_SIZE = 1024;
+
+    private final Supplier<ExecutorService> executorSupplier;
+    private volatile ExecutorService executor;
+    private int references = 0;
+
+    @Inject
+    public LookupCacheRefreshExecutor(@Named("processbuffer_processors") int processorCount) {
+        this(() -> {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(processorCount, processorCount,
+                    60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(QUEUE_SIZE),
+                    new ThreadFactoryBuilder()
+                            .setNameFormat("lookup-cache-refresh-%d")
+                            .setDaemon(true)
+                            .build(),
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        });
+    }
+
+    @VisibleForTesting
+    LookupCacheRefreshExecutor(Supplier<ExecutorService> executorSupplier) {
+        this.executorSupplier = executorSupplier;
+    }
+
+    /**
+     * Registers a running cache, the first one starts the thread pool.
+     */
+    synchronized void acquire() {
+        if (references++ == 0) {
+            executor = executorSupplier.get();
+        }
+    }
+
+    /**
+     * Unregisters a stopped cache, the last one shuts the thread pool down.
+     */
+    synchronized void release() {
+        if (references > 0 && --references == 0) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        final ExecutorService current = executor;
+        if (current == null) {
+            // No cache is running, so there is nothing to refresh in the background
+            command.run();
+        } else {
+            current.execute(command);
+        }
+    }
+}
@@ -33,6 +33,7 @@ import org.graylog2.shared.journal.Journal;
 
 import javax.inject.Inject;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
@@ -96,13 +97,12 @@ public class BenchmarkOutput implements MessageOutput {
 
     @Override
     public void write(List<Message> messages) throws Exception {
-        long maxOffset = Long.MIN_VALUE;
-
+        final List<Long> offsets = new ArrayList<>(messages.size());
         for (final Message message : messages) {
-            maxOffset = Math.max(message.getJournalOffset(), maxOffset);
+            offsets.add(message.getJournalOffset());
         }
 
-        journal.markJournalOffsetCommitted(maxOffset);
+        journal.markJournalOffsetsCommitted(offsets);
 
         messagesWritten.mark(messages.size());
     }
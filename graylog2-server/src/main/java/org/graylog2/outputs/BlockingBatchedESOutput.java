@@ -36,6 +36,7 @@ import javax.inject.Inject;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -88,11 +89,47 @@ public class BlockingBatchedESOutput extends ElasticSearchOutput {
 
     @Override
     public void write(Message message) throws Exception {
-        for (IndexSet indexSet : message.getIndexSets()) {
+        final Set<IndexSet> indexSets = message.getIndexSets();
+        if (indexSets.isEmpty()) {
+            commitUnindexedMessage(message);
+        }
+        for (IndexSet indexSet : indexSets) {
             writeMessageEntry(Maps.immutableEntry(indexSet, message));
         }
     }
 
+    /**
+     * Adds all messages to the buffer at once, flushing it as often as it fills up.
+     */
+    @Override
+    public void write(List<Message> messages) throws Exception {
+        List<List<Map.Entry<IndexSet, Message>>> flushBatches = null;
+        synchronized (this) {
+            for (Message message : messages) {
+                final Set<IndexSet> indexSets = message.getIndexSets();
+                if (indexSets.isEmpty()) {
+                    commitUnindexedMessage(message);
+                }
+                for (IndexSet indexSet : indexSets) {
+                    buffer.add(Maps.immutableEntry(indexSet, message));
+
+                    if (buffer.size() >= maxBufferSize) {
+                        if (flushBatches == null) {
+                            flushBatches = new ArrayList<>(1);
+                        }
+                        flushBatches.add(buffer);
+                        buffer = new ArrayList<>(maxBufferSize);
+                    }
+                }
+            }
+        }
+        if (flushBatches != null) {
+            for (List<Map.Entry<IndexSet, Message>> flushBatch : flushBatches) {
+                flush(flushBatch);
+            }
+        }
+    }
+
     public void writeMessageEntry(Map.Entry<IndexSet, Message> entry) throws Exception {
         List<Map.Entry<IndexSet, Message>> flushBatch = null;
         synchronized (this) {
@@ -28,6 +28,7 @@ import org.graylog2.plugin.streams.Stream;
 import org.graylog2.shared.journal.Journal;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -71,13 +72,12 @@ public class DiscardMessageOutput implements MessageOutput {
 
     @Override
     public void write(List<Message> messages) throws Exception {
-        long maxOffset = Long.MIN_VALUE;
-
+        final List<Long> offsets = new ArrayList<>(messages.size());
         for (final Message message : messages) {
-            maxOffset = Math.max(message.getJournalOffset(), maxOffset);
+            offsets.add(message.getJournalOffset());
         }
 
-        journal.markJournalOffsetCommitted(maxOffset);
+        journal.markJournalOffsetsCommitted(offsets);
         messagesDiscarded.mark(messages.size());
     }
 
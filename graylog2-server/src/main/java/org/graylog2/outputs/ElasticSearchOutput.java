@@ -19,6 +19,7 @@ package org.graylog2.outputs;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import com.google.common.collect.Maps;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 import org.graylog2.indexer.IndexSet;
@@ -33,11 +34,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
@@ -92,7 +94,24 @@ public class ElasticSearchOutput implements MessageOutput {
 
     @Override
     public void write(List<Message> messageList) throws Exception {
-        throw new UnsupportedOperationException("Method not supported!");
+        final List<Map.Entry<IndexSet, Message>> entries = new ArrayList<>(messageList.size());
+        for (Message message : messageList) {
+            final Set<IndexSet> indexSets = message.getIndexSets();
+            if (indexSets.isEmpty()) {
+                commitUnindexedMessage(message);
+            }
+            for (IndexSet indexSet : indexSets) {
+                entries.add(Maps.immutableEntry(indexSet, message));
+            }
+        }
+        writeMessageEntries(entries);
+    }
+
+    /**
+     * Messages without an index set are never part of a bulk request, so their journal offset has to be committed here.
+     */
+    protected void commitUnindexedMessage(Message message) {
+        journal.markJournalOffsetCommitted(message.getJournalOffset());
     }
 
     public void writeMessageEntries(List<Map.Entry<IndexSet, Message>> messageList) throws Exception {
@@ -112,12 +131,12 @@ public class ElasticSearchOutput implements MessageOutput {
         }
         failures.mark(failedMessageIds.size());
 
-        final Optional<Long> offset = messageList.stream()
+        final List<Long> offsets = messageList.stream()
             .map(Map.Entry::getValue)
             .map(Message::getJournalOffset)
-            .max(Long::compare);
+            .collect(Collectors.toList());
 
-        offset.ifPresent(journal::markJournalOffsetCommitted);
+        journal.markJournalOffsetsCommitted(offsets);
     }
 
     @Override
@@ -16,8 +16,14 @@
  */
 package org.graylog2.outputs;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.net.HostAndPort;
 import com.google.inject.assistedinject.Assisted;
 import org.graylog2.gelfclient.GelfConfiguration;
 import org.graylog2.gelfclient.GelfMessage;
@@ -36,6 +42,7 @@ import org.graylog2.plugin.configuration.fields.NumberField;
 import org.graylog2.plugin.configuration.fields.TextField;
 import org.graylog2.plugin.outputs.MessageOutput;
 import org.graylog2.plugin.outputs.MessageOutputConfigurationException;
+import org.graylog2.plugin.streams.Output;
 import org.graylog2.plugin.streams.Stream;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
@@ -44,12 +51,15 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.io.File;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static com.google.common.base.Preconditions.checkNotNull;
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Strings.isNullOrEmpty;
 
 public class GelfOutput implements MessageOutput {
@@ -66,29 +76,57 @@ public class GelfOutput implements MessageOutput {
     private static final String CK_TLS_TRUST_CERT_CHAIN = "tls_trust_cert_chain";
     private static final String CK_QUEUE_SIZE = "queue_size";
     private static final String CK_MAX_INFLIGHT_SENDS = "max_inflight_sends";
+    private static final String CK_CONNECTIONS = "connections";
+    private static final String CK_DROP_WHEN_FULL = "drop_when_full";
 
     private final AtomicBoolean isRunning = new AtomicBoolean(false);
+    private final AtomicInteger nextTransport = new AtomicInteger();
 
-    private final GelfTransport transport;
+    private final List<GelfTransport> transports;
+    private final boolean dropWhenFull;
+    private final Meter forwarded;
+    private final Meter dropped;
+    private final Timer sendTime;
 
     @Inject
-    public GelfOutput(@Assisted Configuration configuration) throws MessageOutputConfigurationException {
-        this(buildTransport(configuration));
+    public GelfOutput(@Assisted Output output,
+                      @Assisted Stream stream,
+                      @Assisted Configuration configuration,
+                      MetricRegistry metricRegistry) throws MessageOutputConfigurationException {
+        // The output registry shares one instance between all streams of an output, so the metrics belong to the output
+        this(buildTransports(configuration), configuration.getBoolean(CK_DROP_WHEN_FULL, false),
+                metricRegistry, name(GelfOutput.class, output.getId()));
     }
 
     @VisibleForTesting
     GelfOutput(GelfTransport gelfTransport) {
-        this.transport = checkNotNull(gelfTransport);
+        this(Collections.singletonList(gelfTransport), false, new MetricRegistry(), GelfOutput.class.getName());
+    }
+
+    /**
+     * @param transports   the connections to send the messages with, every batch of messages is sent with one of them
+     * @param dropWhenFull drop messages if the send queue of a connection is full instead of waiting for it
+     */
+    @VisibleForTesting
+    GelfOutput(List<GelfTransport> transports, boolean dropWhenFull, MetricRegistry metricRegistry, String metricPrefix) {
+        checkArgument(!transports.isEmpty(), "At least one GELF transport is required");
+        this.transports = ImmutableList.copyOf(transports);
+        this.dropWhenFull = dropWhenFull;
+        this.forwarded = metricRegistry.meter(name(metricPrefix, "forwarded"));
+        this.dropped = metricRegistry.meter(name(metricPrefix, "dropped"));
+        this.sendTime = metricRegistry.timer(name(metricPrefix, "sendTime"));
         isRunning.set(true);
     }
 
     @Override
     public void stop() {
-        LOG.debug("Stopping {}", transport.getClass().getName());
-        try {
-            transport.stop();
-        } catch (Exception e) {
-            LOG.error("Error stopping " + transport.getClass().getName(), e);
+        for (GelfTransport transport : transports) {
+            LOG.debug("Stopping {}", transport.getClass().getName());
+            try {
+                transport.stop();
+            } catch (Exception e) {
+                LOG.error("Error stopping " + transport.getClass().getName(), e);
+            }
         }
         isRunning.set(false);
     }
@@ -98,10 +136,51 @@ public class GelfOutput implements MessageOutput {
         return isRunning.get();
     }
 
+    /**
+     * Creates the configured number of connections to each of the comma separated destination hosts.
+     */
+    protected static List<GelfTransport> buildTransports(final Configuration configuration) throws MessageOutputConfigurationException {
+        final String hostnames = configuration.getString(CK_HOSTNAME);
+        final int connections = Math.max(1, configuration.getInt(CK_CONNECTIONS, 1));
+        if (isNullOrEmpty(hostnames) || !configuration.intIsSet(CK_PORT)) {
+            throw new MessageOutputConfigurationException("Protocol and/or hostname missing!");
+        }
+
+        final ImmutableList.Builder<GelfTransport> transports = ImmutableList.builder();
+        try {
+            for (String host : Splitter.on(',').trimResults().omitEmptyStrings().split(hostnames)) {
+                final HostAndPort hostAndPort;
+                try {
+                    hostAndPort = HostAndPort.fromString(host).withDefaultPort(configuration.getInt(CK_PORT));
+                } catch (IllegalArgumentException e) {
+                    throw new MessageOutputConfigurationException("Invalid destination host " + host);
+                }
+                for (int i = 0; i < connections; i++) {
+                    transports.add(buildTransport(configuration, hostAndPort.getHost(), hostAndPort.getPort()));
+                }
+            }
+        } catch (MessageOutputConfigurationException e) {
+            // Don't leak the connections which have already been created
+            transports.build().forEach(GelfTransport::stop);
+            throw e;
+        }
+        final List<GelfTransport> result = transports.build();
+        if (result.isEmpty()) {
+            throw new MessageOutputConfigurationException("Protocol and/or hostname missing!");
+        }
+        return result;
+    }
+
     protected static GelfTransport buildTransport(final Configuration configuration) throws MessageOutputConfigurationException {
-        final String protocol = configuration.getString(CK_PROTOCOL);
         final String hostname = configuration.getString(CK_HOSTNAME);
-        final int port = configuration.getInt(CK_PORT);
+        if (isNullOrEmpty(hostname) || !configuration.intIsSet(CK_PORT)) {
+            throw new MessageOutputConfigurationException("Protocol and/or hostname missing!");
+        }
+        return buildTransport(configuration, hostname, configuration.getInt(CK_PORT));
+    }
+
+    private static GelfTransport buildTransport(final Configuration configuration, final String hostname, final int port) throws MessageOutputConfigurationException {
+        final String protocol = configuration.getString(CK_PROTOCOL);
         final int connectTimeout = configuration.getInt(CK_CONNECT_TIMEOUT, 1000);
         final int reconnectDelay = configuration.getInt(CK_RECONNECT_DELAY, 500);
         final boolean tcpKeepAlive = configuration.getBoolean(CK_TCP_KEEP_ALIVE, false);
@@ -111,7 +190,7 @@ public class GelfOutput implements MessageOutput {
         final int queueSize = configuration.getInt(CK_QUEUE_SIZE, 512);
         final int maxInflightSends = configuration.getInt(CK_MAX_INFLIGHT_SENDS, 512);
 
-        if (isNullOrEmpty(protocol) || isNullOrEmpty(hostname) || !configuration.intIsSet(CK_PORT)) {
+        if (isNullOrEmpty(protocol) || isNullOrEmpty(hostname)) {
             throw new MessageOutputConfigurationException("Protocol and/or hostname missing!");
         }
 
@@ -181,13 +260,31 @@ public class GelfOutput implements MessageOutput {
 
     @Override
     public void write(final Message message) throws Exception {
-        transport.send(toGELFMessage(message));
+        write(Collections.singletonList(message));
     }
 
+    /**
+     * Sends the whole batch with the same connection, concurrent batches are spread over all connections.
+     * Every connection only buffers up to its queue size, so this blocks (or drops messages if configured) when
+     * the destination is slower than the stream.
+     */
     @Override
     public void write(final List<Message> messages) throws Exception {
-        for (final Message message : messages) {
-            write(message);
+        final GelfTransport transport = transports.get(Math.floorMod(nextTransport.getAndIncrement(), transports.size()));
+        try (final Timer.Context ignored = sendTime.time()) {
+            for (final Message message : messages) {
+                final GelfMessage gelfMessage = toGELFMessage(message);
+                if (dropWhenFull) {
+                    if (transport.trySend(gelfMessage)) {
+                        forwarded.mark();
+                    } else {
+                        dropped.mark();
+                    }
+                } else {
+                    transport.send(gelfMessage);
+                    forwarded.mark();
+                }
+            }
         }
     }
 
@@ -260,9 +357,9 @@ public class GelfOutput implements MessageOutput {
         return builder.build();
     }
 
-    public interface Factory extends MessageOutput.Factory<GelfOutput> {
+    public interface Factory extends MessageOutput.Factory2<GelfOutput> {
         @Override
-        GelfOutput create(Stream stream, Configuration configuration);
+        GelfOutput create(Output output, Stream stream, Configuration configuration);
 
         @Override
         Config getConfig();
@@ -279,7 +376,7 @@ public class GelfOutput implements MessageOutput {
                     "TCP+TLS", "TCP+TLS",
                     "UDP", "UDP");
             final ConfigurationRequest configurationRequest = new ConfigurationRequest();
-            configurationRequest.addField(new TextField(CK_HOSTNAME, "Destination host", "", "This is the hostname of the destination", ConfigurationField.Optional.NOT_OPTIONAL));
+            configurationRequest.addField(new TextField(CK_HOSTNAME, "Destination host", "", "This is the hostname of the destination. Multiple comma separated hosts (host or host:port) can be given to spread the messages over them", ConfigurationField.Optional.NOT_OPTIONAL));
             configurationRequest.addField(new NumberField(CK_PORT, "Destination port", 12201, "This is the port of the destination", ConfigurationField.Optional.NOT_OPTIONAL, NumberField.Attribute.IS_PORT_NUMBER));
             configurationRequest.addField(new DropdownField(CK_PROTOCOL, "Protocol", "TCP", protocols, "The protocol used to connect", ConfigurationField.Optional.NOT_OPTIONAL));
             configurationRequest.addField(new NumberField(CK_CONNECT_TIMEOUT, "TCP Connect Timeout", 1000, "Connection timeout for TCP connections in milliseconds", ConfigurationField.Optional.OPTIONAL, NumberField.Attribute.ONLY_POSITIVE));
@@ -290,6 +387,8 @@ public class GelfOutput implements MessageOutput {
             configurationRequest.addField(new TextField(CK_TLS_TRUST_CERT_CHAIN, "TLS Trust Certificate Chain", "", "Local file which contains the trust certificate chain", ConfigurationField.Optional.OPTIONAL));
             configurationRequest.addField(new NumberField(CK_QUEUE_SIZE, "Internal buffer size", 512, "Buffer size to support asynchronous writes", ConfigurationField.Optional.OPTIONAL, NumberField.Attribute.ONLY_POSITIVE));
             configurationRequest.addField(new NumberField(CK_MAX_INFLIGHT_SENDS, "Concurrent network requests", 512, "Maximum number of concurrent network operations until spinning", ConfigurationField.Optional.OPTIONAL, NumberField.Attribute.ONLY_POSITIVE));
+            configurationRequest.addField(new NumberField(CK_CONNECTIONS, "Connections per host", 1, "Number of connections to each destination host, batches of messages are spread over all connections", ConfigurationField.Optional.OPTIONAL, NumberField.Attribute.ONLY_POSITIVE));
+            configurationRequest.addField(new BooleanField(CK_DROP_WHEN_FULL, "Drop messages when buffer is full", false, "Whether to drop messages instead of waiting if the internal buffer of a connection is full"));
 
             return configurationRequest;
         }
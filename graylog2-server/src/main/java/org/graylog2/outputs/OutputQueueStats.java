@@ -0,0 +1,49 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.outputs;
+
+import com.google.auto.value.AutoValue;
+
+/**
+ * Snapshot of the queue of a {@link SpillingMessageOutput}.
+ */
+@AutoValue
+public abstract class OutputQueueStats {
+    /**
+     * @return the number of messages waiting in memory or in the spill file
+     */
+    public abstract long backlog();
+
+    /**
+     * @return the number of bytes in the spill file which haven't been written to the output yet
+     */
+    public abstract long spillBytes();
+
+    /**
+     * @return the number of messages per second written to the output, averaged over the last minute
+     */
+    public abstract double drainRate();
+
+    /**
+     * @return the number of messages which have been discarded because the spill file was full
+     */
+    public abstract long dropped();
+
+    public static OutputQueueStats create(long backlog, long spillBytes, double drainRate, long dropped) {
+        return new AutoValue_OutputQueueStats(backlog, spillBytes, drainRate, dropped);
+    }
+}
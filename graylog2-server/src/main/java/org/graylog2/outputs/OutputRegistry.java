@@ -16,6 +16,9 @@
  */
 package org.graylog2.outputs;
 
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.joschi.jadconfig.util.Size;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
@@ -40,6 +43,7 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -60,6 +64,11 @@ public class OutputRegistry {
     private final LoadingCache<String, AtomicInteger> faultCounters;
     private final long faultCountThreshold;
     private final long faultPenaltySeconds;
+    private final int queueSize;
+    private final Path spillDir;
+    private final long maxSpillBytes;
+    private final ObjectMapper objectMapper;
+    private final MetricRegistry metricRegistry;
 
     @Inject
     public OutputRegistry(@DefaultMessageOutput MessageOutput defaultMessageOutput,
@@ -68,7 +77,12 @@ public class OutputRegistry {
                           NotificationService notificationService,
                           NodeId nodeId,
                           @Named("output_fault_count_threshold") long faultCountThreshold,
-                          @Named("output_fault_penalty_seconds") long faultPenaltySeconds) {
+                          @Named("output_fault_penalty_seconds") long faultPenaltySeconds,
+                          @Named("output_queue_size") int queueSize,
+                          @Named("output_spill_dir") Path spillDir,
+                          @Named("output_spill_max_size") Size maxSpillSize,
+                          ObjectMapper objectMapper,
+                          MetricRegistry metricRegistry) {
         this.defaultMessageOutput = defaultMessageOutput;
         this.outputService = outputService;
         this.notificationService = notificationService;
@@ -77,6 +91,11 @@ public class OutputRegistry {
         this.runningMessageOutputs = CacheBuilder.newBuilder().build();
         this.faultCountThreshold = faultCountThreshold;
         this.faultPenaltySeconds = faultPenaltySeconds;
+        this.queueSize = queueSize;
+        this.spillDir = spillDir;
+        this.maxSpillBytes = maxSpillSize.toBytes();
+        this.objectMapper = objectMapper;
+        this.metricRegistry = metricRegistry;
         this.faultCounters = CacheBuilder.newBuilder()
                 .expireAfterWrite(this.faultPenaltySeconds, TimeUnit.SECONDS)
                 .build(new CacheLoader<String, AtomicInteger>() {
@@ -147,6 +166,13 @@ public class OutputRegistry {
             throw new IllegalArgumentException("Failed to instantiate MessageOutput from Output: " + output);
         }
 
+        if (queueSize > 0) {
+            final SpillingMessageOutput queuedOutput = new SpillingMessageOutput(messageOutput, output.getId(), queueSize,
+                    spillDir, maxSpillBytes, objectMapper, metricRegistry);
+            queuedOutput.start();
+            return queuedOutput;
+        }
+
         return messageOutput;
     }
 
@@ -162,6 +188,21 @@ public class OutputRegistry {
                 .build();
     }
 
+    /**
+     * Returns the queue statistics of all running stream outputs, if output queues are enabled.
+     *
+     * @return the queue statistics by output ID
+     */
+    public Map<String, OutputQueueStats> getOutputQueueStats() {
+        final ImmutableMap.Builder<String, OutputQueueStats> stats = ImmutableMap.builder();
+        for (final Map.Entry<String, MessageOutput> entry : runningMessageOutputs.asMap().entrySet()) {
+            if (entry.getValue() instanceof SpillingMessageOutput) {
+                stats.put(entry.getKey(), ((SpillingMessageOutput) entry.getValue()).getStats());
+            }
+        }
+        return stats.build();
+    }
+
     public void removeOutput(Output output) {
         final MessageOutput messageOutput = runningMessageOutputs.getIfPresent(output.getId());
         if (messageOutput != null) {
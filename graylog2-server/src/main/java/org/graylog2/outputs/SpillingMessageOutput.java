@@ -0,0 +1,529 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.outputs;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.auto.value.AutoValue;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.outputs.MessageOutput;
+import org.graylog2.plugin.streams.Stream;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Decouples a stream output from the output buffer processors.
+ * <p>
+ * Messages are put into a bounded in-memory queue and written to the wrapped output by a dedicated worker thread, so
+ * {@link #write(Message)} never waits for the output. If the queue is full, messages are appended to a spill file
+ * and every following message goes to the spill file as well until the worker has caught up, which keeps the messages
+ * in order. Once the spill file has reached its maximum size, further messages are discarded.
+ * <p>
+ * The spill file is used as a ring: records which don't fit before its maximum size wrap around to the start of the
+ * file, where they overwrite records which have already been read. This keeps the file bounded even if the worker
+ * never catches up completely, while the file is only truncated once it has been read entirely.
+ * <p>
+ * Spilled messages are written as JSON together with the types of their date and number fields and the IDs of their
+ * streams, so they are restored with the same field types and streams when they are read back. Other field values
+ * which aren't plain JSON types are restored as their JSON representation.
+ */
+public class SpillingMessageOutput implements MessageOutput {
+    private static final Logger LOG = LoggerFactory.getLogger(SpillingMessageOutput.class);
+
+    @VisibleForTesting
+    static final int MAX_BATCH_SIZE = 500;
+    private static final long POLL_TIMEOUT_MILLIS = 100L;
+    private static final int LENGTH_PREFIX_SIZE = Integer.BYTES;
+    private static final String[] METRIC_NAMES = {"drained", "spilled", "dropped", "backlog", "spillBytes"};
+    private static final String TYPE_DATE_TIME = "date_time";
+    private static final String TYPE_DATE = "date";
+    private static final String TYPE_LONG = "long";
+    private static final String TYPE_FLOAT = "float";
+    private static final String TYPE_SHORT = "short";
+    private static final String TYPE_BYTE = "byte";
+    private static final String TYPE_DECIMAL = "decimal";
+
+    private final MessageOutput delegate;
+    private final String outputId;
+    private final BlockingQueue<Message> queue;
+    private final Path spillFile;
+    private final long maxSpillBytes;
+    private final ObjectMapper objectMapper;
+    private final MetricRegistry metricRegistry;
+    private final String metricPrefix;
+    private final Meter drained;
+    private final Meter spilled;
+    private final Meter dropped;
+    private final Thread worker;
+    // The streams of spilled messages, they are restored from their IDs when the messages are read back
+    private final ConcurrentMap<String, Stream> spilledStreams = new ConcurrentHashMap<>();
+
+    // Guards the spill file and its positions, which grow continuously and are mapped onto the file modulo its maximum size
+    private final Object spillLock = new Object();
+    private FileChannel spillChannel;
+    private long readPosition = 0L;
+    private long writePosition = 0L;
+    private long spilledMessages = 0L;
+
+    private volatile boolean running = true;
+
+    public SpillingMessageOutput(MessageOutput delegate,
+                                 String outputId,
+                                 int queueSize,
+                                 Path spillDir,
+                                 long maxSpillBytes,
+                                 ObjectMapper objectMapper,
+                                 MetricRegistry metricRegistry) {
+        this.delegate = delegate;
+        this.outputId = outputId;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.spillFile = spillDir.resolve(outputId + ".spill");
+        this.maxSpillBytes = maxSpillBytes;
+        this.objectMapper = objectMapper;
+        this.metricRegistry = metricRegistry;
+        this.metricPrefix = name(SpillingMessageOutput.class, outputId);
+
+        this.drained = metricRegistry.meter(name(metricPrefix, "drained"));
+        this.spilled = metricRegistry.meter(name(metricPrefix, "spilled"));
+        this.dropped = metricRegistry.meter(name(metricPrefix, "dropped"));
+        registerGauge("backlog", this::getBacklog);
+        registerGauge("spillBytes", this::getSpillBytes);
+
+        this.worker = new ThreadFactoryBuilder()
+                .setNameFormat("output-queue-" + outputId)
+                .setDaemon(true)
+                .build()
+                .newThread(this::drain);
+    }
+
+    private void registerGauge(String metricName, Gauge<Long> gauge) {
+        // A previous instance for the same output might still be registered if it hasn't been stopped properly
+        final String gaugeName = name(metricPrefix, metricName);
+        metricRegistry.remove(gaugeName);
+        metricRegistry.register(gaugeName, gauge);
+    }
+
+    public void start() {
+        worker.start();
+    }
+
+    public MessageOutput getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running && delegate.isRunning();
+    }
+
+    @Override
+    public void write(Message message) throws Exception {
+        if (!running) {
+            dropped.mark();
+            return;
+        }
+        if (enqueue(message)) {
+            return;
+        }
+
+        final byte[] bytes;
+        try {
+            bytes = serialize(message);
+        } catch (IOException e) {
+            LOG.warn("Couldn't serialize message <{}> for output <{}>, discarding it.", message.getId(), outputId, e);
+            dropped.mark();
+            return;
+        }
+        spill(bytes);
+    }
+
+    @Override
+    public void write(List<Message> messages) throws Exception {
+        for (final Message message : messages) {
+            write(message);
+        }
+    }
+
+    private boolean enqueue(Message message) {
+        synchronized (spillLock) {
+            // Once messages have been spilled, newer messages must not overtake them
+            return spilledMessages == 0L && queue.offer(message);
+        }
+    }
+
+    private void spill(byte[] bytes) {
+        synchronized (spillLock) {
+            final long recordSize = LENGTH_PREFIX_SIZE + bytes.length;
+            if (writePosition - readPosition + recordSize > maxSpillBytes) {
+                dropped.mark();
+                return;
+            }
+
+            try {
+                if (spillChannel == null) {
+                    Files.createDirectories(spillFile.getParent());
+                    spillChannel = FileChannel.open(spillFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                }
+                final ByteBuffer buffer = ByteBuffer.allocate((int) recordSize);
+                buffer.putInt(bytes.length).put(bytes).flip();
+                writeFully(buffer, writePosition);
+                writePosition += recordSize;
+                spilledMessages++;
+                spilled.mark();
+            } catch (IOException e) {
+                LOG.warn("Couldn't write to spill file <{}> of output <{}>, discarding message.", spillFile, outputId, e);
+                dropped.mark();
+            }
+        }
+    }
+
+    /**
+     * Reads the next spilled record. The lock is only held for a single record, so writers don't have to wait until
+     * a whole batch has been read.
+     *
+     * @return the next record, or {@code null} if there are no spilled messages
+     */
+    @Nullable
+    private byte[] readSpilled() {
+        synchronized (spillLock) {
+            if (spilledMessages == 0L) {
+                return null;
+            }
+            byte[] record = null;
+            try {
+                final ByteBuffer lengthBuffer = ByteBuffer.allocate(LENGTH_PREFIX_SIZE);
+                readFully(lengthBuffer, readPosition);
+                final ByteBuffer recordBuffer = ByteBuffer.allocate(lengthBuffer.getInt(0));
+                readFully(recordBuffer, readPosition + LENGTH_PREFIX_SIZE);
+                readPosition += LENGTH_PREFIX_SIZE + recordBuffer.capacity();
+                spilledMessages--;
+                record = recordBuffer.array();
+            } catch (IOException e) {
+                LOG.error("Couldn't read spill file <{}> of output <{}>, discarding {} spilled messages.",
+                        spillFile, outputId, spilledMessages, e);
+                dropped.mark(spilledMessages);
+                spilledMessages = 0L;
+            }
+
+            if (spilledMessages == 0L) {
+                resetSpillFile();
+            }
+            return record;
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        long p = position;
+        while (buffer.hasRemaining()) {
+            final int limit = buffer.limit();
+            buffer.limit(wrapLimit(buffer, p));
+            p += spillChannel.write(buffer, p % maxSpillBytes);
+            buffer.limit(limit);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long p = position;
+        while (buffer.hasRemaining()) {
+            final int limit = buffer.limit();
+            buffer.limit(wrapLimit(buffer, p));
+            final int read = spillChannel.read(buffer, p % maxSpillBytes);
+            buffer.limit(limit);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of spill file");
+            }
+            p += read;
+        }
+    }
+
+    /**
+     * Limits a transfer at the given position to the end of the spill file, the rest continues at its start.
+     */
+    private int wrapLimit(ByteBuffer buffer, long position) {
+        final long untilEndOfFile = maxSpillBytes - position % maxSpillBytes;
+        return (int) Math.min(buffer.limit(), buffer.position() + untilEndOfFile);
+    }
+
+    private void resetSpillFile() {
+        readPosition = 0L;
+        writePosition = 0L;
+        if (spillChannel != null) {
+            try {
+                spillChannel.truncate(0L);
+            } catch (IOException e) {
+                LOG.warn("Couldn't truncate spill file <{}> of output <{}>.", spillFile, outputId, e);
+            }
+        }
+    }
+
+    private byte[] serialize(Message message) throws IOException {
+        final Map<String, Object> fields = new HashMap<>(message.getFields());
+        final Map<String, String> fieldTypes = new HashMap<>();
+        for (Map.Entry<String, Object> field : message.getFields().entrySet()) {
+            final Object value = field.getValue();
+            final String type = typeOf(value);
+            if (type != null) {
+                fieldTypes.put(field.getKey(), type);
+                if (value instanceof DateTime) {
+                    fields.put(field.getKey(), ((DateTime) value).getMillis());
+                } else if (value instanceof Date) {
+                    fields.put(field.getKey(), ((Date) value).getTime());
+                } else if (value instanceof BigDecimal) {
+                    fields.put(field.getKey(), value.toString());
+                }
+            }
+        }
+        for (final Stream stream : message.getStreams()) {
+            spilledStreams.put(stream.getId(), stream);
+        }
+        return objectMapper.writeValueAsBytes(SpilledMessage.create(fields, fieldTypes, message.getStreamIds()));
+    }
+
+    /**
+     * @return the type of field values which don't keep their type when they are written as JSON and read back
+     */
+    @Nullable
+    private static String typeOf(Object value) {
+        if (value instanceof DateTime) {
+            return TYPE_DATE_TIME;
+        } else if (value instanceof Date) {
+            return TYPE_DATE;
+        } else if (value instanceof Long) {
+            return TYPE_LONG;
+        } else if (value instanceof Float) {
+            return TYPE_FLOAT;
+        } else if (value instanceof Short) {
+            return TYPE_SHORT;
+        } else if (value instanceof Byte) {
+            return TYPE_BYTE;
+        } else if (value instanceof BigDecimal) {
+            return TYPE_DECIMAL;
+        }
+        return null;
+    }
+
+    private Message deserialize(byte[] bytes) throws IOException {
+        final SpilledMessage spilledMessage = objectMapper.readValue(bytes, SpilledMessage.class);
+        final Map<String, Object> fields = new HashMap<>(spilledMessage.fields());
+        spilledMessage.fieldTypes().forEach((field, type) -> {
+            final Object value = fields.get(field);
+            if (value != null) {
+                fields.put(field, restoreType(value, type));
+            }
+        });
+
+        final Message message = new Message(fields);
+        for (final String streamId : spilledMessage.streams()) {
+            final Stream stream = spilledStreams.get(streamId);
+            if (stream != null) {
+                message.addStream(stream);
+            }
+        }
+        return message;
+    }
+
+    private static Object restoreType(Object value, String type) {
+        switch (type) {
+            case TYPE_DATE_TIME:
+                return new DateTime(((Number) value).longValue(), DateTimeZone.UTC);
+            case TYPE_DATE:
+                return new Date(((Number) value).longValue());
+            case TYPE_LONG:
+                return ((Number) value).longValue();
+            case TYPE_FLOAT:
+                return ((Number) value).floatValue();
+            case TYPE_SHORT:
+                return ((Number) value).shortValue();
+            case TYPE_BYTE:
+                return ((Number) value).byteValue();
+            case TYPE_DECIMAL:
+                return new BigDecimal(value.toString());
+            default:
+                return value;
+        }
+    }
+
+    private void drain() {
+        while (running) {
+            try {
+                final List<Message> batch = nextBatch();
+                if (!batch.isEmpty()) {
+                    writeBatch(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                LOG.error("Error in queue of output <{}>.", outputId, e);
+            }
+        }
+    }
+
+    @VisibleForTesting
+    List<Message> nextBatch() throws InterruptedException {
+        final List<Message> batch = new ArrayList<>();
+        // Messages in memory are always older than the spilled ones
+        queue.drainTo(batch, MAX_BATCH_SIZE);
+        if (!batch.isEmpty()) {
+            return batch;
+        }
+
+        byte[] record;
+        while (batch.size() < MAX_BATCH_SIZE && (record = readSpilled()) != null) {
+            try {
+                batch.add(deserialize(record));
+            } catch (IOException e) {
+                LOG.warn("Couldn't read spilled message of output <{}>, discarding it.", outputId, e);
+                dropped.mark();
+            }
+        }
+        if (!batch.isEmpty()) {
+            return batch;
+        }
+
+        final Message message = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        if (message != null) {
+            batch.add(message);
+            queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+        }
+        return batch;
+    }
+
+    private void writeBatch(List<Message> batch) {
+        try {
+            delegate.write(batch);
+        } catch (UnsupportedOperationException e) {
+            // Some outputs only support writing single messages
+            for (final Message message : batch) {
+                try {
+                    delegate.write(message);
+                } catch (Exception e1) {
+                    LOG.error("Error in output [" + delegate.getClass() + "].", e1);
+                }
+            }
+        } catch (Exception e) {
+            LOG.error("Error in output [" + delegate.getClass() + "].", e);
+        }
+        drained.mark(batch.size());
+    }
+
+    public long getBacklog() {
+        synchronized (spillLock) {
+            return queue.size() + spilledMessages;
+        }
+    }
+
+    public long getSpillBytes() {
+        synchronized (spillLock) {
+            return writePosition - readPosition;
+        }
+    }
+
+    public OutputQueueStats getStats() {
+        return OutputQueueStats.create(getBacklog(), getSpillBytes(), drained.getOneMinuteRate(), dropped.getCount());
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5L));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        final long discarded = getBacklog();
+        if (discarded > 0L) {
+            LOG.warn("Discarding {} queued messages of output <{}>.", discarded, outputId);
+        }
+        queue.clear();
+        synchronized (spillLock) {
+            spilledMessages = 0L;
+            resetSpillFile();
+            if (spillChannel != null) {
+                try {
+                    spillChannel.close();
+                    Files.deleteIfExists(spillFile);
+                } catch (IOException e) {
+                    LOG.warn("Couldn't delete spill file <{}> of output <{}>.", spillFile, outputId, e);
+                }
+                spillChannel = null;
+            }
+        }
+        spilledStreams.clear();
+
+        for (final String metricName : METRIC_NAMES) {
+            metricRegistry.remove(name(metricPrefix, metricName));
+        }
+        delegate.stop();
+    }
+
+    @JsonAutoDetect
+    @AutoValue
+    abstract static class SpilledMessage {
+        @JsonProperty("fields")
+        abstract Map<String, Object> fields();
+
+        @JsonProperty("field_types")
+        abstract Map<String, String> fieldTypes();
+
+        @JsonProperty("streams")
+        abstract List<String> streams();
+
+        @JsonCreator
+        static SpilledMessage create(@JsonProperty("fields") Map<String, Object> fields,
+                                     @JsonProperty("field_types") Map<String, String> fieldTypes,
+                                     @JsonProperty("streams") Collection<String> streams) {
+            return new AutoValue_SpillingMessageOutput_SpilledMessage(fields, fieldTypes, ImmutableList.copyOf(streams));
+        }
+    }
+}
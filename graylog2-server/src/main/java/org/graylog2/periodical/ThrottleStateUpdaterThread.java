@@ -19,13 +19,17 @@ package org.graylog2.periodical;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.Timer;
 import com.github.joschi.jadconfig.util.Size;
 import com.google.common.eventbus.EventBus;
+import org.graylog2.buffers.OutputBuffer;
 import org.graylog2.notifications.Notification;
 import org.graylog2.notifications.NotificationService;
+import org.graylog2.outputs.ElasticSearchOutput;
 import org.graylog2.plugin.GlobalMetricNames;
 import org.graylog2.plugin.ServerStatus;
 import org.graylog2.plugin.ThrottleState;
+import org.graylog2.plugin.inputs.transports.AdaptiveRateLimiter;
 import org.graylog2.plugin.periodical.Periodical;
 import org.graylog2.shared.buffers.ProcessBuffer;
 import org.graylog2.shared.journal.Journal;
@@ -36,6 +40,8 @@ import org.slf4j.LoggerFactory;
 import javax.inject.Inject;
 import javax.inject.Named;
 
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static org.graylog2.shared.metrics.MetricUtils.safelyRegister;
 
 /**
@@ -55,6 +61,8 @@ public class ThrottleStateUpdaterThread extends Periodical {
     private static final Logger log = LoggerFactory.getLogger(ThrottleStateUpdaterThread.class);
     private final KafkaJournal journal;
     private final ProcessBuffer processBuffer;
+    private final OutputBuffer outputBuffer;
+    private final Timer outputProcessTime;
     private final EventBus eventBus;
     private final Size retentionSize;
     private final NotificationService notificationService;
@@ -64,17 +72,21 @@ public class ThrottleStateUpdaterThread extends Periodical {
     private long logEndOffset;
     private long currentReadOffset;
     private long currentTs;
+    private long outputWrites;
     private ThrottleState throttleState;
 
     @Inject
     public ThrottleStateUpdaterThread(final Journal journal,
                                       ProcessBuffer processBuffer,
+                                      OutputBuffer outputBuffer,
                                       EventBus eventBus,
                                       NotificationService notificationService,
                                       ServerStatus serverStatus,
                                       MetricRegistry metricRegistry,
                                       @Named("message_journal_max_size") Size retentionSize) {
         this.processBuffer = processBuffer;
+        this.outputBuffer = outputBuffer;
+        this.outputProcessTime = metricRegistry.timer(name(ElasticSearchOutput.class, "processTime"));
         this.eventBus = eventBus;
         this.retentionSize = retentionSize;
         this.notificationService = notificationService;
@@ -122,6 +134,14 @@ public class ThrottleStateUpdaterThread extends Periodical {
                                return throttleState.uncommittedJournalEntries;
                            }
                        });
+        safelyRegister(metricRegistry,
+                       name(ThrottleStateUpdaterThread.class, "ingestPressure"),
+                       new Gauge<Double>() {
+                           @Override
+                           public Double getValue() {
+                               return AdaptiveRateLimiter.pressure(throttleState);
+                           }
+                       });
         final Gauge<Long> sizeGauge = safelyRegister(metricRegistry,
                                    GlobalMetricNames.JOURNAL_SIZE,
                                    new Gauge<Long>() {
@@ -220,6 +240,15 @@ public class ThrottleStateUpdaterThread extends Periodical {
         throttleState.journalSizeLimit = retentionSize.toBytes();
 
         throttleState.processBufferCapacity = processBuffer.getRemainingCapacity();
+        throttleState.processBufferSize = processBuffer.getRingBufferSize();
+        throttleState.outputBufferCapacity = outputBuffer.getRemainingCapacity();
+        throttleState.outputBufferSize = outputBuffer.getRingBufferSize();
+
+        // The timer keeps its samples while nothing is written, so only use it if there were writes since the last run
+        final long previousOutputWrites = outputWrites;
+        outputWrites = outputProcessTime.getCount();
+        throttleState.outputLatencyMillis = outputWrites == previousOutputWrites ? 0L
+                : NANOSECONDS.toMillis((long) outputProcessTime.getSnapshot().get95thPercentile());
 
         if (committedOffset == KafkaJournal.DEFAULT_COMMITTED_OFFSET) {
             // nothing committed at all, the entire log is uncommitted, or completely empty.
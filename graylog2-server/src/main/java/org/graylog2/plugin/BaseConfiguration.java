@@ -27,6 +27,7 @@ import com.lmax.disruptor.SleepingWaitStrategy;
 import com.lmax.disruptor.WaitStrategy;
 import com.lmax.disruptor.YieldingWaitStrategy;
 import org.graylog2.configuration.PathConfiguration;
+import org.graylog2.shared.buffers.AdaptiveWaitStrategy;
 import org.graylog2.utilities.ProxyHostsPattern;
 import org.graylog2.utilities.ProxyHostsPatternConverter;
 import org.slf4j.Logger;
@@ -44,6 +45,9 @@ public abstract class BaseConfiguration extends PathConfiguration {
     @Parameter(value = "processbuffer_processors", required = true, validator = PositiveIntegerValidator.class)
     private int processBufferProcessors = 5;
 
+    @Parameter(value = "processbuffer_decoders")
+    private int processBufferDecoders = 0;
+
     @Parameter(value = "processor_wait_strategy", required = true)
     private String processorWaitStrategy = "blocking";
 
@@ -56,6 +60,9 @@ public abstract class BaseConfiguration extends PathConfiguration {
     @Parameter(value = "inputbuffer_wait_strategy", required = true)
     private String inputBufferWaitStrategy = "blocking";
 
+    @Parameter(value = "thread_affinity_cpu_sets")
+    private String threadAffinityCpuSets = "";
+
     @Parameter(value = "async_eventbus_processors")
     private int asyncEventbusProcessors = 2;
 
@@ -71,6 +78,9 @@ public abstract class BaseConfiguration extends PathConfiguration {
     @Parameter("message_recordings_enable")
     private boolean messageRecordingsEnable = false;
 
+    @Parameter(value = "message_trace_sample_rate")
+    private int messageTraceSampleRate = 0;
+
     @Parameter("disable_sigar")
     private boolean disableSigar = false;
 
@@ -99,6 +109,10 @@ public abstract class BaseConfiguration extends PathConfiguration {
         return processBufferProcessors;
     }
 
+    public int getProcessBufferDecoders() {
+        return processBufferDecoders;
+    }
+
     private WaitStrategy getWaitStrategy(String waitStrategyName, String configOptionName) {
         switch (waitStrategyName) {
             case "sleeping":
@@ -109,6 +123,8 @@ public abstract class BaseConfiguration extends PathConfiguration {
                 return new BlockingWaitStrategy();
             case "busy_spinning":
                 return new BusySpinWaitStrategy();
+            case "adaptive":
+                return new AdaptiveWaitStrategy();
             default:
                 LOG.warn("Invalid setting for [{}]:"
                         + " Falling back to default: BlockingWaitStrategy.", configOptionName);
@@ -132,6 +148,10 @@ public abstract class BaseConfiguration extends PathConfiguration {
         return getWaitStrategy(inputBufferWaitStrategy, "inputbuffer_wait_strategy");
     }
 
+    public String getThreadAffinityCpuSets() {
+        return threadAffinityCpuSets;
+    }
+
     public int getAsyncEventbusProcessors() {
         return asyncEventbusProcessors;
     }
@@ -162,6 +182,10 @@ public abstract class BaseConfiguration extends PathConfiguration {
         return messageRecordingsEnable;
     }
 
+    public int getMessageTraceSampleRate() {
+        return messageTraceSampleRate;
+    }
+
     public boolean isDisableSigar() {
         return disableSigar;
     }
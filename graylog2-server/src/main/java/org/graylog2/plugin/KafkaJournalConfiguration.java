@@ -81,6 +81,15 @@ public class KafkaJournalConfiguration extends PathConfiguration {
     @JsonProperty("flush_age")
     private Duration messageJournalFlushAge = Duration.standardMinutes(1L);
 
+    @Parameter("message_journal_commit_low_watermark")
+    @JsonProperty("commit_low_watermark")
+    private boolean messageJournalCommitLowWatermark = false;
+
+    @Parameter("message_journal_commit_gap_timeout")
+    @JsonFormat(shape = JsonFormat.Shape.NUMBER)
+    @JsonProperty("commit_gap_timeout")
+    private Duration messageJournalCommitGapTimeout = Duration.standardMinutes(5L);
+
     public Path getMessageJournalDir() {
         return messageJournalDir;
     }
@@ -108,4 +117,12 @@ public class KafkaJournalConfiguration extends PathConfiguration {
     public Duration getMessageJournalFlushAge() {
         return messageJournalFlushAge;
     }
+
+    public boolean isMessageJournalCommitLowWatermark() {
+        return messageJournalCommitLowWatermark;
+    }
+
+    public Duration getMessageJournalCommitGapTimeout() {
+        return messageJournalCommitGapTimeout;
+    }
 }
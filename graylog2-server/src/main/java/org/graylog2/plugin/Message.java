@@ -250,12 +250,19 @@ public class Message implements Messages {
      * was involved.
      */
     private long journalOffset = Long.MIN_VALUE;
+    /**
+     * Keeps the journal from committing the offset of this message before it has been completed, see
+     * {@link org.graylog2.plugin.journal.RawMessage#setJournalOffsetHolder(Object)}.
+     */
+    private Object journalOffsetHolder;
 
     private DateTime receiveTime;
     private DateTime processingTime;
 
     private ArrayList<Recording> recordings;
 
+    private MessageTrace trace;
+
     private com.codahale.metrics.Counter sizeCounter = new com.codahale.metrics.Counter();
 
     private static final IdentityHashMap<Class<?>, Integer> classSizes = Maps.newIdentityHashMap();
@@ -781,6 +788,15 @@ public class Message implements Messages {
         return journalOffset;
     }
 
+    public void setJournalOffsetHolder(@Nullable Object journalOffsetHolder) {
+        this.journalOffsetHolder = journalOffsetHolder;
+    }
+
+    @Nullable
+    public Object getJournalOffsetHolder() {
+        return journalOffsetHolder;
+    }
+
     @Nullable
     public DateTime getReceiveTime() {
         return receiveTime;
@@ -840,6 +856,27 @@ public class Message implements Messages {
         return !serverStatus.getDetailedMessageRecordingStrategy().shouldRecord(this);
     }
 
+    /**
+     * @return the trace of the pipeline stages, {@code null} if the message hasn't been sampled for tracing
+     */
+    @Nullable
+    public MessageTrace getTrace() {
+        return trace;
+    }
+
+    public void setTrace(@Nullable MessageTrace trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * Records that the message reached the given stage if the message is being traced.
+     */
+    public void markTraceStage(MessageTrace.Stage stage) {
+        if (trace != null) {
+            trace.mark(stage);
+        }
+    }
+
     @Override
     @Nonnull
     public Iterator<Message> iterator() {
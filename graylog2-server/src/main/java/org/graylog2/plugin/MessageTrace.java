@@ -0,0 +1,123 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.plugin;
+
+import java.util.Locale;
+
+/**
+ * Timestamps of a sampled message passing through the stages of the processing pipeline.
+ * <p>
+ * The timestamps are kept as {@link System#nanoTime()} values in a primitive array. Every time the message reaches a
+ * stage, the time elapsed since the previous stage is passed to the {@link Recorder}, and once the message has been
+ * indexed, the time since it has been received as well. Only the first time a stage is reached counts.
+ * <p>
+ * The trace is not thread safe, a message is only handled by one thread at a time.
+ */
+public final class MessageTrace {
+    /**
+     * The pipeline stages in the order messages pass them. The time recorded for a stage is the time from the
+     * previous stage until the stage has been reached.
+     */
+    public enum Stage {
+        /**
+         * The input received the message.
+         */
+        RECEIVE,
+        /**
+         * The process buffer started decoding the message, this includes the time spent in the journal.
+         */
+        JOURNAL,
+        /**
+         * The message has been decoded.
+         */
+        DECODE,
+        /**
+         * All message processors have been run and the message is handed to the output buffer.
+         */
+        PROCESS,
+        /**
+         * An output buffer processor picked up the message.
+         */
+        OUTPUT_BUFFER,
+        /**
+         * Elasticsearch acknowledged the message.
+         */
+        INDEX;
+
+        public String getName() {
+            return name().toLowerCase(Locale.ENGLISH);
+        }
+    }
+
+    public interface Recorder {
+        void recordStage(Stage stage, long elapsedNanos);
+
+        void recordTotal(long elapsedNanos);
+
+        void recordProcessor(String processorName, long elapsedNanos);
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final Stage LAST_STAGE = STAGES[STAGES.length - 1];
+
+    private final Recorder recorder;
+    private final long[] timestamps = new long[STAGES.length];
+    private int reachedStages = 0;
+
+    /**
+     * @param recorder      the recorder for the elapsed times
+     * @param receivedNanos the time the message has been received, as a {@link System#nanoTime()} value
+     */
+    public MessageTrace(Recorder recorder, long receivedNanos) {
+        this.recorder = recorder;
+        set(Stage.RECEIVE, receivedNanos);
+    }
+
+    public void mark(Stage stage) {
+        mark(stage, System.nanoTime());
+    }
+
+    public void mark(Stage stage, long nanos) {
+        if (isReached(stage)) {
+            return;
+        }
+        for (int i = stage.ordinal() - 1; i >= 0; i--) {
+            if (isReached(STAGES[i])) {
+                recorder.recordStage(stage, Math.max(0L, nanos - timestamps[i]));
+                break;
+            }
+        }
+        set(stage, nanos);
+
+        if (stage == LAST_STAGE) {
+            recorder.recordTotal(Math.max(0L, nanos - timestamps[Stage.RECEIVE.ordinal()]));
+        }
+    }
+
+    public void recordProcessor(String processorName, long elapsedNanos) {
+        recorder.recordProcessor(processorName, elapsedNanos);
+    }
+
+    public boolean isReached(Stage stage) {
+        return (reachedStages & (1 << stage.ordinal())) != 0;
+    }
+
+    private void set(Stage stage, long nanos) {
+        timestamps[stage.ordinal()] = nanos;
+        reachedStages |= 1 << stage.ordinal();
+    }
+}
@@ -25,6 +25,10 @@ public class ThrottleState {
     public long journalSizeLimit;
     public long readEventsPerSec;
     public long processBufferCapacity;
+    public long processBufferSize;
+    public long outputBufferCapacity;
+    public long outputBufferSize;
+    public long outputLatencyMillis;
 
     public ThrottleState() {
     }
@@ -36,6 +40,10 @@ public class ThrottleState {
         this.journalSizeLimit = o.journalSizeLimit;
         this.readEventsPerSec = o.readEventsPerSec;
         this.processBufferCapacity = o.processBufferCapacity;
+        this.processBufferSize = o.processBufferSize;
+        this.outputBufferCapacity = o.outputBufferCapacity;
+        this.outputBufferSize = o.outputBufferSize;
+        this.outputLatencyMillis = o.outputLatencyMillis;
     }
 
     @Override
@@ -48,6 +56,10 @@ public class ThrottleState {
                 .add("journalSize", journalSize)
                 .add("journalSizeLimit", journalSizeLimit)
                 .add("pbCapacity", processBufferCapacity)
+                .add("pbSize", processBufferSize)
+                .add("obCapacity", outputBufferCapacity)
+                .add("obSize", outputBufferSize)
+                .add("outputLatencyMillis", outputLatencyMillis)
                 .toString();
     }
 }
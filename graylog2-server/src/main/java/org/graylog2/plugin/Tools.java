@@ -21,9 +21,9 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.io.BaseEncoding;
-import com.google.common.io.ByteStreams;
 import com.google.common.primitives.Doubles;
 import org.graylog2.plugin.indexer.searches.timeranges.AbsoluteRange;
+import org.graylog2.plugin.utilities.PooledInflater;
 import org.graylog2.shared.SuppressForbidden;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -35,9 +35,7 @@ import org.joda.time.format.ISODateTimeFormat;
 import org.slf4j.Logger;
 
 import javax.annotation.Nullable;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.lang.management.ManagementFactory;
 import java.net.Inet4Address;
 import java.net.Inet6Address;
@@ -57,8 +55,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.SortedSet;
 import java.util.UUID;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.InflaterInputStream;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
@@ -210,11 +206,8 @@ public final class Tools {
      * @return A string containing the decompressed data
      */
     public static String decompressZlib(byte[] compressedData, long maxBytes) throws IOException {
-        try (final ByteArrayInputStream dataStream = new ByteArrayInputStream(compressedData);
-             final InflaterInputStream in = new InflaterInputStream(dataStream);
-             final InputStream limited = ByteStreams.limit(in, maxBytes)) {
-            return new String(ByteStreams.toByteArray(limited), StandardCharsets.UTF_8);
-        }
+        return PooledInflater.inflate(compressedData, 0, compressedData.length, PooledInflater.Format.ZLIB, maxBytes,
+                (buffer, length, truncated) -> new String(buffer, 0, length, StandardCharsets.UTF_8));
     }
 
     /**
@@ -235,11 +228,8 @@ public final class Tools {
      * @return A string containing the decompressed data
      */
     public static String decompressGzip(byte[] compressedData, long maxBytes) throws IOException {
-        try (final ByteArrayInputStream dataStream = new ByteArrayInputStream(compressedData);
-             final GZIPInputStream in = new GZIPInputStream(dataStream);
-             final InputStream limited = ByteStreams.limit(in, maxBytes)) {
-            return new String(ByteStreams.toByteArray(limited), StandardCharsets.UTF_8);
-        }
+        return PooledInflater.inflate(compressedData, 0, compressedData.length, PooledInflater.Format.GZIP, maxBytes,
+                (buffer, length, truncated) -> new String(buffer, 0, length, StandardCharsets.UTF_8));
     }
 
     /**
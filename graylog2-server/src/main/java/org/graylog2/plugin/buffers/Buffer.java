@@ -23,6 +23,7 @@ import com.lmax.disruptor.SleepingWaitStrategy;
 import com.lmax.disruptor.WaitStrategy;
 import com.lmax.disruptor.YieldingWaitStrategy;
 import org.graylog2.plugin.Message;
+import org.graylog2.shared.buffers.AdaptiveWaitStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -75,6 +76,8 @@ public abstract class Buffer {
                 return new BlockingWaitStrategy();
             case "busy_spinning":
                 return new BusySpinWaitStrategy();
+            case "adaptive":
+                return new AdaptiveWaitStrategy();
             default:
                 log.warn("Invalid setting for [{}]:"
                                 + " Falling back to default: BlockingWaitStrategy.", configOptionName);
@@ -17,8 +17,10 @@
 package org.graylog2.plugin.inputs;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -27,6 +29,7 @@ import org.graylog2.plugin.database.EmbeddedPersistable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -43,6 +46,14 @@ import static com.codahale.metrics.MetricRegistry.name;
 public abstract class Extractor implements EmbeddedPersistable {
     private static final Logger LOG = LoggerFactory.getLogger(Extractor.class);
 
+    /**
+     * Only every n-th run of an extractor is timed, the timers are too expensive for every message. The counts and
+     * rates of the timers are sampled as well, so every run is also counted by an unsampled meter.
+     */
+    @VisibleForTesting
+    static final int TIMER_SAMPLE_RATE = 16;
+    private static final ConditionMatcher OWN_CONDITION = Extractor::conditionMatches;
+
     public static final String FIELD_ID = "id";
     public static final String FIELD_TITLE = "title";
     public static final String FIELD_ORDER = "order";
@@ -96,6 +107,7 @@ public abstract class Extractor implements EmbeddedPersistable {
 
     protected final AtomicLong exceptions;
     protected final AtomicLong converterExceptions;
+    private final AtomicLong invocations = new AtomicLong(0);
 
     protected final String id;
     protected final String title;
@@ -119,12 +131,20 @@ public abstract class Extractor implements EmbeddedPersistable {
     private final Timer executionTimer;
     private final Timer converterTimer;
     private final Timer completeTimer;
+    private final Meter conditionMeter;
+    private final Meter executionMeter;
+    private final Meter converterMeter;
+    private final Meter completeMeter;
     private final String conditionHitsCounterName;
     private final String conditionMissesCounterName;
     private final String conditionTimerName;
     private final String executionTimerName;
     private final String converterTimerName;
     private final String completeTimerName;
+    private final String conditionMeterName;
+    private final String executionMeterName;
+    private final String converterMeterName;
+    private final String completeMeterName;
 
     protected abstract Result[] run(String field);
 
@@ -172,18 +192,38 @@ public abstract class Extractor implements EmbeddedPersistable {
         this.executionTimerName = name(metricsPrefix, "executionTime");
         this.converterTimerName = name(metricsPrefix, "converterExecutionTime");
         this.completeTimerName = name(metricsPrefix, "completeExecutionTime");
+        this.conditionMeterName = name(metricsPrefix, "conditionExecutions");
+        this.executionMeterName = name(metricsPrefix, "executions");
+        this.converterMeterName = name(metricsPrefix, "converterExecutions");
+        this.completeMeterName = name(metricsPrefix, "completeExecutions");
         this.conditionHitsCounter = metricRegistry.counter(conditionHitsCounterName);
         this.conditionMissesCounter = metricRegistry.counter(conditionMissesCounterName);
         this.conditionTimer = metricRegistry.timer(conditionTimerName);
         this.executionTimer = metricRegistry.timer(executionTimerName);
         this.converterTimer = metricRegistry.timer(converterTimerName);
         this.completeTimer = metricRegistry.timer(completeTimerName);
+        this.conditionMeter = metricRegistry.meter(conditionMeterName);
+        this.executionMeter = metricRegistry.meter(executionMeterName);
+        this.converterMeter = metricRegistry.meter(converterMeterName);
+        this.completeMeter = metricRegistry.meter(completeMeterName);
     }
 
     public void runExtractor(Message msg) {
-        try(final Timer.Context ignored = completeTimer.time()) {
+        runExtractor(msg, OWN_CONDITION);
+    }
+
+    /**
+     * Runs the extractor on the given message.
+     *
+     * @param msg              the message to extract from
+     * @param conditionMatcher decides if the condition of the extractor matches, this allows callers running several
+     *                         extractors on the same message to share condition checks
+     */
+    public void runExtractor(Message msg, ConditionMatcher conditionMatcher) {
+        final boolean timed = invocations.getAndIncrement() % TIMER_SAMPLE_RATE == 0;
+        try(final Timer.Context ignored = time(completeTimer, completeMeter, timed)) {
             final String field;
-            try (final Timer.Context ignored2 = conditionTimer.time()) {
+            try (final Timer.Context ignored2 = time(conditionTimer, conditionMeter, timed)) {
                 // We can only work on Strings.
                 if (!(msg.getField(sourceField) instanceof String)) {
                     conditionMissesCounter.inc();
@@ -193,15 +233,8 @@ public abstract class Extractor implements EmbeddedPersistable {
                 field = (String) msg.getField(sourceField);
 
                 // Decide if to extract at all.
-                if (conditionType.equals(ConditionType.STRING)) {
-                    if (field.contains(conditionValue)) {
-                        conditionHitsCounter.inc();
-                    } else {
-                        conditionMissesCounter.inc();
-                        return;
-                    }
-                } else if (conditionType.equals(ConditionType.REGEX)) {
-                    if (regexConditionPattern.matcher(field).find()) {
+                if (!conditionType.equals(ConditionType.NONE)) {
+                    if (conditionMatcher.matches(this, field)) {
                         conditionHitsCounter.inc();
                     } else {
                         conditionMissesCounter.inc();
@@ -210,7 +243,7 @@ public abstract class Extractor implements EmbeddedPersistable {
                 }
             }
 
-            try (final Timer.Context ignored2 = executionTimer.time()) {
+            try (final Timer.Context ignored2 = time(executionTimer, executionMeter, timed)) {
                 final Result[] results = run(field);
                 if (results == null || results.length == 0 || Arrays.stream(results).anyMatch(result -> result.getValue() == null)) {
                     return;
@@ -244,13 +277,37 @@ public abstract class Extractor implements EmbeddedPersistable {
                     msg.addField(sourceField, finalResult);
                 }
 
-                runConverters(msg);
+                runConverters(msg, timed);
             }
         }
     }
 
-    private void runConverters(Message msg) {
-        try(final Timer.Context ignored = converterTimer.time()) {
+    /**
+     * Checks if the condition of this extractor matches the given value of the source field.
+     *
+     * @param value the value of the source field
+     * @return {@code true} if the extractor should run, {@code false} otherwise
+     */
+    public boolean conditionMatches(String value) {
+        switch (conditionType) {
+            case STRING:
+                return value.contains(conditionValue);
+            case REGEX:
+                return regexConditionPattern.matcher(value).find();
+            default:
+                return true;
+        }
+    }
+
+    @Nullable
+    private static Timer.Context time(Timer timer, Meter meter, boolean timed) {
+        meter.mark();
+        // try-with-resources skips closing null resources
+        return timed ? timer.time() : null;
+    }
+
+    private void runConverters(Message msg, boolean timed) {
+        try(final Timer.Context ignored = time(converterTimer, converterMeter, timed)) {
             for (Converter converter : converters) {
                 try {
                     if (!(msg.getField(targetField) instanceof String)) {
@@ -287,6 +344,14 @@ public abstract class Extractor implements EmbeddedPersistable {
         }
     }
 
+    /**
+     * Decides if the condition of an extractor matches the value of its source field.
+     */
+    @FunctionalInterface
+    public interface ConditionMatcher {
+        boolean matches(Extractor extractor, String value);
+    }
+
     public static class ReservedFieldException extends Exception {
         public ReservedFieldException(String msg) {
             super(msg);
@@ -401,6 +466,22 @@ public abstract class Extractor implements EmbeddedPersistable {
         return completeTimerName;
     }
 
+    public String getConditionMeterName() {
+        return conditionMeterName;
+    }
+
+    public String getExecutionMeterName() {
+        return executionMeterName;
+    }
+
+    public String getConverterMeterName() {
+        return converterMeterName;
+    }
+
+    public String getCompleteMeterName() {
+        return completeMeterName;
+    }
+
     public long getExceptionCount() {
         return exceptions.get();
     }
@@ -0,0 +1,180 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.plugin.inputs.transports;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.RateLimiter;
+import org.graylog2.plugin.ThrottleState;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A token bucket for a single input whose rate is adjusted with an AIMD (additive increase, multiplicative decrease)
+ * controller driven by the pressure on the processing pipeline.
+ * <p>
+ * The pressure is the highest of the journal utilization, the fill levels of the process and output buffers and the
+ * Elasticsearch bulk latency relative to {@link #LATENCY_LIMIT_MILLIS}, see {@link #pressure(ThrottleState)}.
+ * Every {@link Priority} starts to reduce its rate at a different pressure, so low priority inputs are slowed down
+ * before high priority inputs are affected.
+ * <p>
+ * As long as the pressure stays below the threshold of the priority, the rate is not limited at all.
+ */
+public class AdaptiveRateLimiter {
+    /**
+     * The bulk latency at which the output is considered to be completely saturated.
+     */
+    @VisibleForTesting
+    static final long LATENCY_LIMIT_MILLIS = 10_000L;
+    @VisibleForTesting
+    static final double MIN_RATE = 1.0d;
+    @VisibleForTesting
+    static final double DECREASE_FACTOR = 0.7d;
+    // The share of the rate before throttling started, which is added back every update
+    @VisibleForTesting
+    static final double INCREASE_FRACTION = 0.05d;
+    // The pressure has to fall this much below the threshold before the rate is increased again
+    private static final double HYSTERESIS = 0.1d;
+
+    public enum Priority {
+        LOW(0.5d), NORMAL(0.7d), HIGH(0.9d);
+
+        private final double pressureThreshold;
+
+        Priority(double pressureThreshold) {
+            this.pressureThreshold = pressureThreshold;
+        }
+
+        public double getPressureThreshold() {
+            return pressureThreshold;
+        }
+
+        public static Priority fromString(String value) {
+            return value == null ? NORMAL : valueOf(value.trim().toUpperCase(Locale.ENGLISH));
+        }
+
+        public static Map<String, String> dropdownValues() {
+            return ImmutableMap.of(
+                    LOW.name().toLowerCase(Locale.ENGLISH), "Low",
+                    NORMAL.name().toLowerCase(Locale.ENGLISH), "Normal",
+                    HIGH.name().toLowerCase(Locale.ENGLISH), "High");
+        }
+    }
+
+    private final Priority priority;
+    private final LongAdder permits = new LongAdder();
+    // Only accessed by the thread calling update()
+    private long lastUpdate = System.nanoTime();
+    private double ceiling;
+    // null while the rate is not limited
+    private volatile RateLimiter rateLimiter;
+
+    public AdaptiveRateLimiter(Priority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Acquires a permit for a single message, blocking until it is available if the rate is currently limited.
+     */
+    public void acquire() {
+        permits.increment();
+        final RateLimiter limiter = rateLimiter;
+        if (limiter != null) {
+            limiter.acquire();
+        }
+    }
+
+    /**
+     * Acquires a permit for a single message if it is available within the given timeout.
+     *
+     * @return {@code true} if the permit was acquired
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) {
+        final RateLimiter limiter = rateLimiter;
+        if (limiter == null || limiter.tryAcquire(timeout, unit)) {
+            permits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adjusts the rate to the given state of the processing system. Meant to be called once per second.
+     */
+    public void update(ThrottleState state) {
+        update(pressure(state), System.nanoTime());
+    }
+
+    @VisibleForTesting
+    void update(double pressure, long now) {
+        final double seconds = (now - lastUpdate) / 1.0E09;
+        lastUpdate = now;
+        final double observedRate = seconds > 0 ? permits.sumThenReset() / seconds : 0.0d;
+
+        final RateLimiter limiter = rateLimiter;
+        if (pressure >= priority.getPressureThreshold()) {
+            if (limiter == null) {
+                ceiling = Math.max(observedRate, MIN_RATE);
+                rateLimiter = RateLimiter.create(Math.max(ceiling * DECREASE_FACTOR, MIN_RATE));
+            } else {
+                limiter.setRate(Math.max(limiter.getRate() * DECREASE_FACTOR, MIN_RATE));
+            }
+        } else if (limiter != null && pressure < priority.getPressureThreshold() - HYSTERESIS) {
+            final double rate = limiter.getRate() + ceiling * INCREASE_FRACTION;
+            if (rate >= ceiling) {
+                rateLimiter = null;
+            } else {
+                limiter.setRate(rate);
+            }
+        }
+    }
+
+    /**
+     * @return the current rate in messages per second, or {@code 0} if the rate is not limited
+     */
+    public double getRate() {
+        final RateLimiter limiter = rateLimiter;
+        return limiter == null ? 0.0d : limiter.getRate();
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Calculates the pressure on the processing system.
+     *
+     * @return a value between {@code 0.0} (idle) and {@code 1.0} (saturated)
+     */
+    public static double pressure(ThrottleState state) {
+        double pressure = 0.0d;
+        if (state.journalSizeLimit > 0) {
+            pressure = Math.max(pressure, state.journalSize / (double) state.journalSizeLimit);
+        }
+        pressure = Math.max(pressure, fillLevel(state.processBufferCapacity, state.processBufferSize));
+        pressure = Math.max(pressure, fillLevel(state.outputBufferCapacity, state.outputBufferSize));
+        pressure = Math.max(pressure, state.outputLatencyMillis / (double) LATENCY_LIMIT_MILLIS);
+        return Math.min(pressure, 1.0d);
+    }
+
+    private static double fillLevel(long remainingCapacity, long size) {
+        return size > 0 ? 1.0d - remainingCapacity / (double) size : 0.0d;
+    }
+}
@@ -16,17 +16,23 @@
  */
 package org.graylog2.plugin.inputs.transports;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import org.graylog2.plugin.ThrottleState;
 import org.graylog2.plugin.configuration.Configuration;
 import org.graylog2.plugin.configuration.ConfigurationRequest;
 import org.graylog2.plugin.configuration.fields.BooleanField;
+import org.graylog2.plugin.configuration.fields.ConfigurationField;
+import org.graylog2.plugin.configuration.fields.DropdownField;
 import org.graylog2.plugin.inputs.MessageInput;
 import org.graylog2.plugin.inputs.MisfireException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+import java.util.Locale;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -41,7 +47,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public abstract class ThrottleableTransport implements Transport {
     private static final Logger log = LoggerFactory.getLogger(ThrottleableTransport.class);
     public static final String CK_THROTTLING_ALLOWED = "throttling_allowed";
+    public static final String CK_THROTTLING_ADAPTIVE = "throttling_adaptive";
+    public static final String CK_THROTTLING_PRIORITY = "throttling_priority";
     private final boolean throttlingAllowed;
+    private final AdaptiveRateLimiter rateLimiter;
     private final AtomicBoolean currentlyThrottled = new AtomicBoolean(false);
     private final EventBus eventBus;
     private volatile CountDownLatch blockLatch = null;
@@ -61,13 +70,46 @@ public abstract class ThrottleableTransport implements Transport {
                     "If you regularly poll an external system, e.g. via HTTP, you normally want to leave this disabled."
 
             ));
+            request.addField(new BooleanField(
+                    CK_THROTTLING_ADAPTIVE,
+                    "Adaptive throttling",
+                    false,
+                    "If enabled, the rate at which messages are read from this input is reduced step by step " +
+                    "depending on the load of the journal, the buffers and Elasticsearch, instead of stopping to read " +
+                    "completely. Only used if throttling is allowed."
+            ));
+            request.addField(new DropdownField(
+                    CK_THROTTLING_PRIORITY,
+                    "Throttling priority",
+                    AdaptiveRateLimiter.Priority.NORMAL.name().toLowerCase(Locale.ENGLISH),
+                    AdaptiveRateLimiter.Priority.dropdownValues(),
+                    "Inputs with a lower priority are slowed down first by adaptive throttling.",
+                    ConfigurationField.Optional.OPTIONAL
+            ));
             return request;
         }
     }
 
     public ThrottleableTransport(EventBus eventBus, Configuration configuration) {
+        this(eventBus, configuration, null);
+    }
+
+    /**
+     * @param localRegistry the metric registry of the transport, which will contain the current rate of adaptive
+     *                      throttling, may be {@code null}
+     */
+    public ThrottleableTransport(EventBus eventBus, Configuration configuration, @Nullable MetricRegistry localRegistry) {
         this.eventBus = eventBus;
         this.throttlingAllowed = configuration.getBoolean(CK_THROTTLING_ALLOWED);
+        if (throttlingAllowed && configuration.getBoolean(CK_THROTTLING_ADAPTIVE)) {
+            this.rateLimiter = new AdaptiveRateLimiter(AdaptiveRateLimiter.Priority.fromString(
+                    configuration.getString(CK_THROTTLING_PRIORITY)));
+            if (localRegistry != null) {
+                localRegistry.register("throttle_rate", (Gauge<Double>) rateLimiter::getRate);
+            }
+        } else {
+            this.rateLimiter = null;
+        }
     }
 
     @Override
@@ -123,6 +165,10 @@ public abstract class ThrottleableTransport implements Transport {
         if (!throttlingAllowed) {
             return;
         }
+        if (rateLimiter != null) {
+            rateLimiter.update(throttleState);
+            return;
+        }
         // check if we are throttled
         final boolean throttled = determineIfThrottled(throttleState);
         if (currentlyThrottled.get()) {
@@ -154,8 +200,12 @@ public abstract class ThrottleableTransport implements Transport {
 
     }
 
+    /**
+     * With adaptive throttling every message has to acquire a permit, so this always returns {@code true} and
+     * {@link #blockUntilUnthrottled()} has to be called before reading each message.
+     */
     public boolean isThrottled() {
-        return throttlingAllowed && currentlyThrottled.get();
+        return throttlingAllowed && (rateLimiter != null || currentlyThrottled.get());
     }
 
     /**
@@ -213,9 +263,13 @@ public abstract class ThrottleableTransport implements Transport {
     }
 
     /**
-     * Blocks until the blockLatch is released.
+     * Blocks until the blockLatch is released, or with adaptive throttling until a permit for the next message is available.
      */
     public void blockUntilUnthrottled() {
+        if (rateLimiter != null) {
+            rateLimiter.acquire();
+            return;
+        }
         // sanity: if there's no latch, don't try to access it
         if (blockLatch == null) {
             return;
@@ -229,7 +283,8 @@ public abstract class ThrottleableTransport implements Transport {
     }
 
     /**
-     * Blocks until the blockLatch is released or until the timeout is exceeded.
+     * Blocks until the blockLatch is released, or with adaptive throttling until a permit for the next message is
+     * available, or until the timeout is exceeded.
      *
      * @param timeout the maximum time to wait
      * @param unit    the time unit for the {@code timeout} argument.
@@ -237,6 +292,9 @@ public abstract class ThrottleableTransport implements Transport {
      *                {@code false} if the {@code timeout} was exceeded before the blockLatch was released.
      */
     public boolean blockUntilUnthrottled(long timeout, TimeUnit unit) {
+        if (rateLimiter != null) {
+            return rateLimiter.tryAcquire(timeout, unit);
+        }
         // sanity: if there's no latch, don't try to access it
         if (blockLatch == null) {
             return false;
@@ -67,6 +67,7 @@ public class RawMessage implements Serializable {
     private transient final JournalMessage.Builder msgBuilder;
     private final UUID id;
     private final long journalOffset;
+    private transient Object journalOffsetHolder;
     private Configuration codecConfig;
 
     public RawMessage(@Nonnull byte[] payload) {
@@ -264,6 +265,19 @@ public class RawMessage implements Serializable {
         return journalOffset;
     }
 
+    /**
+     * @param journalOffsetHolder an opaque object which keeps the journal from giving up on the offset of this message,
+     *                            it has to be passed on to the messages decoded from it
+     */
+    public void setJournalOffsetHolder(@Nullable Object journalOffsetHolder) {
+        this.journalOffsetHolder = journalOffsetHolder;
+    }
+
+    @Nullable
+    public Object getJournalOffsetHolder() {
+        return journalOffsetHolder;
+    }
+
     public static class SourceNode {
         public String nodeId;
         public String inputId;
@@ -25,6 +25,9 @@ import org.joda.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -125,6 +128,34 @@ public abstract class LookupDataAdapter extends AbstractIdleService {
     }
     protected abstract LookupResult doGet(Object key);
 
+    /**
+     * Looks up all given keys at once. The returned map contains a result for every key in the iteration order of
+     * the given keys.
+     */
+    public Map<Object, LookupResult> getAll(Collection<?> keys) {
+        if (state() == State.FAILED) {
+            final Map<Object, LookupResult> results = new LinkedHashMap<>(keys.size());
+            keys.forEach(key -> results.put(key, LookupResult.empty()));
+            return results;
+        }
+        checkState(isRunning(), "Data adapter needs to be started before it can be used");
+        try (final Timer.Context ignored = requestTimer.time()) {
+            return doGetAll(keys);
+        }
+    }
+
+    /**
+     * Looks up the keys one after another. Data adapters which query remote services should override this to run
+     * the lookups concurrently.
+     */
+    protected Map<Object, LookupResult> doGetAll(Collection<?> keys) {
+        final Map<Object, LookupResult> results = new LinkedHashMap<>(keys.size());
+        for (Object key : keys) {
+            results.put(key, doGet(key));
+        }
+        return results;
+    }
+
     public abstract void set(Object key, Object value);
 
     public LookupDataAdapterConfiguration getConfig() {
@@ -0,0 +1,279 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.plugin.utilities;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses ZLIB (RFC 1950) and GZIP (RFC 1952) data with a per-thread {@link Inflater} and output buffer.
+ * <p>
+ * Creating an {@link Inflater} allocates native zlib state which is only released by {@link Inflater#end()} or the
+ * finalizer, so creating one for every message shows up in allocation and GC profiles. Input threads decompress one
+ * payload at a time, so every thread keeps its own inflaters and a scratch buffer which is reused for the next payload.
+ * <p>
+ * The size limit is enforced while inflating: no more than {@code maxBytes} are ever decompressed, no matter how
+ * well the input compresses.
+ */
+public final class PooledInflater {
+    /**
+     * Scratch buffers larger than this are not kept after use, so a single large payload doesn't pin memory.
+     */
+    @VisibleForTesting
+    static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int GZIP_HEADER_SIZE = 10;
+    private static final int GZIP_TRAILER_SIZE = 8;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    public enum Format {
+        ZLIB, GZIP
+    }
+
+    /**
+     * Receives the decompressed data. The buffer belongs to the pool and must not be used after returning.
+     */
+    @FunctionalInterface
+    public interface Handler<T> {
+        /**
+         * @param buffer    the buffer containing the decompressed data, starting at index 0
+         * @param length    the number of decompressed bytes in the buffer
+         * @param truncated {@code true} if the decompressed data was cut off at the size limit
+         */
+        T handle(byte[] buffer, int length, boolean truncated) throws IOException;
+    }
+
+    private PooledInflater() {
+    }
+
+    /**
+     * Decompresses the given data, stopping after {@code maxBytes} bytes.
+     *
+     * @param data     the compressed data
+     * @param format   the compression format of the data
+     * @param maxBytes the maximum number of decompressed bytes, a negative value means unlimited
+     * @return a copy of the decompressed data, at most {@code maxBytes} long
+     * @throws IOException if the data is not valid compressed data of the given format
+     */
+    public static byte[] inflate(byte[] data, Format format, long maxBytes) throws IOException {
+        return inflate(data, 0, data.length, format, maxBytes, (buffer, length, truncated) -> Arrays.copyOf(buffer, length));
+    }
+
+    /**
+     * Decompresses the given data into the pooled buffer of the current thread and passes it to the handler.
+     * This avoids copying the decompressed data if the handler only needs to read it.
+     *
+     * @param data     the compressed data
+     * @param offset   the offset of the compressed data in {@code data}
+     * @param length   the length of the compressed data
+     * @param format   the compression format of the data
+     * @param maxBytes the maximum number of decompressed bytes, a negative value means unlimited
+     * @param handler  the handler receiving the decompressed data
+     * @return the result of the handler
+     * @throws IOException if the data is not valid compressed data of the given format or the handler failed
+     */
+    public static <T> T inflate(byte[] data, int offset, int length, Format format, long maxBytes, Handler<T> handler) throws IOException {
+        final State pooled = STATE.get();
+        // Handlers may decompress nested payloads, those must not overwrite the buffer which is still being read
+        final State state = pooled.inUse ? new State() : pooled;
+        state.inUse = true;
+        try {
+            final int limit = (int) Math.min(maxBytes < 0 ? Long.MAX_VALUE : maxBytes, MAX_ARRAY_SIZE);
+            final int inflated = format == Format.GZIP
+                    ? state.inflateGzip(data, offset, length, limit)
+                    : state.inflateZlib(data, offset, length, limit);
+            return handler.handle(state.buffer, inflated, state.truncated);
+        } finally {
+            state.inUse = false;
+            if (state == pooled) {
+                state.release();
+            } else {
+                state.end();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    static int pooledBufferSize() {
+        return STATE.get().buffer.length;
+    }
+
+    private static class State {
+        private final Inflater zlibInflater = new Inflater();
+        private final Inflater rawInflater = new Inflater(true);
+        private final CRC32 crc = new CRC32();
+        private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+        private boolean truncated;
+        private boolean inUse;
+
+        int inflateZlib(byte[] data, int offset, int length, int limit) throws IOException {
+            zlibInflater.reset();
+            zlibInflater.setInput(data, offset, length);
+            final int inflated = inflate(zlibInflater, 0, limit);
+            if (!truncated && !zlibInflater.finished()) {
+                throw new EOFException("Unexpected end of ZLIB input stream");
+            }
+            return inflated;
+        }
+
+        int inflateGzip(byte[] data, int offset, int length, int limit) throws IOException {
+            final int end = offset + length;
+            int position = offset;
+            int inflated = 0;
+            truncated = false;
+            do {
+                position = skipGzipHeader(data, position, end);
+
+                rawInflater.reset();
+                rawInflater.setInput(data, position, end - position);
+                final int start = inflated;
+                inflated = inflate(rawInflater, inflated, limit);
+                if (truncated) {
+                    // The rest of the data will never be read, so the trailer doesn't need to be checked
+                    return inflated;
+                }
+                if (!rawInflater.finished()) {
+                    throw new EOFException("Unexpected end of ZLIB input stream");
+                }
+
+                position = end - rawInflater.getRemaining();
+                if (end - position < GZIP_TRAILER_SIZE) {
+                    throw new EOFException("Unexpected end of GZIP trailer");
+                }
+                crc.reset();
+                crc.update(buffer, start, inflated - start);
+                if (readInt(data, position) != (int) crc.getValue()
+                        || readInt(data, position + 4) != (int) rawInflater.getBytesWritten()) {
+                    throw new ZipException("Corrupt GZIP trailer");
+                }
+                position += GZIP_TRAILER_SIZE;
+                // Like GZIPInputStream, read concatenated members and ignore trailing garbage
+            } while (end - position >= GZIP_HEADER_SIZE && readShort(data, position) == GZIP_MAGIC);
+
+            return inflated;
+        }
+
+        private int inflate(Inflater inflater, int inflated, int limit) throws IOException {
+            truncated = false;
+            try {
+                while (!inflater.finished()) {
+                    if (inflated == limit) {
+                        // Only report a truncation if there actually is more data
+                        final byte[] probe = new byte[1];
+                        truncated = inflater.inflate(probe) > 0 || !inflater.finished() && !inflater.needsInput();
+                        return inflated;
+                    }
+                    if (inflated == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, (int) Math.min((long) buffer.length * 2, limit));
+                    }
+                    final int n = inflater.inflate(buffer, inflated, Math.min(buffer.length, limit) - inflated);
+                    if (n == 0) {
+                        if (inflater.needsDictionary()) {
+                            throw new ZipException("Compressed data requires a preset dictionary");
+                        }
+                        if (inflater.needsInput()) {
+                            break;
+                        }
+                    }
+                    inflated += n;
+                }
+                return inflated;
+            } catch (DataFormatException e) {
+                final String message = e.getMessage();
+                throw new ZipException(message != null ? message : "Invalid ZLIB data format");
+            }
+        }
+
+        private static int skipGzipHeader(byte[] data, int position, int end) throws IOException {
+            if (end - position < GZIP_HEADER_SIZE) {
+                throw new EOFException("Unexpected end of GZIP header");
+            }
+            if (readShort(data, position) != GZIP_MAGIC) {
+                throw new ZipException("Not in GZIP format");
+            }
+            if (data[position + 2] != 8) {
+                throw new ZipException("Unsupported compression method");
+            }
+            final int flags = data[position + 3] & 0xff;
+            int p = position + GZIP_HEADER_SIZE;
+            if ((flags & FEXTRA) != 0) {
+                checkAvailable(p, 2, end);
+                p += 2 + readShort(data, p);
+            }
+            if ((flags & FNAME) != 0) {
+                p = skipZeroTerminated(data, p, end);
+            }
+            if ((flags & FCOMMENT) != 0) {
+                p = skipZeroTerminated(data, p, end);
+            }
+            if ((flags & FHCRC) != 0) {
+                p += 2;
+            }
+            checkAvailable(p, 0, end);
+            return p;
+        }
+
+        private static int skipZeroTerminated(byte[] data, int position, int end) throws IOException {
+            int p = position;
+            while (p < end && data[p] != 0) {
+                p++;
+            }
+            checkAvailable(p, 1, end);
+            return p + 1;
+        }
+
+        private static void checkAvailable(int position, int length, int end) throws IOException {
+            if (position + length > end) {
+                throw new EOFException("Unexpected end of GZIP header");
+            }
+        }
+
+        private static int readShort(byte[] data, int position) {
+            return (data[position] & 0xff) | (data[position + 1] & 0xff) << 8;
+        }
+
+        private static int readInt(byte[] data, int position) {
+            return readShort(data, position) | readShort(data, position + 2) << 16;
+        }
+
+        void release() {
+            if (buffer.length > MAX_RETAINED_BUFFER_SIZE) {
+                buffer = new byte[INITIAL_BUFFER_SIZE];
+            }
+        }
+
+        void end() {
+            zlibInflater.end();
+            rawInflater.end();
+        }
+    }
+}
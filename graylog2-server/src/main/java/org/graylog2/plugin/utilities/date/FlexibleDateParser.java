@@ -0,0 +1,481 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.plugin.utilities.date;
+
+import com.joestelmach.natty.DateGroup;
+import com.joestelmach.natty.Parser;
+import org.joda.time.Chronology;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.DateTimeZone;
+import org.joda.time.chrono.ISOChronology;
+
+import javax.annotation.Nullable;
+import java.util.List;
+
+/**
+ * Parses dates in arbitrary formats, like "2014-03-12 12:27" or "Mar 12 2pm".
+ * <p>
+ * Running natty's natural language grammar is very expensive, so the common structured timestamp formats are
+ * recognized by hand-written scanners first and natty is only used if none of them matches. Timestamps of a single
+ * source usually share the same format, so the format which matched last is tried first.
+ * <p>
+ * The scanners only accept timestamps which specify a time of day, everything else (e.g. "2014-03-12") is left to
+ * natty to keep its semantics for incomplete dates. Instances are thread-safe.
+ */
+public class FlexibleDateParser {
+    private static final Chronology UTC_CHRONOLOGY = ISOChronology.getInstanceUTC();
+    private static final String[] MONTHS = {"jan", "feb", "mar", "apr", "may", "jun", "jul", "aug", "sep", "oct", "nov", "dec"};
+    private static final Format[] FORMATS = Format.values();
+
+    public enum Format {
+        /**
+         * ISO-8601 date and time, e.g. "2014-03-12T12:27:38.123+01:00" or "2014-03-12 12:27".
+         */
+        ISO_8601,
+        /**
+         * UNIX epoch seconds (with an optional fraction) or milliseconds, e.g. "1394627258" or "1394627258123".
+         */
+        EPOCH,
+        /**
+         * RFC 3164 (BSD syslog) timestamp without year, e.g. "Mar 12 12:27:38" or "Mar  2 12:27:38".
+         */
+        RFC_3164,
+        /**
+         * Apache/NCSA common log format timestamp, e.g. "[12/Mar/2014:12:27:38 +0100]".
+         */
+        APACHE,
+        /**
+         * Timestamp of the Windows event log, e.g. "3/12/2014 12:27:38 PM".
+         */
+        WINDOWS
+    }
+
+    private volatile Format lastFormat = Format.ISO_8601;
+
+    /**
+     * Parses the given string.
+     *
+     * @param value    the string to parse
+     * @param timeZone the time zone of timestamps without an offset and of the returned date
+     * @return the first date found in the string or {@code null} if the string doesn't contain a date
+     */
+    @Nullable
+    public DateTime parse(@Nullable String value, DateTimeZone timeZone) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+
+        final DateTime structured = parseStructured(value.trim(), timeZone);
+        if (structured != null) {
+            return structured;
+        }
+
+        return parseNatural(value, timeZone);
+    }
+
+    @Nullable
+    private DateTime parseStructured(String value, DateTimeZone timeZone) {
+        final Format last = lastFormat;
+        final DateTime date = parse(value, last, timeZone);
+        if (date != null) {
+            return date;
+        }
+        for (Format format : FORMATS) {
+            if (format != last) {
+                final DateTime result = parse(value, format, timeZone);
+                if (result != null) {
+                    lastFormat = format;
+                    return result;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses the given string in the given format only.
+     *
+     * @return the parsed date or {@code null} if the string isn't a valid timestamp in the given format
+     */
+    @Nullable
+    public static DateTime parse(String value, Format format, DateTimeZone timeZone) {
+        try {
+            switch (format) {
+                case ISO_8601:
+                    return new Scanner(value, timeZone).iso8601();
+                case EPOCH:
+                    return new Scanner(value, timeZone).epoch();
+                case RFC_3164:
+                    return new Scanner(value, timeZone).rfc3164();
+                case APACHE:
+                    return new Scanner(value, timeZone).apache();
+                case WINDOWS:
+                    return new Scanner(value, timeZone).windows();
+                default:
+                    return null;
+            }
+        } catch (IllegalArgumentException e) {
+            // Invalid field values, like "2014-02-30", or local times in a daylight saving time gap
+            return null;
+        }
+    }
+
+    /**
+     * Parses the given string with natty's natural language grammar.
+     *
+     * @return the first date found in the string or {@code null} if the string doesn't contain a date
+     */
+    @Nullable
+    public static DateTime parseNatural(String value, DateTimeZone timeZone) {
+        final Parser parser = new Parser(timeZone.toTimeZone());
+        final List<DateGroup> groups = parser.parse(value);
+
+        if (groups.isEmpty() || groups.get(0).getDates().isEmpty()) {
+            return null;
+        }
+
+        return new DateTime(groups.get(0).getDates().get(0), timeZone);
+    }
+
+    private static class Scanner {
+        private final String value;
+        private final DateTimeZone timeZone;
+        private int position = 0;
+
+        Scanner(String value, DateTimeZone timeZone) {
+            this.value = value;
+            this.timeZone = timeZone;
+        }
+
+        @Nullable
+        DateTime iso8601() {
+            final int year = number(4, 4);
+            if (year < 0 || !skip('-')) {
+                return null;
+            }
+            final int month = number(1, 2);
+            if (month < 0 || !skip('-')) {
+                return null;
+            }
+            final int day = number(1, 2);
+            if (day < 0 || !(skip('T') || skip(' '))) {
+                return null;
+            }
+            final int hour = number(1, 2);
+            if (hour < 0 || !skip(':')) {
+                return null;
+            }
+            final int minute = number(2, 2);
+            if (minute < 0) {
+                return null;
+            }
+            int second = 0;
+            int millis = 0;
+            if (skip(':')) {
+                second = number(2, 2);
+                if (second < 0) {
+                    return null;
+                }
+                if (skip('.') || skip(',')) {
+                    millis = fraction();
+                    if (millis < 0) {
+                        return null;
+                    }
+                }
+            }
+            if (atEnd()) {
+                return local(year, month, day, hour, minute, second, millis);
+            }
+            if (skip('Z') && atEnd()) {
+                return offset(year, month, day, hour, minute, second, millis, 0);
+            }
+            skip(' ');
+            final int offset = offset(true);
+            if (offset == Integer.MIN_VALUE || !atEnd()) {
+                return null;
+            }
+            return offset(year, month, day, hour, minute, second, millis, offset);
+        }
+
+        @Nullable
+        DateTime epoch() {
+            final int length = value.length();
+            final int dot = value.indexOf('.');
+            final int digits = dot < 0 ? length : dot;
+            if (digits != 10 && !(digits == 13 && dot < 0)) {
+                return null;
+            }
+            long epoch = 0;
+            for (int i = 0; i < digits; i++) {
+                final int digit = digit(value.charAt(i));
+                if (digit < 0) {
+                    return null;
+                }
+                epoch = epoch * 10 + digit;
+            }
+            if (digits == 13) {
+                return new DateTime(epoch, timeZone);
+            }
+            int millis = 0;
+            if (dot >= 0) {
+                position = dot + 1;
+                millis = fraction();
+                if (millis < 0 || !atEnd()) {
+                    return null;
+                }
+            }
+            return new DateTime(epoch * 1000L + millis, timeZone);
+        }
+
+        @Nullable
+        DateTime rfc3164() {
+            final int month = monthName();
+            if (month < 0 || !skip(' ')) {
+                return null;
+            }
+            // Single digit days are padded with a space
+            skip(' ');
+            final int day = number(1, 2);
+            if (day < 0 || !skip(' ')) {
+                return null;
+            }
+            final int hour = number(2, 2);
+            if (hour < 0 || !skip(':')) {
+                return null;
+            }
+            final int minute = number(2, 2);
+            if (minute < 0 || !skip(':')) {
+                return null;
+            }
+            final int second = number(2, 2);
+            if (second < 0) {
+                return null;
+            }
+            int millis = 0;
+            if (skip('.')) {
+                millis = fraction();
+                if (millis < 0) {
+                    return null;
+                }
+            }
+            if (!atEnd()) {
+                return null;
+            }
+            // The timestamp doesn't contain a year, like natty use the current one
+            final int year = ISOChronology.getInstance(timeZone).year().get(DateTimeUtils.currentTimeMillis());
+            return local(year, month, day, hour, minute, second, millis);
+        }
+
+        @Nullable
+        DateTime apache() {
+            final boolean bracketed = skip('[');
+            final int day = number(2, 2);
+            if (day < 0 || !skip('/')) {
+                return null;
+            }
+            final int month = monthName();
+            if (month < 0 || !skip('/')) {
+                return null;
+            }
+            final int year = number(4, 4);
+            if (year < 0 || !skip(':')) {
+                return null;
+            }
+            final int hour = number(2, 2);
+            if (hour < 0 || !skip(':')) {
+                return null;
+            }
+            final int minute = number(2, 2);
+            if (minute < 0 || !skip(':')) {
+                return null;
+            }
+            final int second = number(2, 2);
+            if (second < 0 || !skip(' ')) {
+                return null;
+            }
+            final int offset = offset(false);
+            if (offset == Integer.MIN_VALUE || bracketed && !skip(']') || !atEnd()) {
+                return null;
+            }
+            return offset(year, month, day, hour, minute, second, 0, offset);
+        }
+
+        @Nullable
+        DateTime windows() {
+            final int month = number(1, 2);
+            if (month < 0 || !skip('/')) {
+                return null;
+            }
+            final int day = number(1, 2);
+            if (day < 0 || !skip('/')) {
+                return null;
+            }
+            final int year = number(4, 4);
+            if (year < 0 || !skip(' ')) {
+                return null;
+            }
+            int hour = number(1, 2);
+            if (hour < 0 || !skip(':')) {
+                return null;
+            }
+            final int minute = number(2, 2);
+            if (minute < 0 || !skip(':')) {
+                return null;
+            }
+            final int second = number(2, 2);
+            if (second < 0) {
+                return null;
+            }
+            if (skip(' ')) {
+                final boolean pm;
+                if (skipIgnoreCase("PM")) {
+                    pm = true;
+                } else if (skipIgnoreCase("AM")) {
+                    pm = false;
+                } else {
+                    return null;
+                }
+                if (hour < 1 || hour > 12) {
+                    return null;
+                }
+                hour = hour % 12 + (pm ? 12 : 0);
+            }
+            if (!atEnd()) {
+                return null;
+            }
+            return local(year, month, day, hour, minute, second, 0);
+        }
+
+        private DateTime local(int year, int month, int day, int hour, int minute, int second, int millis) {
+            final long instant = ISOChronology.getInstance(timeZone)
+                    .getDateTimeMillis(year, month, day, hour, minute, second, millis);
+            return new DateTime(instant, timeZone);
+        }
+
+        private DateTime offset(int year, int month, int day, int hour, int minute, int second, int millis, int offsetMillis) {
+            final long instant = UTC_CHRONOLOGY.getDateTimeMillis(year, month, day, hour, minute, second, millis);
+            return new DateTime(instant - offsetMillis, timeZone);
+        }
+
+        /**
+         * Reads a numeric UTC offset like "+01:00", "+0100" or "+01" (the latter two only if
+         * {@code lenient} is {@code true}) and returns it in milliseconds.
+         */
+        private int offset(boolean lenient) {
+            final int sign;
+            if (skip('+')) {
+                sign = 1;
+            } else if (skip('-')) {
+                sign = -1;
+            } else {
+                return Integer.MIN_VALUE;
+            }
+            final int hours = number(2, 2);
+            if (hours < 0 || hours > 23) {
+                return Integer.MIN_VALUE;
+            }
+            final boolean colon = lenient && skip(':');
+            final int minutes = lenient && !colon && atEnd() ? 0 : number(2, 2);
+            if (minutes < 0 || minutes > 59) {
+                return Integer.MIN_VALUE;
+            }
+            return sign * (hours * 60 + minutes) * 60_000;
+        }
+
+        /**
+         * Reads between {@code min} and {@code max} digits, returns -1 if there are less than {@code min} digits.
+         */
+        private int number(int min, int max) {
+            int result = 0;
+            int count = 0;
+            while (count < max && position < value.length()) {
+                final int digit = digit(value.charAt(position));
+                if (digit < 0) {
+                    break;
+                }
+                result = result * 10 + digit;
+                position++;
+                count++;
+            }
+            return count < min ? -1 : result;
+        }
+
+        /**
+         * Reads fractional digits and returns them as milliseconds, more precision is truncated.
+         */
+        private int fraction() {
+            final int start = position;
+            int millis = 0;
+            while (position < value.length()) {
+                final int digit = digit(value.charAt(position));
+                if (digit < 0) {
+                    break;
+                }
+                if (position - start < 3) {
+                    millis = millis * 10 + digit;
+                }
+                position++;
+            }
+            final int count = position - start;
+            if (count == 0) {
+                return -1;
+            }
+            for (int i = count; i < 3; i++) {
+                millis *= 10;
+            }
+            return millis;
+        }
+
+        private int monthName() {
+            if (position + 3 > value.length()) {
+                return -1;
+            }
+            for (int i = 0; i < MONTHS.length; i++) {
+                if (value.regionMatches(true, position, MONTHS[i], 0, 3)) {
+                    position += 3;
+                    return i + 1;
+                }
+            }
+            return -1;
+        }
+
+        private boolean skip(char c) {
+            if (position < value.length() && value.charAt(position) == c) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private boolean skipIgnoreCase(String s) {
+            if (value.regionMatches(true, position, s, 0, s.length())) {
+                position += s.length();
+                return true;
+            }
+            return false;
+        }
+
+        private boolean atEnd() {
+            return position == value.length();
+        }
+
+        private static int digit(char c) {
+            return c >= '0' && c <= '9' ? c - '0' : -1;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.rest.models.system.indexer.responses;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import org.graylog.autovalue.WithBeanGetter;
+
+@JsonAutoDetect
+@AutoValue
+@WithBeanGetter
+public abstract class DeadLetterJournalSummary {
+    @JsonProperty
+    public abstract boolean enabled();
+
+    @JsonProperty("uncommitted_entries")
+    public abstract long uncommittedEntries();
+
+    @JsonProperty("size_bytes")
+    public abstract long sizeBytes();
+
+    @JsonCreator
+    public static DeadLetterJournalSummary create(@JsonProperty("enabled") boolean enabled,
+                                                  @JsonProperty("uncommitted_entries") long uncommittedEntries,
+                                                  @JsonProperty("size_bytes") long sizeBytes) {
+        return new AutoValue_DeadLetterJournalSummary(enabled, uncommittedEntries, sizeBytes);
+    }
+}
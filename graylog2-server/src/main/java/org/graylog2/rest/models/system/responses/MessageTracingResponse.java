@@ -0,0 +1,48 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.rest.models.system.responses;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.auto.value.AutoValue;
+import org.graylog.autovalue.WithBeanGetter;
+
+import java.util.Map;
+
+@JsonAutoDetect
+@AutoValue
+@WithBeanGetter
+public abstract class MessageTracingResponse {
+    @JsonProperty("sample_rate")
+    public abstract int sampleRate();
+
+    @JsonProperty("duration_unit")
+    public abstract String durationUnit();
+
+    @JsonProperty("stages")
+    public abstract Map<String, Map<String, Object>> stages();
+
+    @JsonProperty("processors")
+    public abstract Map<String, Map<String, Object>> processors();
+
+    public static MessageTracingResponse create(int sampleRate,
+                                                String durationUnit,
+                                                Map<String, Map<String, Object>> stages,
+                                                Map<String, Map<String, Object>> processors) {
+        return new AutoValue_MessageTracingResponse(sampleRate, durationUnit, stages, processors);
+    }
+}
@@ -22,6 +22,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.auto.value.AutoValue;
 import org.graylog.autovalue.WithBeanGetter;
 
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotEmpty;
 
 @JsonAutoDetect
@@ -52,6 +53,18 @@ public abstract class JsonTestRequest {
     @JsonProperty("key_prefix")
     public abstract String keyPrefix();
 
+    @JsonProperty("include_keys")
+    @Nullable
+    public abstract String includeKeys();
+
+    @JsonProperty("exclude_keys")
+    @Nullable
+    public abstract String excludeKeys();
+
+    @JsonProperty("max_depth")
+    @Nullable
+    public abstract Integer maxDepth();
+
     @JsonProperty("string")
     @NotEmpty
     public abstract String string();
@@ -64,7 +77,10 @@ public abstract class JsonTestRequest {
                                          @JsonProperty("replace_key_whitespace") boolean replaceKeyWhitespace,
                                          @JsonProperty("key_whitespace_replacement") String keyWhitespaceReplacement,
                                          @JsonProperty("key_prefix") String keyPrefix,
+                                         @JsonProperty("include_keys") @Nullable String includeKeys,
+                                         @JsonProperty("exclude_keys") @Nullable String excludeKeys,
+                                         @JsonProperty("max_depth") @Nullable Integer maxDepth,
                                          @JsonProperty("string") @NotEmpty String string) {
-        return new AutoValue_JsonTestRequest(flatten, listSeparator, keySeparator, kvSeparator, replaceKeyWhitespace, keyWhitespaceReplacement, keyPrefix, string);
+        return new AutoValue_JsonTestRequest(flatten, listSeparator, keySeparator, kvSeparator, replaceKeyWhitespace, keyWhitespaceReplacement, keyPrefix, includeKeys, excludeKeys, maxDepth, string);
     }
 }
@@ -0,0 +1,107 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.rest.resources.system.indexer;
+
+import com.codahale.metrics.annotation.Timed;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+import org.apache.shiro.authz.annotation.RequiresAuthentication;
+import org.apache.shiro.authz.annotation.RequiresPermissions;
+import org.graylog2.audit.AuditEventTypes;
+import org.graylog2.audit.jersey.AuditEvent;
+import org.graylog2.indexer.messages.DeadLetterJournal;
+import org.graylog2.indexer.messages.DeadLetterReplayJob;
+import org.graylog2.rest.models.system.indexer.responses.DeadLetterJournalSummary;
+import org.graylog2.shared.rest.resources.RestResource;
+import org.graylog2.shared.security.RestPermissions;
+import org.graylog2.system.jobs.SystemJobConcurrencyException;
+import org.graylog2.system.jobs.SystemJobManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.ForbiddenException;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+@RequiresAuthentication
+@Api(value = "Indexer/Failures/DeadLetters", description = "Documents which couldn't be indexed")
+@Path("/system/indexer/failures/dead_letters")
+public class DeadLettersResource extends RestResource {
+    private static final Logger LOG = LoggerFactory.getLogger(DeadLettersResource.class);
+
+    private final DeadLetterJournal deadLetterJournal;
+    private final DeadLetterReplayJob.Factory replayJobFactory;
+    private final SystemJobManager systemJobManager;
+
+    @Inject
+    public DeadLettersResource(DeadLetterJournal deadLetterJournal,
+                               DeadLetterReplayJob.Factory replayJobFactory,
+                               SystemJobManager systemJobManager) {
+        this.deadLetterJournal = deadLetterJournal;
+        this.replayJobFactory = replayJobFactory;
+        this.systemJobManager = systemJobManager;
+    }
+
+    @GET
+    @Timed
+    @ApiOperation(value = "Get the state of the dead letter journal.")
+    @RequiresPermissions(RestPermissions.INDICES_FAILURES)
+    @Produces(MediaType.APPLICATION_JSON)
+    public DeadLetterJournalSummary show() {
+        return DeadLetterJournalSummary.create(deadLetterJournal.isEnabled(),
+                deadLetterJournal.getUncommittedCount(),
+                deadLetterJournal.getSize());
+    }
+
+    @POST
+    @Timed
+    @Path("/replay")
+    @RequiresPermissions({RestPermissions.INDICES_FAILURES, RestPermissions.SYSTEMJOBS_CREATE})
+    @ApiOperation(value = "Index the documents in the dead letter journal again.",
+            notes = "This triggers a system job which indexes the dead letters into the current write index " +
+                    "of their index sets, rate limited by dead_letter_replay_rate.")
+    @ApiResponses(value = {
+            @ApiResponse(code = 202, message = "Replay system job triggered."),
+            @ApiResponse(code = 400, message = "The dead letter journal is disabled."),
+            @ApiResponse(code = 403, message = "A replay is already running.")
+    })
+    @Produces(MediaType.APPLICATION_JSON)
+    @AuditEvent(type = AuditEventTypes.ES_DEAD_LETTER_REPLAY_JOB)
+    public Response replay() {
+        if (!deadLetterJournal.isEnabled()) {
+            throw new BadRequestException("The dead letter journal is disabled.");
+        }
+
+        try {
+            systemJobManager.submit(replayJobFactory.create());
+        } catch (SystemJobConcurrencyException e) {
+            final String errorMsg = "Concurrency level of this job reached: " + e.getMessage();
+            LOG.error(errorMsg, e);
+            throw new ForbiddenException(errorMsg);
+        }
+
+        return Response.accepted().build();
+    }
+}
@@ -301,10 +301,15 @@ public class ExtractorsResource extends RestResource {
 
     private ExtractorSummary toSummary(Extractor extractor) {
         final ExtractorMetrics metrics = ExtractorMetrics.create(
-                MetricUtils.buildTimerMap(metricRegistry.getTimers().get(extractor.getCompleteTimerName())),
-                MetricUtils.buildTimerMap(metricRegistry.getTimers().get(extractor.getConditionTimerName())),
-                MetricUtils.buildTimerMap(metricRegistry.getTimers().get(extractor.getExecutionTimerName())),
-                MetricUtils.buildTimerMap(metricRegistry.getTimers().get(extractor.getConverterTimerName())),
+                // The timers are sampled, so the counts and rates are taken from the meters counting every run
+                MetricUtils.buildTimerMap(metricRegistry.getTimers().get(extractor.getCompleteTimerName()),
+                        metricRegistry.getMeters().get(extractor.getCompleteMeterName())),
+                MetricUtils.buildTimerMap(metricRegistry.getTimers().get(extractor.getConditionTimerName()),
+                        metricRegistry.getMeters().get(extractor.getConditionMeterName())),
+                MetricUtils.buildTimerMap(metricRegistry.getTimers().get(extractor.getExecutionTimerName()),
+                        metricRegistry.getMeters().get(extractor.getExecutionMeterName())),
+                MetricUtils.buildTimerMap(metricRegistry.getTimers().get(extractor.getConverterTimerName()),
+                        metricRegistry.getMeters().get(extractor.getConverterMeterName())),
                 metricRegistry.getCounters().get(extractor.getConditionHitsCounterName()).getCount(),
                 metricRegistry.getCounters().get(extractor.getConditionMissesCounterName()).getCount());
 
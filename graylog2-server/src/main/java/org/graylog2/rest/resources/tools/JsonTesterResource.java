@@ -29,6 +29,7 @@ import org.graylog2.rest.models.tools.requests.JsonTestRequest;
 import org.graylog2.rest.models.tools.responses.JsonTesterResponse;
 import org.graylog2.shared.rest.resources.RestResource;
 
+import javax.annotation.Nullable;
 import javax.validation.Valid;
 import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
@@ -57,8 +58,11 @@ public class JsonTesterResource extends RestResource {
                                   @QueryParam("replace_key_whitespace") boolean replaceKeyWhitespace,
                                   @QueryParam("key_whitespace_replacement") String keyWhitespaceReplacement,
                                   @QueryParam("key_prefix") String keyPrefix,
-                                  @QueryParam("kv_separator") @NotEmpty String kvSeparator) {
-        return testJsonExtractor(string, flatten, listSeparator, keySeparator, kvSeparator, replaceKeyWhitespace, keyWhitespaceReplacement, keyPrefix);
+                                  @QueryParam("kv_separator") @NotEmpty String kvSeparator,
+                                  @QueryParam("include_keys") String includeKeys,
+                                  @QueryParam("exclude_keys") String excludeKeys,
+                                  @QueryParam("max_depth") Integer maxDepth) {
+        return testJsonExtractor(string, flatten, listSeparator, keySeparator, kvSeparator, replaceKeyWhitespace, keyWhitespaceReplacement, keyPrefix, includeKeys, excludeKeys, maxDepth);
     }
 
     @POST
@@ -66,7 +70,7 @@ public class JsonTesterResource extends RestResource {
     @Consumes(MediaType.APPLICATION_JSON)
     @NoAuditEvent("only used for testing JSON extractor")
     public JsonTesterResponse post(@Valid @NotNull JsonTestRequest r) {
-        return testJsonExtractor(r.string(), r.flatten(), r.listSeparator(), r.keySeparator(), r.kvSeparator(), r.replaceKeyWhitespace(), r.keyWhitespaceReplacement(), r.keyPrefix());
+        return testJsonExtractor(r.string(), r.flatten(), r.listSeparator(), r.keySeparator(), r.kvSeparator(), r.replaceKeyWhitespace(), r.keyWhitespaceReplacement(), r.keyPrefix(), r.includeKeys(), r.excludeKeys(), r.maxDepth());
     }
 
     private JsonTesterResponse testJsonExtractor(String testString,
@@ -76,16 +80,28 @@ public class JsonTesterResource extends RestResource {
                                                  String kvSeparator,
                                                  boolean replaceKeyWhitespace,
                                                  String keyWhitespaceReplacement,
-                                                 String keyPrefix) {
-        final Map<String, Object> config = ImmutableMap.<String, Object>builder()
+                                                 String keyPrefix,
+                                                 @Nullable String includeKeys,
+                                                 @Nullable String excludeKeys,
+                                                 @Nullable Integer maxDepth) {
+        final ImmutableMap.Builder<String, Object> configBuilder = ImmutableMap.<String, Object>builder()
                 .put("flatten", flatten)
                 .put("list_separator", listSeparator)
                 .put("key_separator", keySeparator)
                 .put("kv_separator", kvSeparator)
                 .put("replace_key_whitespace", replaceKeyWhitespace)
                 .put("key_whitespace_replacement", keyWhitespaceReplacement)
-                .put("key_prefix", keyPrefix)
-                .build();
+                .put("key_prefix", keyPrefix);
+        if (includeKeys != null) {
+            configBuilder.put("include_keys", includeKeys);
+        }
+        if (excludeKeys != null) {
+            configBuilder.put("exclude_keys", excludeKeys);
+        }
+        if (maxDepth != null) {
+            configBuilder.put("max_depth", maxDepth);
+        }
+        final Map<String, Object> config = configBuilder.build();
         final JsonExtractor extractor;
         try {
             extractor = new JsonExtractor(
@@ -0,0 +1,137 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.buffers;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.lmax.disruptor.AlertException;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.WaitStrategy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Waits by spinning first, then yielding and finally parking until a producer signals new events.
+ * <p>
+ * The time spent spinning and yielding follows the observed wait times: if events usually arrive within a few
+ * microseconds, consumers spin long enough to catch them without a context switch. If consumers usually wait
+ * longer, spinning would only burn CPU, so they park almost immediately. Parked consumers are only signalled
+ * if one of them actually waits, so producers don't take a lock for every event under load.
+ */
+public class AdaptiveWaitStrategy implements WaitStrategy {
+    @VisibleForTesting
+    static final long MIN_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(1L);
+    @VisibleForTesting
+    static final long MAX_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100L);
+    // Waits are capped before averaging, so a single quiet period doesn't disable spinning for the next burst
+    private static final long MAX_SAMPLE_NANOS = 10 * MAX_SPIN_NANOS;
+    // Parked consumers check again after this time, even without a signal
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1L);
+    // Weight of a new sample in the moving average is 1/2^3
+    private static final int AVERAGE_SHIFT = 3;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition processorNotifyCondition = lock.newCondition();
+    private final AtomicBoolean signalNeeded = new AtomicBoolean(false);
+    // Updated by all consumers without synchronization, losing an update now and then doesn't matter
+    private volatile long averageWaitNanos = MAX_SPIN_NANOS;
+
+    @Override
+    public long waitFor(long sequence, Sequence cursor, Sequence dependentSequence, SequenceBarrier barrier)
+            throws AlertException, InterruptedException {
+        long availableSequence = dependentSequence.get();
+        if (availableSequence >= sequence) {
+            return availableSequence;
+        }
+
+        final long start = System.nanoTime();
+        final long spinNanos = getSpinNanos();
+        final long yieldNanos = 2 * spinNanos;
+        while ((availableSequence = dependentSequence.get()) < sequence) {
+            barrier.checkAlert();
+
+            final long waited = System.nanoTime() - start;
+            if (waited < spinNanos) {
+                continue;
+            }
+            // Only producers signal parked consumers, so consumers waiting for another handler must not park
+            if (waited < yieldNanos || cursor.get() >= sequence) {
+                Thread.yield();
+            } else {
+                park(sequence, cursor, barrier);
+            }
+        }
+
+        recordWait(System.nanoTime() - start);
+        return availableSequence;
+    }
+
+    private void park(long sequence, Sequence cursor, SequenceBarrier barrier) throws AlertException, InterruptedException {
+        lock.lock();
+        try {
+            // Set before checking the cursor, so a producer publishing after the check will signal us
+            signalNeeded.set(true);
+            if (cursor.get() < sequence) {
+                barrier.checkAlert();
+                processorNotifyCondition.awaitNanos(MAX_PARK_NANOS);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+        if (signalNeeded.getAndSet(false)) {
+            lock.lock();
+            try {
+                processorNotifyCondition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @VisibleForTesting
+    void recordWait(long waitNanos) {
+        final long average = averageWaitNanos;
+        averageWaitNanos = average + ((Math.min(waitNanos, MAX_SAMPLE_NANOS) - average) >> AVERAGE_SHIFT);
+    }
+
+    /**
+     * @return the moving average of the time consumers had to wait for new events, in nanoseconds
+     */
+    public long getAverageWaitNanos() {
+        return averageWaitNanos;
+    }
+
+    /**
+     * @return the time consumers currently spin before yielding, in nanoseconds
+     */
+    public long getSpinNanos() {
+        final long average = averageWaitNanos;
+        if (average > MAX_SPIN_NANOS) {
+            // Events rarely arrive while spinning, park early
+            return MIN_SPIN_NANOS;
+        }
+        return Math.max(MIN_SPIN_NANOS, Math.min(2 * average, MAX_SPIN_NANOS));
+    }
+}
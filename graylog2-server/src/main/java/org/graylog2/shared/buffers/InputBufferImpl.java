@@ -22,6 +22,7 @@ import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.WaitStrategy;
 import com.lmax.disruptor.dsl.Disruptor;
 import com.lmax.disruptor.dsl.ProducerType;
 import org.graylog2.plugin.BaseConfiguration;
@@ -53,12 +54,13 @@ public class InputBufferImpl implements InputBuffer {
                            Provider<DirectMessageHandler> directMessageHandlerProvider,
                            Provider<RawMessageEncoderHandler> rawMessageEncoderHandlerProvider,
                            Provider<JournallingMessageHandler> spoolingMessageHandlerProvider) {
+        final WaitStrategy waitStrategy = configuration.getInputBufferWaitStrategy();
         final Disruptor<RawMessageEvent> disruptor = new Disruptor<>(
                 RawMessageEvent.FACTORY,
                 configuration.getInputBufferRingSize(),
                 threadFactory(metricRegistry),
                 ProducerType.MULTI,
-                configuration.getInputBufferWaitStrategy());
+                new InstrumentedWaitStrategy(waitStrategy, metricRegistry, name(InputBufferImpl.class, "waitStrategy")));
         disruptor.setDefaultExceptionHandler(new LoggingExceptionHandler(LOG));
 
         final int numberOfHandlers = configuration.getInputbufferProcessors();
@@ -93,7 +95,7 @@ public class InputBufferImpl implements InputBuffer {
         LOG.info("Initialized {} with ring size <{}> and wait strategy <{}>, running {} parallel message handlers.",
                 this.getClass().getSimpleName(),
                 configuration.getInputBufferRingSize(),
-                configuration.getInputBufferWaitStrategy().getClass().getSimpleName(),
+                waitStrategy.getClass().getSimpleName(),
                 numberOfHandlers);
     }
 
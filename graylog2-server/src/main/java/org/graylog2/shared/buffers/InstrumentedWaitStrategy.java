@@ -0,0 +1,78 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.buffers;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.lmax.disruptor.AlertException;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.SequenceBarrier;
+import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.WaitStrategy;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.graylog2.shared.metrics.MetricUtils.safelyRegister;
+
+/**
+ * Records how long the consumers of a ring buffer wait for new events ({@code idleNanos}) and how long they spend
+ * handling them ({@code busyNanos}), summed up over all consumer threads.
+ */
+public class InstrumentedWaitStrategy implements WaitStrategy {
+    private final WaitStrategy delegate;
+    private final Counter idleNanos;
+    private final Counter busyNanos;
+    private final ThreadLocal<long[]> lastReturn = ThreadLocal.withInitial(() -> new long[1]);
+
+    public InstrumentedWaitStrategy(WaitStrategy delegate, MetricRegistry metricRegistry, String metricPrefix) {
+        this.delegate = delegate;
+        this.idleNanos = metricRegistry.counter(name(metricPrefix, "idleNanos"));
+        this.busyNanos = metricRegistry.counter(name(metricPrefix, "busyNanos"));
+
+        if (delegate instanceof AdaptiveWaitStrategy) {
+            final AdaptiveWaitStrategy adaptiveWaitStrategy = (AdaptiveWaitStrategy) delegate;
+            safelyRegister(metricRegistry, name(metricPrefix, "spinNanos"), (Gauge<Long>) adaptiveWaitStrategy::getSpinNanos);
+            safelyRegister(metricRegistry, name(metricPrefix, "averageWaitNanos"), (Gauge<Long>) adaptiveWaitStrategy::getAverageWaitNanos);
+        }
+    }
+
+    @Override
+    public long waitFor(long sequence, Sequence cursor, Sequence dependentSequence, SequenceBarrier barrier)
+            throws AlertException, InterruptedException, TimeoutException {
+        final long[] last = lastReturn.get();
+        final long start = System.nanoTime();
+        if (last[0] != 0L) {
+            busyNanos.inc(start - last[0]);
+        }
+        try {
+            return delegate.waitFor(sequence, cursor, dependentSequence, barrier);
+        } finally {
+            final long end = System.nanoTime();
+            idleNanos.inc(end - start);
+            last[0] = end;
+        }
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+        delegate.signalAllWhenBlocking();
+    }
+
+    public WaitStrategy getDelegate() {
+        return delegate;
+    }
+}
@@ -31,6 +31,7 @@ import org.graylog2.plugin.buffers.MessageEvent;
 import org.graylog2.plugin.journal.RawMessage;
 import org.graylog2.shared.buffers.processors.DecodingProcessor;
 import org.graylog2.shared.buffers.processors.ProcessBufferProcessor;
+import org.graylog2.shared.system.affinity.ThreadAffinity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,8 +56,10 @@ public class ProcessBuffer extends Buffer {
                          DecodingProcessor.Factory decodingProcessorFactory,
                          ProcessBufferProcessor.Factory bufferProcessorFactory,
                          @Named("processbuffer_processors") int processorCount,
+                         @Named("processbuffer_decoders") int decoderCount,
                          @Named("ring_size") int ringSize,
-                         @Named("processor_wait_strategy") String waitStrategyName) {
+                         @Named("processor_wait_strategy") String waitStrategyName,
+                         ThreadAffinity threadAffinity) {
         this.ringBufferSize = ringSize;
         this.incomingMessages = metricRegistry.meter(name(ProcessBuffer.class, "incomingMessages"));
 
@@ -74,26 +77,41 @@ public class ProcessBuffer extends Buffer {
         final Disruptor<MessageEvent> disruptor = new Disruptor<>(
                 MessageEvent.EVENT_FACTORY,
                 ringBufferSize,
-                threadFactory(metricRegistry),
+                threadFactory(metricRegistry, threadAffinity),
                 ProducerType.MULTI,
-                waitStrategy
+                new InstrumentedWaitStrategy(waitStrategy, metricRegistry, name(ProcessBuffer.class, "waitStrategy"))
         );
         disruptor.setDefaultExceptionHandler(new LoggingExceptionHandler(LOG));
 
-        LOG.info("Initialized ProcessBuffer with ring size <{}> and wait strategy <{}>.",
-                ringBufferSize, waitStrategy.getClass().getSimpleName());
+        LOG.info("Initialized ProcessBuffer with ring size <{}>, wait strategy <{}> and {}.",
+                ringBufferSize, waitStrategy.getClass().getSimpleName(),
+                decoderCount > 0 ? decoderCount + " decoders" : "inline decoding");
 
         final ProcessBufferProcessor[] processors = new ProcessBufferProcessor[processorCount];
-        for (int i = 0; i < processorCount; i++) {
-            processors[i] = bufferProcessorFactory.create(decodingProcessorFactory.create(decodeTime, parseTime));
+        if (decoderCount > 0) {
+            // Decode in a separate stage so codecs and message processing can be sized independently. The processors
+            // only see an event after it has been decoded, the decoded messages are passed on in the same event.
+            final DecodingProcessor[] decoders = new DecodingProcessor[decoderCount];
+            for (int i = 0; i < decoderCount; i++) {
+                decoders[i] = decodingProcessorFactory.create(decodeTime, parseTime);
+            }
+            for (int i = 0; i < processorCount; i++) {
+                processors[i] = bufferProcessorFactory.create(null);
+            }
+            disruptor.handleEventsWithWorkerPool(decoders).thenHandleEventsWithWorkerPool(processors);
+        } else {
+            for (int i = 0; i < processorCount; i++) {
+                processors[i] = bufferProcessorFactory.create(decodingProcessorFactory.create(decodeTime, parseTime));
+            }
+            disruptor.handleEventsWithWorkerPool(processors);
         }
-        disruptor.handleEventsWithWorkerPool(processors);
 
         ringBuffer = disruptor.start();
     }
 
-    private ThreadFactory threadFactory(MetricRegistry metricRegistry) {
-        final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("processbufferprocessor-%d").build();
+    private ThreadFactory threadFactory(MetricRegistry metricRegistry, ThreadAffinity threadAffinity) {
+        final ThreadFactory threadFactory = threadAffinity.threadFactory(
+                new ThreadFactoryBuilder().setNameFormat("processbufferprocessor-%d").build());
         return new InstrumentedThreadFactory(
                 threadFactory,
                 metricRegistry,
@@ -27,8 +27,10 @@ import com.google.common.net.InetAddresses;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
 import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.WorkHandler;
 import org.graylog2.plugin.GlobalMetricNames;
 import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageTrace;
 import org.graylog2.plugin.ResolvableInetSocketAddress;
 import org.graylog2.plugin.ServerStatus;
 import org.graylog2.plugin.buffers.MessageEvent;
@@ -36,6 +38,7 @@ import org.graylog2.plugin.inputs.codecs.Codec;
 import org.graylog2.plugin.inputs.codecs.MultiMessageCodec;
 import org.graylog2.plugin.journal.RawMessage;
 import org.graylog2.shared.journal.Journal;
+import org.graylog2.shared.metrics.MessageTracer;
 import org.graylog2.shared.utilities.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,7 +53,7 @@ import java.util.concurrent.TimeUnit;
 
 import static com.codahale.metrics.MetricRegistry.name;
 
-public class DecodingProcessor implements EventHandler<MessageEvent> {
+public class DecodingProcessor implements EventHandler<MessageEvent>, WorkHandler<MessageEvent> {
     private static final Logger LOG = LoggerFactory.getLogger(DecodingProcessor.class);
 
     private final Timer decodeTime;
@@ -65,18 +68,21 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
     private final MetricRegistry metricRegistry;
     private final Journal journal;
     private final Timer parseTime;
+    private final MessageTracer messageTracer;
 
     @AssistedInject
     public DecodingProcessor(Map<String, Codec.Factory<? extends Codec>> codecFactory,
                              final ServerStatus serverStatus,
                              final MetricRegistry metricRegistry,
                              final Journal journal,
+                             final MessageTracer messageTracer,
                              @Assisted("decodeTime") Timer decodeTime,
                              @Assisted("parseTime") Timer parseTime) {
         this.codecFactory = codecFactory;
         this.serverStatus = serverStatus;
         this.metricRegistry = metricRegistry;
         this.journal = journal;
+        this.messageTracer = messageTracer;
 
         // these metrics are global to all processors, thus they are passed in directly to avoid relying on the class name
         this.parseTime = parseTime;
@@ -84,6 +90,15 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
         decodedTrafficCounter = metricRegistry.counter(GlobalMetricNames.DECODED_TRAFFIC);
     }
 
+    /**
+     * Decodes the raw message of the given event when running in the decode stage of the {@link
+     * org.graylog2.shared.buffers.ProcessBuffer ProcessBuffer}.
+     */
+    @Override
+    public void onEvent(MessageEvent event) throws Exception {
+        onEvent(event, 0L, false);
+    }
+
     @Override
     public void onEvent(MessageEvent event, long sequence, boolean endOfBatch) throws Exception {
         final Timer.Context context = decodeTime.time();
@@ -113,6 +128,7 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
     }
 
     private void processMessage(final MessageEvent event) throws ExecutionException {
+        final long start = System.nanoTime();
         final RawMessage raw = event.getRaw();
 
         // for backwards compatibility: the last source node should contain the input we use.
@@ -130,12 +146,20 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
         if (factory == null) {
             LOG.warn("Couldn't find factory for codec <{}>, skipping message {} on input <{}>.",
                     raw.getCodecName(), raw, inputIdOnCurrentNode);
+            journal.markJournalOffsetCommitted(raw.getJournalOffset());
             return;
         }
 
         final Codec codec = factory.create(raw.getCodecConfig());
         final String baseMetricName = name(codec.getClass(), inputIdOnCurrentNode);
+        try {
+            decodeMessage(event, raw, codec, inputIdOnCurrentNode, baseMetricName, start);
+        } finally {
+            metricRegistry.timer(name(baseMetricName, "decodeTime")).update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
 
+    private void decodeMessage(MessageEvent event, RawMessage raw, Codec codec, String inputIdOnCurrentNode, String baseMetricName, long start) {
         Message message = null;
         Collection<Message> messages = null;
 
@@ -158,12 +182,12 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
         }
 
         if (message != null) {
-            event.setMessage(postProcessMessage(raw, codec, inputIdOnCurrentNode, baseMetricName, message, decodeTime));
+            event.setMessage(postProcessMessage(raw, codec, inputIdOnCurrentNode, baseMetricName, message, decodeTime, start));
         } else if (messages != null && !messages.isEmpty()) {
             final List<Message> processedMessages = Lists.newArrayListWithCapacity(messages.size());
 
             for (final Message msg : messages) {
-                final Message processedMessage = postProcessMessage(raw, codec, inputIdOnCurrentNode, baseMetricName, msg, decodeTime);
+                final Message processedMessage = postProcessMessage(raw, codec, inputIdOnCurrentNode, baseMetricName, msg, decodeTime, start);
 
                 if (processedMessage != null) {
                     processedMessages.add(processedMessage);
@@ -172,10 +196,15 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
 
             event.setMessages(processedMessages);
         }
+
+        if (event.getMessage() == null && (event.getMessages() == null || event.getMessages().isEmpty())) {
+            // Nothing will be written for this raw message, mark it as processed to avoid keeping it in the journal.
+            journal.markJournalOffsetCommitted(raw.getJournalOffset());
+        }
     }
 
     @Nullable
-    private Message postProcessMessage(RawMessage raw, Codec codec, String inputIdOnCurrentNode, String baseMetricName, Message message, long decodeTime) {
+    private Message postProcessMessage(RawMessage raw, Codec codec, String inputIdOnCurrentNode, String baseMetricName, Message message, long decodeTime, long start) {
         if (message == null) {
             metricRegistry.meter(name(baseMetricName, "failures")).mark();
             return null;
@@ -190,6 +219,7 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
         }
 
         message.setJournalOffset(raw.getJournalOffset());
+        message.setJournalOffsetHolder(raw.getJournalOffsetHolder());
         message.recordTiming(serverStatus, "parse", decodeTime);
         metricRegistry.timer(name(baseMetricName, "parseTime")).update(decodeTime, TimeUnit.NANOSECONDS);
 
@@ -253,6 +283,13 @@ public class DecodingProcessor implements EventHandler<MessageEvent> {
         // message to the journal.
         message.setReceiveTime(raw.getTimestamp());
 
+        final MessageTrace trace = messageTracer.startTrace(raw.getTimestamp(), start);
+        if (trace != null) {
+            trace.mark(MessageTrace.Stage.JOURNAL, start);
+            trace.mark(MessageTrace.Stage.DECODE);
+            message.setTrace(trace);
+        }
+
         metricRegistry.meter(name(baseMetricName, "processedMessages")).mark();
         decodedTrafficCounter.inc(message.getSize());
         return message;
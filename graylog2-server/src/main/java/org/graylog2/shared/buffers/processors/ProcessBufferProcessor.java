@@ -27,17 +27,20 @@ import de.huxhorn.sulky.ulid.ULID;
 import org.graylog2.buffers.OutputBuffer;
 import org.graylog2.messageprocessors.OrderedMessageProcessors;
 import org.graylog2.plugin.Message;
+import org.graylog2.plugin.MessageTrace;
 import org.graylog2.plugin.Messages;
 import org.graylog2.plugin.Tools;
 import org.graylog2.plugin.buffers.MessageEvent;
 import org.graylog2.plugin.messageprocessors.MessageProcessor;
 import org.graylog2.plugin.streams.DefaultStream;
 import org.graylog2.plugin.streams.Stream;
+import org.graylog2.shared.journal.Journal;
 import org.graylog2.system.processing.ProcessingStatusRecorder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.util.Collection;
 
 import static com.codahale.metrics.MetricRegistry.name;
@@ -52,8 +55,10 @@ public class ProcessBufferProcessor implements WorkHandler<MessageEvent> {
     private final OrderedMessageProcessors orderedMessageProcessors;
 
     private final OutputBuffer outputBuffer;
+    private final Journal journal;
     private final ProcessingStatusRecorder processingStatusRecorder;
     private final ULID ulid;
+    @Nullable
     private final DecodingProcessor decodingProcessor;
     private final Provider<Stream> defaultStreamProvider;
 
@@ -61,12 +66,14 @@ public class ProcessBufferProcessor implements WorkHandler<MessageEvent> {
     public ProcessBufferProcessor(MetricRegistry metricRegistry,
                                   OrderedMessageProcessors orderedMessageProcessors,
                                   OutputBuffer outputBuffer,
+                                  Journal journal,
                                   ProcessingStatusRecorder processingStatusRecorder,
                                   ULID ulid,
-                                  @Assisted DecodingProcessor decodingProcessor,
+                                  @Assisted @Nullable DecodingProcessor decodingProcessor,
                                   @DefaultStream Provider<Stream> defaultStreamProvider) {
         this.orderedMessageProcessors = orderedMessageProcessors;
         this.outputBuffer = outputBuffer;
+        this.journal = journal;
         this.processingStatusRecorder = processingStatusRecorder;
         this.ulid = ulid;
         this.decodingProcessor = decodingProcessor;
@@ -83,7 +90,10 @@ public class ProcessBufferProcessor implements WorkHandler<MessageEvent> {
             // Decode the RawMessage to a Message object. The DecodingProcessor used to be a separate handler in the
             // ProcessBuffer. Due to performance problems discovered during 1.0.0 testing, we decided to move this here.
             // TODO The DecodingProcessor does not need to be a EventHandler. We decided to do it like this to keep the change as small as possible for 1.0.0.
-            decodingProcessor.onEvent(event, 0L, false);
+            // If "processbuffer_decoders" is set, the messages have already been decoded by a separate stage of the ProcessBuffer.
+            if (decodingProcessor != null) {
+                decodingProcessor.onEvent(event, 0L, false);
+            }
 
             if (event.isSingleMessage()) {
                 dispatchMessage(event.getMessage());
@@ -113,6 +123,8 @@ public class ProcessBufferProcessor implements WorkHandler<MessageEvent> {
             LOG.debug("Finished processing message <{}>. Writing to output buffer.", msg.getId());
         } catch (Exception e) {
             LOG.warn("Unable to process message <{}>: {}", msg.getId(), e);
+            // The message won't reach any output which could commit it, so it must not hold back the journal
+            journal.markJournalOffsetCommitted(msg.getJournalOffset());
         } finally {
             outgoingMessages.mark();
         }
@@ -122,8 +134,13 @@ public class ProcessBufferProcessor implements WorkHandler<MessageEvent> {
         msg.addStream(defaultStreamProvider.get());
         Messages messages = msg;
 
+        final MessageTrace trace = msg.getTrace();
         for (MessageProcessor messageProcessor : orderedMessageProcessors) {
+            final long start = trace == null ? 0L : System.nanoTime();
             messages = messageProcessor.process(messages);
+            if (trace != null) {
+                trace.recordProcessor(messageProcessor.getClass().getSimpleName(), System.nanoTime() - start);
+            }
         }
         for (Message message : messages) {
             // Set the message ID once all message processors have finished
@@ -133,12 +150,17 @@ public class ProcessBufferProcessor implements WorkHandler<MessageEvent> {
             // The processing time should only be set once all message processors have finished
             message.setProcessingTime(Tools.nowUTC());
             processingStatusRecorder.updatePostProcessingReceiveTime(message.getReceiveTime());
+            message.markTraceStage(MessageTrace.Stage.PROCESS);
 
             outputBuffer.insertBlocking(message);
         }
     }
 
     public interface Factory {
-        ProcessBufferProcessor create(DecodingProcessor decodingProcessor);
+        /**
+         * @param decodingProcessor the processor decoding the raw messages, {@code null} if they are decoded by a
+         *                          separate stage
+         */
+        ProcessBufferProcessor create(@Nullable DecodingProcessor decodingProcessor);
     }
 }
@@ -16,6 +16,9 @@
  */
 package org.graylog2.shared.journal;
 
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 public interface Journal {
@@ -29,6 +32,15 @@ public interface Journal {
 
     void markJournalOffsetCommitted(long offset);
 
+    /**
+     * Marks a batch of messages as committed. By default only the highest offset of the batch is committed.
+     */
+    default void markJournalOffsetsCommitted(Collection<Long> offsets) {
+        if (!offsets.isEmpty()) {
+            markJournalOffsetCommitted(Collections.max(offsets));
+        }
+    }
+
     class Entry {
         private final byte[] idBytes;
         private final byte[] messageBytes;
@@ -51,10 +63,20 @@ public interface Journal {
 
         private final byte[] payload;
         private final long offset;
+        private final Object offsetHolder;
 
         public JournalReadEntry(byte[] payload, long offset) {
+            this(payload, offset, null);
+        }
+
+        /**
+         * @param offsetHolder an opaque object which has to stay reachable as long as the message read from this
+         *                     entry is in flight, see {@link JournalCommitTracker#hold(long)}
+         */
+        public JournalReadEntry(byte[] payload, long offset, @Nullable Object offsetHolder) {
             this.payload = payload;
             this.offset = offset;
+            this.offsetHolder = offsetHolder;
         }
 
         public long getOffset() {
@@ -64,5 +86,10 @@ public interface Journal {
         public byte[] getPayload() {
             return payload;
         }
+
+        @Nullable
+        public Object getOffsetHolder() {
+            return offsetHolder;
+        }
     }
 }
@@ -0,0 +1,293 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.journal;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongConsumer;
+
+/**
+ * Tracks completed journal offsets which may arrive out of order and only commits the contiguous low watermark.
+ * <p>
+ * Outputs and processors finish messages in a different order than they were read from the journal. Committing the
+ * highest finished offset would skip messages which are still in flight, so they would be lost if the server is
+ * stopped before they have been written. This tracker remembers every completed offset in a segmented bitmap and only
+ * commits an offset once all offsets before it have been completed as well.
+ * <p>
+ * An offset which is never completed would block the watermark forever, so {@link #skipStalledGap()} gives up on a
+ * gap which hasn't been closed within the configured timeout. Messages can legitimately stay in flight for longer than
+ * that, e. g. while an output is unavailable, so every offset which is read gets a holder object (see
+ * {@link #hold(long)}) which the messages read from it reference. The tracker only keeps a weak reference to the
+ * holder, so an offset is only skipped once no message which could still complete it is reachable anymore.
+ */
+public class JournalCommitTracker {
+    private static final Logger LOG = LoggerFactory.getLogger(JournalCommitTracker.class);
+
+    private static final int SEGMENT_BITS = 12;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final long NO_GAP = Long.MIN_VALUE;
+
+    // Every segment covers SEGMENT_SIZE consecutive offsets with one bit per offset
+    private final ConcurrentMap<Long, AtomicLongArray> segments = new ConcurrentHashMap<>();
+    // The holders of all offsets which have been read but not completed yet
+    private final ConcurrentMap<Long, WeakReference<Object>> holders = new ConcurrentHashMap<>();
+    private final AtomicBoolean advancing = new AtomicBoolean();
+    private final AtomicLong skippedOffsets = new AtomicLong();
+    private final LongConsumer committer;
+    private final long gapTimeoutNanos;
+
+    // The lowest offset which hasn't been completed yet, everything below has been committed
+    private final AtomicLong watermark;
+    private final AtomicLong highestCompleted;
+    private volatile long gapSince = NO_GAP;
+
+    /**
+     * @param nextOffset      the first offset which will be read from the journal
+     * @param gapTimeoutNanos the time after which a gap in the completed offsets is skipped
+     * @param committer       receives the offset up to which all messages have been completed
+     */
+    public JournalCommitTracker(long nextOffset, long gapTimeoutNanos, LongConsumer committer) {
+        this.watermark = new AtomicLong(nextOffset);
+        this.highestCompleted = new AtomicLong(nextOffset - 1);
+        this.gapTimeoutNanos = gapTimeoutNanos;
+        this.committer = committer;
+    }
+
+    /**
+     * Registers an offset which has been read from the journal. The offset is never skipped as long as the returned
+     * holder is reachable, so every message read from the offset has to reference it until it has been completed.
+     *
+     * @return the holder of the offset
+     */
+    public Object hold(long offset) {
+        final Object holder = new Object();
+        holders.put(offset, new WeakReference<>(holder));
+        return holder;
+    }
+
+    /**
+     * Marks the message with the given offset as completed. Offsets can be completed in any order and more than once.
+     */
+    public void markCompleted(long offset) {
+        holders.remove(offset);
+        if (offset < watermark.get()) {
+            return;
+        }
+        final AtomicLongArray segment = segments.computeIfAbsent(offset >>> SEGMENT_BITS, k -> new AtomicLongArray(SEGMENT_SIZE / Long.SIZE));
+        final int bit = (int) (offset & SEGMENT_MASK);
+        final long mask = 1L << bit;
+        segment.getAndAccumulate(bit / Long.SIZE, mask, (word, m) -> word | m);
+        highestCompleted.accumulateAndGet(offset, Math::max);
+
+        if (offset == watermark.get()) {
+            tryAdvance();
+        }
+    }
+
+    /**
+     * Marks the offsets in the given range as completed because they will never be read, e. g. because the segments
+     * containing them have been deleted by the journal retention.
+     *
+     * @param from the first skipped offset (inclusive)
+     * @param to   the end of the skipped range (exclusive)
+     */
+    public void markSkipped(long from, long to) {
+        if (from == watermark.get() && advancing.compareAndSet(false, true)) {
+            // Nothing is in flight below the skipped range, so the watermark can just be moved
+            try {
+                if (watermark.compareAndSet(from, to)) {
+                    highestCompleted.accumulateAndGet(to - 1, Math::max);
+                    segments.keySet().removeIf(index -> index < to >>> SEGMENT_BITS);
+                    holders.keySet().removeIf(offset -> offset < to);
+                    committer.accept(to - 1);
+                    return;
+                }
+            } finally {
+                advancing.set(false);
+            }
+        }
+        for (long offset = Math.max(from, watermark.get()); offset < to; offset++) {
+            markCompleted(offset);
+        }
+    }
+
+    /**
+     * Skips the oldest gap in the completed offsets if it hasn't been closed within the gap timeout. Only the offsets
+     * at the start of the gap whose holders are no longer reachable are skipped, an offset which is still held stops
+     * the skip because its message can still be completed. This is meant to be called periodically.
+     *
+     * @return the number of skipped offsets
+     */
+    public long skipStalledGap() {
+        if (highestCompleted.get() <= watermark.get()) {
+            gapSince = NO_GAP;
+            return 0L;
+        }
+        final long now = System.nanoTime();
+        if (gapSince == NO_GAP) {
+            gapSince = now;
+        }
+        if (now - gapSince < gapTimeoutNanos || !advancing.compareAndSet(false, true)) {
+            return 0L;
+        }
+        final long skipped;
+        try {
+            final long from = watermark.get();
+            final long to = firstHeld(from, nextCompleted(from));
+            skipped = to - from;
+            if (skipped <= 0L) {
+                return 0L;
+            }
+            LOG.warn("Journal offsets [{}, {}) have not been completed within {} ms and none of their messages are in flight anymore, committing them anyway.",
+                    from, to, gapTimeoutNanos / 1_000_000L);
+            skippedOffsets.addAndGet(skipped);
+            holders.keySet().removeIf(offset -> offset < to);
+            watermark.set(to);
+            advance(from);
+        } finally {
+            advancing.set(false);
+        }
+        tryAdvance();
+        return skipped;
+    }
+
+    /**
+     * @return the lowest offset which hasn't been completed yet
+     */
+    public long getWatermark() {
+        return watermark.get();
+    }
+
+    /**
+     * @return the number of completed offsets beyond the watermark, which can't be committed yet
+     */
+    public long getGap() {
+        return Math.max(0L, highestCompleted.get() - watermark.get());
+    }
+
+    /**
+     * @return the total number of offsets which have been committed without being completed
+     */
+    public long getSkippedOffsets() {
+        return skippedOffsets.get();
+    }
+
+    @VisibleForTesting
+    int getSegmentCount() {
+        return segments.size();
+    }
+
+    @VisibleForTesting
+    int getHeldOffsetCount() {
+        return holders.size();
+    }
+
+    private void tryAdvance() {
+        while (advancing.compareAndSet(false, true)) {
+            try {
+                advance(watermark.get());
+            } finally {
+                advancing.set(false);
+            }
+            // Another thread might have completed the new watermark while we were still holding the flag
+            if (!isCompleted(watermark.get())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Moves the watermark past all consecutive completed offsets. Must only be called while holding the flag.
+     *
+     * @param previous the watermark before the caller started to modify it
+     */
+    private void advance(long previous) {
+        long next = watermark.get();
+        AtomicLongArray segment;
+        while ((segment = segments.get(next >>> SEGMENT_BITS)) != null) {
+            final int bit = (int) (next & SEGMENT_MASK);
+            final int shift = bit % Long.SIZE;
+            // The shifted in zero bits are ones after negation, so this never counts past the end of the word
+            final int completed = Long.numberOfTrailingZeros(~(segment.get(bit / Long.SIZE) >>> shift));
+            next += completed;
+            if (completed < Long.SIZE - shift) {
+                break;
+            }
+        }
+        if (next == previous) {
+            return;
+        }
+        watermark.set(next);
+        gapSince = NO_GAP;
+        if (next >>> SEGMENT_BITS != previous >>> SEGMENT_BITS) {
+            final long currentSegment = next >>> SEGMENT_BITS;
+            segments.keySet().removeIf(index -> index < currentSegment);
+        }
+        committer.accept(next - 1);
+    }
+
+    private boolean isCompleted(long offset) {
+        final AtomicLongArray segment = segments.get(offset >>> SEGMENT_BITS);
+        if (segment == null) {
+            return false;
+        }
+        final int bit = (int) (offset & SEGMENT_MASK);
+        return (segment.get(bit / Long.SIZE) & (1L << bit)) != 0;
+    }
+
+    /**
+     * @return the first offset in the given range whose holder is still reachable, or {@code to} if there is none
+     */
+    private long firstHeld(long from, long to) {
+        for (long offset = from; offset < to; offset++) {
+            final WeakReference<Object> holder = holders.get(offset);
+            if (holder != null && holder.get() != null) {
+                return offset;
+            }
+        }
+        return to;
+    }
+
+    private long nextCompleted(long from) {
+        final long highest = highestCompleted.get();
+        long offset = from;
+        while (offset < highest) {
+            final AtomicLongArray segment = segments.get(offset >>> SEGMENT_BITS);
+            if (segment == null) {
+                offset = ((offset >>> SEGMENT_BITS) + 1) << SEGMENT_BITS;
+                continue;
+            }
+            final int bit = (int) (offset & SEGMENT_MASK);
+            final int shift = bit % Long.SIZE;
+            final long word = segment.get(bit / Long.SIZE) >>> shift;
+            if (word != 0L) {
+                return offset + Long.numberOfTrailingZeros(word);
+            }
+            offset += Long.SIZE - shift;
+        }
+        return highest;
+    }
+}
@@ -162,6 +162,7 @@ public class JournalReader extends AbstractExecutionThreadService {
                         journal.markJournalOffsetCommitted(encodedRawMessage.getOffset());
                         continue;
                     }
+                    rawMessage.setJournalOffsetHolder(encodedRawMessage.getOffsetHolder());
 
                     processBuffer.insertBlocking(rawMessage);
                 }
@@ -74,6 +74,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
@@ -121,6 +122,8 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
     private static final String METRIC_NAME_UNFLUSHED_MESSAGES = "unflushedMessages";
     private static final String METRIC_NAME_RECOVERY_POINT = "recoveryPoint";
     private static final String METRIC_NAME_LAST_FLUSH_TIME = "lastFlushTime";
+    private static final String GAUGE_COMMIT_GAP = "commitGap";
+    private static final String GAUGE_COMMIT_SKIPPED_OFFSETS = "commitSkippedOffsets";
 
     // This exists so we can use JodaTime's millis provider in tests.
     // Kafka really only cares about the milliseconds() method in here.
@@ -163,6 +166,7 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
     private final long maxSegmentSize;
     private final int maxMessageSize;
     private final String metricPrefix;
+    private final JournalCommitTracker commitTracker;
 
     private long nextReadOffset = 0L;
     private ScheduledFuture<?> checkpointFlusherFuture;
@@ -185,6 +189,25 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
                         @Named("message_journal_flush_interval") long flushInterval,
                         @Named("message_journal_flush_age") Duration flushAge,
                         @Named("lb_throttle_threshold_percentage") int throttleThresholdPercentage,
+                        @Named("message_journal_commit_low_watermark") boolean commitLowWatermark,
+                        @Named("message_journal_commit_gap_timeout") Duration commitGapTimeout,
+                        MetricRegistry metricRegistry,
+                        ServerStatus serverStatus) {
+
+        this(journalDirectory, scheduler, segmentSize, segmentAge, retentionSize, retentionAge, flushInterval, flushAge,
+             throttleThresholdPercentage, commitLowWatermark, commitGapTimeout, metricRegistry, serverStatus,
+             KafkaJournal.class.getName());
+    }
+
+    public KafkaJournal(Path journalDirectory,
+                        ScheduledExecutorService scheduler,
+                        Size segmentSize,
+                        Duration segmentAge,
+                        Size retentionSize,
+                        Duration retentionAge,
+                        long flushInterval,
+                        Duration flushAge,
+                        int throttleThresholdPercentage,
                         MetricRegistry metricRegistry,
                         ServerStatus serverStatus) {
 
@@ -208,6 +231,32 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
                         MetricRegistry metricRegistry,
                         ServerStatus serverStatus,
                         String metricPrefix) {
+        this(journalDirectory, scheduler, segmentSize, segmentAge, retentionSize, retentionAge, flushInterval, flushAge,
+             throttleThresholdPercentage, false, Duration.ZERO, metricRegistry, serverStatus, metricPrefix);
+    }
+
+    /**
+     * @param throttleThresholdPercentage The journal utilization percent at which throttling will be triggered.
+     *                                    Expressed as an integer between 1 and 100. The value -1 disables throttling.
+     * @param commitLowWatermark          Only commit offsets up to which all messages have been completed, instead of
+     *                                    the highest completed offset.
+     * @param commitGapTimeout            The time after which offsets which have not been completed are committed
+     *                                    anyway, if {@code commitLowWatermark} is enabled.
+     */
+    public KafkaJournal(Path journalDirectory,
+                        ScheduledExecutorService scheduler,
+                        Size segmentSize,
+                        Duration segmentAge,
+                        Size retentionSize,
+                        Duration retentionAge,
+                        long flushInterval,
+                        Duration flushAge,
+                        int throttleThresholdPercentage,
+                        boolean commitLowWatermark,
+                        Duration commitGapTimeout,
+                        MetricRegistry metricRegistry,
+                        ServerStatus serverStatus,
+                        String metricPrefix) {
 
         // Only check throttleThresholdPercentage range if throttling is not disabled;
         if (throttleThresholdPercentage == THRESHOLD_THROTTLING_DISABLED) {
@@ -310,6 +359,13 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
             final AccessDeniedException accessDeniedException = new AccessDeniedException(committedReadOffsetFile.getAbsolutePath(), null, e.getMessage());
             throw new RuntimeException(accessDeniedException);
         }
+        if (commitLowWatermark) {
+            commitTracker = new JournalCommitTracker(nextReadOffset, MILLISECONDS.toNanos(commitGapTimeout.getMillis()),
+                    this::commitOffset);
+            registerCommitTrackerGauges(metricRegistry);
+        } else {
+            commitTracker = null;
+        }
         try {
             final BrokerState brokerState = new BrokerState();
             brokerState.newState(RunningAsBroker.state());
@@ -396,6 +452,15 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
         return timer;
     }
 
+    private void registerCommitTrackerGauges(MetricRegistry metricRegistry) {
+        try {
+            metricRegistry.register(name(metricPrefix, GAUGE_COMMIT_GAP), (Gauge<Long>) () -> commitTracker.getGap());
+            metricRegistry.register(name(metricPrefix, GAUGE_COMMIT_SKIPPED_OFFSETS), (Gauge<Long>) () -> commitTracker.getSkippedOffsets());
+        } catch (IllegalArgumentException ignored) {
+            // already registered, we'll ignore that.
+        }
+    }
+
     private void registerUncommittedGauge(MetricRegistry metricRegistry, String name) {
         try {
             metricRegistry.register(name,
@@ -429,6 +494,8 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
         this.metricRegistry.remove(name(metricPrefix, METRIC_NAME_RECOVERY_POINT));
         this.metricRegistry.remove(name(metricPrefix, METRIC_NAME_LAST_FLUSH_TIME));
         this.metricRegistry.remove(getOldestSegmentMetricName());
+        this.metricRegistry.remove(name(metricPrefix, GAUGE_COMMIT_GAP));
+        this.metricRegistry.remove(name(metricPrefix, GAUGE_COMMIT_SKIPPED_OFFSETS));
     }
 
     private String getOldestSegmentMetricName() {
@@ -578,6 +645,10 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
                         "Read offset {} before start of log at {}, starting to read from the beginning of the journal.",
                         readOffset,
                         logStartOffset);
+                if (commitTracker != null) {
+                    // The deleted messages will never be read, so they must not hold back the committed offset
+                    commitTracker.markSkipped(readOffset, logStartOffset);
+                }
                 readOffset = logStartOffset;
                 maxOffset = readOffset + maximumCount;
             }
@@ -606,7 +677,8 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
                     LOG.trace("Read message {} contains {}", bytesToHex(keyBytes), bytesToHex(payloadBytes));
                 }
                 totalBytes += payloadBytes.length;
-                messages.add(new JournalReadEntry(payloadBytes, messageAndOffset.offset()));
+                final long offset = messageAndOffset.offset();
+                messages.add(new JournalReadEntry(payloadBytes, offset, commitTracker == null ? null : commitTracker.hold(offset)));
                 // remember where to read from
                 nextReadOffset = messageAndOffset.nextOffset();
             }
@@ -647,11 +719,33 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
     /**
      * Upon fully processing, and persistently storing, a batch of messages, the system should mark the message with the
      * highest offset as committed. A background job will write the last position to disk periodically.
+     * <p>
+     * If {@code message_journal_commit_low_watermark} is enabled, only the offset up to which all messages have been
+     * completed is committed, so every message has to be marked individually.
      *
      * @param offset the offset of the latest committed message
      */
     @Override
     public void markJournalOffsetCommitted(long offset) {
+        if (commitTracker != null) {
+            commitTracker.markCompleted(offset);
+        } else {
+            commitOffset(offset);
+        }
+    }
+
+    @Override
+    public void markJournalOffsetsCommitted(Collection<Long> offsets) {
+        if (commitTracker != null) {
+            for (final long offset : offsets) {
+                commitTracker.markCompleted(offset);
+            }
+        } else if (!offsets.isEmpty()) {
+            commitOffset(Collections.max(offsets));
+        }
+    }
+
+    private void commitOffset(long offset) {
         long prev;
         // the caller will not care about offsets going backwards, so we need to make sure we don't backtrack
         int i = 0;
@@ -845,6 +939,9 @@ public class KafkaJournal extends AbstractIdleService implements Journal {
     public class OffsetFileFlusher implements Runnable {
         @Override
         public void run() {
+            if (commitTracker != null) {
+                commitTracker.skipStalledGap();
+            }
             // Do not write the file if committedOffset has never been updated.
             if (committedOffset.get() == DEFAULT_COMMITTED_OFFSET) {
                 return;
@@ -0,0 +1,134 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.metrics;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import org.graylog2.plugin.MessageTrace;
+import org.joda.time.DateTime;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Samples messages for tracing and aggregates their {@link MessageTrace traces} into latency distributions.
+ * <p>
+ * If {@code message_trace_sample_rate} is set to N, one in N decoded messages gets a {@link MessageTrace}. The time
+ * spent in every stage, every message processor and the whole pipeline is recorded in microseconds in a
+ * {@link HdrHistogram} which is registered in the metric registry.
+ */
+@Singleton
+public class MessageTracer implements MessageTrace.Recorder {
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1L);
+    private static final int SIGNIFICANT_VALUE_DIGITS = 2;
+
+    private final int sampleRate;
+    private final MetricRegistry metricRegistry;
+    private final Map<MessageTrace.Stage, Histogram> stageHistograms = new EnumMap<>(MessageTrace.Stage.class);
+    private final Histogram totalHistogram;
+    private final ConcurrentMap<String, Histogram> processorHistograms = new ConcurrentHashMap<>();
+
+    @Inject
+    public MessageTracer(@Named("message_trace_sample_rate") int sampleRate, MetricRegistry metricRegistry) {
+        this.sampleRate = sampleRate;
+        this.metricRegistry = metricRegistry;
+
+        for (final MessageTrace.Stage stage : MessageTrace.Stage.values()) {
+            // Nothing precedes the first stage, so there is nothing to record for it
+            if (stage.ordinal() > 0) {
+                stageHistograms.put(stage, register(name(MessageTracer.class, "stage", stage.getName())));
+            }
+        }
+        this.totalHistogram = register(name(MessageTracer.class, "total"));
+    }
+
+    private Histogram register(String metricName) {
+        return MetricUtils.getOrRegister(metricRegistry, metricName,
+                new HdrHistogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_VALUE_DIGITS));
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Decides whether the message which is being decoded is traced.
+     *
+     * @param receiveTime the time the input received the message
+     * @param nowNanos    the current {@link System#nanoTime()}
+     * @return a new trace, or {@code null} if the message hasn't been sampled
+     */
+    @Nullable
+    public MessageTrace startTrace(DateTime receiveTime, long nowNanos) {
+        if (sampleRate <= 0 || ThreadLocalRandom.current().nextInt(sampleRate) != 0) {
+            return null;
+        }
+        // The receive time comes from the wall clock of the input, convert it to the monotonic clock of the trace
+        final long sinceReceiveMillis = Math.max(0L, System.currentTimeMillis() - receiveTime.getMillis());
+        return new MessageTrace(this, nowNanos - TimeUnit.MILLISECONDS.toNanos(sinceReceiveMillis));
+    }
+
+    @Override
+    public void recordStage(MessageTrace.Stage stage, long elapsedNanos) {
+        final Histogram histogram = stageHistograms.get(stage);
+        if (histogram != null) {
+            histogram.update(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+        }
+    }
+
+    @Override
+    public void recordTotal(long elapsedNanos) {
+        totalHistogram.update(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+    }
+
+    @Override
+    public void recordProcessor(String processorName, long elapsedNanos) {
+        processorHistograms.computeIfAbsent(processorName, n -> register(name(MessageTracer.class, "processor", n)))
+                .update(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+    }
+
+    /**
+     * @return the latency distributions of the stages in pipeline order, followed by the total latency
+     */
+    public Map<String, Histogram> getStageHistograms() {
+        final ImmutableMap.Builder<String, Histogram> histograms = ImmutableMap.builder();
+        for (final Map.Entry<MessageTrace.Stage, Histogram> entry : stageHistograms.entrySet()) {
+            histograms.put(entry.getKey().getName(), entry.getValue());
+        }
+        return histograms.put("total", totalHistogram).build();
+    }
+
+    /**
+     * @return the latency distributions of the message processors by their name
+     */
+    public SortedMap<String, Histogram> getProcessorHistograms() {
+        return new TreeMap<>(processorHistograms);
+    }
+}
@@ -20,6 +20,7 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metered;
 import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricFilter;
 import com.codahale.metrics.MetricRegistry;
@@ -99,9 +100,20 @@ public class MetricUtils {
     }
 
     public static TimerRateMetricsResponse buildTimerMap(Timer t) {
+        return buildTimerMap(t, t);
+    }
+
+    /**
+     * Builds the response of a timer whose count and rates are taken from another metric, e. g. because the timer
+     * only measures a sample of all events.
+     *
+     * @param t     the timer measuring the durations
+     * @param rates the metric counting all events
+     */
+    public static TimerRateMetricsResponse buildTimerMap(Timer t, Metered rates) {
         final TimerRateMetricsResponse result = new TimerRateMetricsResponse();
 
-        if (t == null) {
+        if (t == null || rates == null) {
             return result;
         }
 
@@ -115,11 +127,11 @@ public class MetricUtils {
         time.stdDev = TimeUnit.MICROSECONDS.convert((long) t.getSnapshot().getStdDev(), TimeUnit.NANOSECONDS);
 
         final RateMetricsResponse rate = new RateMetricsResponse();
-        rate.oneMinute = t.getOneMinuteRate();
-        rate.fiveMinute = t.getFiveMinuteRate();
-        rate.fifteenMinute = t.getFifteenMinuteRate();
-        rate.total = t.getCount();
-        rate.mean = t.getMeanRate();
+        rate.oneMinute = rates.getOneMinuteRate();
+        rate.fiveMinute = rates.getFiveMinuteRate();
+        rate.fifteenMinute = rates.getFifteenMinuteRate();
+        rate.total = rates.getCount();
+        rate.mean = rates.getMeanRate();
 
         result.time = time;
         result.rate = rate;
@@ -0,0 +1,71 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.rest.resources.system;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.annotation.Timed;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import org.apache.shiro.authz.annotation.RequiresAuthentication;
+import org.apache.shiro.authz.annotation.RequiresPermissions;
+import org.graylog2.rest.models.system.responses.MessageTracingResponse;
+import org.graylog2.shared.metrics.MessageTracer;
+import org.graylog2.shared.metrics.MetricUtils;
+import org.graylog2.shared.rest.resources.RestResource;
+import org.graylog2.shared.security.RestPermissions;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RequiresAuthentication
+@Api(value = "System/Tracing", description = "Latencies of sampled messages in the processing pipeline")
+@Path("/system/tracing")
+public class MessageTracingResource extends RestResource {
+    private final MessageTracer messageTracer;
+
+    @Inject
+    public MessageTracingResource(MessageTracer messageTracer) {
+        this.messageTracer = messageTracer;
+    }
+
+    @GET
+    @Timed
+    @RequiresPermissions(RestPermissions.METRICS_READALL)
+    @ApiOperation(value = "Latency distributions of the pipeline stages and message processors",
+            notes = "Only available if message_trace_sample_rate is set.")
+    @Produces(MediaType.APPLICATION_JSON)
+    public MessageTracingResponse latencies() {
+        return MessageTracingResponse.create(
+                messageTracer.getSampleRate(),
+                "microseconds",
+                buildHistogramMaps(messageTracer.getStageHistograms()),
+                buildHistogramMaps(messageTracer.getProcessorHistograms()));
+    }
+
+    private Map<String, Map<String, Object>> buildHistogramMaps(Map<String, Histogram> histograms) {
+        final Map<String, Map<String, Object>> result = new LinkedHashMap<>(histograms.size());
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            result.put(entry.getKey(), MetricUtils.buildHistogramMap(entry.getValue()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.system.affinity;
+
+import com.google.common.base.Splitter;
+
+import java.util.BitSet;
+import java.util.Objects;
+
+/**
+ * A set of CPUs in the Linux "cpulist" format, e.g. {@code 0-3,8,10-11}.
+ */
+public final class CpuSet {
+    private static final Splitter RANGE_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+    private final BitSet cpus;
+
+    private CpuSet(BitSet cpus) {
+        this.cpus = cpus;
+    }
+
+    /**
+     * @param cpuList the CPUs in the Linux "cpulist" format
+     * @throws IllegalArgumentException if the list is invalid or empty
+     */
+    public static CpuSet parse(String cpuList) {
+        final BitSet cpus = new BitSet();
+        for (String range : RANGE_SPLITTER.split(cpuList)) {
+            final int dash = range.indexOf('-');
+            try {
+                final int from = Integer.parseInt(dash < 0 ? range : range.substring(0, dash).trim());
+                final int to = dash < 0 ? from : Integer.parseInt(range.substring(dash + 1).trim());
+                if (from < 0 || to < from) {
+                    throw new IllegalArgumentException("Invalid CPU range <" + range + "> in CPU list <" + cpuList + ">");
+                }
+                cpus.set(from, to + 1);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid CPU range <" + range + "> in CPU list <" + cpuList + ">", e);
+            }
+        }
+        if (cpus.isEmpty()) {
+            throw new IllegalArgumentException("Empty CPU list <" + cpuList + ">");
+        }
+        return new CpuSet(cpus);
+    }
+
+    public boolean contains(int cpu) {
+        return cpus.get(cpu);
+    }
+
+    public int size() {
+        return cpus.cardinality();
+    }
+
+    /**
+     * @return the CPUs as a {@code cpu_set_t} bit mask
+     */
+    long[] toMask() {
+        return cpus.toLongArray();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return cpus.equals(((CpuSet) o).cpus);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(cpus);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        for (int from = cpus.nextSetBit(0); from >= 0; from = cpus.nextSetBit(from)) {
+            final int to = cpus.nextClearBit(from) - 1;
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(from);
+            if (to > from) {
+                sb.append('-').append(to);
+            }
+            from = to + 1;
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.system.affinity;
+
+import com.sun.jna.LastErrorException;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Platform;
+
+/**
+ * Binding for {@code sched_setaffinity(2)} of the C library.
+ */
+final class LinuxAffinity {
+    private static final boolean AVAILABLE = register();
+
+    private LinuxAffinity() {
+    }
+
+    private static boolean register() {
+        if (!Platform.isLinux()) {
+            return false;
+        }
+        try {
+            Native.register(Platform.C_LIBRARY_NAME);
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    private static native int sched_setaffinity(int pid, NativeLong cpusetsize, long[] mask) throws LastErrorException;
+
+    static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * Restricts the calling thread to the given CPUs.
+     *
+     * @throws LastErrorException if the affinity couldn't be set, e.g. because none of the CPUs exist
+     */
+    static void setAffinity(CpuSet cpuSet) {
+        final long[] mask = cpuSet.toMask();
+        // A pid of 0 means the calling thread
+        sched_setaffinity(0, new NativeLong((long) mask.length * Long.BYTES), mask);
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.system.affinity;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Pins buffer processor and input threads to the CPU sets configured in {@code thread_affinity_cpu_sets}.
+ * <p>
+ * Usually every CPU set contains the CPUs of one NUMA node. The threads of every {@link #threadFactory(ThreadFactory)
+ * thread factory} are distributed round-robin over the CPU sets, so the n-th thread of each stage runs on the same
+ * node and every stage is spread evenly over all nodes.
+ */
+@Singleton
+public class ThreadAffinity {
+    private static final Logger LOG = LoggerFactory.getLogger(ThreadAffinity.class);
+    private static final String AUTO = "auto";
+    private static final Path NUMA_NODES = Paths.get("/sys/devices/system/node");
+    private static final Splitter SET_SPLITTER = Splitter.on(';').trimResults().omitEmptyStrings();
+
+    private final List<CpuSet> cpuSets;
+    private final Consumer<CpuSet> pinner;
+
+    @Inject
+    public ThreadAffinity(@Named("thread_affinity_cpu_sets") String cpuSets) {
+        // Only load the native library if thread affinity has been configured
+        this(parseCpuSets(cpuSets, NUMA_NODES), cpuSets.trim().isEmpty() ? null : nativePinner());
+    }
+
+    /**
+     * @param pinner restricts the calling thread to the given CPU set, {@code null} disables thread affinity
+     */
+    @VisibleForTesting
+    ThreadAffinity(List<CpuSet> cpuSets, @Nullable Consumer<CpuSet> pinner) {
+        this.cpuSets = cpuSets;
+        this.pinner = pinner;
+        if (isEnabled()) {
+            LOG.info("Pinning buffer processor and input threads to CPU sets {}", cpuSets);
+        }
+    }
+
+    @Nullable
+    private static Consumer<CpuSet> nativePinner() {
+        if (!LinuxAffinity.isAvailable()) {
+            LOG.warn("Thread affinity is only supported on Linux, ignoring thread_affinity_cpu_sets.");
+            return null;
+        }
+        return LinuxAffinity::setAffinity;
+    }
+
+    public static ThreadAffinity disabled() {
+        return new ThreadAffinity(ImmutableList.of(), null);
+    }
+
+    public boolean isEnabled() {
+        return !cpuSets.isEmpty() && pinner != null;
+    }
+
+    public List<CpuSet> getCpuSets() {
+        return cpuSets;
+    }
+
+    /**
+     * @return a thread factory whose threads pin themselves to the next CPU set when they start, or the given
+     * thread factory if thread affinity is disabled
+     */
+    public ThreadFactory threadFactory(ThreadFactory threadFactory) {
+        if (!isEnabled()) {
+            return threadFactory;
+        }
+
+        final AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            final CpuSet cpuSet = cpuSets.get(Math.floorMod(counter.getAndIncrement(), cpuSets.size()));
+            return threadFactory.newThread(() -> {
+                pin(cpuSet);
+                runnable.run();
+            });
+        };
+    }
+
+    private void pin(CpuSet cpuSet) {
+        try {
+            pinner.accept(cpuSet);
+            LOG.debug("Pinned thread <{}> to CPUs {}", Thread.currentThread().getName(), cpuSet);
+        } catch (Exception e) {
+            LOG.warn("Couldn't pin thread <{}> to CPUs {}: {}", Thread.currentThread().getName(), cpuSet, e.getMessage());
+        }
+    }
+
+    @VisibleForTesting
+    static List<CpuSet> parseCpuSets(String cpuSets, Path numaNodes) {
+        if (AUTO.equalsIgnoreCase(cpuSets.trim())) {
+            return readNumaNodes(numaNodes);
+        }
+
+        final ImmutableList.Builder<CpuSet> builder = ImmutableList.builder();
+        for (String cpuSet : SET_SPLITTER.split(cpuSets)) {
+            builder.add(CpuSet.parse(cpuSet));
+        }
+        return builder.build();
+    }
+
+    private static List<CpuSet> readNumaNodes(Path numaNodes) {
+        // Sorted by node number, so node10 comes after node9
+        final TreeMap<Integer, CpuSet> nodes = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(numaNodes, "node[0-9]*")) {
+            for (Path node : stream) {
+                final Path cpuList = node.resolve("cpulist");
+                if (!Files.isReadable(cpuList)) {
+                    continue;
+                }
+                final String cpus = new String(Files.readAllBytes(cpuList), StandardCharsets.US_ASCII).trim();
+                // Memory-only nodes don't have any CPUs
+                if (!cpus.isEmpty()) {
+                    nodes.put(Integer.parseInt(node.getFileName().toString().substring(4)), CpuSet.parse(cpus));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Couldn't read NUMA nodes from <{}>, thread affinity is disabled: {}", numaNodes, e.getMessage());
+            return ImmutableList.of();
+        }
+        return ImmutableList.copyOf(nodes.values());
+    }
+}
@@ -23,18 +23,15 @@ import org.joda.time.DateTime;
 
 import javax.inject.Singleton;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
-
-import static org.joda.time.DateTimeZone.UTC;
 
 /**
  * This {@link ProcessingStatusRecorder} implementation should only be used for tests.
  */
 @Singleton
 public class InMemoryProcessingStatusRecorder implements ProcessingStatusRecorder {
-    private final AtomicReference<DateTime> ingestReceiveTime = new AtomicReference<>(new DateTime(0L, UTC));
-    private final AtomicReference<DateTime> postProcessingReceiveTime = new AtomicReference<>(new DateTime(0L, UTC));
-    private final AtomicReference<DateTime> postIndexReceiveTime = new AtomicReference<>(new DateTime(0L, UTC));
+    private final LatestTimestamp ingestReceiveTime = new LatestTimestamp();
+    private final LatestTimestamp postProcessingReceiveTime = new LatestTimestamp();
+    private final LatestTimestamp postIndexReceiveTime = new LatestTimestamp();
 
     @VisibleForTesting
     final AtomicLong uncommittedMessages = new AtomicLong(0);
@@ -80,26 +77,16 @@ public class InMemoryProcessingStatusRecorder implements ProcessingStatusRecorde
 
     @Override
     public void updateIngestReceiveTime(DateTime newTimestamp) {
-        if (newTimestamp != null) {
-            ingestReceiveTime.updateAndGet(timestamp -> latestTimestamp(timestamp, newTimestamp));
-        }
+        ingestReceiveTime.update(newTimestamp);
     }
 
     @Override
     public void updatePostProcessingReceiveTime(DateTime newTimestamp) {
-        if (newTimestamp != null) {
-            postProcessingReceiveTime.updateAndGet(timestamp -> latestTimestamp(timestamp, newTimestamp));
-        }
+        postProcessingReceiveTime.update(newTimestamp);
     }
 
     @Override
     public void updatePostIndexingReceiveTime(DateTime newTimestamp) {
-        if (newTimestamp != null) {
-            postIndexReceiveTime.updateAndGet(timestamp -> latestTimestamp(timestamp, newTimestamp));
-        }
-    }
-
-    private DateTime latestTimestamp(DateTime timestamp, DateTime newTimestamp) {
-        return newTimestamp.isAfter(timestamp) ? newTimestamp : timestamp;
+        postIndexReceiveTime.update(newTimestamp);
     }
 }
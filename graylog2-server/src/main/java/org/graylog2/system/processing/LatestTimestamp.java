@@ -0,0 +1,46 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.system.processing;
+
+import org.joda.time.DateTime;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.atomic.LongAccumulator;
+
+import static org.joda.time.DateTimeZone.UTC;
+
+/**
+ * Keeps the latest of the timestamps recorded by many threads.
+ * <p>
+ * The timestamps are stored as epoch milliseconds in a {@link LongAccumulator}, which spreads contended updates over
+ * per-thread cells and combines them when the value is read. Updating the timestamp for every message therefore
+ * neither allocates objects nor makes all processing threads compete for the same memory location. Updates with a
+ * timestamp which isn't newer than the current value of the cell don't write at all.
+ */
+class LatestTimestamp {
+    private final LongAccumulator millis = new LongAccumulator(Math::max, 0L);
+
+    void update(@Nullable DateTime timestamp) {
+        if (timestamp != null) {
+            millis.accumulate(timestamp.getMillis());
+        }
+    }
+
+    DateTime get() {
+        return new DateTime(millis.get(), UTC);
+    }
+}
@@ -37,23 +37,20 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicReference;
 
 import static com.codahale.metrics.MetricRegistry.name;
-import static org.joda.time.DateTimeZone.UTC;
 
 @Singleton
 public class MongoDBProcessingStatusRecorderService extends AbstractIdleService implements ProcessingStatusRecorder {
     private static final Logger LOG = LoggerFactory.getLogger(MongoDBProcessingStatusRecorderService.class);
 
-    private static final DateTime DEFAULT_RECEIVE_TIME = new DateTime(0L, UTC);
     private static final String READ_MESSAGES_METRIC = name(KafkaJournal.class.getName(), KafkaJournal.METER_READ_MESSAGES);
     private static final String WRITTEN_MESSAGES_METRIC = name(KafkaJournal.class.getName(), KafkaJournal.METER_WRITTEN_MESSAGES);
     private static final String UNCOMMITTED_MESSAGES_METRIC = name(KafkaJournal.class.getName(), KafkaJournal.GAUGE_UNCOMMITTED_MESSAGES);
 
-    private final AtomicReference<DateTime> ingestReceiveTime = new AtomicReference<>(DEFAULT_RECEIVE_TIME);
-    private final AtomicReference<DateTime> postProcessingReceiveTime = new AtomicReference<>(DEFAULT_RECEIVE_TIME);
-    private final AtomicReference<DateTime> postIndexReceiveTime = new AtomicReference<>(DEFAULT_RECEIVE_TIME);
+    private final LatestTimestamp ingestReceiveTime = new LatestTimestamp();
+    private final LatestTimestamp postProcessingReceiveTime = new LatestTimestamp();
+    private final LatestTimestamp postIndexReceiveTime = new LatestTimestamp();
 
     private final DBProcessingStatusService dbService;
     private final EventBus eventBus;
@@ -95,7 +92,7 @@ public class MongoDBProcessingStatusRecorderService extends AbstractIdleService
             dbService.get().ifPresent(processingStatus -> {
                 LOG.debug("Loaded persisted processing status: {}", processingStatus);
 
-                // Do not directly set the timestamps on the atomic reference to make sure latestTimestamp() is used.
+                // Do not directly set the timestamps to make sure only newer timestamps are used.
                 // The timestamps could already have been updated once the database call is finished.
                 final ProcessingStatusDto.ReceiveTimes receiveTimes = processingStatus.receiveTimes();
                 updateIngestReceiveTime(receiveTimes.ingest());
@@ -186,26 +183,16 @@ public class MongoDBProcessingStatusRecorderService extends AbstractIdleService
 
     @Override
     public void updateIngestReceiveTime(DateTime newTimestamp) {
-        if (newTimestamp != null) {
-            ingestReceiveTime.updateAndGet(timestamp -> latestTimestamp(timestamp, newTimestamp));
-        }
+        ingestReceiveTime.update(newTimestamp);
     }
 
     @Override
     public void updatePostProcessingReceiveTime(DateTime newTimestamp) {
-        if (newTimestamp != null) {
-            postProcessingReceiveTime.updateAndGet(timestamp -> latestTimestamp(timestamp, newTimestamp));
-        }
+        postProcessingReceiveTime.update(newTimestamp);
     }
 
     @Override
     public void updatePostIndexingReceiveTime(DateTime newTimestamp) {
-        if (newTimestamp != null) {
-            postIndexReceiveTime.updateAndGet(timestamp -> latestTimestamp(timestamp, newTimestamp));
-        }
-    }
-
-    private DateTime latestTimestamp(DateTime timestamp, DateTime newTimestamp) {
-        return newTimestamp.isAfter(timestamp) ? newTimestamp : timestamp;
+        postIndexReceiveTime.update(newTimestamp);
     }
 }
@@ -21,6 +21,7 @@ import com.google.common.collect.ImmutableMap;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
 import io.netty.handler.logging.LoggingHandler;
 import org.graylog2.jackson.TypeReferences;
 import org.graylog2.shared.bindings.providers.ObjectMapperProvider;
@@ -32,6 +33,7 @@ import java.util.Map;
 import java.util.zip.Deflater;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class BeatsFrameDecoderTest {
     private final ObjectMapper objectMapper = new ObjectMapperProvider().get();
@@ -177,6 +179,18 @@ public class BeatsFrameDecoderTest {
                 .containsEntry("answer", 42);
     }
 
+    @Test
+    public void decodeCompressedFrameExceedingMaxDecompressedSizeFails() throws Exception {
+        final byte[] jsonBytes = "{\"answer\": 42}".getBytes(StandardCharsets.UTF_8);
+        final ByteBuf buffer = buildCompressedFrame(buildJsonFrame(jsonBytes, 0).array(), 3);
+        final EmbeddedChannel channel = new EmbeddedChannel(new BeatsFrameDecoder(8L));
+
+        assertThatThrownBy(() -> channel.writeInbound(buffer))
+                .isInstanceOf(DecoderException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat((Object) channel.readInbound()).isNull();
+    }
+
     private ByteBuf buildCompressedFrame(byte[] payload, int compressionLevel) {
         final Deflater deflater = new Deflater(compressionLevel);
         deflater.setInput(payload);
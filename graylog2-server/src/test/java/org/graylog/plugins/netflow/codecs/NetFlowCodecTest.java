@@ -19,6 +19,7 @@ package org.graylog.plugins.netflow.codecs;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Resources;
 import org.graylog.plugins.netflow.flows.FlowException;
+import org.graylog.plugins.netflow.templates.InMemoryNetFlowV9TemplateStore;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.configuration.Configuration;
 import org.graylog2.plugin.journal.RawMessage;
@@ -45,11 +46,13 @@ public class NetFlowCodecTest {
 
     private NetFlowCodec codec;
     private NetflowV9CodecAggregator codecAggregator;
+    private InMemoryNetFlowV9TemplateStore templateStore;
 
     @Before
     public void setUp() throws Exception {
-        codecAggregator = new NetflowV9CodecAggregator();
-        codec = new NetFlowCodec(Configuration.EMPTY_CONFIGURATION, codecAggregator);
+        templateStore = new InMemoryNetFlowV9TemplateStore();
+        codecAggregator = new NetflowV9CodecAggregator(templateStore);
+        codec = new NetFlowCodec(Configuration.EMPTY_CONFIGURATION, codecAggregator, templateStore);
     }
 
     @Test
@@ -62,7 +65,7 @@ public class NetFlowCodecTest {
         final Configuration configuration = new Configuration(configMap);
 
         assertThatExceptionOfType(FileNotFoundException.class)
-                .isThrownBy(() -> new NetFlowCodec(configuration, codecAggregator))
+                .isThrownBy(() -> new NetFlowCodec(configuration, codecAggregator, templateStore))
                 .withMessageEndingWith("(No such file or directory)");
     }
 
@@ -72,7 +75,7 @@ public class NetFlowCodecTest {
                 NetFlowCodec.CK_NETFLOW9_DEFINITION_PATH, "");
         final Configuration configuration = new Configuration(configMap);
 
-        assertThat(new NetFlowCodec(configuration, codecAggregator)).isNotNull();
+        assertThat(new NetFlowCodec(configuration, codecAggregator, templateStore)).isNotNull();
     }
 
     @Test
@@ -81,7 +84,7 @@ public class NetFlowCodecTest {
                 NetFlowCodec.CK_NETFLOW9_DEFINITION_PATH, "   ");
         final Configuration configuration = new Configuration(configMap);
 
-        assertThat(new NetFlowCodec(configuration, codecAggregator)).isNotNull();
+        assertThat(new NetFlowCodec(configuration, codecAggregator, templateStore)).isNotNull();
     }
 
     @Test
@@ -94,7 +97,7 @@ public class NetFlowCodecTest {
         final Configuration configuration = new Configuration(configMap);
 
         assertThatIllegalArgumentException()
-                .isThrownBy(() -> new NetFlowCodec(configuration, codecAggregator))
+                .isThrownBy(() -> new NetFlowCodec(configuration, codecAggregator, templateStore))
                 .withMessageMatching("Unable to parse NetFlow 9 definitions");
     }
 
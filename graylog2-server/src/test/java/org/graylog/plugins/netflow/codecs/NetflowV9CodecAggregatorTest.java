@@ -28,6 +28,7 @@ import io.pkts.Pcap;
 import io.pkts.packet.UDPPacket;
 import io.pkts.protocol.Protocol;
 import org.graylog.plugins.netflow.flows.NetFlowFormatter;
+import org.graylog.plugins.netflow.templates.InMemoryNetFlowV9TemplateStore;
 import org.graylog.plugins.netflow.v9.NetFlowV9BaseRecord;
 import org.graylog.plugins.netflow.v9.NetFlowV9FieldDef;
 import org.graylog.plugins.netflow.v9.NetFlowV9FieldType;
@@ -60,6 +61,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 public class NetflowV9CodecAggregatorTest {
     private NetFlowCodec codec;
     private NetflowV9CodecAggregator codecAggregator;
+    private InMemoryNetFlowV9TemplateStore templateStore;
     private InetSocketAddress source;
 
     public NetflowV9CodecAggregatorTest() throws IOException {
@@ -68,10 +70,11 @@ public class NetflowV9CodecAggregatorTest {
 
     @Before
     public void setup() throws IOException {
-        // the codec aggregator creates "netflowv9"ish packets, that always contain all necessary templates before the data flows
+        // the codec aggregator creates "netflowv9"ish packets, that always reference all necessary templates in the template store
         // this is not an RFC netflow packet, but greatly simplifies decoding
-        codecAggregator = new NetflowV9CodecAggregator();
-        codec = new NetFlowCodec(Configuration.EMPTY_CONFIGURATION, codecAggregator);
+        templateStore = new InMemoryNetFlowV9TemplateStore();
+        codecAggregator = new NetflowV9CodecAggregator(templateStore);
+        codec = new NetFlowCodec(Configuration.EMPTY_CONFIGURATION, codecAggregator, templateStore);
     }
 
 
@@ -548,6 +551,43 @@ public class NetflowV9CodecAggregatorTest {
     }
 
 
+    @Test
+    public void journalEntriesReferenceTemplatesInsteadOfContainingThem() throws Exception {
+        final byte[] templatePacket = Resources.toByteArray(Resources.getResource("netflow-data/netflow-v9-2-1.dat"));
+        final byte[] dataPacket = Resources.toByteArray(Resources.getResource("netflow-data/netflow-v9-2-2.dat"));
+
+        assertThat(aggregateRawPacket("netflow-data/netflow-v9-2-1.dat").getMessage()).isNull();
+        assertThat(templateStore.size()).isPositive();
+
+        final ByteBuf entryBuffer = aggregateRawPacket("netflow-data/netflow-v9-2-2.dat").getMessage();
+        assertThat(entryBuffer).isNotNull();
+        assertThat(entryBuffer.readByte()).isEqualTo(NetFlowCodec.TEMPLATE_REFERENCE_V9_MARKER);
+
+        final NetFlowV9ReferenceEntry entry = NetFlowV9ReferenceEntry.read(entryBuffer);
+        assertThat(entry.references()).isNotEmpty();
+        assertThat(entry.packets()).containsExactly(Unpooled.wrappedBuffer(dataPacket));
+        // the entry only contains the data packet and small references, no template flows
+        assertThat(entryBuffer.capacity()).isLessThan(dataPacket.length + templatePacket.length);
+    }
+
+    @Test
+    public void journalEntriesCanBeDecodedWithSharedTemplateStore() throws Exception {
+        aggregateRawPacket("netflow-data/netflow-v9-2-1.dat");
+        final CodecAggregator.Result result = aggregateRawPacket("netflow-data/netflow-v9-2-2.dat");
+
+        // another node (or this node after a restart) only shares the template store
+        final NetFlowCodec otherCodec = new NetFlowCodec(Configuration.EMPTY_CONFIGURATION,
+                new NetflowV9CodecAggregator(templateStore), templateStore);
+        assertThat(otherCodec.decodeMessages(convertToRawMessage(result, source)))
+                .hasSize(1)
+                .allSatisfy(message -> assertThat(message.getField("nf_version")).isEqualTo(9));
+
+        templateStore.clear();
+        final NetFlowCodec codecWithoutTemplates = new NetFlowCodec(Configuration.EMPTY_CONFIGURATION,
+                new NetflowV9CodecAggregator(templateStore), templateStore);
+        assertThat(codecWithoutTemplates.decodeMessages(convertToRawMessage(result, source))).isNull();
+    }
+
     private RawMessage convertToRawMessage(CodecAggregator.Result result, SocketAddress remoteAddress) {
         final ByteBuf buffer = result.getMessage();
         assertThat(buffer).isNotNull();
@@ -569,8 +609,8 @@ public class NetflowV9CodecAggregatorTest {
                             if (result.isValid() && result.getMessage() != null) {
                                 final ByteBuf buffer = result.getMessage();
                                 // must read the marker byte off the buffer first.
-                                buffer.readByte();
-                                allPackets.addAll(codec.decodeV9Packets(buffer));
+                                assertThat(buffer.readByte()).isEqualTo(NetFlowCodec.TEMPLATE_REFERENCE_V9_MARKER);
+                                allPackets.addAll(codec.decodeV9ReferencePackets(source, buffer));
                             }
                         }
                         return true;
@@ -0,0 +1,48 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.netflow.templates;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class InMemoryNetFlowV9TemplateStore implements NetFlowV9TemplateStore {
+    private final Map<String, byte[]> templates = new ConcurrentHashMap<>();
+
+    @Override
+    public void save(String exporter, long sourceId, NetFlowV9TemplateReference reference, byte[] template) {
+        templates.put(key(exporter, sourceId, reference), template);
+    }
+
+    @Nullable
+    @Override
+    public byte[] load(String exporter, long sourceId, NetFlowV9TemplateReference reference) {
+        return templates.get(key(exporter, sourceId, reference));
+    }
+
+    public int size() {
+        return templates.size();
+    }
+
+    public void clear() {
+        templates.clear();
+    }
+
+    private static String key(String exporter, long sourceId, NetFlowV9TemplateReference reference) {
+        return exporter + "/" + sourceId + "/" + reference;
+    }
+}
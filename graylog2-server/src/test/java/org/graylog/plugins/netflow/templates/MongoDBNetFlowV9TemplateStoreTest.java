@@ -0,0 +1,165 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.netflow.templates;
+
+import com.lordofthejars.nosqlunit.annotation.UsingDataSet;
+import com.lordofthejars.nosqlunit.core.LoadStrategyEnum;
+import com.lordofthejars.nosqlunit.mongodb.InMemoryMongoDb;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import org.graylog2.database.MongoConnection;
+import org.graylog2.database.MongoConnectionRule;
+import org.joda.time.DateTimeUtils;
+import org.junit.After;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.lordofthejars.nosqlunit.mongodb.InMemoryMongoDb.InMemoryMongoRuleBuilder.newInMemoryMongoDbRule;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MongoDBNetFlowV9TemplateStoreTest {
+    @ClassRule
+    public static final InMemoryMongoDb IN_MEMORY_MONGO_DB = newInMemoryMongoDbRule().build();
+
+    @Rule
+    public MongoConnectionRule mongoRule = MongoConnectionRule.build("test");
+
+    private static final byte[] TEMPLATE = "template".getBytes(StandardCharsets.UTF_8);
+    private static final NetFlowV9TemplateReference REFERENCE = NetFlowV9TemplateReference.forTemplate(256, false, TEMPLATE);
+
+    @After
+    public void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    @UsingDataSet(loadStrategy = LoadStrategyEnum.DELETE_ALL)
+    public void savedTemplatesCanBeLoadedByOtherNodes() {
+        createStore(mongoRule.getMongoConnection()).save("10.0.0.1", 1L, REFERENCE, TEMPLATE);
+
+        final MongoDBNetFlowV9TemplateStore otherNode = createStore(mongoRule.getMongoConnection());
+        assertThat(otherNode.load("10.0.0.1", 1L, REFERENCE)).isEqualTo(TEMPLATE);
+        assertThat(otherNode.load("10.0.0.2", 1L, REFERENCE)).isNull();
+        assertThat(otherNode.load("10.0.0.1", 2L, REFERENCE)).isNull();
+        assertThat(otherNode.load("10.0.0.1", 1L, NetFlowV9TemplateReference.create(256, false, REFERENCE.hash() + 1))).isNull();
+    }
+
+    @Test
+    @UsingDataSet(loadStrategy = LoadStrategyEnum.DELETE_ALL)
+    public void redefinedTemplatesKeepPreviousDefinition() {
+        final MongoDBNetFlowV9TemplateStore store = createStore(mongoRule.getMongoConnection());
+        final byte[] redefined = "redefined".getBytes(StandardCharsets.UTF_8);
+        final NetFlowV9TemplateReference redefinedReference = NetFlowV9TemplateReference.forTemplate(256, false, redefined);
+
+        store.save("10.0.0.1", 1L, REFERENCE, TEMPLATE);
+        store.save("10.0.0.1", 1L, redefinedReference, redefined);
+
+        assertThat(collection().count()).isEqualTo(2L);
+        assertThat(store.load("10.0.0.1", 1L, REFERENCE)).isEqualTo(TEMPLATE);
+        assertThat(store.load("10.0.0.1", 1L, redefinedReference)).isEqualTo(redefined);
+    }
+
+    @Test
+    @UsingDataSet(loadStrategy = LoadStrategyEnum.DELETE_ALL)
+    public void repeatedTemplatesOnlyUpdateLastSeenPeriodically() {
+        final MongoDBNetFlowV9TemplateStore store = createStore(mongoRule.getMongoConnection());
+        final long start = 1_000_000_000L;
+
+        DateTimeUtils.setCurrentMillisFixed(start);
+        store.save("10.0.0.1", 1L, REFERENCE, TEMPLATE);
+        DateTimeUtils.setCurrentMillisFixed(start + TimeUnit.MINUTES.toMillis(30));
+        store.save("10.0.0.1", 1L, REFERENCE, TEMPLATE);
+        assertThat(lastSeen()).isEqualTo(new Date(start));
+
+        DateTimeUtils.setCurrentMillisFixed(start + TimeUnit.HOURS.toMillis(2));
+        store.save("10.0.0.1", 1L, REFERENCE, TEMPLATE);
+        assertThat(lastSeen()).isEqualTo(new Date(start + TimeUnit.HOURS.toMillis(2)));
+        assertThat(collection().count()).isEqualTo(1L);
+    }
+
+    @Test
+    @UsingDataSet(loadStrategy = LoadStrategyEnum.DELETE_ALL)
+    public void templatesAreWrittenBySeparateExecutor() {
+        final List<Runnable> writes = new ArrayList<>();
+        final MongoDBNetFlowV9TemplateStore store = new MongoDBNetFlowV9TemplateStore(mongoRule.getMongoConnection(), writes::add);
+
+        store.save("10.0.0.1", 1L, REFERENCE, TEMPLATE);
+        store.save("10.0.0.1", 1L, REFERENCE, TEMPLATE);
+
+        assertThat(writes).hasSize(1);
+        assertThat(collection().count()).isEqualTo(0L);
+        assertThat(store.load("10.0.0.1", 1L, REFERENCE)).isEqualTo(TEMPLATE);
+
+        writes.get(0).run();
+        assertThat(collection().count()).isEqualTo(1L);
+    }
+
+    @Test
+    public void failedWritesAreOnlyRetriedAfterBackoff() {
+        final DBCollection collection = mock(DBCollection.class);
+        when(collection.update(any(DBObject.class), any(DBObject.class), anyBoolean(), anyBoolean()))
+                .thenThrow(new MongoException("Boom"));
+        final DB db = mock(DB.class);
+        when(db.getCollection(anyString())).thenReturn(collection);
+        final MongoConnection mongoConnection = mock(MongoConnection.class);
+        when(mongoConnection.getDatabase()).thenReturn(db);
+        final MongoDBNetFlowV9TemplateStore store = createStore(mongoConnection);
+        final long start = 1_000_000_000L;
+
+        DateTimeUtils.setCurrentMillisFixed(start);
+        store.save("10.0.0.1", 1L, REFERENCE, TEMPLATE);
+        DateTimeUtils.setCurrentMillisFixed(start + TimeUnit.SECONDS.toMillis(30));
+        store.save("10.0.0.1", 1L, REFERENCE, TEMPLATE);
+        verify(collection, times(1)).update(any(DBObject.class), any(DBObject.class), anyBoolean(), anyBoolean());
+        assertThat(store.load("10.0.0.1", 1L, REFERENCE)).isEqualTo(TEMPLATE);
+
+        DateTimeUtils.setCurrentMillisFixed(start + TimeUnit.MINUTES.toMillis(2));
+        store.save("10.0.0.1", 1L, REFERENCE, TEMPLATE);
+        verify(collection, times(2)).update(any(DBObject.class), any(DBObject.class), anyBoolean(), anyBoolean());
+    }
+
+    private static MongoDBNetFlowV9TemplateStore createStore(MongoConnection mongoConnection) {
+        return new MongoDBNetFlowV9TemplateStore(mongoConnection, MoreExecutors.directExecutor());
+    }
+
+    private Date lastSeen() {
+        final DBObject document = collection().findOne(new BasicDBObject());
+        return (Date) document.get(MongoDBNetFlowV9TemplateStore.FIELD_LAST_SEEN);
+    }
+
+    private DBCollection collection() {
+        return mongoRule.getMongoConnection().getDatabase().getCollection(MongoDBNetFlowV9TemplateStore.COLLECTION_NAME);
+    }
+}
@@ -20,6 +20,7 @@ import io.netty.channel.ChannelHandler;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import org.graylog.plugins.netflow.codecs.NetflowV9CodecAggregator;
+import org.graylog.plugins.netflow.templates.InMemoryNetFlowV9TemplateStore;
 import org.graylog2.inputs.transports.NettyTransportConfiguration;
 import org.graylog2.inputs.transports.netty.EventLoopGroupFactory;
 import org.graylog2.plugin.LocalMetricRegistry;
@@ -52,7 +53,7 @@ public class NetFlowUdpTransportTest {
                 nettyTransportConfiguration,
                 new ThroughputCounter(eventLoopGroup),
                 new LocalMetricRegistry());
-        transport.setMessageAggregator(new NetflowV9CodecAggregator());
+        transport.setMessageAggregator(new NetflowV9CodecAggregator(new InMemoryNetFlowV9TemplateStore()));
     }
 
     @After
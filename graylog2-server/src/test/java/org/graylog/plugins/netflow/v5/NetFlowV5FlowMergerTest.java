@@ -0,0 +1,72 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.netflow.v5;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.net.InetAddresses;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NetFlowV5FlowMergerTest {
+    @Test
+    public void mergesRecordsOfTheSameFlow() {
+        final List<NetFlowV5Record> records = ImmutableList.of(
+                record("10.0.0.1", 1234, 10L, 1000L, 1000L, 2000L, (short) 0x02),
+                record("10.0.0.2", 1234, 1L, 100L, 1500L, 1500L, (short) 0x02),
+                record("10.0.0.1", 1234, 5L, 500L, 2500L, 3000L, (short) 0x11));
+
+        final List<NetFlowV5Record> merged = NetFlowV5FlowMerger.merge(records, 1000L);
+
+        assertThat(merged).hasSize(2);
+        final NetFlowV5Record first = merged.get(0);
+        assertThat(first.srcAddr()).isEqualTo(InetAddresses.forString("10.0.0.1"));
+        assertThat(first.packetCount()).isEqualTo(15L);
+        assertThat(first.octetCount()).isEqualTo(1500L);
+        assertThat(first.first()).isEqualTo(1000L);
+        assertThat(first.last()).isEqualTo(3000L);
+        assertThat(first.tcpFlags()).isEqualTo((short) 0x13);
+        assertThat(first.flowCount()).isEqualTo(2);
+        assertThat(merged.get(1)).isSameAs(records.get(1));
+    }
+
+    @Test
+    public void doesNotMergeRecordsOutsideOfWindow() {
+        final List<NetFlowV5Record> records = ImmutableList.of(
+                record("10.0.0.1", 1234, 10L, 1000L, 1000L, 2000L, (short) 0),
+                record("10.0.0.1", 1234, 5L, 500L, 3001L, 4000L, (short) 0));
+
+        assertThat(NetFlowV5FlowMerger.merge(records, 1000L)).isSameAs(records);
+    }
+
+    @Test
+    public void doesNotMergeRecordsOfDifferentFlows() {
+        final List<NetFlowV5Record> records = ImmutableList.of(
+                record("10.0.0.1", 1234, 10L, 1000L, 1000L, 2000L, (short) 0),
+                record("10.0.0.1", 1235, 5L, 500L, 1000L, 2000L, (short) 0),
+                record("10.0.0.1", 1234, 5L, 500L, 0L, 0L, (short) 0));
+
+        assertThat(NetFlowV5FlowMerger.merge(records, 1000L)).isSameAs(records);
+    }
+
+    private static NetFlowV5Record record(String srcAddr, int srcPort, long packets, long octets, long first, long last, short tcpFlags) {
+        return NetFlowV5Record.create(InetAddresses.forString(srcAddr), InetAddresses.forString("10.0.1.1"), InetAddresses.forString("0.0.0.0"),
+                1, 2, packets, octets, first, last, srcPort, 443, tcpFlags, (short) 6, (short) 0, 0, 0, (short) 24, (short) 24);
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.netflow.v9;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NetFlowV9FlowMergerTest {
+    @Test
+    public void mergesRecordsOfTheSameFlow() {
+        final List<NetFlowV9BaseRecord> records = ImmutableList.of(
+                record("10.0.0.1", 10L, 1000L, 1000L, 2000L, (short) 0x02),
+                record("10.0.0.2", 1L, 100L, 1500L, 1500L, (short) 0x02),
+                record("10.0.0.1", 5L, 500L, 2500L, 3000L, (short) 0x11));
+
+        final List<NetFlowV9BaseRecord> merged = NetFlowV9FlowMerger.merge(records, 1000L);
+
+        assertThat(merged).hasSize(2);
+        assertThat(merged.get(0).fields())
+                .containsEntry("ipv4_src_addr", "10.0.0.1")
+                .containsEntry("in_pkts", 15L)
+                .containsEntry("in_bytes", 1500L)
+                .containsEntry("first_switched", 1000L)
+                .containsEntry("last_switched", 3000L)
+                .containsEntry("tcp_flags", (short) 0x13)
+                .containsEntry(NetFlowV9FlowMerger.FLOW_COUNT, 2);
+        assertThat(merged.get(1)).isSameAs(records.get(1));
+    }
+
+    @Test
+    public void doesNotMergeRecordsOutsideOfWindow() {
+        final List<NetFlowV9BaseRecord> records = ImmutableList.of(
+                record("10.0.0.1", 10L, 1000L, 1000L, 2000L, (short) 0),
+                record("10.0.0.1", 5L, 500L, 3001L, 4000L, (short) 0));
+
+        assertThat(NetFlowV9FlowMerger.merge(records, 1000L)).isSameAs(records);
+    }
+
+    @Test
+    public void doesNotMergeOptionRecords() {
+        final NetFlowV9OptionRecord optionRecord = NetFlowV9OptionRecord.create(
+                ImmutableMap.of("sampling_interval", 100L), ImmutableMap.of(NetFlowV9ScopeDef.SYSTEM, 1L));
+        final List<NetFlowV9BaseRecord> records = ImmutableList.of(optionRecord, optionRecord);
+
+        assertThat(NetFlowV9FlowMerger.merge(records, 1000L)).isSameAs(records);
+    }
+
+    private static NetFlowV9Record record(String srcAddr, long packets, long bytes, long first, long last, short tcpFlags) {
+        return NetFlowV9Record.create(ImmutableMap.<String, Object>builder()
+                .put("in_bytes", bytes)
+                .put("in_pkts", packets)
+                .put("protocol", (short) 6)
+                .put("tcp_flags", tcpFlags)
+                .put("l4_src_port", 1234)
+                .put("ipv4_src_addr", srcAddr)
+                .put("l4_dst_port", 443)
+                .put("ipv4_dst_addr", "10.0.1.1")
+                .put("first_switched", first)
+                .put("last_switched", last)
+                .build());
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.netflow.v9;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NetFlowV9RecordDecoderTest {
+    private static final List<NetFlowV9FieldDef> DEFINITIONS = ImmutableList.of(
+            def(1, NetFlowV9FieldType.ValueType.UINT32, "in_bytes", 4),
+            def(2, NetFlowV9FieldType.ValueType.UINT32, "in_pkts", 8),
+            def(4, NetFlowV9FieldType.ValueType.UINT8, "protocol", 1),
+            def(7, NetFlowV9FieldType.ValueType.UINT16, "l4_src_port", 2),
+            def(8, NetFlowV9FieldType.ValueType.IPV4, "ipv4_src_addr", 4),
+            def(12, NetFlowV9FieldType.ValueType.IPV4, "ipv4_dst_addr", 0),
+            def(27, NetFlowV9FieldType.ValueType.IPV6, "ipv6_src_addr", 16),
+            def(56, NetFlowV9FieldType.ValueType.MAC, "in_src_mac", 6),
+            def(82, NetFlowV9FieldType.ValueType.STRING, "if_name", 8),
+            def(83, NetFlowV9FieldType.ValueType.STRING, "if_desc", 4),
+            def(90, NetFlowV9FieldType.ValueType.INT16, "signed_field", 2),
+            def(91, NetFlowV9FieldType.ValueType.UINT64, "big_field", 5),
+            def(210, NetFlowV9FieldType.ValueType.SKIP, "padding_octets", 3));
+
+    @Test
+    public void decodesRecordsLikeFieldDefinitions() {
+        final NetFlowV9Template template = NetFlowV9Template.create(256, DEFINITIONS.size(), DEFINITIONS);
+        final ByteBuf flowSet = dataFlowSet(3, 0);
+        final int end = flowSet.readableBytes();
+        final List<NetFlowV9BaseRecord> expected = parseSequentially(flowSet.duplicate(), end, DEFINITIONS);
+
+        final List<NetFlowV9BaseRecord> records = template.recordDecoder().decode(flowSet, end);
+
+        assertThat(records).hasSize(3).isEqualTo(expected);
+        final Map<String, Object> fields = records.get(0).fields();
+        assertThat(fields)
+                .containsEntry("in_bytes", 1L)
+                .containsEntry("in_pkts", 2L)
+                .containsEntry("protocol", (short) 6)
+                .containsEntry("l4_src_port", 443)
+                .containsEntry("ipv4_src_addr", "10.0.0.1")
+                .containsEntry("ipv4_dst_addr", "192.168.1.255")
+                .containsEntry("in_src_mac", "00:1a:2b:3c:4d:ff")
+                .containsEntry("if_name", "eth0")
+                .containsEntry("signed_field", (short) -2)
+                .doesNotContainKeys("if_desc", "padding_octets");
+        assertThat(flowSet.readerIndex()).isEqualTo(end);
+    }
+
+    @Test
+    public void stopsAtPadding() {
+        final NetFlowV9Template template = NetFlowV9Template.create(256, DEFINITIONS.size(), DEFINITIONS);
+        final ByteBuf flowSet = dataFlowSet(2, 3);
+        final int end = flowSet.readableBytes();
+
+        assertThat(template.recordDecoder().decode(flowSet, end)).hasSize(2);
+    }
+
+    @Test
+    public void decodesOptionRecords() {
+        final List<NetFlowV9FieldDef> optionDefs = ImmutableList.of(
+                def(34, NetFlowV9FieldType.ValueType.UINT32, "sampling_interval", 4),
+                def(35, NetFlowV9FieldType.ValueType.UINT8, "sampling_algorithm", 1));
+        final NetFlowV9OptionTemplate optionTemplate = NetFlowV9OptionTemplate.create(257,
+                ImmutableList.of(NetFlowV9ScopeDef.create(NetFlowV9ScopeDef.SYSTEM, 4), NetFlowV9ScopeDef.create(NetFlowV9ScopeDef.INTERFACE, 2)),
+                optionDefs);
+        final ByteBuf flowSet = Unpooled.buffer()
+                .writeInt(100).writeByte(2)
+                .writeInt(0x0a000001).writeShort(3);
+
+        final List<NetFlowV9BaseRecord> records = optionTemplate.recordDecoder().decode(flowSet, flowSet.readableBytes());
+
+        assertThat(records).containsExactly(NetFlowV9OptionRecord.create(
+                ImmutableMap.of("sampling_interval", 100L, "sampling_algorithm", (short) 2),
+                ImmutableMap.of(NetFlowV9ScopeDef.SYSTEM, 0x0a000001L, NetFlowV9ScopeDef.INTERFACE, 3L)));
+    }
+
+    private static ByteBuf dataFlowSet(int recordCount, int padding) {
+        final ByteBuf buffer = Unpooled.buffer();
+        for (int i = 0; i < recordCount; i++) {
+            buffer.writeInt(i + 1);
+            buffer.writeLong(i + 2);
+            buffer.writeByte(6);
+            buffer.writeShort(443 + i);
+            buffer.writeBytes(new byte[]{10, 0, 0, (byte) (i + 1)});
+            buffer.writeBytes(new byte[]{(byte) 192, (byte) 168, 1, (byte) 255});
+            buffer.writeBytes(new byte[]{0x20, 0x01, 0x0d, (byte) 0xb8, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, (byte) (i + 1)});
+            buffer.writeBytes(new byte[]{0x00, 0x1a, 0x2b, 0x3c, 0x4d, (byte) 0xff});
+            buffer.writeBytes("eth0    ".getBytes(StandardCharsets.UTF_8));
+            buffer.writeBytes(new byte[4]);
+            buffer.writeShort(-2);
+            buffer.writeBytes(new byte[]{0, 0, 0, 1, (byte) i});
+            buffer.writeBytes(new byte[3]);
+        }
+        buffer.writeZero(padding);
+        return buffer;
+    }
+
+    private static List<NetFlowV9BaseRecord> parseSequentially(ByteBuf bb, int end, List<NetFlowV9FieldDef> defs) {
+        final ImmutableList.Builder<NetFlowV9BaseRecord> records = ImmutableList.builder();
+        while (bb.readerIndex() < end) {
+            final ImmutableMap.Builder<String, Object> fields = ImmutableMap.builder();
+            for (NetFlowV9FieldDef def : defs) {
+                final Optional<Object> value = def.parse(bb);
+                value.ifPresent(v -> fields.put(def.type().name().toLowerCase(Locale.ROOT), v));
+            }
+            records.add(NetFlowV9Record.create(fields.build()));
+        }
+        return records.build();
+    }
+
+    private static NetFlowV9FieldDef def(int id, NetFlowV9FieldType.ValueType valueType, String name, int length) {
+        return NetFlowV9FieldDef.create(NetFlowV9FieldType.create(id, valueType, name), length);
+    }
+}
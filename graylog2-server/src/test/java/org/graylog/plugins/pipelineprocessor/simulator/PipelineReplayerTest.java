@@ -0,0 +1,99 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog.plugins.pipelineprocessor.simulator;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.graylog.plugins.pipelineprocessor.db.PipelineDao;
+import org.graylog.plugins.pipelineprocessor.rest.PipelineConnections;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PipelineReplayerTest {
+    @Test
+    public void candidatePipelineReplacesStoredPipelineWithSameId() {
+        final List<PipelineDao> stored = ImmutableList.of(
+                PipelineDao.create("p1", "p1", null, "old source", null, null),
+                PipelineDao.create("p2", "p2", null, "other source", null, null));
+
+        final List<PipelineDao> pipelines = PipelineReplayer.candidatePipelines(stored, ImmutableList.of(
+                CandidatePipeline.create("p1", "new source", null),
+                CandidatePipeline.create(null, "added source", null)));
+
+        assertThat(pipelines).extracting(PipelineDao::id).containsExactly("p1", "p2", "candidate-pipeline-1");
+        assertThat(pipelines).extracting(PipelineDao::source).containsExactly("new source", "other source", "added source");
+    }
+
+    @Test
+    public void candidateConnectionsMovePipelineToGivenStreams() {
+        final List<PipelineConnections> stored = ImmutableList.of(
+                PipelineConnections.create(null, "s1", ImmutableSet.of("p1", "p2")),
+                PipelineConnections.create(null, "s2", ImmutableSet.of("p2")));
+
+        final Map<String, PipelineConnections> connections = PipelineReplayer.candidateConnections(stored, ImmutableList.of(
+                CandidatePipeline.create("p1", "source", ImmutableSet.of("s2", "s3")),
+                CandidatePipeline.create("p2", "source", null)))
+                .stream()
+                .collect(Collectors.toMap(PipelineConnections::streamId, Function.identity()));
+
+        assertThat(connections.get("s1").pipelineIds()).containsOnly("p2");
+        assertThat(connections.get("s2").pipelineIds()).containsOnly("p1", "p2");
+        assertThat(connections.get("s3").pipelineIds()).containsOnly("p1");
+    }
+
+    @Test
+    public void equalOutputsHaveNoDifference() {
+        final List<Map<String, Object>> outputs = ImmutableList.of(ImmutableMap.of("_id", "m1", "message", "foo"));
+
+        assertThat(PipelineReplayer.difference("m1", outputs, outputs)).isNull();
+    }
+
+    @Test
+    public void differenceListsAddedRemovedAndChangedFields() {
+        final List<Map<String, Object>> current = ImmutableList.of(ImmutableMap.of("_id", "m1", "message", "foo", "a", 1));
+        final List<Map<String, Object>> candidate = ImmutableList.of(
+                ImmutableMap.of("_id", "m1", "message", "bar", "b", 2),
+                ImmutableMap.of("_id", "m2", "message", "created"));
+
+        final MessageDifference difference = PipelineReplayer.difference("m1", current, candidate);
+
+        assertThat(difference).isNotNull();
+        assertThat(difference.addedFields()).containsOnly("b");
+        assertThat(difference.removedFields()).containsOnly("a");
+        assertThat(difference.changedFields()).containsOnly("message");
+        assertThat(difference.currentOutputMessages()).isEqualTo(1);
+        assertThat(difference.candidateOutputMessages()).isEqualTo(2);
+    }
+
+    @Test
+    public void droppedMessageIsADifference() {
+        final List<Map<String, Object>> current = ImmutableList.of(ImmutableMap.of("_id", "m1", "message", "foo"));
+
+        final MessageDifference difference = PipelineReplayer.difference("m1", current, ImmutableList.of());
+
+        assertThat(difference).isNotNull();
+        assertThat(difference.removedFields()).containsOnly("_id", "message");
+        assertThat(difference.candidateOutputMessages()).isEqualTo(0);
+    }
+}
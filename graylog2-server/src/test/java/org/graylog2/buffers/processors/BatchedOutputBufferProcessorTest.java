@@ -0,0 +1,156 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.buffers.processors;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.graylog2.Configuration;
+import org.graylog2.outputs.OutputRouter;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.ServerStatus;
+import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.buffers.MessageEvent;
+import org.graylog2.plugin.outputs.MessageOutput;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BatchedOutputBufferProcessorTest {
+    @Rule
+    public final MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private ServerStatus serverStatus;
+    @Mock
+    private OutputRouter outputRouter;
+    @Mock
+    private MessageOutput defaultOutput;
+    @Mock
+    private MessageOutput streamOutput;
+
+    private Configuration configuration;
+
+    @Before
+    public void setUp() {
+        configuration = new Configuration() {
+            @Override
+            public int getOutputBufferProcessorBatchSize() {
+                return 3;
+            }
+        };
+        when(defaultOutput.isRunning()).thenReturn(true);
+        when(streamOutput.isRunning()).thenReturn(true);
+        when(outputRouter.getStreamOutputsForMessage(any(Message.class))).thenReturn(Collections.emptySet());
+    }
+
+    @Test
+    public void writesBatchAtEndOfDisruptorBatch() throws Exception {
+        final BatchedOutputBufferProcessor processor = processor(0, 1);
+        final Message first = message("first");
+        final Message second = message("second");
+
+        processor.onEvent(event(first), 0L, false);
+        verify(defaultOutput, never()).write(anyList());
+
+        processor.onEvent(event(second), 1L, true);
+        verify(defaultOutput).write(ImmutableList.of(first, second));
+    }
+
+    @Test
+    public void writesBatchWhenMaximumSizeIsReached() throws Exception {
+        final BatchedOutputBufferProcessor processor = processor(0, 1);
+        final Message first = message("first");
+        final Message second = message("second");
+        final Message third = message("third");
+
+        processor.onEvent(event(first), 0L, false);
+        processor.onEvent(event(second), 1L, false);
+        processor.onEvent(event(third), 2L, false);
+
+        verify(defaultOutput).write(ImmutableList.of(first, second, third));
+    }
+
+    @Test
+    public void onlyHandlesOwnShareOfEvents() throws Exception {
+        final BatchedOutputBufferProcessor processor = processor(1, 2);
+        final Message first = message("first");
+        final Message second = message("second");
+
+        processor.onEvent(event(first), 0L, false);
+        processor.onEvent(event(second), 1L, true);
+
+        verify(defaultOutput).write(ImmutableList.of(second));
+    }
+
+    @Test
+    public void groupsMessagesByStreamOutput() throws Exception {
+        final BatchedOutputBufferProcessor processor = processor(0, 1);
+        final Message first = message("first");
+        final Message second = message("second");
+        when(outputRouter.getStreamOutputsForMessage(first)).thenReturn(ImmutableSet.of(streamOutput));
+
+        processor.onEvent(event(first), 0L, false);
+        processor.onEvent(event(second), 1L, true);
+
+        verify(defaultOutput).write(ImmutableList.of(first, second));
+        verify(streamOutput, timeout(5000L)).write(ImmutableList.of(first));
+    }
+
+    @Test
+    public void writesSingleMessagesIfOutputDoesNotSupportBatches() throws Exception {
+        final BatchedOutputBufferProcessor processor = processor(0, 1);
+        final Message first = message("first");
+        final Message second = message("second");
+        doThrow(new UnsupportedOperationException()).when(defaultOutput).write(anyList());
+
+        processor.onEvent(event(first), 0L, false);
+        processor.onEvent(event(second), 1L, true);
+
+        verify(defaultOutput).write(first);
+        verify(defaultOutput).write(second);
+    }
+
+    private BatchedOutputBufferProcessor processor(int ordinal, int numberOfProcessors) {
+        return new BatchedOutputBufferProcessor(configuration, new MetricRegistry(), serverStatus, outputRouter,
+                defaultOutput, ordinal, numberOfProcessors);
+    }
+
+    private static MessageEvent event(Message message) {
+        final MessageEvent event = new MessageEvent();
+        event.setMessage(message);
+        return event;
+    }
+
+    private static Message message(String text) {
+        return new Message(text, "test", Tools.nowUTC());
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.filters;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import org.graylog2.inputs.extractors.CopyInputExtractor;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.inputs.Extractor;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ExtractorChainTest {
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    @Test
+    public void runsExtractorsWithMatchingStringConditions() throws Exception {
+        final ExtractorChain chain = ExtractorChain.compile(ImmutableList.of(
+                extractor("1", Extractor.ConditionType.STRING, "foo", Extractor.CursorStrategy.COPY, "target1"),
+                extractor("2", Extractor.ConditionType.STRING, "bar", Extractor.CursorStrategy.COPY, "target2"),
+                extractor("3", Extractor.ConditionType.STRING, "baz", Extractor.CursorStrategy.COPY, "target3"),
+                extractor("4", Extractor.ConditionType.NONE, "", Extractor.CursorStrategy.COPY, "target4")));
+        final Message message = message("foo bar");
+
+        chain.run(message);
+
+        assertThat(message.getField("target1")).isEqualTo("foo bar");
+        assertThat(message.getField("target2")).isEqualTo("foo bar");
+        assertThat(message.hasField("target3")).isFalse();
+        assertThat(message.getField("target4")).isEqualTo("foo bar");
+    }
+
+    @Test
+    public void sharesConditionChecks() throws Exception {
+        final Extractor first = spy(extractor("1", Extractor.ConditionType.REGEX, "^foo", Extractor.CursorStrategy.COPY, "target1"));
+        final Extractor second = spy(extractor("2", Extractor.ConditionType.REGEX, "^foo", Extractor.CursorStrategy.COPY, "target2"));
+        final ExtractorChain chain = ExtractorChain.compile(ImmutableList.of(first, second));
+        final Message message = message("foo bar");
+
+        chain.run(message);
+
+        assertThat(message.getField("target1")).isEqualTo("foo bar");
+        assertThat(message.getField("target2")).isEqualTo("foo bar");
+        verify(first, times(1)).conditionMatches(anyString());
+        verify(second, never()).conditionMatches(anyString());
+    }
+
+    @Test
+    public void checksConditionAgainAfterSourceFieldChanged() throws Exception {
+        final ExtractorChain chain = ExtractorChain.compile(ImmutableList.of(
+                extractor("1", Extractor.ConditionType.STRING, "foo", Extractor.CursorStrategy.CUT, "target1"),
+                extractor("2", Extractor.ConditionType.STRING, "bar", Extractor.CursorStrategy.COPY, "target2"),
+                extractor("3", Extractor.ConditionType.STRING, "foo", Extractor.CursorStrategy.COPY, "target3")));
+        final Message message = message("foo bar");
+
+        chain.run(message);
+
+        assertThat(message.getField("target1")).isEqualTo("foo bar");
+        assertThat(message.getField("field")).isEqualTo("fullyCutByExtractor");
+        assertThat(message.hasField("target2")).isFalse();
+        assertThat(message.hasField("target3")).isFalse();
+    }
+
+    @Test
+    public void emptyChainDoesNothing() {
+        final Message message = message("foo bar");
+
+        ExtractorChain.EMPTY.run(message);
+
+        assertThat(message.getFieldNames()).containsOnly("_id", "message", "source", "timestamp", "field");
+    }
+
+    private static Message message(String field) {
+        final Message message = new Message("message", "junit", Tools.nowUTC());
+        message.addField("field", field);
+        return message;
+    }
+
+    private Extractor extractor(String id, Extractor.ConditionType conditionType, String conditionValue,
+                                Extractor.CursorStrategy cursorStrategy, String targetField) throws Extractor.ReservedFieldException {
+        return new CopyInputExtractor(metricRegistry, id, "title-" + id, 0L, cursorStrategy, "field", targetField,
+                Collections.emptyMap(), "user", Collections.emptyList(), conditionType, conditionValue);
+    }
+}
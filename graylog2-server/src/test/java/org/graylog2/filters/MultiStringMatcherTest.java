@@ -0,0 +1,56 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.filters;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MultiStringMatcherTest {
+    @Test
+    public void findsAllOccurringPatterns() {
+        final MultiStringMatcher matcher = new MultiStringMatcher(ImmutableList.of("he", "she", "his", "hers", "xyz"));
+
+        final BitSet found = matcher.match("ushers");
+
+        assertThat(found.get(0)).isTrue();
+        assertThat(found.get(1)).isTrue();
+        assertThat(found.get(2)).isFalse();
+        assertThat(found.get(3)).isTrue();
+        assertThat(found.get(4)).isFalse();
+    }
+
+    @Test
+    public void findsPatternsWhichAreSuffixesOfOtherPatterns() {
+        final MultiStringMatcher matcher = new MultiStringMatcher(ImmutableList.of("abcd", "bc", "c"));
+
+        assertThat(matcher.match("abce").cardinality()).isEqualTo(2);
+        assertThat(matcher.match("xbc").get(1)).isTrue();
+    }
+
+    @Test
+    public void emptyPatternAlwaysMatches() {
+        final MultiStringMatcher matcher = new MultiStringMatcher(ImmutableList.of("", "foo"));
+
+        assertThat(matcher.match("").get(0)).isTrue();
+        assertThat(matcher.match("bar").get(1)).isFalse();
+        assertThat(matcher.match("foo").cardinality()).isEqualTo(2);
+    }
+}
@@ -16,9 +16,11 @@
  */
 package org.graylog2.grok;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.eventbus.EventBus;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.krakens.grok.api.Grok;
+import org.assertj.core.api.Condition;
 import org.hamcrest.Matchers;
 import org.junit.Before;
 import org.junit.Rule;
@@ -34,6 +36,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 import static org.mockito.Mockito.when;
 
 public class GrokPatternRegistryTest {
@@ -47,6 +50,7 @@ public class GrokPatternRegistryTest {
     public final ExpectedException expectedException = ExpectedException.none();
 
     private GrokPatternRegistry grokPatternRegistry;
+    private MetricRegistry metricRegistry;
     private EventBus eventBus;
     @Mock
     private GrokPatternService grokPatternService;
@@ -54,9 +58,10 @@ public class GrokPatternRegistryTest {
     @Before
     public void setUp() {
         eventBus = new EventBus("Test");
+        metricRegistry = new MetricRegistry();
         final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("updater-%d").build());
         when(grokPatternService.loadAll()).thenReturn(GROK_PATTERNS);
-        grokPatternRegistry = new GrokPatternRegistry(eventBus, grokPatternService, executor);
+        grokPatternRegistry = new GrokPatternRegistry(eventBus, grokPatternService, executor, metricRegistry);
     }
 
     @Test
@@ -87,6 +92,46 @@ public class GrokPatternRegistryTest {
         grokPatternRegistry.cachedGrokForPattern("%{EMPTY}");
     }
 
+    @Test
+    public void cachedGrokMatcherForPatternRejectsValuesWithoutLiterals() {
+        final GrokMatcher grokMatcher = grokPatternRegistry.cachedGrokMatcherForPattern("id=%{TESTNUM:id} end", true);
+
+        assertThat(grokMatcher.getRequiredLiterals()).containsExactly(" end", "id=");
+        assertThat(grokMatcher.captureFlattened("id=42 end")).containsOnly(entry("id", "42"));
+        assertThat(grokMatcher.captureFlattened("id=x end")).isEmpty();
+        assertThat(grokMatcher.captureFlattened("foo=42 end")).isEmpty();
+
+        assertThat(metricRegistry.getTimers()).hasEntrySatisfying(
+                new Condition<>(name -> name.endsWith(".matchTime"), "match timer"), timer -> assertThat(timer.getCount()).isEqualTo(1L));
+        assertThat(metricRegistry.getTimers()).hasEntrySatisfying(
+                new Condition<>(name -> name.endsWith(".missTime"), "miss timer"), timer -> assertThat(timer.getCount()).isEqualTo(1L));
+        assertThat(metricRegistry.getCounters()).hasEntrySatisfying(
+                new Condition<>(name -> name.endsWith(".prefilterMisses"), "prefilter misses"), counter -> assertThat(counter.getCount()).isEqualTo(1L));
+    }
+
+    @Test
+    public void changedPatternsRemoveMatcherMetrics() {
+        grokPatternRegistry.cachedGrokMatcherForPattern("id=%{TESTNUM:id} end", true).captureFlattened("id=42 end");
+        grokPatternRegistry.cachedGrokMatcherForPattern("%{TESTNUM}", false).captureFlattened("42");
+        assertThat(metricRegistry.getMetrics()).hasSize(6);
+
+        eventBus.post(GrokPatternsUpdatedEvent.create(Collections.singleton(GROK_PATTERN.name())));
+        assertThat(metricRegistry.getMetrics()).isEmpty();
+
+        grokPatternRegistry.cachedGrokMatcherForPattern("%{TESTNUM}", false).captureFlattened("42");
+        assertThat(metricRegistry.getMetrics()).hasSize(3);
+
+        eventBus.post(GrokPatternsDeletedEvent.create(Collections.singleton(GROK_PATTERN.name())));
+        assertThat(metricRegistry.getMetrics()).isEmpty();
+    }
+
+    @Test
+    public void cachedGrokMatcherForPatternConvertsTypedCaptures() {
+        final GrokMatcher grokMatcher = grokPatternRegistry.cachedGrokMatcherForPattern("id=%{TESTNUM:id:int}", true);
+
+        assertThat(grokMatcher.captureFlattened("id=42")).containsOnly(entry("id", 42));
+    }
+
     @Test
     public void cachedGrokForPatternWithNamedCaptureOnly() {
         final Grok grok = grokPatternRegistry.cachedGrokForPattern("%{TESTNUM}", true);
@@ -0,0 +1,93 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.grok;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RequiredLiteralsTest {
+    @Test
+    public void extractsLiteralRuns() {
+        assertThat(RequiredLiterals.of("(?<name0>\\d+) - - \\[(?<ts>[^\\]]+)\\] \"GET", 10))
+                .containsExactly(" - - [", "] \"GET");
+    }
+
+    @Test
+    public void skipsOptionalParts() {
+        assertThat(RequiredLiterals.of("foo(?:bar)? bazz* (qux)+ (?:a|b) end{0}", 10))
+                .containsExactly(" baz", "foo", "qux", " en", " ");
+    }
+
+    @Test
+    public void handlesQuotedLiterals() {
+        assertThat(RequiredLiterals.of("\\Qa.b\\E+c?", 10)).containsExactly("a.b");
+    }
+
+    @Test
+    public void ignoresLookarounds() {
+        assertThat(RequiredLiterals.of("(?=foo)bar(?!baz)", 10)).containsExactly("bar");
+    }
+
+    @Test
+    public void hasNoLiteralsForAlternationsAndFlags() {
+        assertThat(RequiredLiterals.of("foo|bar", 10)).isEmpty();
+        assertThat(RequiredLiterals.of("(?i)foo", 10)).isEmpty();
+        assertThat(RequiredLiterals.of("foo(", 10)).isEmpty();
+    }
+
+    @Test
+    public void limitsNumberOfLiterals() {
+        assertThat(RequiredLiterals.of("a.bb.ccc.dddd", 2)).containsExactly("dddd", "ccc");
+    }
+
+    @Test
+    public void leadingBracketInNegatedCharacterClassIsMember() {
+        final String regex = "(?<ts>[^]]+) x";
+        final List<String> literals = RequiredLiterals.of(regex, 10);
+
+        assertThat(literals).containsExactly(" x");
+        assertMatchesWithLiterals(regex, literals, "abc x");
+    }
+
+    @Test
+    public void leadingBracketInCharacterClassIsMember() {
+        final String regex = "[]a]x";
+        final List<String> literals = RequiredLiterals.of(regex, 10);
+
+        assertThat(literals).containsExactly("x");
+        assertMatchesWithLiterals(regex, literals, "]x");
+        assertMatchesWithLiterals(regex, literals, "ax");
+    }
+
+    @Test
+    public void leadingBracketInNegatedCharacterClassWithMoreMembers() {
+        final String regex = "[^]a]bc";
+        final List<String> literals = RequiredLiterals.of(regex, 10);
+
+        assertThat(literals).containsExactly("bc");
+        assertMatchesWithLiterals(regex, literals, "zbc");
+    }
+
+    private static void assertMatchesWithLiterals(String regex, List<String> literals, String value) {
+        assertThat(Pattern.compile(regex).matcher(value).find()).isTrue();
+        assertThat(literals).allSatisfy(literal -> assertThat(value).contains(literal));
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.indexer.messages;
+
+import com.google.common.collect.ImmutableMap;
+import org.graylog2.indexer.IndexSet;
+import org.graylog2.indexer.IndexSetRegistry;
+import org.graylog2.shared.system.activities.ActivityWriter;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DeadLetterReplayJobTest {
+    @Rule
+    public final MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private Messages messages;
+    @Mock
+    private IndexSetRegistry indexSetRegistry;
+    @Mock
+    private ActivityWriter activityWriter;
+    @Mock
+    private IndexSet indexSet;
+    @Mock
+    private IndexSet defaultIndexSet;
+
+    private InMemoryDeadLetterJournal journal;
+    private DeadLetterReplayJob job;
+
+    @Before
+    public void setUp() throws Exception {
+        journal = new InMemoryDeadLetterJournal();
+        job = new DeadLetterReplayJob(journal, messages, indexSetRegistry, activityWriter, 10_000);
+
+        when(indexSetRegistry.get(anyString())).thenReturn(Optional.empty());
+        when(indexSetRegistry.get("index-set-1")).thenReturn(Optional.of(indexSet));
+        when(indexSetRegistry.getDefault()).thenReturn(defaultIndexSet);
+    }
+
+    @Test
+    public void replaysAllDeadLettersAndCommitsThem() throws Exception {
+        journal.write(Collections.singletonList(deadLetter("id-1")));
+        journal.write(Collections.singletonList(deadLetter("id-2")));
+        when(messages.bulkIndexDeadLetters(any())).thenReturn(Collections.emptyList());
+
+        job.execute();
+
+        final ArgumentCaptor<List<Map.Entry<IndexSet, DeadLetter>>> captor = ArgumentCaptor.forClass(List.class);
+        verify(messages).bulkIndexDeadLetters(captor.capture());
+        assertThat(captor.getValue()).hasSize(2);
+        assertThat(captor.getValue().get(0).getKey()).isSameAs(indexSet);
+        assertThat(captor.getValue().get(0).getValue().id()).isEqualTo("id-1");
+        assertThat(journal.getUncommittedCount()).isEqualTo(0L);
+        assertThat(job.getProgress()).isEqualTo(100);
+    }
+
+    @Test
+    public void failedDeadLettersAreWrittenAgainButNotReplayedTwice() throws Exception {
+        final DeadLetter deadLetter = deadLetter("id-1");
+        journal.write(Collections.singletonList(deadLetter));
+        final DeadLetter failed = deadLetter.withError("graylog_1", "still broken", DateTime.now(DateTimeZone.UTC));
+        when(messages.bulkIndexDeadLetters(any())).thenReturn(Collections.singletonList(failed));
+
+        job.execute();
+
+        verify(messages).bulkIndexDeadLetters(any());
+        assertThat(journal.getUncommittedCount()).isEqualTo(1L);
+        assertThat(journal.read(journal.getStartOffset(), 10))
+                .extracting(DeadLetterJournal.Entry::deadLetter)
+                .containsExactly(failed);
+    }
+
+    @Test
+    public void exceptionKeepsDeadLettersInJournal() throws Exception {
+        final DeadLetter deadLetter = deadLetter("id-1");
+        journal.write(Collections.singletonList(deadLetter));
+        when(messages.bulkIndexDeadLetters(any())).thenThrow(new RuntimeException("Boom!"));
+
+        job.execute();
+
+        assertThat(journal.read(journal.getStartOffset(), 10))
+                .extracting(DeadLetterJournal.Entry::deadLetter)
+                .containsExactly(deadLetter);
+    }
+
+    @Test
+    public void unknownIndexSetFallsBackToDefaultIndexSet() throws Exception {
+        journal.write(Collections.singletonList(DeadLetter.create("id-1", "deleted-index-set", "graylog_0",
+                "error", DateTime.now(DateTimeZone.UTC), ImmutableMap.of("message", "foo"))));
+        when(messages.bulkIndexDeadLetters(any())).thenReturn(Collections.emptyList());
+
+        job.execute();
+
+        final ArgumentCaptor<List<Map.Entry<IndexSet, DeadLetter>>> captor = ArgumentCaptor.forClass(List.class);
+        verify(messages).bulkIndexDeadLetters(captor.capture());
+        assertThat(captor.getValue().get(0).getKey()).isSameAs(defaultIndexSet);
+    }
+
+    @Test
+    public void emptyJournalDoesNotIndexAnything() throws Exception {
+        job.execute();
+
+        verify(messages, never()).bulkIndexDeadLetters(any());
+    }
+
+    private static DeadLetter deadLetter(String id) {
+        return DeadLetter.create(id, "index-set-1", "graylog_0", "mapper_parsing_exception",
+                DateTime.now(DateTimeZone.UTC), ImmutableMap.of("message", "foo"));
+    }
+
+    private static class InMemoryDeadLetterJournal implements DeadLetterJournal {
+        private final List<DeadLetter> deadLetters = new ArrayList<>();
+        private long committedOffset = -1L;
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public void write(List<DeadLetter> deadLetters) {
+            this.deadLetters.addAll(deadLetters);
+        }
+
+        @Override
+        public List<Entry> read(long offset, int maximumCount) {
+            final List<Entry> entries = new ArrayList<>();
+            for (long i = offset; i < deadLetters.size() && entries.size() < maximumCount; i++) {
+                entries.add(Entry.create(i, deadLetters.get((int) i)));
+            }
+            return entries;
+        }
+
+        @Override
+        public void markCommitted(long offset) {
+            committedOffset = Math.max(committedOffset, offset);
+        }
+
+        @Override
+        public long getStartOffset() {
+            return committedOffset + 1;
+        }
+
+        @Override
+        public long getEndOffset() {
+            return deadLetters.size();
+        }
+
+        @Override
+        public long getUncommittedCount() {
+            return getEndOffset() - getStartOffset();
+        }
+
+        @Override
+        public long getSize() {
+            return 0L;
+        }
+    }
+}
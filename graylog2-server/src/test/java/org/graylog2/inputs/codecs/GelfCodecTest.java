@@ -414,4 +414,77 @@ public class GelfCodecTest {
         assertThat(message).isNotNull();
         assertThat(message.getTimestamp()).isEqualTo(DateTime.parse("2017-07-21T14:23:00.661Z"));
     }
+
+    @Test
+    public void decodeStreamsCompressedMessages() throws Exception {
+        final String json = "{"
+                + "\"version\": \"1.1\","
+                + "\"host\": \"example.org\","
+                + "\"short_message\": \"A short message\","
+                + "\"level\": 3,"
+                + "\"_user_id\": 9001"
+                + "}";
+
+        for (byte[] payload : new byte[][]{TestHelper.gzipCompress(json), TestHelper.zlibCompress(json)}) {
+            final Message message = codec.decode(new RawMessage(payload));
+
+            assertThat(message).isNotNull();
+            assertThat(message.getField("source")).isEqualTo("example.org");
+            assertThat(message.getField("message")).isEqualTo("A short message");
+            assertThat(message.getField("level")).isEqualTo(3);
+            assertThat(message.getField("user_id")).isEqualTo(9001L);
+        }
+    }
+
+    @Test
+    public void decodeUsesLastValueOfDuplicateFields() throws Exception {
+        final String json = "{"
+                + "\"host\": \"example.org\","
+                + "\"short_message\": \"first\","
+                + "\"_foo\": 1,"
+                + "\"short_message\": \"second\","
+                + "\"_foo\": 2"
+                + "}";
+
+        final Message message = codec.decode(new RawMessage(json.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(message).isNotNull();
+        assertThat(message.getField("message")).isEqualTo("second");
+        assertThat(message.getField("foo")).isEqualTo(2L);
+    }
+
+    @Test
+    public void decodeConvertsNestedValuesToJsonStrings() throws Exception {
+        final String json = "{"
+                + "\"host\": \"example.org\","
+                + "\"short_message\": \"A short message\","
+                + "\"_object\": {\"a\": [1, 2.5, \"b\"]},"
+                + "\"_double\": 1.5,"
+                + "\"_null\": null,"
+                + "\"_boolean\": true"
+                + "}";
+
+        final Message message = codec.decode(new RawMessage(json.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(message).isNotNull();
+        assertThat(message.getField("object")).isEqualTo("{\"a\":[1,2.5,\"b\"]}");
+        assertThat(message.getField("double")).isEqualTo(1.5d);
+        assertThat(message.hasField("null")).isFalse();
+        assertThat(message.hasField("boolean")).isFalse();
+    }
+
+    @Test
+    public void decodeFallsBackForInvalidUtf8() throws Exception {
+        final byte[] prefix = "{\"host\": \"example.org\", \"short_message\": \"invalid ".getBytes(StandardCharsets.UTF_8);
+        final byte[] suffix = "\"}".getBytes(StandardCharsets.UTF_8);
+        final byte[] payload = new byte[prefix.length + 1 + suffix.length];
+        System.arraycopy(prefix, 0, payload, 0, prefix.length);
+        payload[prefix.length] = (byte) 0xff;
+        System.arraycopy(suffix, 0, payload, prefix.length + 1, suffix.length);
+
+        final Message message = codec.decode(new RawMessage(payload));
+
+        assertThat(message).isNotNull();
+        assertThat(message.getField("message")).isEqualTo("invalid \ufffd");
+    }
 }
@@ -0,0 +1,120 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.inputs.codecs;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Resources;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugin.journal.RawMessage;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifies that the single-pass syslog parser produces the same messages as the syslog4j based parser.
+ */
+public class SyslogCodecEquivalenceTest {
+    private static List<String> corpus() throws IOException {
+        return Resources.readLines(Resources.getResource(SyslogCodecEquivalenceTest.class, "syslog-corpus.txt"), StandardCharsets.UTF_8)
+                .stream()
+                .filter(line -> !line.isEmpty() && !line.startsWith("#"))
+                .collect(Collectors.toList());
+    }
+
+    private static SyslogCodec codec(boolean legacy, boolean expand, boolean storeFullMessage) {
+        return new SyslogCodec(new Configuration(ImmutableMap.<String, Object>of(
+                SyslogCodec.CK_ALLOW_OVERRIDE_DATE, true,
+                SyslogCodec.CK_EXPAND_STRUCTURED_DATA, expand,
+                SyslogCodec.CK_STORE_FULL_MESSAGE, storeFullMessage,
+                SyslogCodec.CK_USE_LEGACY_PARSER, legacy)), new MetricRegistry());
+    }
+
+    private static Map<String, Object> decode(SyslogCodec codec, RawMessage rawMessage) {
+        try {
+            final Message message = codec.decode(rawMessage);
+            if (message == null) {
+                return null;
+            }
+            final Map<String, Object> fields = new HashMap<>(message.getFields());
+            fields.remove(Message.FIELD_ID);
+            return fields;
+        } catch (Exception e) {
+            return ImmutableMap.of("exception", e.getClass().getName());
+        }
+    }
+
+    private void assertEquivalent(boolean expand, boolean storeFullMessage) throws IOException {
+        final SyslogCodec legacyCodec = codec(true, expand, storeFullMessage);
+        final SyslogCodec codec = codec(false, expand, storeFullMessage);
+
+        for (String line : corpus()) {
+            final RawMessage rawMessage = new RawMessage(line.getBytes(StandardCharsets.UTF_8), new InetSocketAddress("127.0.0.1", 5140));
+
+            assertThat(decode(codec, rawMessage))
+                    .as("Decoded message <%s>", line)
+                    .isEqualTo(decode(legacyCodec, rawMessage));
+        }
+    }
+
+    @Test
+    public void corpusDecodesLikeLegacyParser() throws IOException {
+        assertEquivalent(false, false);
+    }
+
+    @Test
+    public void corpusDecodesLikeLegacyParserWithExpandedStructuredData() throws IOException {
+        assertEquivalent(true, false);
+    }
+
+    @Test
+    public void corpusDecodesLikeLegacyParserWithFullMessage() throws IOException {
+        assertEquivalent(false, true);
+    }
+
+    @Test
+    public void commonMessagesAreHandledBySinglePassParser() {
+        assertThat(SyslogMessageParser.parse(bytes("<165>1 2012-12-25T22:14:15.003Z mymachine.example.com evntslog - ID47 [exampleSDID@32473 iut=\"3\"] BOMAn application event log entry"))).isNotNull();
+        assertThat(SyslogMessageParser.parse(bytes("<128>1 2015-01-11T16:35:21.335797+01:00 s000000.example.com - - - - tralala"))).isNotNull();
+        assertThat(SyslogMessageParser.parse(bytes("<45>Oct 21 12:09:37 c4dc57ba1ebb syslog-ng[7208]: syslog-ng starting up; version='3.5.3'"))).isNotNull();
+        assertThat(SyslogMessageParser.parse(bytes("<13>Feb  5 17:32:18 10.0.0.99 Use the BFG!"))).isNotNull();
+    }
+
+    @Test
+    public void unsupportedMessagesAreLeftToLegacyParser() {
+        assertThat(SyslogMessageParser.parse(bytes("<186>1541800: Feb 27 06:08:59.485: %HARDWARE-2-FAN_ERROR: Fan Failure"))).isNull();
+        assertThat(SyslogMessageParser.parse(bytes("<45>date=2017-03-06 time=12:53:10 devname=DEVICENAME"))).isNull();
+        assertThat(SyslogMessageParser.parse(bytes("<6>2016-10-12T14:10:18Z hostname testmsg[20]: Test"))).isNull();
+        assertThat(SyslogMessageParser.parse(bytes("<13>1 - host.example.com app - - - message without timestamp"))).isNull();
+        assertThat(SyslogMessageParser.parse(bytes("<13>1 2019-11-04T09:12:44Z host app - - [a x=\"1\"][b x=\"2\"] duplicate"))).isNull();
+        assertThat(SyslogMessageParser.parse(bytes("<13>Feb 30 17:32:18 host invalid day"))).isNull();
+        assertThat(SyslogMessageParser.parse(bytes("<13>Feb  5 17:32:18 host trailing newline\n"))).isNull();
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -228,7 +228,7 @@ public class GrokExtractorTest {
         } catch (Exception e) {
             fail("Could not save grok patter: " + e.getMessage());
         }
-        final GrokPatternRegistry grokPatternRegistry = new GrokPatternRegistry(clusterBus, grokPatternService, Executors.newScheduledThreadPool(1));
+        final GrokPatternRegistry grokPatternRegistry = new GrokPatternRegistry(clusterBus, grokPatternService, Executors.newScheduledThreadPool(1), new LocalMetricRegistry());
 
         try {
             return new GrokExtractor(new LocalMetricRegistry(),
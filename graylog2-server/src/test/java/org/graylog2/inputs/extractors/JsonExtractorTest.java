@@ -17,6 +17,7 @@
 package org.graylog2.inputs.extractors;
 
 import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import org.graylog2.ConfigurationException;
 import org.graylog2.plugin.inputs.Converter;
@@ -231,4 +232,80 @@ public class JsonExtractorTest {
                 new Extractor.Result(true, "test_bool", -1, -1)
         );
     }
+
+    @Test
+    public void testRunWithIncludedKeys() throws Exception {
+        final JsonExtractor jsonExtractor = new JsonExtractor(new MetricRegistry(), "json", "title", 0L, Extractor.CursorStrategy.COPY,
+                "source", "target", ImmutableMap.of("include_keys", "text, object.nested, array"), "user", Collections.emptyList(), Extractor.ConditionType.NONE,
+                "");
+        final String value = "{\"text\": \"foobar\", \"number\": 1234.5678, \"array\": [1, 2], \"skipped\": {\"huge\": [1, 2, 3]}, "
+                + "\"object\": {\"text\": \"foobar\", \"nested\": {\"text\": \"foobaz\", \"bool\": true}}}";
+
+        assertThat(jsonExtractor.run(value)).containsOnly(
+                new Extractor.Result("foobar", "text", -1, -1),
+                new Extractor.Result("1, 2", "array", -1, -1),
+                new Extractor.Result("foobaz", "object_nested_text", -1, -1),
+                new Extractor.Result(true, "object_nested_bool", -1, -1)
+        );
+    }
+
+    @Test
+    public void testRunWithExcludedKeys() throws Exception {
+        final JsonExtractor jsonExtractor = new JsonExtractor(new MetricRegistry(), "json", "title", 0L, Extractor.CursorStrategy.COPY,
+                "source", "target", ImmutableMap.of("exclude_keys", ImmutableList.of("number", "object.nested")), "user", Collections.emptyList(), Extractor.ConditionType.NONE,
+                "");
+        final String value = "{\"text\": \"foobar\", \"number\": 1234.5678, \"object\": {\"text\": \"foobar\", \"nested\": {\"text\": \"foobaz\"}}}";
+
+        assertThat(jsonExtractor.run(value)).containsOnly(
+                new Extractor.Result("foobar", "text", -1, -1),
+                new Extractor.Result("foobar", "object_text", -1, -1)
+        );
+    }
+
+    @Test
+    public void testRunWithMaxDepth() throws Exception {
+        final JsonExtractor jsonExtractor = new JsonExtractor(new MetricRegistry(), "json", "title", 0L, Extractor.CursorStrategy.COPY,
+                "source", "target", ImmutableMap.of("max_depth", 2, "key_prefix", "test_"), "user", Collections.emptyList(), Extractor.ConditionType.NONE,
+                "");
+        final String value = "{\"text\": \"foobar\", \"object\": {\"number\": 42, \"nested\": {\"text\": \"foobaz\"}}, \"null\": null}";
+
+        assertThat(jsonExtractor.run(value)).containsOnly(
+                new Extractor.Result("foobar", "test_text", -1, -1),
+                new Extractor.Result(42, "test_object_number", -1, -1)
+        );
+    }
+
+    @Test
+    public void testRunWithIncludedKeysAndFlattenedObject() throws Exception {
+        final JsonExtractor jsonExtractor = new JsonExtractor(new MetricRegistry(), "json", "title", 0L, Extractor.CursorStrategy.COPY,
+                "source", "target", ImmutableMap.of("flatten", true, "include_keys", "object"), "user", Collections.emptyList(), Extractor.ConditionType.NONE,
+                "");
+        final String value = "{\"text\": \"foobar\", \"object\": {\"text\": \"foobar\", \"null\": null, \"nested\": {\"text\": \"foobar\"}}}";
+
+        assertThat(jsonExtractor.run(value)).containsOnly(
+                new Extractor.Result("text=foobar, nested={text=foobar}", "object", -1, -1)
+        );
+    }
+
+    @Test
+    public void testRunWithIncludedKeysAndInvalidJson() throws Exception {
+        final JsonExtractor jsonExtractor = new JsonExtractor(new MetricRegistry(), "json", "title", 0L, Extractor.CursorStrategy.COPY,
+                "source", "target", ImmutableMap.of("include_keys", "text"), "user", Collections.emptyList(), Extractor.ConditionType.NONE,
+                "");
+
+        assertThat(jsonExtractor.run("{\"text\": \"foobar\", \"object\": {")).isEmpty();
+        assertThat(jsonExtractor.run("[\"text\"]")).isEmpty();
+    }
+
+    @Test
+    public void keyPathsSelectSubtrees() {
+        final JsonExtractor.KeyPaths keyPaths = JsonExtractor.KeyPaths.parse("a.b, a.b.c, d");
+
+        assertThat(keyPaths.selectsAll("a")).isFalse();
+        assertThat(keyPaths.selectsAll("d")).isTrue();
+        assertThat(keyPaths.child("a").selectsAll("b")).isTrue();
+        assertThat(keyPaths.child("x")).isNull();
+        assertThat(JsonExtractor.KeyPaths.parse(" , ")).isNull();
+        assertThat(JsonExtractor.KeyPaths.parse(null)).isNull();
+    }
 }
@@ -0,0 +1,199 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.lookup.adapters;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import org.graylog2.lookup.adapters.dnslookup.DnsLookupType;
+import org.graylog2.lookup.adapters.dnslookup.StubDnsServer;
+import org.graylog2.plugin.lookup.LookupResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DnsLookupDataAdapterTest {
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final AtomicLong nanos = new AtomicLong();
+
+    private StubDnsServer dnsServer;
+    private DnsLookupDataAdapter adapter;
+
+    @Before
+    public void setUp() throws Exception {
+        dnsServer = new StubDnsServer();
+        dnsServer.addPtrRecord("10.0.0.1", "host1.example.org", 60L);
+        dnsServer.addPtrRecord("10.0.0.2", "host2.example.org", 60L);
+        dnsServer.addPtrRecord("10.0.0.3", "host3.example.org", 60L);
+
+        final DnsLookupDataAdapter.Config config = DnsLookupDataAdapter.Config.Builder.create()
+                .type(DnsLookupDataAdapter.NAME)
+                .lookupType(DnsLookupType.PTR)
+                .serverIps(dnsServer.serverAddress())
+                .requestTimeout(1000)
+                .negativeCacheTTL(30L)
+                .staleTTL(60L)
+                .build();
+        adapter = new DnsLookupDataAdapter("id", "name", config, metricRegistry, nanos::get);
+        adapter.doStart();
+    }
+
+    @After
+    public void tearDown() {
+        adapter.doStop();
+        dnsServer.close();
+    }
+
+    @Test
+    public void reverseLookupReturnsHostname() {
+        final LookupResult result = adapter.doGet("10.0.0.1");
+
+        assertThat((String) result.singleValue()).startsWith("host1.example.org");
+        assertThat(result.cacheTTL()).isEqualTo(60000L);
+        assertThat(dnsServer.queryCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void cachedResultsDoNotQueryTheServer() {
+        final LookupResult first = adapter.doGet("10.0.0.1");
+        final LookupResult second = adapter.doGet("10.0.0.1");
+
+        assertThat(second).isEqualTo(first);
+        assertThat(dnsServer.queryCount()).isEqualTo(1);
+        assertThat(metricRegistry.meter(MetricRegistry.name(DnsLookupDataAdapter.class, "id", "cacheHits")).getCount()).isEqualTo(1L);
+    }
+
+    @Test
+    public void concurrentLookupsOfTheSameKeyShareOneQuery() throws Exception {
+        dnsServer.setResponseDelay(200L, TimeUnit.MILLISECONDS);
+
+        // Both keys are trimmed to the same host
+        final CompletableFuture<LookupResult> first = CompletableFuture.supplyAsync(() -> adapter.doGet("10.0.0.1"));
+        final CompletableFuture<LookupResult> second = CompletableFuture.supplyAsync(() -> adapter.doGet(" 10.0.0.1 "));
+
+        assertThat(second.get()).isEqualTo(first.get());
+        assertThat(dnsServer.queryCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void batchLookupSendsAllQueriesBeforeWaiting() {
+        dnsServer.setResponseDelay(300L, TimeUnit.MILLISECONDS);
+
+        final long start = System.nanoTime();
+        final Map<Object, LookupResult> results = adapter.doGetAll(ImmutableList.of("10.0.0.3", "10.0.0.1", "10.0.0.2", "10.0.0.4"));
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(results.keySet()).containsExactly("10.0.0.3", "10.0.0.1", "10.0.0.2", "10.0.0.4");
+        assertThat((String) results.get("10.0.0.3").singleValue()).startsWith("host3.example.org");
+        assertThat((String) results.get("10.0.0.1").singleValue()).startsWith("host1.example.org");
+        assertThat((String) results.get("10.0.0.2").singleValue()).startsWith("host2.example.org");
+        assertThat(results.get("10.0.0.4")).isEqualTo(LookupResult.empty());
+        // Sequential queries would take at least 1200 ms
+        assertThat(elapsedMillis).isLessThan(1000L);
+    }
+
+    @Test
+    public void waitingForRequestPermitCountsTowardsRequestTimeout() throws Exception {
+        final DnsLookupDataAdapter.Config config = DnsLookupDataAdapter.Config.Builder.create()
+                .type(DnsLookupDataAdapter.NAME)
+                .lookupType(DnsLookupType.PTR)
+                .serverIps(dnsServer.serverAddress())
+                .requestTimeout(500)
+                .maxConcurrentRequests(1)
+                .build();
+        final DnsLookupDataAdapter limitedAdapter = new DnsLookupDataAdapter("limited", "limited", config, metricRegistry, nanos::get);
+        limitedAdapter.doStart();
+        try {
+            dnsServer.setDropQueries(true);
+            // Holds the only permit until the DNS client gives up on the query
+            final CompletableFuture<LookupResult> first = CompletableFuture.supplyAsync(() -> limitedAdapter.doGet("10.0.0.1"));
+            Thread.sleep(50L);
+
+            final long start = System.nanoTime();
+            assertThat(limitedAdapter.doGet("10.0.0.2")).isEqualTo(LookupResult.empty());
+            final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            // Waiting for the permit and then for the response separately would take about 1000 ms
+            assertThat(elapsedMillis).isLessThan(800L);
+            assertThat(first.get()).isEqualTo(LookupResult.empty());
+        } finally {
+            limitedAdapter.doStop();
+        }
+    }
+
+    @Test
+    public void emptyResultsAreCachedForTheNegativeCacheTTL() {
+        assertThat(adapter.doGet("10.0.0.99")).isEqualTo(LookupResult.empty());
+        assertThat(adapter.doGet("10.0.0.99")).isEqualTo(LookupResult.empty());
+        assertThat(dnsServer.queryCount()).isEqualTo(1);
+
+        // Past the negative TTL and the stale period
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(91L));
+        dnsServer.addPtrRecord("10.0.0.99", "host99.example.org", 60L);
+
+        assertThat((String) adapter.doGet("10.0.0.99").singleValue()).startsWith("host99.example.org");
+        assertThat(dnsServer.queryCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void expiredResultsAreServedWhileRefreshing() throws Exception {
+        final LookupResult first = adapter.doGet("10.0.0.1");
+        assertThat((String) first.singleValue()).startsWith("host1.example.org");
+
+        // Past the TTL of 60 seconds, but within the stale period
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(61L));
+        dnsServer.addPtrRecord("10.0.0.1", "renamed.example.org", 60L);
+
+        assertThat(adapter.doGet("10.0.0.1")).isEqualTo(first);
+
+        // The refresh runs in the background
+        LookupResult refreshed = first;
+        for (int i = 0; i < 100 && refreshed.equals(first); i++) {
+            Thread.sleep(20L);
+            refreshed = adapter.doGet("10.0.0.1");
+        }
+        assertThat((String) refreshed.singleValue()).startsWith("renamed.example.org");
+        assertThat(dnsServer.queryCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void failedLookupsAreNotCached() throws Exception {
+        dnsServer.setDropQueries(true);
+
+        assertThat(adapter.doGet("10.0.0.1")).isEqualTo(LookupResult.empty());
+
+        // Wait for the DNS client to time out the query
+        final Gauge<?> pendingRequests = metricRegistry.getGauges().get(MetricRegistry.name(DnsLookupDataAdapter.class, "id", "pendingRequests"));
+        for (int i = 0; i < 100 && !Integer.valueOf(0).equals(pendingRequests.getValue()); i++) {
+            Thread.sleep(20L);
+        }
+        final Counter errors = metricRegistry.counter(MetricRegistry.name(DnsLookupDataAdapter.class, "id", "errors"));
+        assertThat(errors.getCount()).isEqualTo(1L);
+
+        dnsServer.setDropQueries(false);
+
+        assertThat((String) adapter.doGet("10.0.0.1").singleValue()).startsWith("host1.example.org");
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.lookup.adapters;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.io.Resources;
+import org.graylog2.plugin.lookup.LookupResult;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedCSVFileDataAdapterTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path resourcePath(String name) throws Exception {
+        final URL resource = Resources.getResource("org/graylog2/lookup/adapters/" + name);
+        return Paths.get(resource.toURI());
+    }
+
+    private MappedCSVFileDataAdapter.Config.Builder configBuilder(Path csvFile) {
+        return MappedCSVFileDataAdapter.Config.builder()
+                .type(MappedCSVFileDataAdapter.NAME)
+                .path(csvFile.toString())
+                .separator(",")
+                .quotechar("\"")
+                .keyColumn("key")
+                .valueColumn("value")
+                .checkInterval(60)
+                .caseInsensitiveLookup(false)
+                .cidrLookup(false);
+    }
+
+    @Test
+    public void doGet_successfully_returns_values() throws Exception {
+        final MappedCSVFileDataAdapter.Config config = configBuilder(resourcePath("CSVFileDataAdapterTest.csv")).build();
+        final MappedCSVFileDataAdapter adapter = new MappedCSVFileDataAdapter("id", "name", config, temporaryFolder.getRoot().toPath(), new MetricRegistry());
+        adapter.doStart();
+
+        assertThat(adapter.doGet("foo")).isEqualTo(LookupResult.single("23"));
+        assertThat(adapter.doGet("bar")).isEqualTo(LookupResult.single("42"));
+        assertThat(adapter.doGet("FOO")).isEqualTo(LookupResult.empty());
+        assertThat(adapter.doGet("quux")).isEqualTo(LookupResult.empty());
+
+        adapter.doStop();
+    }
+
+    @Test
+    public void doGet_successfully_returns_values_for_case_insensitive_lookup() throws Exception {
+        final MappedCSVFileDataAdapter.Config config = configBuilder(resourcePath("CSVFileDataAdapterTest.csv"))
+                .caseInsensitiveLookup(true)
+                .build();
+        final MappedCSVFileDataAdapter adapter = new MappedCSVFileDataAdapter("id", "name", config, temporaryFolder.getRoot().toPath(), new MetricRegistry());
+        adapter.doStart();
+
+        assertThat(adapter.doGet("FOO")).isEqualTo(LookupResult.single("23"));
+        assertThat(adapter.doGet("bar")).isEqualTo(LookupResult.single("42"));
+    }
+
+    @Test
+    public void doGet_returns_most_specific_cidr_range() throws Exception {
+        final MappedCSVFileDataAdapter.Config config = configBuilder(resourcePath("MappedCSVFileDataAdapterTest-cidr.csv"))
+                .keyColumn("network")
+                .valueColumn("location")
+                .cidrLookup(true)
+                .build();
+        final MappedCSVFileDataAdapter adapter = new MappedCSVFileDataAdapter("id", "name", config, temporaryFolder.getRoot().toPath(), new MetricRegistry());
+        adapter.doStart();
+
+        assertThat(adapter.doGet("10.2.3.4")).isEqualTo(LookupResult.single("datacenter"));
+        assertThat(adapter.doGet("10.1.2.3")).isEqualTo(LookupResult.single("office"));
+        assertThat(adapter.doGet("192.168.1.23")).isEqualTo(LookupResult.single("printer"));
+        assertThat(adapter.doGet("192.168.1.24")).isEqualTo(LookupResult.empty());
+        assertThat(adapter.doGet("2001:db8::1")).isEqualTo(LookupResult.single("documentation"));
+        assertThat(adapter.doGet("2001:db9::1")).isEqualTo(LookupResult.empty());
+        assertThat(adapter.doGet("not-an-ip")).isEqualTo(LookupResult.empty());
+    }
+
+    @Test
+    public void replacementInstanceDoesNotTouchIndexOfRunningInstance() throws Exception {
+        final MappedCSVFileDataAdapter.Config config = configBuilder(resourcePath("CSVFileDataAdapterTest.csv")).build();
+        final Path dataDir = temporaryFolder.getRoot().toPath();
+        final Path adapterDirectory = dataDir.resolve("lookup-indexes").resolve("id");
+        // Left over from a previous server run
+        Files.createDirectories(adapterDirectory.resolve("instance-0-stale"));
+
+        final MappedCSVFileDataAdapter oldAdapter = new MappedCSVFileDataAdapter("id", "name", config, dataDir, new MetricRegistry());
+        oldAdapter.doStart();
+        assertThat(countIndexDirectories(adapterDirectory)).isEqualTo(1L);
+
+        // An updated data adapter is started before the old instance is stopped
+        final MappedCSVFileDataAdapter newAdapter = new MappedCSVFileDataAdapter("id", "name", config, dataDir, new MetricRegistry());
+        newAdapter.doStart();
+        assertThat(countIndexDirectories(adapterDirectory)).isEqualTo(2L);
+        assertThat(oldAdapter.doGet("foo")).isEqualTo(LookupResult.single("23"));
+
+        oldAdapter.doStop();
+        assertThat(countIndexDirectories(adapterDirectory)).isEqualTo(1L);
+        assertThat(newAdapter.doGet("foo")).isEqualTo(LookupResult.single("23"));
+
+        newAdapter.doStop();
+        assertThat(countIndexDirectories(adapterDirectory)).isZero();
+    }
+
+    private static long countIndexDirectories(Path adapterDirectory) throws Exception {
+        try (final Stream<Path> files = Files.list(adapterDirectory)) {
+            return files.count();
+        }
+    }
+}
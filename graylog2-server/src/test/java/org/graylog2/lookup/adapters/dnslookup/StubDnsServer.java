@@ -0,0 +1,153 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.lookup.adapters.dnslookup;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.handler.codec.dns.DatagramDnsQuery;
+import io.netty.handler.codec.dns.DatagramDnsQueryDecoder;
+import io.netty.handler.codec.dns.DatagramDnsResponse;
+import io.netty.handler.codec.dns.DatagramDnsResponseEncoder;
+import io.netty.handler.codec.dns.DefaultDnsPtrRecord;
+import io.netty.handler.codec.dns.DefaultDnsQuestion;
+import io.netty.handler.codec.dns.DefaultDnsRawRecord;
+import io.netty.handler.codec.dns.DnsQuestion;
+import io.netty.handler.codec.dns.DnsRecord;
+import io.netty.handler.codec.dns.DnsRecordType;
+import io.netty.handler.codec.dns.DnsResponseCode;
+import io.netty.handler.codec.dns.DnsSection;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal DNS server on the loopback interface which answers A and PTR queries from static records. Unknown names
+ * are answered with NXDOMAIN.
+ */
+public class StubDnsServer implements Closeable {
+    private final NioEventLoopGroup eventLoopGroup = new NioEventLoopGroup(1);
+    private final Map<String, DnsRecord> records = new ConcurrentHashMap<>();
+    private final AtomicInteger queryCount = new AtomicInteger();
+    private final Channel channel;
+
+    private volatile long responseDelayMillis = 0L;
+    private volatile boolean dropQueries = false;
+
+    public StubDnsServer() throws InterruptedException {
+        this.channel = new Bootstrap()
+                .group(eventLoopGroup)
+                .channel(NioDatagramChannel.class)
+                .handler(new ChannelInitializer<DatagramChannel>() {
+                    @Override
+                    protected void initChannel(DatagramChannel ch) {
+                        ch.pipeline().addLast(new DatagramDnsQueryDecoder(), new DatagramDnsResponseEncoder(), new QueryHandler());
+                    }
+                })
+                .bind(InetAddress.getLoopbackAddress(), 0)
+                .sync()
+                .channel();
+    }
+
+    /**
+     * Returns the server address in the format of the {@code server_ips} setting of the DNS data adapter.
+     */
+    public String serverAddress() {
+        final InetSocketAddress address = (InetSocketAddress) channel.localAddress();
+        return address.getAddress().getHostAddress() + ":" + address.getPort();
+    }
+
+    public void addARecord(String hostname, String ipAddress, long ttlSeconds) throws Exception {
+        final byte[] address = InetAddress.getByName(ipAddress).getAddress();
+        records.put(key(hostname, DnsRecordType.A),
+                new DefaultDnsRawRecord(hostname + ".", DnsRecordType.A, ttlSeconds, Unpooled.wrappedBuffer(address)));
+    }
+
+    public void addPtrRecord(String ipv4Address, String hostname, long ttlSeconds) {
+        final String[] octets = ipv4Address.split("\\.");
+        final String reverseName = octets[3] + "." + octets[2] + "." + octets[1] + "." + octets[0] + ".in-addr.arpa";
+        records.put(key(reverseName, DnsRecordType.PTR),
+                new DefaultDnsPtrRecord(reverseName + ".", DnsRecord.CLASS_IN, ttlSeconds, hostname + "."));
+    }
+
+    public int queryCount() {
+        return queryCount.get();
+    }
+
+    public void setResponseDelay(long delay, TimeUnit unit) {
+        this.responseDelayMillis = unit.toMillis(delay);
+    }
+
+    public void setDropQueries(boolean dropQueries) {
+        this.dropQueries = dropQueries;
+    }
+
+    @Override
+    public void close() {
+        channel.close().syncUninterruptibly();
+        eventLoopGroup.shutdownGracefully(0L, 0L, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    private static String key(String name, DnsRecordType type) {
+        final String trimmed = name.endsWith(".") ? name.substring(0, name.length() - 1) : name;
+        return type.name() + ":" + trimmed.toLowerCase(Locale.ENGLISH);
+    }
+
+    private class QueryHandler extends SimpleChannelInboundHandler<DatagramDnsQuery> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, DatagramDnsQuery query) {
+            queryCount.incrementAndGet();
+            if (dropQueries) {
+                return;
+            }
+
+            final DnsQuestion question = query.recordAt(DnsSection.QUESTION);
+            final DatagramDnsResponse response = new DatagramDnsResponse(query.recipient(), query.sender(), query.id());
+            response.setRecursionDesired(query.isRecursionDesired());
+            response.setRecursionAvailable(true);
+            response.addRecord(DnsSection.QUESTION, new DefaultDnsQuestion(question.name(), question.type()));
+
+            final DnsRecord record = records.get(key(question.name(), question.type()));
+            if (record == null) {
+                response.setCode(DnsResponseCode.NXDOMAIN);
+            } else if (record instanceof DefaultDnsRawRecord) {
+                // Each response consumes the content of the raw record
+                response.addRecord(DnsSection.ANSWER, ((DefaultDnsRawRecord) record).retainedDuplicate());
+            } else {
+                response.addRecord(DnsSection.ANSWER, record);
+            }
+
+            if (responseDelayMillis > 0) {
+                ctx.executor().schedule(() -> ctx.writeAndFlush(response), responseDelayMillis, TimeUnit.MILLISECONDS);
+            } else {
+                ctx.writeAndFlush(response);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.lookup.adapters.mappedindex;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedIndexBuilderTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void buildsIndexWithAllKeys() throws Exception {
+        final Path indexFile = temporaryFolder.getRoot().toPath().resolve("test.idx");
+        final int count = 100_000;
+
+        try (final MappedIndexBuilder builder = new MappedIndexBuilder(indexFile, false)) {
+            for (int i = 0; i < count; i++) {
+                builder.add("key-" + i, "value-" + i);
+            }
+            assertThat(builder.build()).isEqualTo(count);
+        }
+
+        final MappedIndex index = MappedIndex.open(indexFile);
+        assertThat(index.size()).isEqualTo(count);
+        for (int i = 0; i < count; i++) {
+            assertThat(index.get("key-" + i)).isEqualTo("value-" + i);
+        }
+        for (int i = count; i < count + 1000; i++) {
+            assertThat(index.get("key-" + i)).isNull();
+        }
+        assertThat(Files.exists(indexFile.resolveSibling("test.idx.tmp"))).isFalse();
+    }
+
+    @Test
+    public void lastValueWinsForDuplicateKeys() throws Exception {
+        final Path indexFile = temporaryFolder.getRoot().toPath().resolve("test.idx");
+
+        try (final MappedIndexBuilder builder = new MappedIndexBuilder(indexFile, false)) {
+            builder.add("foo", "1");
+            builder.add("bar", "2");
+            builder.add("foo", "3");
+            assertThat(builder.build()).isEqualTo(2);
+        }
+
+        final MappedIndex index = MappedIndex.open(indexFile);
+        assertThat(index.get("foo")).isEqualTo("3");
+        assertThat(index.get("bar")).isEqualTo("2");
+    }
+
+    @Test
+    public void buildsEmptyIndex() throws Exception {
+        final Path indexFile = temporaryFolder.getRoot().toPath().resolve("test.idx");
+
+        try (final MappedIndexBuilder builder = new MappedIndexBuilder(indexFile, false)) {
+            assertThat(builder.build()).isEqualTo(0);
+        }
+
+        final MappedIndex index = MappedIndex.open(indexFile);
+        assertThat(index.size()).isEqualTo(0);
+        assertThat(index.get("foo")).isNull();
+    }
+
+    @Test
+    public void closeWithoutBuildDiscardsIndex() throws Exception {
+        final Path indexFile = temporaryFolder.getRoot().toPath().resolve("test.idx");
+
+        try (final MappedIndexBuilder builder = new MappedIndexBuilder(indexFile, false)) {
+            builder.add("foo", "1");
+        }
+
+        assertThat(Files.exists(indexFile)).isFalse();
+        assertThat(Files.exists(indexFile.resolveSibling("test.idx.tmp"))).isFalse();
+    }
+}
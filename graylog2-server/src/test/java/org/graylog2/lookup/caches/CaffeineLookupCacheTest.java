@@ -0,0 +1,179 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.lookup.caches;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.graylog2.plugin.lookup.LookupCacheKey;
+import org.graylog2.plugin.lookup.LookupDataAdapter;
+import org.graylog2.plugin.lookup.LookupResult;
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CaffeineLookupCacheTest {
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicReference<LookupDataAdapter> dataAdapter = new AtomicReference<>();
+
+    private CaffeineLookupCache createCache(CaffeineLookupCache.Config config) {
+        // The direct executor runs refreshes and maintenance synchronously to make the tests deterministic
+        final LookupCacheRefreshExecutor executor = new LookupCacheRefreshExecutor(MoreExecutors::newDirectExecutorService);
+        return new CaffeineLookupCache("id", "name", config, metricRegistry, executor,
+                adapterId -> "adapter".equals(adapterId) ? Optional.ofNullable(dataAdapter.get()) : Optional.empty(),
+                nanos::get);
+    }
+
+    private static LookupDataAdapter dataAdapter(Object key, LookupResult result) {
+        final LookupDataAdapter adapter = mock(LookupDataAdapter.class);
+        when(adapter.get(key)).thenReturn(result);
+        return adapter;
+    }
+
+    private CaffeineLookupCache.Config.Builder configBuilder() {
+        return CaffeineLookupCache.Config.builder()
+                .type(CaffeineLookupCache.NAME)
+                .maxSize(1000)
+                .maxWeight(0)
+                .expireAfterAccess(0)
+                .expireAfterWrite(0)
+                .refreshAfterWrite(0);
+    }
+
+    @Test
+    public void getCountsHitsAndMisses() {
+        final CaffeineLookupCache cache = createCache(configBuilder().build());
+        final LookupCacheKey key = LookupCacheKey.createFromJSON("adapter", "foo");
+
+        assertThat(cache.get(key, () -> LookupResult.single("bar"))).isEqualTo(LookupResult.single("bar"));
+        assertThat(cache.get(key, () -> LookupResult.single("baz"))).isEqualTo(LookupResult.single("bar"));
+
+        assertThat(metricRegistry.meter("org.graylog2.lookup.caches.id.requests").getCount()).isEqualTo(2L);
+        assertThat(metricRegistry.meter("org.graylog2.lookup.caches.id.hits").getCount()).isEqualTo(1L);
+        assertThat(metricRegistry.meter("org.graylog2.lookup.caches.id.misses").getCount()).isEqualTo(1L);
+        assertThat(cache.entryCount()).isEqualTo(1L);
+    }
+
+    @Test
+    public void failingLoaderReturnsEmptyResultAndIsNotCached() {
+        final CaffeineLookupCache cache = createCache(configBuilder().build());
+        final LookupCacheKey key = LookupCacheKey.createFromJSON("adapter", "foo");
+
+        assertThat(cache.get(key, () -> {
+            throw new IllegalStateException("boom");
+        })).isEqualTo(LookupResult.empty());
+        assertThat(cache.getIfPresent(key)).isEqualTo(LookupResult.empty());
+        assertThat(cache.get(key, () -> LookupResult.single("bar"))).isEqualTo(LookupResult.single("bar"));
+    }
+
+    @Test
+    public void purgeWithPrefixOnlyRemovesKeysWithThatPrefix() {
+        final CaffeineLookupCache cache = createCache(configBuilder().build());
+        final LookupCacheKey key1 = LookupCacheKey.createFromJSON("adapter1", "foo");
+        final LookupCacheKey key2 = LookupCacheKey.createFromJSON("adapter1", "bar");
+        final LookupCacheKey key3 = LookupCacheKey.createFromJSON("adapter2", "foo");
+
+        cache.get(key1, () -> LookupResult.single("1"));
+        cache.get(key2, () -> LookupResult.single("2"));
+        cache.get(key3, () -> LookupResult.single("3"));
+
+        cache.purge(LookupCacheKey.createFromJSON("adapter1", null));
+
+        assertThat(cache.getIfPresent(key1)).isEqualTo(LookupResult.empty());
+        assertThat(cache.getIfPresent(key2)).isEqualTo(LookupResult.empty());
+        assertThat(cache.getIfPresent(key3)).isEqualTo(LookupResult.single("3"));
+
+        // Keys that are added again after the purge must be purgeable as well
+        cache.get(key1, () -> LookupResult.single("1"));
+        cache.purge(LookupCacheKey.createFromJSON("adapter1", null));
+        assertThat(cache.getIfPresent(key1)).isEqualTo(LookupResult.empty());
+    }
+
+    @Test
+    public void refreshServesStaleValueAndReloadsInBackground() {
+        final CaffeineLookupCache cache = createCache(configBuilder()
+                .refreshAfterWrite(10)
+                .refreshAfterWriteUnit(TimeUnit.SECONDS)
+                .build());
+        final LookupCacheKey key = LookupCacheKey.createFromJSON("adapter", "foo");
+        dataAdapter.set(dataAdapter("foo", LookupResult.single(2)));
+
+        assertThat(cache.get(key, () -> LookupResult.single(1))).isEqualTo(LookupResult.single(1));
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(11));
+
+        // The first read after the refresh interval returns the old value and triggers the reload
+        assertThat(cache.get(key, () -> LookupResult.single(-1))).isEqualTo(LookupResult.single(1));
+        assertThat(cache.get(key, () -> LookupResult.single(-1))).isEqualTo(LookupResult.single(2));
+        assertThat(metricRegistry.meter("org.graylog2.lookup.caches.id.misses").getCount()).isEqualTo(1L);
+    }
+
+    @Test
+    public void refreshUsesCurrentDataAdapter() {
+        final CaffeineLookupCache cache = createCache(configBuilder()
+                .refreshAfterWrite(10)
+                .refreshAfterWriteUnit(TimeUnit.SECONDS)
+                .build());
+        final LookupCacheKey key = LookupCacheKey.createFromJSON("adapter", "foo");
+        dataAdapter.set(dataAdapter("foo", LookupResult.single("old")));
+        cache.get(key, () -> dataAdapter.get().get("foo"));
+
+        // The data adapter is updated, the lookup table now uses the new instance
+        dataAdapter.set(dataAdapter("foo", LookupResult.single("new")));
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(11));
+
+        assertThat(cache.get(key, () -> LookupResult.single(-1))).isEqualTo(LookupResult.single("old"));
+        assertThat(cache.getIfPresent(key)).isEqualTo(LookupResult.single("new"));
+    }
+
+    @Test
+    public void refreshRemovesEntriesOfDeletedDataAdapter() {
+        final CaffeineLookupCache cache = createCache(configBuilder()
+                .refreshAfterWrite(10)
+                .refreshAfterWriteUnit(TimeUnit.SECONDS)
+                .build());
+        final LookupCacheKey key = LookupCacheKey.createFromJSON("adapter", "foo");
+        cache.get(key, () -> LookupResult.single("bar"));
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(11));
+
+        assertThat(cache.get(key, () -> LookupResult.single(-1))).isEqualTo(LookupResult.single("bar"));
+        assertThat(cache.getIfPresent(key)).isEqualTo(LookupResult.empty());
+        assertThat(cache.entryCount()).isEqualTo(0L);
+    }
+
+    @Test
+    public void estimateWeightGrowsWithResultSize() {
+        final LookupCacheKey key = LookupCacheKey.createFromJSON("adapter", "foo");
+        final int small = CaffeineLookupCache.estimateWeight(key, LookupResult.single("a"));
+        final int large = CaffeineLookupCache.estimateWeight(key, LookupResult.multi("a", ImmutableMap.of(
+                "country", "Germany",
+                "city", "Hamburg",
+                "coordinates", ImmutableMap.of("lat", 53.55, "lon", 9.99))));
+
+        assertThat(small).isPositive();
+        assertThat(large).isGreaterThan(small);
+    }
+}
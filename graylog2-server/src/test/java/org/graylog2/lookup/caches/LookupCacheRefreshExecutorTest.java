@@ -0,0 +1,71 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.lookup.caches;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LookupCacheRefreshExecutorTest {
+    private final List<ExecutorService> executors = new ArrayList<>();
+    private final LookupCacheRefreshExecutor refreshExecutor = new LookupCacheRefreshExecutor(() -> {
+        final ExecutorService executor = MoreExecutors.newDirectExecutorService();
+        executors.add(executor);
+        return executor;
+    });
+
+    @Test
+    public void threadPoolIsSharedByAllCaches() {
+        refreshExecutor.acquire();
+        refreshExecutor.acquire();
+        refreshExecutor.release();
+
+        assertThat(executors).hasSize(1);
+        assertThat(executors.get(0).isShutdown()).isFalse();
+    }
+
+    @Test
+    public void threadPoolIsShutDownWithLastCache() {
+        refreshExecutor.acquire();
+        refreshExecutor.acquire();
+        refreshExecutor.release();
+        refreshExecutor.release();
+
+        assertThat(executors).hasSize(1);
+        assertThat(executors.get(0).isShutdown()).isTrue();
+
+        // A cache started afterwards gets a new thread pool
+        refreshExecutor.acquire();
+        assertThat(executors).hasSize(2);
+        assertThat(executors.get(1).isShutdown()).isFalse();
+    }
+
+    @Test
+    public void tasksRunOnCallingThreadWithoutRunningCache() {
+        final AtomicBoolean ran = new AtomicBoolean();
+        refreshExecutor.execute(() -> ran.set(true));
+
+        assertThat(ran.get()).isTrue();
+        assertThat(executors).isEmpty();
+    }
+}
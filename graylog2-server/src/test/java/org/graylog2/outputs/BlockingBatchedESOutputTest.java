@@ -24,6 +24,7 @@ import org.graylog2.indexer.IndexSet;
 import org.graylog2.indexer.messages.Messages;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.streams.Stream;
 import org.graylog2.shared.journal.NoopJournal;
 import org.junit.Before;
 import org.junit.Rule;
@@ -32,6 +33,7 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -39,6 +41,7 @@ import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class BlockingBatchedESOutputTest {
     @Rule
@@ -76,6 +79,26 @@ public class BlockingBatchedESOutputTest {
         verify(messages, times(1)).bulkIndex(eq(messageList));
     }
 
+    @Test
+    public void writeList() throws Exception {
+        final BlockingBatchedESOutput output = new BlockingBatchedESOutput(metricRegistry, messages, config, journal);
+        final IndexSet indexSet = mock(IndexSet.class);
+
+        final List<Message> messageList = new ArrayList<>();
+        final List<Map.Entry<IndexSet, Message>> entries = new ArrayList<>();
+        for (int i = 0; i < config.getOutputBatchSize() + 1; i++) {
+            final Message message = new Message("message" + i, "test", Tools.nowUTC());
+            message.addStream(stream(indexSet));
+            messageList.add(message);
+            entries.add(Maps.immutableEntry(indexSet, message));
+        }
+
+        output.write(messageList);
+
+        // The last message stays in the buffer until the next flush
+        verify(messages, times(1)).bulkIndex(eq(entries.subList(0, config.getOutputBatchSize())));
+    }
+
     @Test
     public void forceFlushIfTimedOut() throws Exception {
         final BlockingBatchedESOutput output = new BlockingBatchedESOutput(metricRegistry, messages, config, journal);
@@ -100,4 +123,10 @@ public class BlockingBatchedESOutputTest {
 
         return builder.build();
     }
-}
\ No newline at end of file
+
+    private static Stream stream(IndexSet indexSet) {
+        final Stream stream = mock(Stream.class);
+        when(stream.getIndexSet()).thenReturn(indexSet);
+        return stream;
+    }
+}
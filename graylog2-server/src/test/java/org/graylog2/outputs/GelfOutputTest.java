@@ -16,6 +16,8 @@
  */
 package org.graylog2.outputs;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
 import org.graylog2.gelfclient.GelfMessage;
 import org.graylog2.gelfclient.GelfMessageLevel;
 import org.graylog2.gelfclient.transport.GelfTransport;
@@ -26,12 +28,18 @@ import org.joda.time.DateTimeZone;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class GelfOutputTest {
     @Test
@@ -47,6 +55,41 @@ public class GelfOutputTest {
         verify(transport).send(eq(gelfMessage));
     }
 
+    @Test
+    public void testWriteSpreadsBatchesOverTransports() throws Exception {
+        final GelfTransport transport1 = mock(GelfTransport.class);
+        final GelfTransport transport2 = mock(GelfTransport.class);
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final GelfOutput gelfOutput = new GelfOutput(ImmutableList.of(transport1, transport2), false, metricRegistry, "gelf");
+        final List<Message> messages = ImmutableList.of(new Message("Test1", "Source", DateTime.now(DateTimeZone.UTC)),
+                new Message("Test2", "Source", DateTime.now(DateTimeZone.UTC)));
+
+        gelfOutput.write(messages);
+        verify(transport1, times(2)).send(any(GelfMessage.class));
+        verify(transport2, never()).send(any(GelfMessage.class));
+
+        gelfOutput.write(messages);
+        verify(transport2, times(2)).send(any(GelfMessage.class));
+
+        assertEquals(4L, metricRegistry.meter("gelf.forwarded").getCount());
+        assertEquals(2L, metricRegistry.timer("gelf.sendTime").getCount());
+    }
+
+    @Test
+    public void testWriteDropsMessagesWhenFull() throws Exception {
+        final GelfTransport transport = mock(GelfTransport.class);
+        when(transport.trySend(any(GelfMessage.class))).thenReturn(true, false);
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final GelfOutput gelfOutput = new GelfOutput(ImmutableList.of(transport), true, metricRegistry, "gelf");
+
+        gelfOutput.write(ImmutableList.of(new Message("Test1", "Source", DateTime.now(DateTimeZone.UTC)),
+                new Message("Test2", "Source", DateTime.now(DateTimeZone.UTC))));
+
+        verify(transport, never()).send(any(GelfMessage.class));
+        assertEquals(1L, metricRegistry.meter("gelf.forwarded").getCount());
+        assertEquals(1L, metricRegistry.meter("gelf.dropped").getCount());
+    }
+
     @Test
     public void testGetRequestedConfiguration() throws Exception {
         final GelfOutput.Config gelfOutputConfig = new GelfOutput.Config();
@@ -16,6 +16,8 @@
  */
 package org.graylog2.outputs;
 
+import com.codahale.metrics.MetricRegistry;
+import com.github.joschi.jadconfig.util.Size;
 import com.google.common.collect.Iterables;
 import org.graylog2.database.NotFoundException;
 import org.graylog2.plugin.configuration.Configuration;
@@ -59,7 +61,7 @@ public class OutputRegistryTest {
 
     @Test
     public void testMessageOutputsIncludesDefault() {
-        OutputRegistry registry = new OutputRegistry(messageOutput, null, null, null, null, FAULT_COUNT_THRESHOLD, FAULT_PENALTY_SECONDS);
+        OutputRegistry registry = createRegistry(messageOutput, null, null);
 
         Set<MessageOutput> outputs = registry.getMessageOutputs();
         assertSame("we should only have the default MessageOutput", Iterables.getOnlyElement(outputs, null), messageOutput);
@@ -67,7 +69,7 @@ public class OutputRegistryTest {
 
     @Test(expected = IllegalArgumentException.class)
     public void testThrowExceptionForUnknownOutputType() throws MessageOutputConfigurationException {
-        OutputRegistry registry = new OutputRegistry(null, null, messageOutputFactory, null, null, FAULT_COUNT_THRESHOLD, FAULT_PENALTY_SECONDS);
+        OutputRegistry registry = createRegistry(null, null, messageOutputFactory);
 
         registry.launchOutput(output, null);
     }
@@ -79,7 +81,7 @@ public class OutputRegistryTest {
         when(messageOutputFactory.fromStreamOutput(eq(output), eq(stream), any(Configuration.class))).thenReturn(messageOutput);
         when(outputService.load(eq(outputId))).thenReturn(output);
 
-        final OutputRegistry outputRegistry = new OutputRegistry(null, outputService, messageOutputFactory, null, null, FAULT_COUNT_THRESHOLD, FAULT_PENALTY_SECONDS);
+        final OutputRegistry outputRegistry = createRegistry(null, outputService, messageOutputFactory);
         assertEquals(0, outputRegistry.getRunningMessageOutputs().size());
 
         MessageOutput result = outputRegistry.getOutputForIdAndStream(outputId, stream);
@@ -95,7 +97,7 @@ public class OutputRegistryTest {
         final Stream stream = mock(Stream.class);
         when(outputService.load(eq(outputId))).thenThrow(NotFoundException.class);
 
-        final OutputRegistry outputRegistry = new OutputRegistry(null, outputService, null, null, null, FAULT_COUNT_THRESHOLD, FAULT_PENALTY_SECONDS);
+        final OutputRegistry outputRegistry = createRegistry(null, outputService, null);
 
         MessageOutput messageOutput = outputRegistry.getOutputForIdAndStream(outputId, stream);
 
@@ -110,7 +112,7 @@ public class OutputRegistryTest {
         when(messageOutputFactory.fromStreamOutput(eq(output), any(Stream.class), any(Configuration.class))).thenThrow(new MessageOutputConfigurationException());
         when(outputService.load(eq(outputId))).thenReturn(output);
 
-        final OutputRegistry outputRegistry = new OutputRegistry(null, outputService, messageOutputFactory, null, null, FAULT_COUNT_THRESHOLD, FAULT_PENALTY_SECONDS);
+        final OutputRegistry outputRegistry = createRegistry(null, outputService, messageOutputFactory);
         assertEquals(0, outputRegistry.getRunningMessageOutputs().size());
 
         MessageOutput result = outputRegistry.getOutputForIdAndStream(outputId, stream);
@@ -118,4 +120,12 @@ public class OutputRegistryTest {
         assertNull(result);
         assertEquals(0, outputRegistry.getRunningMessageOutputs().size());
     }
+
+    private static OutputRegistry createRegistry(MessageOutput defaultMessageOutput,
+                                                 OutputService outputService,
+                                                 MessageOutputFactory messageOutputFactory) {
+        // A queue size of 0 disables the queues of stream outputs, so no spill directory is needed
+        return new OutputRegistry(defaultMessageOutput, outputService, messageOutputFactory, null, null,
+                FAULT_COUNT_THRESHOLD, FAULT_PENALTY_SECONDS, 0, null, Size.bytes(0L), null, new MetricRegistry());
+    }
 }
@@ -0,0 +1,242 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.outputs;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.outputs.MessageOutput;
+import org.graylog2.plugin.streams.Stream;
+import org.graylog2.shared.bindings.providers.ObjectMapperProvider;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SpillingMessageOutputTest {
+    private static final DateTime TIMESTAMP = new DateTime(2019, 1, 1, 12, 0, DateTimeZone.UTC);
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final ObjectMapper objectMapper = new ObjectMapperProvider().get();
+    private final Stream stream = mock(Stream.class);
+    private final Stream otherStream = mock(Stream.class);
+    private MetricRegistry metricRegistry;
+    private RecordingOutput delegate;
+    private Path spillDir;
+
+    @Before
+    public void setUp() throws Exception {
+        metricRegistry = new MetricRegistry();
+        delegate = new RecordingOutput();
+        spillDir = temporaryFolder.newFolder().toPath();
+        when(stream.getId()).thenReturn("stream-id");
+        when(otherStream.getId()).thenReturn("other-stream-id");
+    }
+
+    @Test
+    public void spillsMessagesWhichDontFitIntoTheQueueAndKeepsTheirOrder() throws Exception {
+        final SpillingMessageOutput output = createOutput(2, 1024L * 1024L);
+        final List<Message> messages = messages(5);
+
+        output.write(messages);
+
+        assertThat(output.getBacklog()).isEqualTo(5L);
+        assertThat(output.getSpillBytes()).isPositive();
+        assertThat(metricRegistry.getGauges()).containsKeys(
+                "org.graylog2.outputs.SpillingMessageOutput.output-id.backlog",
+                "org.graylog2.outputs.SpillingMessageOutput.output-id.spillBytes");
+
+        final List<Message> drained = new ArrayList<>(output.nextBatch());
+        assertThat(drained).containsExactly(messages.get(0), messages.get(1));
+        drained.addAll(output.nextBatch());
+
+        assertThat(ids(drained)).isEqualTo(ids(messages));
+        assertThat(drained.get(4).getTimestamp()).isEqualTo(TIMESTAMP);
+        assertThat(drained.get(4).getField("counter")).isEqualTo(4);
+        assertThat(drained.get(4).getStreams()).containsExactly(stream);
+        assertThat(output.getBacklog()).isZero();
+        assertThat(output.getSpillBytes()).isZero();
+        assertThat(Files.size(spillDir.resolve("output-id.spill"))).isZero();
+    }
+
+    @Test
+    public void spilledMessagesKeepTheirStreamsAndFieldTypes() throws Exception {
+        final SpillingMessageOutput output = createOutput(1, 1024L * 1024L);
+        final DateTime date = new DateTime(2019, 2, 3, 4, 5, DateTimeZone.UTC);
+        final Message message = new Message("message", "source", TIMESTAMP);
+        message.addStream(otherStream);
+        message.addField("date", date);
+        message.addField("long", 42L);
+        message.addField("int", 23);
+        message.addField("double", 1.5d);
+        message.addField("float", 2.5f);
+        message.addField("decimal", new BigDecimal("1.0000000000000000001"));
+        message.addField("string", "foo");
+
+        output.write(messages(1));
+        output.write(message);
+        output.nextBatch();
+        final List<Message> spilled = output.nextBatch();
+
+        assertThat(spilled).hasSize(1);
+        final Message restored = spilled.get(0);
+        assertThat(restored.getId()).isEqualTo(message.getId());
+        assertThat(restored.getStreams()).containsExactly(otherStream);
+        assertThat(restored.getTimestamp()).isEqualTo(TIMESTAMP);
+        assertThat(restored.getField("date")).isEqualTo(date);
+        assertThat(restored.getField("long")).isEqualTo(42L);
+        assertThat(restored.getField("int")).isEqualTo(23);
+        assertThat(restored.getField("double")).isEqualTo(1.5d);
+        assertThat(restored.getField("float")).isEqualTo(2.5f);
+        assertThat(restored.getField("decimal")).isEqualTo(new BigDecimal("1.0000000000000000001"));
+        assertThat(restored.getField("string")).isEqualTo("foo");
+    }
+
+    @Test
+    public void newMessagesDontOvertakeSpilledMessages() throws Exception {
+        final SpillingMessageOutput output = createOutput(1, 1024L * 1024L);
+        final List<Message> messages = messages(3);
+
+        output.write(messages.subList(0, 2));
+        assertThat(output.nextBatch()).containsExactly(messages.get(0));
+
+        // The queue has room again, but the spilled message must be written first
+        output.write(messages.get(2));
+        assertThat(ids(output.nextBatch())).containsExactly(messages.get(1).getId(), messages.get(2).getId());
+    }
+
+    @Test
+    public void discardsMessagesIfSpillFileIsFull() throws Exception {
+        final SpillingMessageOutput output = createOutput(1, 1L);
+
+        output.write(messages(3));
+
+        assertThat(output.getBacklog()).isEqualTo(1L);
+        assertThat(output.getSpillBytes()).isZero();
+        assertThat(output.getStats().dropped()).isEqualTo(2L);
+    }
+
+    @Test
+    public void spillFileDoesntGrowBeyondMaximumSizeWhilePartiallyRead() throws Exception {
+        final long maxSpillBytes = 512L * 1024L;
+        final SpillingMessageOutput output = createOutput(1, maxSpillBytes);
+        final Path spillFile = spillDir.resolve("output-id.spill");
+        final List<Message> messages = messages(20 * SpillingMessageOutput.MAX_BATCH_SIZE);
+        final List<Message> drained = new ArrayList<>();
+
+        // Every round spills as many messages as are read, so the spill file is never read entirely
+        for (int i = 0; i < messages.size(); i += SpillingMessageOutput.MAX_BATCH_SIZE) {
+            output.write(messages.subList(i, i + SpillingMessageOutput.MAX_BATCH_SIZE));
+            drained.addAll(output.nextBatch());
+
+            assertThat(output.getSpillBytes()).isPositive();
+            assertThat(Files.size(spillFile)).isLessThanOrEqualTo(maxSpillBytes);
+        }
+        List<Message> batch;
+        while (!(batch = output.nextBatch()).isEmpty()) {
+            drained.addAll(batch);
+        }
+
+        assertThat(output.getStats().dropped()).isEqualTo(0L);
+        assertThat(ids(drained)).isEqualTo(ids(messages));
+        assertThat(Files.size(spillFile)).isZero();
+    }
+
+    @Test
+    public void workerWritesQueuedMessagesToDelegate() throws Exception {
+        final SpillingMessageOutput output = createOutput(2, 1024L * 1024L);
+        final List<Message> messages = messages(10);
+        output.start();
+
+        output.write(messages);
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (delegate.messages.size() < messages.size() && System.nanoTime() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertThat(ids(delegate.messages)).isEqualTo(ids(messages));
+        assertThat(output.getStats().backlog()).isZero();
+
+        output.stop();
+        assertThat(delegate.isRunning()).isFalse();
+        assertThat(spillDir.resolve("output-id.spill")).doesNotExist();
+        assertThat(metricRegistry.getMetrics()).isEmpty();
+    }
+
+    private SpillingMessageOutput createOutput(int queueSize, long maxSpillBytes) {
+        return new SpillingMessageOutput(delegate, "output-id", queueSize, spillDir, maxSpillBytes,
+                objectMapper, metricRegistry);
+    }
+
+    private static List<Message> messages(int count) {
+        final List<Message> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final Message message = new Message("message " + i, "source", TIMESTAMP);
+            message.addField("counter", i);
+            message.addStream(stream);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static List<String> ids(List<Message> messages) {
+        return messages.stream().map(Message::getId).collect(Collectors.toList());
+    }
+
+    private static class RecordingOutput implements MessageOutput {
+        private final List<Message> messages = new CopyOnWriteArrayList<>();
+        private volatile boolean running = true;
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public void write(Message message) {
+            write(Collections.singletonList(message));
+        }
+
+        @Override
+        public void write(List<Message> messages) {
+            this.messages.addAll(messages);
+        }
+
+        @Override
+        public void stop() {
+            running = false;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.plugin;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageTraceTest {
+    private final RecordingRecorder recorder = new RecordingRecorder();
+
+    @Test
+    public void recordsTimeSincePreviousStage() {
+        final MessageTrace trace = new MessageTrace(recorder, 1_000L);
+
+        trace.mark(MessageTrace.Stage.JOURNAL, 1_500L);
+        trace.mark(MessageTrace.Stage.DECODE, 1_600L);
+
+        assertThat(recorder.recordings).containsExactly("journal=500", "decode=100");
+    }
+
+    @Test
+    public void skippedStagesAreAddedToTheNextStage() {
+        final MessageTrace trace = new MessageTrace(recorder, 1_000L);
+
+        trace.mark(MessageTrace.Stage.PROCESS, 3_000L);
+
+        assertThat(trace.isReached(MessageTrace.Stage.DECODE)).isFalse();
+        assertThat(recorder.recordings).containsExactly("process=2000");
+    }
+
+    @Test
+    public void onlyFirstMarkOfStageCounts() {
+        final MessageTrace trace = new MessageTrace(recorder, 1_000L);
+
+        trace.mark(MessageTrace.Stage.DECODE, 1_100L);
+        trace.mark(MessageTrace.Stage.DECODE, 1_200L);
+
+        assertThat(recorder.recordings).containsExactly("decode=100");
+    }
+
+    @Test
+    public void recordsTotalOnceIndexed() {
+        final MessageTrace trace = new MessageTrace(recorder, 1_000L);
+
+        trace.mark(MessageTrace.Stage.OUTPUT_BUFFER, 4_000L);
+        trace.mark(MessageTrace.Stage.INDEX, 5_000L);
+        trace.mark(MessageTrace.Stage.INDEX, 6_000L);
+
+        assertThat(recorder.recordings).containsExactly("output_buffer=3000", "index=1000", "total=4000");
+    }
+
+    @Test
+    public void negativeTimesAreRecordedAsZero() {
+        final MessageTrace trace = new MessageTrace(recorder, 1_000L);
+
+        trace.mark(MessageTrace.Stage.JOURNAL, 900L);
+
+        assertThat(recorder.recordings).containsExactly("journal=0");
+    }
+
+    private static class RecordingRecorder implements MessageTrace.Recorder {
+        private final List<String> recordings = new ArrayList<>();
+
+        @Override
+        public void recordStage(MessageTrace.Stage stage, long elapsedNanos) {
+            recordings.add(stage.getName() + "=" + elapsedNanos);
+        }
+
+        @Override
+        public void recordTotal(long elapsedNanos) {
+            recordings.add("total=" + elapsedNanos);
+        }
+
+        @Override
+        public void recordProcessor(String processorName, long elapsedNanos) {
+            recordings.add(processorName + "=" + elapsedNanos);
+        }
+    }
+}
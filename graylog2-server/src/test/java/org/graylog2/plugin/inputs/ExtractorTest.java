@@ -24,6 +24,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.graylog2.plugin.Message;
 import org.graylog2.plugin.inputs.Extractor.Result;
+import org.graylog2.shared.metrics.MetricUtils;
 import org.joda.time.DateTime;
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -923,6 +924,56 @@ public class ExtractorTest {
         return new Message(message, "localhost", DateTime.now(UTC));
     }
 
+    @Test
+    public void testTimersAreSampled() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final TestExtractor extractor = new TestExtractor.Builder()
+                .metricRegistry(metricRegistry)
+                .build();
+
+        for (int i = 0; i < 2 * Extractor.TIMER_SAMPLE_RATE; i++) {
+            extractor.runExtractor(createMessage("message"));
+        }
+
+        assertThat(metricRegistry.timer(extractor.getCompleteTimerName()).getCount()).isEqualTo(2);
+        assertThat(metricRegistry.timer(extractor.getExecutionTimerName()).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testMetersCountEveryRun() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final TestExtractor extractor = new TestExtractor.Builder()
+                .metricRegistry(metricRegistry)
+                .build();
+
+        for (int i = 0; i < 2 * Extractor.TIMER_SAMPLE_RATE; i++) {
+            extractor.runExtractor(createMessage("message"));
+        }
+
+        final long runs = 2 * Extractor.TIMER_SAMPLE_RATE;
+        assertThat(metricRegistry.meter(extractor.getCompleteMeterName()).getCount()).isEqualTo(runs);
+        assertThat(metricRegistry.meter(extractor.getConditionMeterName()).getCount()).isEqualTo(runs);
+        assertThat(metricRegistry.meter(extractor.getExecutionMeterName()).getCount()).isEqualTo(runs);
+        assertThat(metricRegistry.meter(extractor.getConverterMeterName()).getCount()).isEqualTo(runs);
+        assertThat(MetricUtils.buildTimerMap(metricRegistry.timer(extractor.getCompleteTimerName()),
+                metricRegistry.meter(extractor.getCompleteMeterName())).rate.total).isEqualTo((double) runs);
+    }
+
+    @Test
+    public void testConditionMatcherDecidesCondition() throws Exception {
+        final TestExtractor extractor = new TestExtractor.Builder()
+                .conditionType(STRING)
+                .conditionValue("hello")
+                .build();
+
+        final Message msg = createMessage("hello");
+        extractor.runExtractor(msg, (e, value) -> false);
+
+        assertThat(msg.hasField("target")).isFalse();
+        assertThat(extractor.conditionMatches("hello world")).isTrue();
+        assertThat(extractor.conditionMatches("world")).isFalse();
+    }
+
     private static class TestExtractor extends Extractor {
         private final Callable<Result[]> callback;
 
@@ -969,6 +1020,7 @@ public class ExtractorTest {
             private String conditionValue = "";
             private CursorStrategy cursorStrategy = COPY;
             private List<Converter> converters = Collections.emptyList();
+            private MetricRegistry metricRegistry = new MetricRegistry();
 
             public Builder cursorStrategy(CursorStrategy cursorStrategy) {
                 this.cursorStrategy = cursorStrategy;
@@ -1000,6 +1052,11 @@ public class ExtractorTest {
                 return this;
             }
 
+            public Builder metricRegistry(MetricRegistry metricRegistry) {
+                this.metricRegistry = metricRegistry;
+                return this;
+            }
+
             public Builder converters(List<Converter> converters) {
                 this.converters = converters;
                 return this;
@@ -1007,7 +1064,7 @@ public class ExtractorTest {
 
             public TestExtractor build() throws ReservedFieldException {
                 return new TestExtractor(callback,
-                        new MetricRegistry(),
+                        metricRegistry,
                         "test-id",
                         "test-title",
                         0L,
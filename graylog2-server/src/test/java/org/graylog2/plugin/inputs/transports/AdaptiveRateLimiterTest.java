@@ -0,0 +1,120 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.plugin.inputs.transports;
+
+import org.graylog2.plugin.ThrottleState;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class AdaptiveRateLimiterTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1L);
+
+    @Test
+    public void pressureIsHighestLoadIndicator() {
+        final ThrottleState state = new ThrottleState();
+        assertThat(AdaptiveRateLimiter.pressure(state)).isEqualTo(0.0d);
+
+        state.journalSize = 20;
+        state.journalSizeLimit = 100;
+        state.processBufferSize = 1024;
+        state.processBufferCapacity = 512;
+        state.outputBufferSize = 1024;
+        state.outputBufferCapacity = 1024;
+        assertThat(AdaptiveRateLimiter.pressure(state)).isEqualTo(0.5d);
+
+        state.outputLatencyMillis = 2 * AdaptiveRateLimiter.LATENCY_LIMIT_MILLIS;
+        assertThat(AdaptiveRateLimiter.pressure(state)).isEqualTo(1.0d);
+    }
+
+    @Test
+    public void notLimitedWithoutPressure() {
+        final AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(AdaptiveRateLimiter.Priority.NORMAL);
+        acquire(limiter, 100);
+        limiter.update(0.6d, System.nanoTime() + SECOND);
+
+        assertThat(limiter.getRate()).isEqualTo(0.0d);
+    }
+
+    @Test
+    public void lowPriorityIsLimitedFirst() {
+        final AdaptiveRateLimiter low = new AdaptiveRateLimiter(AdaptiveRateLimiter.Priority.LOW);
+        final AdaptiveRateLimiter high = new AdaptiveRateLimiter(AdaptiveRateLimiter.Priority.HIGH);
+        final long now = System.nanoTime() + SECOND;
+
+        low.update(0.6d, now);
+        high.update(0.6d, now);
+        assertThat(low.getRate()).isGreaterThan(0.0d);
+        assertThat(high.getRate()).isEqualTo(0.0d);
+
+        high.update(0.95d, now + SECOND);
+        assertThat(high.getRate()).isGreaterThan(0.0d);
+    }
+
+    @Test
+    public void decreasesMultiplicativelyAndIncreasesAdditively() {
+        final AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(AdaptiveRateLimiter.Priority.NORMAL);
+        final long start = System.nanoTime();
+        acquire(limiter, 1000);
+
+        limiter.update(0.8d, start + SECOND);
+        final double first = limiter.getRate();
+        assertThat(first).isCloseTo(1000 * AdaptiveRateLimiter.DECREASE_FACTOR, within(100.0d));
+
+        limiter.update(0.8d, start + 2 * SECOND);
+        assertThat(limiter.getRate()).isCloseTo(first * AdaptiveRateLimiter.DECREASE_FACTOR, within(0.001d));
+
+        // Within the hysteresis the rate is kept
+        final double second = limiter.getRate();
+        limiter.update(0.65d, start + 3 * SECOND);
+        assertThat(limiter.getRate()).isEqualTo(second);
+
+        limiter.update(0.1d, start + 4 * SECOND);
+        assertThat(limiter.getRate()).isGreaterThan(second);
+
+        for (int i = 5; i < 100 && limiter.getRate() > 0.0d; i++) {
+            limiter.update(0.1d, start + i * SECOND);
+        }
+        assertThat(limiter.getRate()).isEqualTo(0.0d);
+    }
+
+    @Test
+    public void rateNeverDropsBelowMinimum() {
+        final AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(AdaptiveRateLimiter.Priority.LOW);
+        final long start = System.nanoTime();
+        for (int i = 1; i < 50; i++) {
+            limiter.update(1.0d, start + i * SECOND);
+        }
+
+        assertThat(limiter.getRate()).isEqualTo(AdaptiveRateLimiter.MIN_RATE);
+    }
+
+    @Test
+    public void parsesPriority() {
+        assertThat(AdaptiveRateLimiter.Priority.fromString("high")).isEqualTo(AdaptiveRateLimiter.Priority.HIGH);
+        assertThat(AdaptiveRateLimiter.Priority.fromString(null)).isEqualTo(AdaptiveRateLimiter.Priority.NORMAL);
+    }
+
+    private static void acquire(AdaptiveRateLimiter limiter, int permits) {
+        for (int i = 0; i < permits; i++) {
+            limiter.acquire();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.plugin.utilities;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class PooledInflaterTest {
+    private static final byte[] DATA = "Hello World! Hello World! Hello World!".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void inflateZlib() throws IOException {
+        assertThat(PooledInflater.inflate(zlib(DATA), PooledInflater.Format.ZLIB, -1L)).isEqualTo(DATA);
+    }
+
+    @Test
+    public void inflateGzip() throws IOException {
+        assertThat(PooledInflater.inflate(gzip(DATA), PooledInflater.Format.GZIP, -1L)).isEqualTo(DATA);
+    }
+
+    @Test
+    public void inflateGzipWithConcatenatedMembers() throws IOException {
+        final byte[] first = gzip(DATA);
+        final byte[] second = gzip(DATA);
+        final byte[] concatenated = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, concatenated, first.length, second.length);
+
+        final byte[] expected = Arrays.copyOf(DATA, DATA.length * 2);
+        System.arraycopy(DATA, 0, expected, DATA.length, DATA.length);
+        assertThat(PooledInflater.inflate(concatenated, PooledInflater.Format.GZIP, -1L)).isEqualTo(expected);
+    }
+
+    @Test
+    public void inflateStopsAtLimit() throws IOException {
+        final byte[] bomb = zlib(new byte[10 * 1024 * 1024]);
+
+        final boolean truncated = PooledInflater.inflate(bomb, 0, bomb.length, PooledInflater.Format.ZLIB, 1024L,
+                (buffer, length, t) -> {
+                    assertThat(length).isEqualTo(1024);
+                    // The buffer never grows beyond the limit
+                    assertThat(buffer.length).isLessThanOrEqualTo(8192);
+                    return t;
+                });
+        assertThat(truncated).isTrue();
+    }
+
+    @Test
+    public void inflateExactlyAtLimitIsNotTruncated() throws IOException {
+        final byte[] compressed = gzip(DATA);
+
+        final boolean truncated = PooledInflater.inflate(compressed, 0, compressed.length, PooledInflater.Format.GZIP, DATA.length,
+                (buffer, length, t) -> t);
+        assertThat(truncated).isFalse();
+    }
+
+    @Test
+    public void inflateReusesBufferOfCurrentThread() throws IOException {
+        final byte[] compressed = zlib(DATA);
+
+        final byte[] first = PooledInflater.inflate(compressed, 0, compressed.length, PooledInflater.Format.ZLIB, -1L, (buffer, length, t) -> buffer);
+        final byte[] second = PooledInflater.inflate(compressed, 0, compressed.length, PooledInflater.Format.ZLIB, -1L, (buffer, length, t) -> buffer);
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void inflateDropsLargeBuffersAfterUse() throws IOException {
+        final byte[] compressed = zlib(new byte[2 * PooledInflater.MAX_RETAINED_BUFFER_SIZE]);
+
+        assertThat(PooledInflater.inflate(compressed, PooledInflater.Format.ZLIB, -1L)).hasSize(2 * PooledInflater.MAX_RETAINED_BUFFER_SIZE);
+        assertThat(PooledInflater.pooledBufferSize()).isLessThanOrEqualTo(PooledInflater.MAX_RETAINED_BUFFER_SIZE);
+    }
+
+    @Test
+    public void nestedInflateDoesNotOverwriteOuterBuffer() throws IOException {
+        final byte[] outer = zlib(DATA);
+        final byte[] inner = zlib("inner".getBytes(StandardCharsets.UTF_8));
+
+        final String result = PooledInflater.inflate(outer, 0, outer.length, PooledInflater.Format.ZLIB, -1L, (buffer, length, t) -> {
+            final byte[] innerData = PooledInflater.inflate(inner, PooledInflater.Format.ZLIB, -1L);
+            return new String(buffer, 0, length, StandardCharsets.UTF_8) + new String(innerData, StandardCharsets.UTF_8);
+        });
+        assertThat(result).isEqualTo(new String(DATA, StandardCharsets.UTF_8) + "inner");
+    }
+
+    @Test
+    public void inflateTruncatedZlibInputFails() throws IOException {
+        final byte[] compressed = zlib(DATA);
+
+        assertThatThrownBy(() -> PooledInflater.inflate(Arrays.copyOf(compressed, compressed.length / 2), PooledInflater.Format.ZLIB, -1L))
+                .isInstanceOf(EOFException.class);
+    }
+
+    @Test
+    public void inflateGzipWithCorruptTrailerFails() throws IOException {
+        final byte[] compressed = gzip(DATA);
+        compressed[compressed.length - 5] ^= 0xff;
+
+        assertThatThrownBy(() -> PooledInflater.inflate(compressed, PooledInflater.Format.GZIP, -1L))
+                .isInstanceOf(ZipException.class)
+                .hasMessage("Corrupt GZIP trailer");
+    }
+
+    @Test
+    public void inflateInvalidGzipHeaderFails() {
+        assertThatThrownBy(() -> PooledInflater.inflate(new byte[0], PooledInflater.Format.GZIP, -1L))
+                .isInstanceOf(EOFException.class);
+        assertThatThrownBy(() -> PooledInflater.inflate(DATA, PooledInflater.Format.GZIP, -1L))
+                .isInstanceOf(ZipException.class)
+                .hasMessage("Not in GZIP format");
+    }
+
+    private static byte[] zlib(byte[] data) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DeflaterOutputStream deflater = new DeflaterOutputStream(out)) {
+            deflater.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+}
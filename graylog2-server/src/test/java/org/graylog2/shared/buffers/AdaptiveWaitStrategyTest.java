@@ -0,0 +1,156 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.buffers;
+
+import com.codahale.metrics.MetricRegistry;
+import com.lmax.disruptor.AlertException;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SequenceBarrier;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AdaptiveWaitStrategyTest {
+    @Test
+    public void spinTimeFollowsShortWaits() {
+        final AdaptiveWaitStrategy waitStrategy = new AdaptiveWaitStrategy();
+        for (int i = 0; i < 100; i++) {
+            waitStrategy.recordWait(TimeUnit.MICROSECONDS.toNanos(10L));
+        }
+
+        assertThat(waitStrategy.getSpinNanos()).isBetween(TimeUnit.MICROSECONDS.toNanos(19L), TimeUnit.MICROSECONDS.toNanos(21L));
+    }
+
+    @Test
+    public void spinTimeIsMinimalForLongWaits() {
+        final AdaptiveWaitStrategy waitStrategy = new AdaptiveWaitStrategy();
+        for (int i = 0; i < 100; i++) {
+            waitStrategy.recordWait(TimeUnit.SECONDS.toNanos(1L));
+        }
+
+        assertThat(waitStrategy.getSpinNanos()).isEqualTo(AdaptiveWaitStrategy.MIN_SPIN_NANOS);
+    }
+
+    @Test
+    public void spinTimeRecoversQuicklyAfterQuietPeriod() {
+        final AdaptiveWaitStrategy waitStrategy = new AdaptiveWaitStrategy();
+        waitStrategy.recordWait(TimeUnit.HOURS.toNanos(1L));
+        for (int i = 0; i < 50; i++) {
+            waitStrategy.recordWait(TimeUnit.MICROSECONDS.toNanos(1L));
+        }
+
+        assertThat(waitStrategy.getSpinNanos()).isLessThan(AdaptiveWaitStrategy.MAX_SPIN_NANOS);
+        assertThat(waitStrategy.getSpinNanos()).isGreaterThan(AdaptiveWaitStrategy.MIN_SPIN_NANOS);
+    }
+
+    @Test
+    public void consumerSeesAllEventsWithIrregularProducer() throws Exception {
+        final AdaptiveWaitStrategy waitStrategy = new AdaptiveWaitStrategy();
+        final RingBuffer<long[]> ringBuffer = RingBuffer.createSingleProducer(() -> new long[1], 1024, waitStrategy);
+        final SequenceBarrier barrier = ringBuffer.newBarrier();
+        final int count = 20_000;
+
+        final CompletableFuture<Long> consumer = CompletableFuture.supplyAsync(() -> {
+            long sum = 0L;
+            long next = 0L;
+            try {
+                while (next < count) {
+                    final long available = barrier.waitFor(next);
+                    for (; next <= available; next++) {
+                        sum += ringBuffer.get(next)[0];
+                    }
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return sum;
+        });
+
+        long expected = 0L;
+        for (int i = 0; i < count; i++) {
+            final long sequence = ringBuffer.next();
+            ringBuffer.get(sequence)[0] = i;
+            ringBuffer.publish(sequence);
+            expected += i;
+
+            // Mix bursts with pauses long enough for the consumer to yield and park
+            final int pause = ThreadLocalRandom.current().nextInt(1000);
+            if (pause < 5) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(2L));
+            } else if (pause < 50) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(pause));
+            }
+        }
+
+        assertThat(consumer.get(30, TimeUnit.SECONDS)).isEqualTo(expected);
+    }
+
+    @Test
+    public void alertWakesUpParkedConsumer() throws Exception {
+        final AdaptiveWaitStrategy waitStrategy = new AdaptiveWaitStrategy();
+        final RingBuffer<long[]> ringBuffer = RingBuffer.createSingleProducer(() -> new long[1], 16, waitStrategy);
+        final SequenceBarrier barrier = ringBuffer.newBarrier();
+
+        final CompletableFuture<Long> consumer = CompletableFuture.supplyAsync(() -> {
+            try {
+                return barrier.waitFor(0L);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        Thread.sleep(50L);
+        barrier.alert();
+
+        assertThatThrownBy(() -> consumer.get(10, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseInstanceOf(AlertException.class);
+    }
+
+    @Test
+    public void instrumentedWaitStrategyRecordsIdleAndBusyTime() throws Exception {
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final InstrumentedWaitStrategy waitStrategy = new InstrumentedWaitStrategy(new AdaptiveWaitStrategy(), metricRegistry, "test");
+        final RingBuffer<long[]> ringBuffer = RingBuffer.createSingleProducer(() -> new long[1], 16, waitStrategy);
+        final SequenceBarrier barrier = ringBuffer.newBarrier();
+
+        final CompletableFuture<Long> consumer = CompletableFuture.supplyAsync(() -> {
+            try {
+                final long available = barrier.waitFor(0L);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5L));
+                return barrier.waitFor(available);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5L));
+        ringBuffer.publish(ringBuffer.next());
+        consumer.get(10, TimeUnit.SECONDS);
+
+        assertThat(metricRegistry.counter("test.idleNanos").getCount()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(5L));
+        assertThat(metricRegistry.counter("test.busyNanos").getCount()).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(5L));
+        assertThat(metricRegistry.getGauges()).containsKeys("test.spinNanos", "test.averageWaitNanos");
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.buffers;
+
+import com.codahale.metrics.MetricRegistry;
+import com.eaio.uuid.UUID;
+import de.huxhorn.sulky.ulid.ULID;
+import org.graylog2.buffers.OutputBuffer;
+import org.graylog2.messageprocessors.OrderedMessageProcessors;
+import org.graylog2.plugin.Message;
+import org.graylog2.plugin.ServerStatus;
+import org.graylog2.plugin.Tools;
+import org.graylog2.plugin.configuration.Configuration;
+import org.graylog2.plugin.inputs.codecs.Codec;
+import org.graylog2.plugin.inputs.codecs.CodecAggregator;
+import org.graylog2.plugin.journal.RawMessage;
+import org.graylog2.plugin.streams.Stream;
+import org.graylog2.shared.buffers.processors.DecodingProcessor;
+import org.graylog2.shared.buffers.processors.ProcessBufferProcessor;
+import org.graylog2.shared.journal.Journal;
+import org.graylog2.shared.metrics.MessageTracer;
+import org.graylog2.shared.system.affinity.ThreadAffinity;
+import org.graylog2.system.processing.ProcessingStatusRecorder;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ProcessBufferTest {
+    private static final String CODEC_NAME = "test";
+
+    @Rule
+    public final MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    @Mock
+    private ServerStatus serverStatus;
+    @Mock
+    private Journal journal;
+    @Mock
+    private OrderedMessageProcessors orderedMessageProcessors;
+    @Mock
+    private OutputBuffer outputBuffer;
+    @Mock
+    private ProcessingStatusRecorder processingStatusRecorder;
+    @Mock
+    private Stream defaultStream;
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+    private final TestCodec codec = new TestCodec();
+    private final List<Message> processedMessages = new CopyOnWriteArrayList<>();
+    private final List<DecodingProcessor> inlineDecoders = new CopyOnWriteArrayList<>();
+    private ProcessBuffer processBuffer;
+
+    @Before
+    public void setUp() {
+        when(serverStatus.getDetailedMessageRecordingStrategy()).thenReturn(ServerStatus.MessageDetailRecordingStrategy.NEVER);
+        when(orderedMessageProcessors.iterator()).thenAnswer(invocation -> Collections.emptyIterator());
+        doAnswer(invocation -> processedMessages.add(invocation.getArgument(0)))
+                .when(outputBuffer).insertBlocking(any(Message.class));
+
+        final Map<String, Codec.Factory<? extends Codec>> codecFactories = Collections.singletonMap(CODEC_NAME, new TestCodecFactory());
+        final MessageTracer messageTracer = new MessageTracer(0, metricRegistry);
+        final DecodingProcessor.Factory decodingProcessorFactory = (decodeTime, parseTime) ->
+                new DecodingProcessor(codecFactories, serverStatus, metricRegistry, journal, messageTracer, decodeTime, parseTime);
+        final ProcessBufferProcessor.Factory bufferProcessorFactory = decodingProcessor -> {
+            inlineDecoders.add(decodingProcessor);
+            return new ProcessBufferProcessor(metricRegistry, orderedMessageProcessors, outputBuffer, journal,
+                    processingStatusRecorder, new ULID(), decodingProcessor, () -> defaultStream);
+        };
+
+        processBuffer = new ProcessBuffer(metricRegistry, decodingProcessorFactory, bufferProcessorFactory,
+                2, 2, 1024, "blocking", new ThreadAffinity(""));
+    }
+
+    @Test
+    public void decodedMessagesReachProcessorsWithJournalOffset() throws Exception {
+        for (long offset = 10L; offset < 20L; offset++) {
+            processBuffer.insertBlocking(rawMessage(offset, "message-" + offset));
+        }
+        awaitProcessed();
+
+        assertThat(processedMessages).hasSize(10);
+        for (final Message message : processedMessages) {
+            assertThat(message.getMessage()).isEqualTo("message-" + message.getJournalOffset());
+            assertThat(message.getStreams()).containsExactly(defaultStream);
+        }
+        assertThat(processedMessages.stream().map(Message::getJournalOffset).collect(Collectors.toSet()))
+                .containsExactlyInAnyOrder(10L, 11L, 12L, 13L, 14L, 15L, 16L, 17L, 18L, 19L);
+        // Successfully decoded messages are committed by the outputs
+        verify(journal, never()).markJournalOffsetCommitted(anyLong());
+    }
+
+    @Test
+    public void decodeFailuresAreCommittedOnce() throws Exception {
+        processBuffer.insertBlocking(rawMessage(20L, TestCodec.FAIL));
+        processBuffer.insertBlocking(rawMessage(21L, "message-21"));
+        processBuffer.insertBlocking(rawMessage(22L, TestCodec.FAIL));
+        awaitProcessed();
+
+        assertThat(processedMessages).extracting(Message::getJournalOffset).containsExactly(21L);
+        verify(journal, times(1)).markJournalOffsetCommitted(20L);
+        verify(journal, times(1)).markJournalOffsetCommitted(22L);
+        verify(journal, times(2)).markJournalOffsetCommitted(anyLong());
+    }
+
+    @Test
+    public void processingFailuresAreCommitted() throws Exception {
+        when(orderedMessageProcessors.iterator()).thenThrow(new IllegalStateException("Couldn't process message"));
+
+        processBuffer.insertBlocking(rawMessage(30L, "message-30"));
+        processBuffer.insertBlocking(rawMessage(31L, "message-31"));
+        awaitProcessed();
+
+        assertThat(processedMessages).isEmpty();
+        verify(journal, times(1)).markJournalOffsetCommitted(30L);
+        verify(journal, times(1)).markJournalOffsetCommitted(31L);
+    }
+
+    @Test
+    public void processorsDontDecodeAgain() throws Exception {
+        for (long offset = 0L; offset < 100L; offset++) {
+            processBuffer.insertBlocking(rawMessage(offset, "message-" + offset));
+        }
+        awaitProcessed();
+
+        assertThat(inlineDecoders).hasSize(2).containsOnlyNulls();
+        assertThat(codec.decodeCalls.get()).isEqualTo(100);
+        assertThat(processedMessages).hasSize(100);
+    }
+
+    private void awaitProcessed() throws InterruptedException {
+        // The processors are the last stage, so the ring buffer is only empty once they have handled every event
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (processBuffer.getUsage() > 0L && System.nanoTime() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertThat(processBuffer.getUsage()).isZero();
+    }
+
+    private static RawMessage rawMessage(long journalOffset, String payload) {
+        final RawMessage rawMessage = new RawMessage(journalOffset, new UUID(), Tools.nowUTC(), null,
+                payload.getBytes(StandardCharsets.UTF_8));
+        rawMessage.setCodecName(CODEC_NAME);
+        rawMessage.setCodecConfig(Configuration.EMPTY_CONFIGURATION);
+        return rawMessage;
+    }
+
+    private class TestCodecFactory implements Codec.Factory<TestCodec> {
+        @Override
+        public TestCodec create(Configuration configuration) {
+            return codec;
+        }
+
+        @Override
+        public Codec.Config getConfig() {
+            return null;
+        }
+
+        @Override
+        public Codec.Descriptor getDescriptor() {
+            return new Codec.Descriptor();
+        }
+    }
+
+    private static class TestCodec implements Codec {
+        private static final String FAIL = "fail";
+
+        private final AtomicInteger decodeCalls = new AtomicInteger();
+
+        @Nullable
+        @Override
+        public Message decode(@Nonnull RawMessage rawMessage) {
+            decodeCalls.incrementAndGet();
+            final String payload = new String(rawMessage.getPayload(), StandardCharsets.UTF_8);
+            if (FAIL.equals(payload)) {
+                throw new IllegalStateException("Couldn't decode message");
+            }
+            return new Message(payload, "source", rawMessage.getTimestamp());
+        }
+
+        @Nullable
+        @Override
+        public CodecAggregator getAggregator() {
+            return null;
+        }
+
+        @Override
+        public String getName() {
+            return CODEC_NAME;
+        }
+
+        @Nonnull
+        @Override
+        public Configuration getConfiguration() {
+            return Configuration.EMPTY_CONFIGURATION;
+        }
+    }
+}
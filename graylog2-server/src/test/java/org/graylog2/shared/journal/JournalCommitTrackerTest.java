@@ -0,0 +1,232 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.journal;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class JournalCommitTrackerTest {
+    private AtomicLong committed;
+    private JournalCommitTracker tracker;
+
+    @Before
+    public void setUp() {
+        committed = new AtomicLong(Long.MIN_VALUE);
+        tracker = new JournalCommitTracker(0L, TimeUnit.MINUTES.toNanos(5L), committed::set);
+    }
+
+    @Test
+    public void commitsInOrderCompletions() {
+        tracker.markCompleted(0L);
+        assertThat(committed.get()).isEqualTo(0L);
+        tracker.markCompleted(1L);
+        tracker.markCompleted(2L);
+
+        assertThat(committed.get()).isEqualTo(2L);
+        assertThat(tracker.getWatermark()).isEqualTo(3L);
+        assertThat(tracker.getGap()).isEqualTo(0L);
+    }
+
+    @Test
+    public void doesNotCommitPastGap() {
+        tracker.markCompleted(0L);
+        tracker.markCompleted(2L);
+        tracker.markCompleted(3L);
+
+        assertThat(committed.get()).isEqualTo(0L);
+        assertThat(tracker.getWatermark()).isEqualTo(1L);
+        assertThat(tracker.getGap()).isEqualTo(2L);
+
+        tracker.markCompleted(1L);
+
+        assertThat(committed.get()).isEqualTo(3L);
+        assertThat(tracker.getGap()).isEqualTo(0L);
+    }
+
+    @Test
+    public void ignoresDuplicateAndOldCompletions() {
+        tracker.markCompleted(0L);
+        tracker.markCompleted(0L);
+        tracker.markCompleted(Long.MIN_VALUE);
+
+        assertThat(committed.get()).isEqualTo(0L);
+        assertThat(tracker.getWatermark()).isEqualTo(1L);
+    }
+
+    @Test
+    public void advancesAcrossWordsAndSegments() {
+        final int count = 3 * 4096 + 17;
+        for (long offset = count - 1; offset > 0; offset--) {
+            tracker.markCompleted(offset);
+        }
+        assertThat(committed.get()).isEqualTo(Long.MIN_VALUE);
+        assertThat(tracker.getGap()).isEqualTo(count - 1);
+
+        tracker.markCompleted(0L);
+
+        assertThat(committed.get()).isEqualTo(count - 1);
+        // Segments below the watermark are released
+        assertThat(tracker.getSegmentCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void startsAtGivenOffset() {
+        tracker = new JournalCommitTracker(100L, TimeUnit.MINUTES.toNanos(5L), committed::set);
+
+        tracker.markCompleted(99L);
+        assertThat(committed.get()).isEqualTo(Long.MIN_VALUE);
+
+        tracker.markCompleted(100L);
+        assertThat(committed.get()).isEqualTo(100L);
+    }
+
+    @Test
+    public void markSkippedMovesWatermarkIfNothingIsInFlight() {
+        tracker.markSkipped(0L, 1_000_000L);
+
+        assertThat(committed.get()).isEqualTo(999_999L);
+        assertThat(tracker.getWatermark()).isEqualTo(1_000_000L);
+        assertThat(tracker.getSkippedOffsets()).isEqualTo(0L);
+    }
+
+    @Test
+    public void markSkippedWaitsForMessagesInFlight() {
+        tracker.markSkipped(5L, 10L);
+        assertThat(committed.get()).isEqualTo(Long.MIN_VALUE);
+
+        LongStream.range(0L, 5L).forEach(tracker::markCompleted);
+        assertThat(committed.get()).isEqualTo(9L);
+    }
+
+    @Test
+    public void skipStalledGapOnlyAfterTimeout() {
+        tracker.markCompleted(1L);
+
+        assertThat(tracker.skipStalledGap()).isEqualTo(0L);
+        assertThat(committed.get()).isEqualTo(Long.MIN_VALUE);
+    }
+
+    @Test
+    public void skipStalledGapCommitsUpToNextCompletedOffset() {
+        tracker = new JournalCommitTracker(0L, 0L, committed::set);
+        tracker.markCompleted(0L);
+        tracker.markCompleted(5000L);
+        tracker.markCompleted(5001L);
+        tracker.markCompleted(5003L);
+
+        assertThat(tracker.skipStalledGap()).isEqualTo(4999L);
+        assertThat(committed.get()).isEqualTo(5001L);
+        assertThat(tracker.getSkippedOffsets()).isEqualTo(4999L);
+
+        assertThat(tracker.skipStalledGap()).isEqualTo(1L);
+        assertThat(committed.get()).isEqualTo(5003L);
+        assertThat(tracker.getGap()).isEqualTo(0L);
+
+        assertThat(tracker.skipStalledGap()).isEqualTo(0L);
+    }
+
+    @Test
+    public void skipStalledGapWaitsForHeldOffsets() {
+        tracker = new JournalCommitTracker(0L, 0L, committed::set);
+        final Object holder = tracker.hold(0L);
+        tracker.markCompleted(1L);
+        tracker.markCompleted(2L);
+
+        // The gap has been open for longer than the timeout, but the message of offset 0 is still in flight
+        assertThat(tracker.skipStalledGap()).isEqualTo(0L);
+        assertThat(tracker.skipStalledGap()).isEqualTo(0L);
+        assertThat(committed.get()).isEqualTo(Long.MIN_VALUE);
+        assertThat(tracker.getSkippedOffsets()).isEqualTo(0L);
+
+        tracker.markCompleted(0L);
+        assertThat(committed.get()).isEqualTo(2L);
+        assertThat(holder).isNotNull();
+    }
+
+    @Test
+    public void skipStalledGapStopsAtHeldOffset() {
+        tracker = new JournalCommitTracker(0L, 0L, committed::set);
+        // Offset 0 isn't held by anything anymore, offset 1 is still in flight
+        final Object holder = tracker.hold(1L);
+        tracker.markCompleted(3L);
+
+        assertThat(tracker.skipStalledGap()).isEqualTo(1L);
+        assertThat(committed.get()).isEqualTo(0L);
+        assertThat(tracker.skipStalledGap()).isEqualTo(0L);
+
+        tracker.markCompleted(1L);
+        assertThat(committed.get()).isEqualTo(1L);
+        assertThat(tracker.skipStalledGap()).isEqualTo(1L);
+        assertThat(committed.get()).isEqualTo(3L);
+        assertThat(holder).isNotNull();
+    }
+
+    @Test
+    public void completedOffsetsAreNoLongerHeld() {
+        final List<Object> holders = new ArrayList<>();
+        for (long offset = 0L; offset < 10L; offset++) {
+            holders.add(tracker.hold(offset));
+        }
+        LongStream.range(0L, 5L).forEach(tracker::markCompleted);
+        assertThat(tracker.getHeldOffsetCount()).isEqualTo(5);
+
+        tracker.markSkipped(5L, 10L);
+        assertThat(tracker.getHeldOffsetCount()).isEqualTo(0);
+        assertThat(committed.get()).isEqualTo(9L);
+        assertThat(holders).hasSize(10);
+    }
+
+    @Test
+    public void concurrentCompletionsCommitEverything() throws Exception {
+        final int count = 200_000;
+        final List<Long> offsets = LongStream.range(0L, count).boxed().collect(Collectors.toList());
+        Collections.shuffle(offsets, new Random(42L));
+
+        final int threads = 4;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                final List<Long> slice = offsets.subList(i * count / threads, (i + 1) * count / threads);
+                futures.add(executor.submit(() -> slice.forEach(tracker::markCompleted)));
+            }
+            for (Future<?> future : futures) {
+                future.get(1L, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(committed.get()).isEqualTo(count - 1);
+        assertThat(tracker.getGap()).isEqualTo(0L);
+        assertThat(tracker.getSegmentCount()).isLessThanOrEqualTo(1);
+    }
+}
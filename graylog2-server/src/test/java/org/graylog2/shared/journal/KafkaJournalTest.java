@@ -18,6 +18,7 @@ package org.graylog2.shared.journal;
 
 import com.codahale.metrics.MetricRegistry;
 import com.github.joschi.jadconfig.util.Size;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.eventbus.EventBus;
@@ -154,6 +155,35 @@ public class KafkaJournalTest {
         assertEquals("message1", new String(firstMessage.getPayload(), UTF_8));
     }
 
+    @Test
+    public void commitLowWatermarkWaitsForOlderOffsets() throws Exception {
+        final KafkaJournal journal = new KafkaJournal(journalDirectory.toPath(),
+                                                      scheduler,
+                                                      Size.megabytes(100L),
+                                                      Duration.standardHours(1),
+                                                      Size.megabytes(5L),
+                                                      Duration.standardHours(1),
+                                                      1_000_000,
+                                                      Duration.standardMinutes(1),
+                                                      100,
+                                                      true,
+                                                      Duration.standardMinutes(5),
+                                                      new MetricRegistry(),
+                                                      serverStatus,
+                                                      KafkaJournal.class.getName());
+
+        for (int i = 0; i < 3; i++) {
+            journal.write(("id" + i).getBytes(UTF_8), ("message" + i).getBytes(UTF_8));
+        }
+        assertThat(journal.read(3)).hasSize(3);
+
+        journal.markJournalOffsetsCommitted(ImmutableList.of(2L, 1L));
+        assertThat(journal.getCommittedOffset()).isEqualTo(KafkaJournal.DEFAULT_COMMITTED_OFFSET);
+
+        journal.markJournalOffsetCommitted(0L);
+        assertThat(journal.getCommittedOffset()).isEqualTo(2L);
+    }
+
     private int createBulkChunks(KafkaJournal journal, Size segmentSize, int bulkCount) {
         // Magic numbers deduced by magic…
         int bulkSize = Ints.saturatedCast(segmentSize.toBytes() / (2L * 16L));
@@ -0,0 +1,74 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import org.graylog2.plugin.MessageTrace;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MessageTracerTest {
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    @Test
+    public void doesNotTraceIfDisabled() {
+        final MessageTracer tracer = new MessageTracer(0, metricRegistry);
+
+        assertThat(tracer.startTrace(DateTime.now(), System.nanoTime())).isNull();
+    }
+
+    @Test
+    public void tracesEveryMessageWithSampleRateOne() {
+        final MessageTracer tracer = new MessageTracer(1, metricRegistry);
+
+        assertThat(tracer.startTrace(DateTime.now(), System.nanoTime())).isNotNull();
+    }
+
+    @Test
+    public void convertsReceiveTimeToNanoTime() {
+        final MessageTracer tracer = new MessageTracer(1, metricRegistry);
+        final long now = System.nanoTime();
+
+        final MessageTrace trace = tracer.startTrace(DateTime.now().minusSeconds(2), now);
+        trace.mark(MessageTrace.Stage.JOURNAL, now);
+
+        final long journalMicros = tracer.getStageHistograms().get("journal").getSnapshot().getMax();
+        assertThat(journalMicros).isBetween(TimeUnit.SECONDS.toMicros(2L), TimeUnit.SECONDS.toMicros(3L));
+    }
+
+    @Test
+    public void registersHistogramsInMetricRegistry() {
+        final MessageTracer tracer = new MessageTracer(1, metricRegistry);
+
+        final MessageTrace trace = new MessageTrace(tracer, 0L);
+        trace.recordProcessor("PipelineInterpreter", TimeUnit.MICROSECONDS.toNanos(10L));
+        trace.mark(MessageTrace.Stage.INDEX, TimeUnit.MICROSECONDS.toNanos(50L));
+
+        assertThat(metricRegistry.getHistograms().get("org.graylog2.shared.metrics.MessageTracer.stage.index").getCount())
+                .isEqualTo(1L);
+        assertThat(metricRegistry.getHistograms().get("org.graylog2.shared.metrics.MessageTracer.total").getCount())
+                .isEqualTo(1L);
+        assertThat(metricRegistry.getHistograms()).doesNotContainKey("org.graylog2.shared.metrics.MessageTracer.stage.receive");
+        assertThat(tracer.getStageHistograms()).containsOnlyKeys(
+                "journal", "decode", "process", "output_buffer", "index", "total");
+        assertThat(tracer.getProcessorHistograms().get("PipelineInterpreter").getSnapshot().getMax()).isEqualTo(10L);
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.system.affinity;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CpuSetTest {
+    @Test
+    public void parseCpuList() {
+        final CpuSet cpuSet = CpuSet.parse("0-3, 8,10-11");
+
+        assertThat(cpuSet.size()).isEqualTo(7);
+        assertThat(cpuSet.contains(3)).isTrue();
+        assertThat(cpuSet.contains(4)).isFalse();
+        assertThat(cpuSet.contains(8)).isTrue();
+        assertThat(cpuSet.toString()).isEqualTo("0-3,8,10-11");
+    }
+
+    @Test
+    public void toMaskSetsBitPerCpu() {
+        assertThat(CpuSet.parse("0,2,64").toMask()).containsExactly(0b101L, 1L);
+    }
+
+    @Test
+    public void parseInvalidCpuListFails() {
+        assertThatThrownBy(() -> CpuSet.parse("")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CpuSet.parse("3-1")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CpuSet.parse("0-a")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CpuSet.parse("-1")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
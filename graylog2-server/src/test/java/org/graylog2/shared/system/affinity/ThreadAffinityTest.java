@@ -0,0 +1,112 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.shared.system.affinity;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ThreadAffinityTest {
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void parseCpuSets() {
+        assertThat(ThreadAffinity.parseCpuSets("0-11,24-35; 12-23,36-47", null))
+                .containsExactly(CpuSet.parse("0-11,24-35"), CpuSet.parse("12-23,36-47"));
+        assertThat(ThreadAffinity.parseCpuSets("", null)).isEmpty();
+    }
+
+    @Test
+    public void parseCpuSetsReadsNumaNodes() throws Exception {
+        final Path nodes = temporaryFolder.newFolder().toPath();
+        writeCpuList(nodes, "node0", "0-3\n");
+        writeCpuList(nodes, "node1", "4-7\n");
+        writeCpuList(nodes, "node2", "\n");
+        writeCpuList(nodes, "node10", "8-9\n");
+        Files.createDirectory(nodes.resolve("power"));
+
+        assertThat(ThreadAffinity.parseCpuSets("auto", nodes))
+                .containsExactly(CpuSet.parse("0-3"), CpuSet.parse("4-7"), CpuSet.parse("8-9"));
+    }
+
+    @Test
+    public void parseCpuSetsWithoutNumaNodesDisablesAffinity() {
+        assertThat(ThreadAffinity.parseCpuSets("auto", temporaryFolder.getRoot().toPath().resolve("missing"))).isEmpty();
+    }
+
+    @Test
+    public void threadsArePinnedRoundRobin() throws Exception {
+        final Map<String, CpuSet> pinned = new ConcurrentHashMap<>();
+        final List<CpuSet> cpuSets = ImmutableList.of(CpuSet.parse("0-1"), CpuSet.parse("2-3"));
+        final ThreadAffinity threadAffinity = new ThreadAffinity(cpuSets,
+                cpuSet -> pinned.put(Thread.currentThread().getName(), cpuSet));
+        final ThreadFactory threadFactory = threadAffinity.threadFactory(Executors.defaultThreadFactory());
+
+        for (int i = 0; i < 3; i++) {
+            final Thread thread = threadFactory.newThread(() -> {
+            });
+            thread.setName("test-" + i);
+            thread.start();
+            thread.join();
+        }
+
+        assertThat(pinned)
+                .containsEntry("test-0", cpuSets.get(0))
+                .containsEntry("test-1", cpuSets.get(1))
+                .containsEntry("test-2", cpuSets.get(0));
+    }
+
+    @Test
+    public void disabledAffinityReturnsSameThreadFactory() {
+        final ThreadFactory threadFactory = Executors.defaultThreadFactory();
+
+        assertThat(ThreadAffinity.disabled().isEnabled()).isFalse();
+        assertThat(ThreadAffinity.disabled().threadFactory(threadFactory)).isSameAs(threadFactory);
+    }
+
+    @Test
+    public void failedPinningStillRunsThread() throws Exception {
+        final ThreadAffinity threadAffinity = new ThreadAffinity(ImmutableList.of(CpuSet.parse("0")), cpuSet -> {
+            throw new IllegalStateException("Invalid argument");
+        });
+        final boolean[] ran = new boolean[1];
+
+        final Thread thread = threadAffinity.threadFactory(Executors.defaultThreadFactory()).newThread(() -> ran[0] = true);
+        thread.start();
+        thread.join();
+
+        assertThat(ran[0]).isTrue();
+    }
+
+    private static void writeCpuList(Path nodes, String node, String cpuList) throws Exception {
+        final Path nodeDir = Files.createDirectory(nodes.resolve(node));
+        Files.write(nodeDir.resolve("cpulist"), cpuList.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.system.processing;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LatestTimestampTest {
+    private static final DateTime TIMESTAMP = new DateTime(2019, 6, 1, 12, 0, DateTimeZone.UTC);
+
+    @Test
+    public void startsAtEpoch() {
+        assertThat(new LatestTimestamp().get()).isEqualTo(new DateTime(0L, DateTimeZone.UTC));
+    }
+
+    @Test
+    public void keepsLatestTimestamp() {
+        final LatestTimestamp latestTimestamp = new LatestTimestamp();
+
+        latestTimestamp.update(TIMESTAMP);
+        latestTimestamp.update(TIMESTAMP.minusSeconds(1));
+        latestTimestamp.update(null);
+
+        assertThat(latestTimestamp.get()).isEqualTo(TIMESTAMP);
+    }
+
+    @Test
+    public void returnsTimestampInUtc() {
+        final LatestTimestamp latestTimestamp = new LatestTimestamp();
+
+        latestTimestamp.update(TIMESTAMP.withZone(DateTimeZone.forOffsetHours(2)));
+
+        assertThat(latestTimestamp.get()).isEqualTo(TIMESTAMP);
+    }
+
+    @Test
+    public void combinesUpdatesOfAllThreads() throws InterruptedException {
+        final LatestTimestamp latestTimestamp = new LatestTimestamp();
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final int thread = i;
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    latestTimestamp.update(TIMESTAMP.plusMillis(j * 4 + thread));
+                }
+            }));
+        }
+
+        threads.forEach(Thread::start);
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(latestTimestamp.get()).isEqualTo(TIMESTAMP.plusMillis(39_999));
+    }
+}
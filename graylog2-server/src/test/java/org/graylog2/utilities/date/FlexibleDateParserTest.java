@@ -0,0 +1,126 @@
+/**
+ * This file is part of Graylog.
+ *
+ * Graylog is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Graylog is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Graylog.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.graylog2.utilities.date;
+
+import org.graylog2.plugin.utilities.date.FlexibleDateParser;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
+import org.joda.time.DateTimeZone;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FlexibleDateParserTest {
+    private static final DateTimeZone TZ = DateTimeZone.forOffsetHours(12);
+
+    private final FlexibleDateParser parser = new FlexibleDateParser();
+
+    @After
+    public void tearDown() {
+        DateTimeUtils.setCurrentMillisSystem();
+    }
+
+    @Test
+    public void parseIso8601() {
+        assertThat(parser.parse("2014-03-12T12:27:38.123Z", TZ))
+                .isEqualTo(new DateTime(2014, 3, 13, 0, 27, 38, 123, TZ));
+        assertThat(parser.parse("2014-03-12T12:27:38.1234567Z", TZ))
+                .isEqualTo(new DateTime(2014, 3, 13, 0, 27, 38, 123, TZ));
+        assertThat(parser.parse("2014-03-12T12:27:38+01:00", TZ))
+                .isEqualTo(new DateTime(2014, 3, 12, 23, 27, 38, TZ));
+        assertThat(parser.parse("2014-03-12 12:27:38 -0500", TZ))
+                .isEqualTo(new DateTime(2014, 3, 13, 5, 27, 38, TZ));
+        assertThat(parser.parse("2014-3-12 12:27", TZ))
+                .isEqualTo(new DateTime(2014, 3, 12, 12, 27, TZ));
+        assertThat(parser.parse("  2014-03-12T12:27:38Z  ", TZ))
+                .isEqualTo(new DateTime(2014, 3, 13, 0, 27, 38, TZ));
+    }
+
+    @Test
+    public void parseEpoch() {
+        assertThat(parser.parse("1394627258", TZ)).isEqualTo(new DateTime(1394627258000L, TZ));
+        assertThat(parser.parse("1394627258.5", TZ)).isEqualTo(new DateTime(1394627258500L, TZ));
+        assertThat(parser.parse("1394627258123", TZ)).isEqualTo(new DateTime(1394627258123L, TZ));
+    }
+
+    @Test
+    public void parseRfc3164UsesCurrentYear() {
+        DateTimeUtils.setCurrentMillisFixed(new DateTime(2017, 6, 1, 0, 0, TZ).getMillis());
+
+        assertThat(parser.parse("Mar 12 14:45:38", TZ)).isEqualTo(new DateTime(2017, 3, 12, 14, 45, 38, TZ));
+        assertThat(parser.parse("Mar  2 13:48:18", TZ)).isEqualTo(new DateTime(2017, 3, 2, 13, 48, 18, TZ));
+        assertThat(parser.parse("Mar 2 13:48:18.250", TZ)).isEqualTo(new DateTime(2017, 3, 2, 13, 48, 18, 250, TZ));
+    }
+
+    @Test
+    public void parseApache() {
+        assertThat(parser.parse("[12/Mar/2014:12:27:38 +0100]", TZ))
+                .isEqualTo(new DateTime(2014, 3, 12, 23, 27, 38, TZ));
+        assertThat(parser.parse("12/Mar/2014:12:27:38 -0700", TZ))
+                .isEqualTo(new DateTime(2014, 3, 13, 7, 27, 38, TZ));
+    }
+
+    @Test
+    public void parseWindows() {
+        assertThat(parser.parse("3/12/2014 12:27:38 PM", TZ)).isEqualTo(new DateTime(2014, 3, 12, 12, 27, 38, TZ));
+        assertThat(parser.parse("3/12/2014 12:27:38 AM", TZ)).isEqualTo(new DateTime(2014, 3, 12, 0, 27, 38, TZ));
+        assertThat(parser.parse("03/12/2014 1:27:38 pm", TZ)).isEqualTo(new DateTime(2014, 3, 12, 13, 27, 38, TZ));
+        assertThat(parser.parse("03/12/2014 13:27:38", TZ)).isEqualTo(new DateTime(2014, 3, 12, 13, 27, 38, TZ));
+    }
+
+    @Test
+    public void parseReturnsDateInGivenTimeZone() {
+        assertThat(parser.parse("2014-03-12T12:27:38Z", TZ).getZone()).isEqualTo(TZ);
+        assertThat(parser.parse("1394627258", DateTimeZone.UTC).getZone()).isEqualTo(DateTimeZone.UTC);
+    }
+
+    @Test
+    public void structuredFormatsRejectInvalidTimestamps() {
+        assertThat(FlexibleDateParser.parse("2014-02-30 12:00", FlexibleDateParser.Format.ISO_8601, TZ)).isNull();
+        assertThat(FlexibleDateParser.parse("2014-03-12", FlexibleDateParser.Format.ISO_8601, TZ)).isNull();
+        assertThat(FlexibleDateParser.parse("2014-03-12T12:27:38Zx", FlexibleDateParser.Format.ISO_8601, TZ)).isNull();
+        assertThat(FlexibleDateParser.parse("139462725", FlexibleDateParser.Format.EPOCH, TZ)).isNull();
+        assertThat(FlexibleDateParser.parse("1394627258123.5", FlexibleDateParser.Format.EPOCH, TZ)).isNull();
+        assertThat(FlexibleDateParser.parse("Foo 12 14:45:38", FlexibleDateParser.Format.RFC_3164, TZ)).isNull();
+        assertThat(FlexibleDateParser.parse("[12/Mar/2014:12:27:38 +0100", FlexibleDateParser.Format.APACHE, TZ)).isNull();
+        assertThat(FlexibleDateParser.parse("3/12/2014 13:27:38 PM", FlexibleDateParser.Format.WINDOWS, TZ)).isNull();
+    }
+
+    @Test
+    public void parseFallsBackToNaturalLanguage() {
+        assertThat(parser.parse("", TZ)).isNull();
+        assertThat(parser.parse(null, TZ)).isNull();
+        assertThat(parser.parse("foo", TZ)).isNull();
+        assertThat(parser.parse("Mar 12, 2014 2pm", TZ)).isEqualTo(new DateTime(2014, 3, 12, 14, 0, TZ));
+    }
+
+    @Test
+    public void structuredFormatsAgreeWithNaturalLanguageParser() {
+        assertThat(parser.parse("2014-3-12 12:27", TZ))
+                .isEqualTo(FlexibleDateParser.parseNatural("2014-3-12 12:27", TZ));
+        assertThat(parser.parse("2014-03-12 12:27:38", TZ))
+                .isEqualTo(FlexibleDateParser.parseNatural("2014-03-12 12:27:38", TZ));
+    }
+
+    @Test
+    public void parseSwitchesBetweenFormats() {
+        assertThat(parser.parse("1394627258", TZ)).isEqualTo(new DateTime(1394627258000L, TZ));
+        assertThat(parser.parse("2014-03-12T12:27:38Z", TZ)).isEqualTo(new DateTime(2014, 3, 13, 0, 27, 38, TZ));
+        assertThat(parser.parse("1394627258", TZ)).isEqualTo(new DateTime(1394627258000L, TZ));
+    }
+}
@@ -64,7 +64,8 @@ const JSONExtractorConfiguration = createReactClass({
     const { configuration } = this.state;
     const promise = ToolsStore.testJSON(configuration.flatten, configuration.list_separator,
       configuration.key_separator, configuration.kv_separator, configuration.replace_key_whitespace,
-      configuration.key_whitespace_replacement, configuration.key_prefix, this.props.exampleMessage);
+      configuration.key_whitespace_replacement, configuration.key_prefix, configuration.include_keys,
+      configuration.exclude_keys, configuration.max_depth, this.props.exampleMessage);
 
     promise.then((result) => {
       const matches = [];
@@ -155,6 +156,34 @@ const JSONExtractorConfiguration = createReactClass({
                onChange={this._onChange('key_whitespace_replacement')}
                help="What character to use when replacing whitespaces in message keys. Please ensure the replacement character is valid in Lucene, e.g. '-' or '_'." />
 
+        <Input type="text"
+               id="include_keys"
+               label="Included keys"
+               labelClassName="col-md-2"
+               wrapperClassName="col-md-10"
+               defaultValue={this.state.configuration.include_keys}
+               onChange={this._onChange('include_keys')}
+               help={<span>Comma separated list of key paths to extract, e.g. <code>user.name, status</code>. All other keys are skipped without being parsed. Leave empty to extract all keys.</span>} />
+
+        <Input type="text"
+               id="exclude_keys"
+               label="Excluded keys"
+               labelClassName="col-md-2"
+               wrapperClassName="col-md-10"
+               defaultValue={this.state.configuration.exclude_keys}
+               onChange={this._onChange('exclude_keys')}
+               help="Comma separated list of key paths to skip, including everything nested below them." />
+
+        <Input type="number"
+               id="max_depth"
+               label="Maximum depth"
+               labelClassName="col-md-2"
+               wrapperClassName="col-md-10"
+               defaultValue={this.state.configuration.max_depth}
+               min="0"
+               onChange={this._onChange('max_depth')}
+               help="Objects nested deeper than this are skipped (only used if not flattened). Use 0 for no limit." />
+
         <Row>
           <Col mdOffset={2} md={10}>
             <Button bsStyle="info" onClick={this._onTryClick} disabled={this._isTryButtonDisabled()}>
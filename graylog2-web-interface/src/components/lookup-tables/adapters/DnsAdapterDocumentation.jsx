@@ -152,6 +152,32 @@ const DnsAdapterDocumentation = () => {
         If enabled, the TTL for this adapter&apos;s cache will be overridden with the specified value.
       </p>
 
+      <h5 style={styleMarginBottom}>Maximum Concurrent Requests</h5>
+
+      <p style={styleMarginBottom}>
+        The maximum number of DNS queries this adapter sends at the same time. Lookups of the same key share a single
+        query. Lookups that cannot get a free slot within the request timeout return an empty result.
+      </p>
+
+      <h5 style={styleMarginBottom}>Result Cache Size</h5>
+
+      <p style={styleMarginBottom}>
+        The adapter keeps up to this many results in its own cache, each for the TTL of its DNS records
+        (or the Cache TTL Override). Set to <code>0</code> to disable the cache. Failed queries are never cached.
+      </p>
+
+      <h5 style={styleMarginBottom}>Negative Cache TTL</h5>
+
+      <p style={styleMarginBottom}>
+        The number of seconds a lookup which did not return any records is cached.
+      </p>
+
+      <h5 style={styleMarginBottom}>Stale TTL</h5>
+
+      <p style={styleMarginBottom}>
+        The number of seconds an expired result is still returned while the adapter refreshes it in the background.
+      </p>
+
     </div>
   );
 };
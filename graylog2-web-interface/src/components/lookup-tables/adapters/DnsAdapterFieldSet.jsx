@@ -10,6 +10,10 @@ class DnsAdapterFieldSet extends React.Component {
     config: PropTypes.shape({
       request_timeout: PropTypes.number.isRequired,
       server_ips: PropTypes.string,
+      max_concurrent_requests: PropTypes.number,
+      cache_size: PropTypes.number,
+      negative_cache_ttl: PropTypes.number,
+      stale_ttl: PropTypes.number,
     }).isRequired,
     updateConfig: PropTypes.func.isRequired,
     handleFormEvent: PropTypes.func.isRequired,
@@ -112,6 +116,62 @@ class DnsAdapterFieldSet extends React.Component {
                        enabled={config.cache_ttl_override_enabled}
                        labelClassName="col-sm-3"
                        wrapperClassName="col-sm-9" />
+        <Input type="number"
+               id="max_concurrent_requests"
+               name="max_concurrent_requests"
+               label="Maximum Concurrent Requests"
+               required
+               onChange={handleFormEvent}
+               help={validationMessage(
+                 'max_concurrent_requests',
+                 'Maximum number of DNS queries in flight at the same time.',
+               )}
+               bsStyle={validationState('max_concurrent_requests')}
+               value={config.max_concurrent_requests}
+               labelClassName="col-sm-3"
+               wrapperClassName="col-sm-9" />
+        <Input type="number"
+               id="cache_size"
+               name="cache_size"
+               label="Result Cache Size"
+               required
+               onChange={handleFormEvent}
+               help={validationMessage(
+                 'cache_size',
+                 'Maximum number of results cached by the adapter. Use 0 to disable the cache.',
+               )}
+               bsStyle={validationState('cache_size')}
+               value={config.cache_size}
+               labelClassName="col-sm-3"
+               wrapperClassName="col-sm-9" />
+        <Input type="number"
+               id="negative_cache_ttl"
+               name="negative_cache_ttl"
+               label="Negative Cache TTL"
+               required
+               onChange={handleFormEvent}
+               help={validationMessage(
+                 'negative_cache_ttl',
+                 'Number of seconds a lookup without any records is cached.',
+               )}
+               bsStyle={validationState('negative_cache_ttl')}
+               value={config.negative_cache_ttl}
+               labelClassName="col-sm-3"
+               wrapperClassName="col-sm-9" />
+        <Input type="number"
+               id="stale_ttl"
+               name="stale_ttl"
+               label="Stale TTL"
+               required
+               onChange={handleFormEvent}
+               help={validationMessage(
+                 'stale_ttl',
+                 'Number of seconds an expired result is still returned while it is being refreshed.',
+               )}
+               bsStyle={validationState('stale_ttl')}
+               value={config.stale_ttl}
+               labelClassName="col-sm-3"
+               wrapperClassName="col-sm-9" />
       </fieldset>
     );
   }
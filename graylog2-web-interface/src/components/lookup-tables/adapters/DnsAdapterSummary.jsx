@@ -29,6 +29,18 @@ const DnsAdapterSummary = ({ dataAdapter }) => {
       <dd>
         { !config.cache_ttl_override_enabled ? 'n/a' : <TimeUnit value={config.cache_ttl_override} unit={config.cache_ttl_override_unit} /> }
       </dd>
+
+      <dt>Maximum Concurrent Requests</dt>
+      <dd>{ config.max_concurrent_requests }</dd>
+
+      <dt>Result Cache Size</dt>
+      <dd>{ config.cache_size > 0 ? config.cache_size : 'disabled' }</dd>
+
+      <dt>Negative Cache TTL</dt>
+      <dd>{ config.negative_cache_ttl } s</dd>
+
+      <dt>Stale TTL</dt>
+      <dd>{ config.stale_ttl } s</dd>
     </dl>
   );
 };
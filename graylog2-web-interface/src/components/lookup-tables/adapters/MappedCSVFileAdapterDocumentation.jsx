@@ -0,0 +1,76 @@
+/* eslint-disable react/no-unescaped-entities */
+import React from 'react';
+import { Alert } from 'react-bootstrap';
+
+class MappedCSVFileAdapterDocumentation extends React.Component {
+  render() {
+    const csvFile1 = `"ipaddr","hostname"
+"127.0.0.1","localhost"
+"10.0.0.1","server1"
+"10.0.0.2","server2"`;
+
+    const csvFile2 = `"network","location"
+"10.0.0.0/8","datacenter"
+"10.1.0.0/16","office berlin"
+"2001:db8::/32","documentation"`;
+
+    return (
+      <div>
+        <p>The memory-mapped CSV data adapter can read key value pairs from very large CSV files.</p>
+        <p>
+          Instead of keeping the file contents on the heap, the file is compiled into an index in the data directory
+          of each Graylog server which is then mapped into memory. When the file changes, a new index is built in the
+          background and replaces the old one.
+        </p>
+        <p>Please make sure your CSV file is formatted according to your configuration settings.</p>
+
+        <Alert style={{ marginBottom: 10 }} bsStyle="info">
+          <h4 style={{ marginBottom: 10 }}>CSV file requirements:</h4>
+          <ul className="no-padding">
+            <li>The first line in the CSV file needs to be a list of field/column names</li>
+            <li>The file uses <strong>utf-8</strong> encoding</li>
+            <li>The file is readable by <strong>every</strong> Graylog server node</li>
+            <li>The data directory has enough free disk space for the index, which is slightly larger than the CSV file</li>
+          </ul>
+        </Alert>
+
+        <hr />
+
+        <h3 style={{ marginBottom: 10 }}>Example 1</h3>
+
+        <h5 style={{ marginBottom: 10 }}>Configuration</h5>
+        <p style={{ marginBottom: 10, padding: 0 }}>
+        Separator: <code>,</code><br />
+        Quote character: <code>"</code><br />
+        Key column: <code>ipaddr</code><br />
+        Value column: <code>hostname</code>
+        </p>
+
+        <h5 style={{ marginBottom: 10 }}>CSV File</h5>
+        <pre>{csvFile1}</pre>
+
+        <h3 style={{ marginBottom: 10 }}>Example 2: CIDR lookup</h3>
+
+        <p style={{ marginBottom: 10, padding: 0 }}>
+        With CIDR lookup enabled, the keys are CIDR ranges or single IP addresses. Looking up an IP address returns
+        the value of the most specific range containing the address, e.g. <code>10.1.2.3</code> returns <code>office berlin</code> and
+        <code>10.2.3.4</code> returns <code>datacenter</code>.
+        </p>
+
+        <h5 style={{ marginBottom: 10 }}>Configuration</h5>
+        <p style={{ marginBottom: 10, padding: 0 }}>
+        Separator: <code>,</code><br />
+        Quote character: <code>"</code><br />
+        Key column: <code>network</code><br />
+        Value column: <code>location</code><br />
+        CIDR lookup: <code>enabled</code>
+        </p>
+
+        <h5 style={{ marginBottom: 10 }}>CSV File</h5>
+        <pre>{csvFile2}</pre>
+      </div>
+    );
+  }
+}
+
+export default MappedCSVFileAdapterDocumentation;
@@ -4,6 +4,9 @@ import {} from 'components/maps/adapter';
 import CSVFileAdapterFieldSet from './CSVFileAdapterFieldSet';
 import CSVFileAdapterSummary from './CSVFileAdapterSummary';
 import CSVFileAdapterDocumentation from './CSVFileAdapterDocumentation';
+import MappedCSVFileAdapterFieldSet from './MappedCSVFileAdapterFieldSet';
+import MappedCSVFileAdapterSummary from './MappedCSVFileAdapterSummary';
+import MappedCSVFileAdapterDocumentation from './MappedCSVFileAdapterDocumentation';
 import DnsAdapterFieldSet from './DnsAdapterFieldSet';
 import DnsAdapterSummary from './DnsAdapterSummary';
 import DnsAdapterDocumentation from './DnsAdapterDocumentation';
@@ -23,6 +26,13 @@ PluginStore.register(new PluginManifest({}, {
       summaryComponent: CSVFileAdapterSummary,
       documentationComponent: CSVFileAdapterDocumentation,
     },
+    {
+      type: 'mapped_csvfile',
+      displayName: 'CSV File (memory-mapped)',
+      formComponent: MappedCSVFileAdapterFieldSet,
+      summaryComponent: MappedCSVFileAdapterSummary,
+      documentationComponent: MappedCSVFileAdapterDocumentation,
+    },
     {
       type: 'dnslookup',
       displayName: 'DNS Lookup',
@@ -0,0 +1,54 @@
+/* eslint-disable react/no-unescaped-entities */
+import React from 'react';
+import { Alert } from 'react-bootstrap';
+
+class CaffeineCacheDocumentation extends React.Component {
+  render() {
+    return (
+      <div>
+        <p>The in-memory cache maintains frequently and recently used values from data adapters.</p>
+        <p>Please make sure your Graylog servers have enough heap to accomodate the cached entries and monitor the cache efficiency.</p>
+
+        <Alert style={{ marginBottom: 10 }} bsStyle="info">
+          <h4 style={{ marginBottom: 10 }}>Implementation details</h4>
+          <p>The cache is local to each Graylog server, they do not share the entries.</p>
+          <p>For example, if you have two servers, they will maintain a completely independent cache from each other.</p>
+        </Alert>
+
+        <hr />
+
+        <h3 style={{ marginBottom: 10 }}>Cache size</h3>
+        <p style={{ marginBottom: 10, padding: 0 }}>
+        Every cache is either limited by a maximum number of entries or by the estimated memory usage of its entries
+        in bytes, unbounded caches are not supported.<br />
+        Limiting the size in bytes is useful for data adapters which return values of very different sizes.
+        When the cache is full, it keeps the entries which are likely to be used again, based on how often they have been used recently.
+        </p>
+
+        <h3 style={{ marginBottom: 10 }}>Time-based expiration</h3>
+
+        <h5 style={{ marginBottom: 10 }}>Expire after access</h5>
+        <p style={{ marginBottom: 10, padding: 0 }}>
+        The cache will remove entries after a fixed time since they have been used the last time.
+        </p>
+
+        <h5 style={{ marginBottom: 10 }}>Expire after write</h5>
+        <p style={{ marginBottom: 10, padding: 0 }}>
+        The cache will remove entries after a fixed time since they have been entered into the cache.<br />
+        This results in entries that are never older than the given time, which can be important for
+        regularly changing data, such as configuration state of external systems.
+        </p>
+
+        <h5 style={{ marginBottom: 10 }}>Refresh after write</h5>
+        <p style={{ marginBottom: 10, padding: 0 }}>
+        The cache will reload entries from the data adapter in the background once they are older than the given time
+        and are being used again. Until the new value has been loaded, the old value is returned.<br />
+        This avoids slow lookups for frequently used keys. Use a refresh time shorter than the expiration times.
+        </p>
+
+      </div>
+    );
+  }
+}
+
+export default CaffeineCacheDocumentation;
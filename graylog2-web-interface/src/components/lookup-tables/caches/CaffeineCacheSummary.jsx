@@ -0,0 +1,32 @@
+import PropTypes from 'prop-types';
+import React from 'react';
+import { TimeUnit } from 'components/common';
+
+class CaffeineCacheSummary extends React.Component {
+  static propTypes = {
+    cache: PropTypes.object.isRequired,
+  };
+
+  render() {
+    const { config } = this.props.cache;
+    return (
+      <dl>
+        {config.max_weight > 0 ? [
+          <dt key="max-weight-label">Maximum size in bytes</dt>,
+          <dd key="max-weight-value">{config.max_weight}</dd>,
+        ] : [
+          <dt key="max-size-label">Maximum entries</dt>,
+          <dd key="max-size-value">{config.max_size}</dd>,
+        ]}
+        <dt>Expire after access</dt>
+        <dd><TimeUnit value={config.expire_after_access} unit={config.expire_after_access_unit} /></dd>
+        <dt>Expire after write</dt>
+        <dd><TimeUnit value={config.expire_after_write} unit={config.expire_after_write_unit} /></dd>
+        <dt>Refresh after write</dt>
+        <dd><TimeUnit value={config.refresh_after_write} unit={config.refresh_after_write_unit} /></dd>
+      </dl>
+    );
+  }
+}
+
+export default CaffeineCacheSummary;
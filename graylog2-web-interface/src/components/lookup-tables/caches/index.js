@@ -5,6 +5,9 @@ import NullCacheSummary from './NullCacheSummary';
 import GuavaCacheFieldSet from './GuavaCacheFieldSet';
 import GuavaCacheSummary from './GuavaCacheSummary';
 import GuavaCacheDocumentation from './GuavaCacheDocumentation';
+import CaffeineCacheFieldSet from './CaffeineCacheFieldSet';
+import CaffeineCacheSummary from './CaffeineCacheSummary';
+import CaffeineCacheDocumentation from './CaffeineCacheDocumentation';
 
 PluginStore.register(new PluginManifest({}, {
   lookupTableCaches: [
@@ -22,5 +25,12 @@ PluginStore.register(new PluginManifest({}, {
       summaryComponent: GuavaCacheSummary,
       documentationComponent: GuavaCacheDocumentation,
     },
+    {
+      type: 'caffeine_cache',
+      displayName: 'Node-local, in-memory cache with background refresh',
+      formComponent: CaffeineCacheFieldSet,
+      summaryComponent: CaffeineCacheSummary,
+      documentationComponent: CaffeineCacheDocumentation,
+    },
   ],
 }));
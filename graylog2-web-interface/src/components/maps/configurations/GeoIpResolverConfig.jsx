@@ -22,6 +22,8 @@ const GeoIpResolverConfig = createReactClass({
         db_type: 'MAXMIND_CITY',
         db_path: '/etc/graylog/server/GeoLite2-City.mmdb',
         run_before_extractors: false,
+        fields: [],
+        cache_size: 10000,
       },
     };
   },
@@ -56,6 +58,18 @@ const GeoIpResolverConfig = createReactClass({
     };
   },
 
+  _fieldsAsString(fields) {
+    return Array.isArray(fields) ? fields.join(', ') : (fields || '');
+  },
+
+  _fieldsAsList(fields) {
+    return this._fieldsAsString(fields).split(',').map(field => field.trim()).filter(field => field.length > 0);
+  },
+
+  _onCacheSizeUpdate(e) {
+    this._updateConfigField('cache_size', Number(e.target.value));
+  },
+
   _openModal() {
     this.geoIpConfigModal.open();
   },
@@ -70,7 +84,9 @@ const GeoIpResolverConfig = createReactClass({
   },
 
   _saveConfig() {
-    this.props.updateConfig(this.state.config).then(() => {
+    const config = ObjectUtils.clone(this.state.config);
+    config.fields = this._fieldsAsList(config.fields);
+    this.props.updateConfig(config).then(() => {
       this._closeModal();
     });
   },
@@ -104,6 +120,10 @@ const GeoIpResolverConfig = createReactClass({
           <dd>{this._activeDatabaseType(this.state.config.db_type)}</dd>
           <dt>Database path:</dt>
           <dd>{this.state.config.db_path}</dd>
+          <dt>Fields:</dt>
+          <dd>{this._fieldsAsString(this.state.config.fields) || 'all fields'}</dd>
+          <dt>Cache size:</dt>
+          <dd>{this.state.config.cache_size > 0 ? this.state.config.cache_size : 'disabled'}</dd>
         </dl>
 
         <IfPermitted permissions="clusterconfigentry:edit">
@@ -140,6 +160,21 @@ const GeoIpResolverConfig = createReactClass({
                    name="db_path"
                    value={this.state.config.db_path}
                    onChange={this._onUpdate('db_path')} />
+            <Input id="geolocation-fields"
+                   type="text"
+                   label="Fields"
+                   help="Comma-separated list of the message fields to look up. Leave empty to look up all fields."
+                   name="fields"
+                   value={this._fieldsAsString(this.state.config.fields)}
+                   onChange={this._onUpdate('fields')} />
+            <Input id="geolocation-cache-size"
+                   type="number"
+                   label="Cache size"
+                   help="Number of IP addresses for which the geo-location information is cached. Set to 0 to disable the cache."
+                   name="cache_size"
+                   min="0"
+                   value={this.state.config.cache_size}
+                   onChange={this._onCacheSizeUpdate} />
           </fieldset>
         </BootstrapModalForm>
       </div>
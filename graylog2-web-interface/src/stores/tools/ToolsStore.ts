@@ -28,7 +28,7 @@ const ToolsStore = {
 
         return promise;
     },
-    testJSON(flatten: boolean, listSeparator: string, keySeparator: string, kvSeparator: string, replaceKeyWhitespace: boolean, keyWhitespaceReplacement: string, keyPrefix: string, string: string): Promise<Object> {
+    testJSON(flatten: boolean, listSeparator: string, keySeparator: string, kvSeparator: string, replaceKeyWhitespace: boolean, keyWhitespaceReplacement: string, keyPrefix: string, includeKeys: string, excludeKeys: string, maxDepth: number, string: string): Promise<Object> {
         const url = ApiRoutes.ToolsApiController.jsonTest().url;
         const payload = {
             flatten: flatten,
@@ -38,6 +38,9 @@ const ToolsStore = {
             replace_key_whitespace: replaceKeyWhitespace,
             key_whitespace_replacement: keyWhitespaceReplacement,
             key_prefix: keyPrefix,
+            include_keys: includeKeys,
+            exclude_keys: excludeKeys,
+            max_depth: maxDepth,
             string: string,
         };
 